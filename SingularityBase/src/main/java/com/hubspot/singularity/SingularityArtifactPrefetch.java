@@ -0,0 +1,12 @@
+package com.hubspot.singularity;
+
+/**
+ * Shared by SingularityService, which sends artifact prefetches to the slaves, and SingularityS3Downloader, which accepts them.
+ */
+public class SingularityArtifactPrefetch {
+
+  public static final String PREFETCH_TOKEN_HEADER = "X-Singularity-Prefetch-Token";
+
+  private SingularityArtifactPrefetch() {}
+
+}
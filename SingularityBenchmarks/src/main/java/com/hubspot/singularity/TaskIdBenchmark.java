@@ -0,0 +1,59 @@
+package com.hubspot.singularity;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing and formatting task ids. Since hashCode and equals go through the formatted id, every map and set keyed by task id
+ * pays for formatting too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskIdBenchmark {
+
+  private SingularityTaskId taskId;
+  private SingularityTaskId equalTaskId;
+  private String id;
+
+  @Setup
+  public void setup() {
+    taskId = new SingularityTaskId("benchmark-service", "deploy_2015_06_01", System.currentTimeMillis(), 7, "host7.example.com", "us_east_1a");
+    id = taskId.getId();
+    equalTaskId = SingularityTaskId.valueOf(id);
+  }
+
+  @Benchmark
+  public SingularityTaskId parse() {
+    return SingularityTaskId.valueOf(id);
+  }
+
+  @Benchmark
+  public String format() {
+    return taskId.getId();
+  }
+
+  @Benchmark
+  public int hash() {
+    return taskId.hashCode();
+  }
+
+  @Benchmark
+  public boolean equal() {
+    return taskId.equals(equalTaskId);
+  }
+
+}
@@ -0,0 +1,140 @@
+package com.hubspot.singularity.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.mesos.Protos.CommandInfo;
+import org.apache.mesos.Protos.Environment;
+import org.apache.mesos.Protos.Environment.Variable;
+import org.apache.mesos.Protos.FrameworkID;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.Value.Range;
+import org.apache.mesos.Protos.Value.Ranges;
+import org.apache.mesos.Protos.Value.Scalar;
+import org.apache.mesos.Protos.Value.Type;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.hubspot.jackson.datatype.protobuf.ProtobufModule;
+import com.hubspot.mesos.MesosUtils;
+import com.hubspot.mesos.Resources;
+import com.hubspot.singularity.RequestType;
+import com.hubspot.singularity.SingularityDeploy;
+import com.hubspot.singularity.SingularityDeployBuilder;
+import com.hubspot.singularity.SingularityPendingRequest.PendingType;
+import com.hubspot.singularity.SingularityPendingTask;
+import com.hubspot.singularity.SingularityPendingTaskId;
+import com.hubspot.singularity.SingularityRequest;
+import com.hubspot.singularity.SingularityRequestBuilder;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.SingularityTaskRequest;
+
+/**
+ * Realistically sized model objects shared by the benchmarks.
+ */
+public final class BenchmarkFixtures {
+
+  private BenchmarkFixtures() {
+    throw new AssertionError("do not instantiate");
+  }
+
+  private static final Map<String, String> ENV = ImmutableMap.<String, String> builder()
+      .put("JAVA_OPTS", "-Xmx512m -XX:+UseG1GC -Dfile.encoding=UTF-8")
+      .put("DEPLOY_ENV", "production")
+      .put("SERVICE_NAME", "benchmark-service")
+      .put("LOG_LEVEL", "INFO")
+      .put("CONFIG_URI", "s3://configs/benchmark-service/production.yaml")
+      .build();
+
+  /**
+   * Same configuration as the ObjectMapper SingularityService registers with Dropwizard.
+   */
+  public static ObjectMapper newObjectMapper() {
+    return new ObjectMapper()
+        .registerModule(new GuavaModule())
+        .registerModule(new ProtobufModule())
+        .setSerializationInclusion(Include.NON_NULL)
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  }
+
+  public static SingularityRequest buildRequest(String requestId, int instances) {
+    return new SingularityRequestBuilder(requestId, RequestType.SERVICE)
+        .setInstances(Optional.of(instances))
+        .setOwners(Optional.of(Arrays.asList("owner@example.com", "team@example.com")))
+        .build();
+  }
+
+  public static SingularityDeploy buildDeploy(String requestId, String deployId) {
+    return new SingularityDeployBuilder(requestId, deployId)
+        .setCommand(Optional.of("bin/run-service"))
+        .setArguments(Optional.of(Arrays.asList("--port", "$PORT0", "--admin-port", "$PORT1")))
+        .setEnv(Optional.of(ENV))
+        .setUris(Optional.of(Arrays.asList("s3://artifacts/benchmark-service/benchmark-service-1.0.0.tar.gz")))
+        .setResources(Optional.of(new Resources(1, 512, 2)))
+        .build();
+  }
+
+  public static Offer buildOffer(String offerId, String slaveId, String host, double cpus, double memory, long firstPort, long lastPort) {
+    return Offer.newBuilder()
+        .setId(OfferID.newBuilder().setValue(offerId))
+        .setFrameworkId(FrameworkID.newBuilder().setValue("Singularity"))
+        .setSlaveId(SlaveID.newBuilder().setValue(slaveId))
+        .setHostname(host)
+        .addResources(scalar(MesosUtils.CPUS, cpus))
+        .addResources(scalar(MesosUtils.MEMORY, memory))
+        .addResources(ports(firstPort, lastPort))
+        .build();
+  }
+
+  public static Resource scalar(String name, double value) {
+    return Resource.newBuilder().setType(Type.SCALAR).setName(name).setScalar(Scalar.newBuilder().setValue(value)).build();
+  }
+
+  public static Resource ports(long firstPort, long lastPort) {
+    return Resource.newBuilder().setType(Type.RANGES).setName(MesosUtils.PORTS).setRanges(Ranges.newBuilder().addRange(Range.newBuilder().setBegin(firstPort).setEnd(lastPort))).build();
+  }
+
+  public static SingularityPendingTask buildPendingTask(SingularityRequest request, SingularityDeploy deploy, long launchTime, int instanceNo) {
+    return new SingularityPendingTask(new SingularityPendingTaskId(request.getId(), deploy.getId(), launchTime, instanceNo, PendingType.NEW_DEPLOY, launchTime),
+        Collections.<String> emptyList(), Optional.<String> absent());
+  }
+
+  public static SingularityTask buildTask(SingularityRequest request, SingularityDeploy deploy, long launchTime, int instanceNo) {
+    final Offer offer = buildOffer("offer-" + instanceNo, "slave-" + instanceNo, "host" + instanceNo + ".example.com", 8, 16384, 31000, 32000);
+    final SingularityTaskId taskId = new SingularityTaskId(request.getId(), deploy.getId(), launchTime, instanceNo, offer.getHostname(), "us_east_1a");
+
+    final Environment.Builder environment = Environment.newBuilder();
+    for (Map.Entry<String, String> entry : deploy.getEnv().get().entrySet()) {
+      environment.addVariables(Variable.newBuilder().setName(entry.getKey()).setValue(entry.getValue()));
+    }
+
+    final TaskInfo taskInfo = TaskInfo.newBuilder()
+        .setTaskId(TaskID.newBuilder().setValue(taskId.getId()))
+        .setSlaveId(offer.getSlaveId())
+        .setName(taskId.getId())
+        .addResources(scalar(MesosUtils.CPUS, 1))
+        .addResources(scalar(MesosUtils.MEMORY, 512))
+        .addResources(ports(31005, 31006))
+        .setCommand(CommandInfo.newBuilder()
+            .setValue(deploy.getCommand().get())
+            .addAllArguments(deploy.getArguments().get())
+            .setShell(false)
+            .setEnvironment(environment)
+            .addUris(CommandInfo.URI.newBuilder().setValue(deploy.getUris().get().get(0))))
+        .build();
+
+    return new SingularityTask(new SingularityTaskRequest(request, deploy, buildPendingTask(request, deploy, launchTime, instanceNo)), taskId, offer, taskInfo);
+  }
+
+}
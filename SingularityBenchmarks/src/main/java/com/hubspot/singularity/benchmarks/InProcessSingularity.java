@@ -0,0 +1,79 @@
+package com.hubspot.singularity.benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.test.TestingServer;
+
+import com.google.common.base.Optional;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import com.hubspot.horizon.HttpClient;
+import com.hubspot.mesos.client.MesosClient;
+import com.hubspot.singularity.DeployState;
+import com.hubspot.singularity.SingularityDeploy;
+import com.hubspot.singularity.SingularityDeployMarker;
+import com.hubspot.singularity.SingularityDeployResult;
+import com.hubspot.singularity.SingularityRequest;
+import com.hubspot.singularity.SingularityRequestDeployState;
+import com.hubspot.singularity.SingularityRequestHistory.RequestHistoryType;
+import com.hubspot.singularity.data.DeployManager;
+import com.hubspot.singularity.data.RequestManager;
+import com.hubspot.singularity.data.zkmigrations.ZkDataMigrationRunner;
+import com.hubspot.singularity.scheduler.SingularityTestModule;
+import com.ning.http.client.AsyncHttpClient;
+
+/**
+ * The scheduler wired up the same way SingularityCuratorTestBase does it - against an in-process ZooKeeper from curator-test,
+ * with the Mesos driver, mailer and load balancer mocked out - for benchmarks that need real managers.
+ */
+public class InProcessSingularity implements Closeable {
+
+  private final SingularityTestModule module;
+  private final Injector injector;
+
+  public InProcessSingularity() throws Exception {
+    module = new SingularityTestModule();
+    injector = module.getInjector();
+
+    module.start();
+
+    injector.getInstance(ZkDataMigrationRunner.class).checkMigrations();
+  }
+
+  public <T> T getInstance(Class<T> clazz) {
+    return injector.getInstance(clazz);
+  }
+
+  /**
+   * Saves an active request whose given deploy has already succeeded.
+   */
+  public void saveActiveRequest(SingularityRequest request, SingularityDeploy deploy) {
+    final long now = System.currentTimeMillis();
+    final SingularityDeployMarker marker = new SingularityDeployMarker(request.getId(), deploy.getId(), now, Optional.<String> absent());
+    final DeployManager deployManager = getInstance(DeployManager.class);
+
+    getInstance(RequestManager.class).activate(request, RequestHistoryType.CREATED, now, Optional.<String> absent());
+
+    deployManager.saveDeploy(request, marker, deploy);
+    deployManager.saveDeployResult(marker, Optional.of(deploy), new SingularityDeployResult(DeployState.SUCCEEDED));
+    deployManager.saveNewRequestDeployState(new SingularityRequestDeployState(request.getId(), Optional.of(marker), Optional.<SingularityDeployMarker> absent()));
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      module.stop();
+    } catch (Exception e) {
+      throw new IOException(e);
+    } finally {
+      injector.getInstance(CuratorFramework.class).close();
+      injector.getInstance(TestingServer.class).close();
+      injector.getInstance(Key.get(HttpClient.class, Names.named(MesosClient.HTTP_CLIENT_NAME))).close();
+      injector.getInstance(AsyncHttpClient.class).close();
+    }
+  }
+
+}
@@ -0,0 +1,46 @@
+package com.hubspot.singularity.benchmarks;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Runs JMH with the given arguments, writing results as JSON to target/benchmarks/ (one file per run, so runs can be compared
+ * with each other or loaded into a JMH visualizer) unless a result format or file was given.
+ */
+public final class SingularityBenchmarks {
+
+  private static final String RESULTS_DIRECTORY = "target/benchmarks";
+
+  private SingularityBenchmarks() {
+    throw new AssertionError("do not instantiate");
+  }
+
+  public static void main(String[] args) throws Exception {
+    final List<String> jmhArgs = Lists.newArrayList(args);
+
+    if (!jmhArgs.contains("-rf")) {
+      jmhArgs.add("-rf");
+      jmhArgs.add("json");
+    }
+
+    if (!jmhArgs.contains("-rff")) {
+      final File resultsDirectory = new File(RESULTS_DIRECTORY);
+
+      if (!resultsDirectory.isDirectory() && !resultsDirectory.mkdirs()) {
+        throw new IllegalStateException(String.format("Couldn't create %s", resultsDirectory.getAbsolutePath()));
+      }
+
+      jmhArgs.add("-rff");
+      jmhArgs.add(new File(resultsDirectory, String.format("jmh-result-%s.json", new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()))).getPath());
+    }
+
+    Main.main(jmhArgs.toArray(new String[jmhArgs.size()]));
+  }
+
+}
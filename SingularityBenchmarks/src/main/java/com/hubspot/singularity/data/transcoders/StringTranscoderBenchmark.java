@@ -0,0 +1,116 @@
+package com.hubspot.singularity.data.transcoders;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hubspot.singularity.ExtendedTaskState;
+import com.hubspot.singularity.SingularityPendingRequest.PendingType;
+import com.hubspot.singularity.SingularityPendingTaskId;
+import com.hubspot.singularity.SingularityTaskId;
+
+/**
+ * The transcoders for node names and small string values: IdTranscoder (used for every child listed under the task and pending
+ * task trees), StringTranscoder and EnumTranscoder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringTranscoderBenchmark {
+
+  private IdTranscoder<SingularityTaskId> taskIdTranscoder;
+  private IdTranscoder<SingularityPendingTaskId> pendingTaskIdTranscoder;
+  private EnumTranscoder<ExtendedTaskState> enumTranscoder;
+
+  private SingularityTaskId taskId;
+  private SingularityPendingTaskId pendingTaskId;
+
+  private String taskIdString;
+  private String pendingTaskIdString;
+  private byte[] taskIdBytes;
+  private byte[] stateBytes;
+
+  @Setup
+  public void setup() {
+    taskIdTranscoder = new IdTranscoder<>(SingularityTaskId.class);
+    pendingTaskIdTranscoder = new IdTranscoder<>(SingularityPendingTaskId.class);
+    enumTranscoder = new EnumTranscoder<ExtendedTaskState>() {
+
+      @Override
+      protected ExtendedTaskState fromString(@Nullable String string) {
+        return string == null ? null : ExtendedTaskState.valueOf(string);
+      }
+
+    };
+
+    final long now = System.currentTimeMillis();
+
+    taskId = new SingularityTaskId("benchmark-service", "deploy1", now, 7, "host7.example.com", "us_east_1a");
+    pendingTaskId = new SingularityPendingTaskId("benchmark-service", "deploy1", now, 7, PendingType.NEW_DEPLOY, now);
+
+    taskIdString = taskId.getId();
+    pendingTaskIdString = pendingTaskId.getId();
+    taskIdBytes = taskIdTranscoder.toBytes(taskId);
+    stateBytes = enumTranscoder.toBytes(ExtendedTaskState.TASK_RUNNING);
+  }
+
+  @Benchmark
+  public SingularityTaskId taskIdFromString() {
+    return taskIdTranscoder.fromString(taskIdString);
+  }
+
+  @Benchmark
+  public SingularityTaskId taskIdFromBytes() {
+    return taskIdTranscoder.fromBytes(taskIdBytes);
+  }
+
+  @Benchmark
+  public byte[] taskIdToBytes() {
+    return taskIdTranscoder.toBytes(taskId);
+  }
+
+  @Benchmark
+  public SingularityPendingTaskId pendingTaskIdFromString() {
+    return pendingTaskIdTranscoder.fromString(pendingTaskIdString);
+  }
+
+  @Benchmark
+  public byte[] pendingTaskIdToBytes() {
+    return pendingTaskIdTranscoder.toBytes(pendingTaskId);
+  }
+
+  @Benchmark
+  public String stringFromBytes() {
+    return StringTranscoder.INSTANCE.fromBytes(taskIdBytes);
+  }
+
+  @Benchmark
+  public byte[] stringToBytes() {
+    return StringTranscoder.INSTANCE.toBytes(taskIdString);
+  }
+
+  @Benchmark
+  public ExtendedTaskState enumFromBytes() {
+    return enumTranscoder.fromBytes(stateBytes);
+  }
+
+  @Benchmark
+  public byte[] enumToBytes() {
+    return enumTranscoder.toBytes(ExtendedTaskState.TASK_RUNNING);
+  }
+
+}
@@ -0,0 +1,171 @@
+package com.hubspot.singularity.data.transcoders;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.hubspot.singularity.ExtendedTaskState;
+import com.hubspot.singularity.SingularityDeploy;
+import com.hubspot.singularity.SingularityRequest;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHistoryUpdate;
+import com.hubspot.singularity.SingularityTaskStatusHolder;
+import com.hubspot.singularity.benchmarks.BenchmarkFixtures;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+/**
+ * Compares JsonTranscoder and CompressingJsonTranscoder with SmileTranscoder on the objects written most often: tasks (which
+ * embed the Mesos TaskInfo and offer), last active task statuses and task history updates - plus the deploy and request
+ * objects every pending request and deploy check reads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranscoderBenchmark {
+
+  public enum Format {
+    JSON, SNAPPY_JSON, SMILE, SNAPPY_SMILE;
+
+    boolean isCompressed() {
+      return this == SNAPPY_JSON || this == SNAPPY_SMILE;
+    }
+
+    boolean isBinary() {
+      return this == SMILE || this == SNAPPY_SMILE;
+    }
+  }
+
+  @Param
+  private Format format;
+
+  private Transcoder<SingularityTask> taskTranscoder;
+  private Transcoder<SingularityTaskStatusHolder> statusTranscoder;
+  private Transcoder<SingularityTaskHistoryUpdate> updateTranscoder;
+  private Transcoder<SingularityDeploy> deployTranscoder;
+  private Transcoder<SingularityRequest> requestTranscoder;
+
+  private SingularityTask task;
+  private SingularityTaskStatusHolder status;
+  private SingularityTaskHistoryUpdate update;
+  private SingularityDeploy deploy;
+  private SingularityRequest request;
+
+  private byte[] taskBytes;
+  private byte[] statusBytes;
+  private byte[] updateBytes;
+  private byte[] deployBytes;
+  private byte[] requestBytes;
+
+  @Setup
+  public void setup() {
+    final ObjectMapper objectMapper = BenchmarkFixtures.newObjectMapper();
+
+    final SingularityConfiguration configuration = new SingularityConfiguration();
+    configuration.setCompressLargeDataObjects(format.isCompressed());
+    configuration.setWriteBinaryDataObjects(format.isBinary());
+
+    taskTranscoder = newTranscoder(configuration, objectMapper, SingularityTask.class, true);
+    statusTranscoder = newTranscoder(configuration, objectMapper, SingularityTaskStatusHolder.class, true);
+    updateTranscoder = newTranscoder(configuration, objectMapper, SingularityTaskHistoryUpdate.class, false);
+    deployTranscoder = newTranscoder(configuration, objectMapper, SingularityDeploy.class, true);
+    requestTranscoder = newTranscoder(configuration, objectMapper, SingularityRequest.class, false);
+
+    request = BenchmarkFixtures.buildRequest("benchmark-service", 10);
+    deploy = BenchmarkFixtures.buildDeploy(request.getId(), "deploy1");
+
+    task = BenchmarkFixtures.buildTask(request, deploy, System.currentTimeMillis(), 1);
+
+    final TaskStatus taskStatus = TaskStatus.newBuilder()
+        .setTaskId(TaskID.newBuilder().setValue(task.getTaskId().getId()))
+        .setSlaveId(task.getOffer().getSlaveId())
+        .setState(TaskState.TASK_RUNNING)
+        .setMessage("Task is running")
+        .build();
+
+    status = new SingularityTaskStatusHolder(task.getTaskId(), Optional.of(taskStatus), System.currentTimeMillis(), "server-id", Optional.of(task.getOffer().getSlaveId().getValue()));
+    update = new SingularityTaskHistoryUpdate(task.getTaskId(), System.currentTimeMillis(), ExtendedTaskState.TASK_RUNNING, Optional.of("Task is running"));
+
+    taskBytes = taskTranscoder.toBytes(task);
+    statusBytes = statusTranscoder.toBytes(status);
+    updateBytes = updateTranscoder.toBytes(update);
+    deployBytes = deployTranscoder.toBytes(deploy);
+    requestBytes = requestTranscoder.toBytes(request);
+  }
+
+  private <T> Transcoder<T> newTranscoder(SingularityConfiguration configuration, ObjectMapper objectMapper, Class<T> clazz, boolean compressible) {
+    if (format.isBinary()) {
+      return new SmileTranscoder<>(configuration, objectMapper, clazz, compressible);
+    }
+
+    return compressible ? new CompressingJsonTranscoder<>(configuration, objectMapper, clazz) : new JsonTranscoder<>(objectMapper, clazz);
+  }
+
+  @Benchmark
+  public byte[] writeTask() {
+    return taskTranscoder.toBytes(task);
+  }
+
+  @Benchmark
+  public SingularityTask readTask() {
+    return taskTranscoder.fromBytes(taskBytes);
+  }
+
+  @Benchmark
+  public byte[] writeTaskStatus() {
+    return statusTranscoder.toBytes(status);
+  }
+
+  @Benchmark
+  public SingularityTaskStatusHolder readTaskStatus() {
+    return statusTranscoder.fromBytes(statusBytes);
+  }
+
+  @Benchmark
+  public byte[] writeTaskHistoryUpdate() {
+    return updateTranscoder.toBytes(update);
+  }
+
+  @Benchmark
+  public SingularityTaskHistoryUpdate readTaskHistoryUpdate() {
+    return updateTranscoder.fromBytes(updateBytes);
+  }
+
+  @Benchmark
+  public byte[] writeDeploy() {
+    return deployTranscoder.toBytes(deploy);
+  }
+
+  @Benchmark
+  public SingularityDeploy readDeploy() {
+    return deployTranscoder.fromBytes(deployBytes);
+  }
+
+  @Benchmark
+  public byte[] writeRequest() {
+    return requestTranscoder.toBytes(request);
+  }
+
+  @Benchmark
+  public SingularityRequest readRequest() {
+    return requestTranscoder.fromBytes(requestBytes);
+  }
+
+}
@@ -0,0 +1,123 @@
+package com.hubspot.singularity.mesos;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.SchedulerDriver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+import com.hubspot.singularity.SingularityDeploy;
+import com.hubspot.singularity.SingularityPendingRequest;
+import com.hubspot.singularity.SingularityPendingRequest.PendingType;
+import com.hubspot.singularity.SingularityPendingTaskId;
+import com.hubspot.singularity.SingularityRequest;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.benchmarks.BenchmarkFixtures;
+import com.hubspot.singularity.benchmarks.InProcessSingularity;
+import com.hubspot.singularity.data.RequestManager;
+import com.hubspot.singularity.data.TaskManager;
+
+/**
+ * One full offer cycle - draining the pending queue, loading and sorting due tasks, matching them to offers and persisting
+ * the launched tasks - against an in-process ZooKeeper. Every iteration starts from the same state: no active tasks and one
+ * pending request per request, so each measured call schedules and launches requests * instances tasks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ResourceOffersBenchmark {
+
+  private static final int CPUS_PER_OFFER = 32;
+
+  @Param({ "10", "100" })
+  private int numRequests;
+
+  @Param({ "5" })
+  private int instancesPerRequest;
+
+  private InProcessSingularity singularity;
+  private SingularityMesosScheduler scheduler;
+  private SchedulerDriver driver;
+  private TaskManager taskManager;
+  private RequestManager requestManager;
+
+  private List<SingularityDeploy> deploys;
+  private List<Offer> offers;
+
+  @Setup(Level.Trial)
+  public void startSingularity() throws Exception {
+    singularity = new InProcessSingularity();
+
+    scheduler = singularity.getInstance(SingularityMesosScheduler.class);
+    driver = singularity.getInstance(SchedulerDriverSupplier.class).get().get();
+    taskManager = singularity.getInstance(TaskManager.class);
+    requestManager = singularity.getInstance(RequestManager.class);
+
+    deploys = Lists.newArrayListWithCapacity(numRequests);
+
+    for (int i = 0; i < numRequests; i++) {
+      final SingularityRequest request = BenchmarkFixtures.buildRequest("benchmark-request-" + i, instancesPerRequest);
+      final SingularityDeploy deploy = BenchmarkFixtures.buildDeploy(request.getId(), "deploy1");
+
+      singularity.saveActiveRequest(request, deploy);
+
+      deploys.add(deploy);
+    }
+
+    // twice the offers needed, so matching has to look past full ones
+    final int numOffers = 2 * (int) Math.ceil((double) numRequests * instancesPerRequest * deploys.get(0).getResources().get().getCpus() / CPUS_PER_OFFER);
+
+    offers = Lists.newArrayListWithCapacity(numOffers);
+
+    for (int i = 0; i < numOffers; i++) {
+      offers.add(BenchmarkFixtures.buildOffer("offer-" + i, "slave-" + i, "host" + i + ".example.com", CPUS_PER_OFFER, 65536, 31000, 32000));
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void resetTasks() {
+    for (SingularityTaskId taskId : taskManager.getActiveTaskIds()) {
+      taskManager.deleteActiveTask(taskId.getId());
+      taskManager.deleteLastActiveTaskStatus(taskId);
+      taskManager.deleteTaskHistory(taskId);
+    }
+
+    for (SingularityPendingTaskId pendingTaskId : taskManager.getPendingTaskIds()) {
+      taskManager.deletePendingTask(pendingTaskId);
+    }
+
+    final long now = System.currentTimeMillis();
+
+    for (SingularityDeploy deploy : deploys) {
+      requestManager.addToPendingQueue(new SingularityPendingRequest(deploy.getRequestId(), deploy.getId(), now, PendingType.NEW_DEPLOY));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stopSingularity() throws Exception {
+    singularity.close();
+  }
+
+  @Benchmark
+  public void resourceOffers() {
+    scheduler.resourceOffers(driver, offers);
+  }
+
+}
@@ -0,0 +1,98 @@
+package com.hubspot.singularity.mesos;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.Value.Range;
+import org.apache.mesos.Protos.Value.Ranges;
+import org.apache.mesos.Protos.Value.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+import com.hubspot.mesos.MesosUtils;
+import com.hubspot.singularity.benchmarks.BenchmarkFixtures;
+
+/**
+ * Taking the resources of numTasks tasks out of one offer whose ports come in several ranges, the way MesosUtils.subtractResources
+ * rebuilds the protobufs after every task versus SingularityOfferResources keeping primitives.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubtractResourcesBenchmark {
+
+  private static final int NUM_PORT_RANGES = 10;
+  private static final int PORTS_PER_RANGE = 100;
+  private static final long FIRST_PORT = 31000;
+
+  @Param({ "1", "10", "50" })
+  private int numTasks;
+
+  private List<Resource> offered;
+  private List<List<Resource>> taskResources;
+
+  @Setup
+  public void setup() {
+    final Ranges.Builder ranges = Ranges.newBuilder();
+
+    // leave a gap after every range, as if some ports were already taken
+    for (int i = 0; i < NUM_PORT_RANGES; i++) {
+      final long begin = FIRST_PORT + i * 2 * PORTS_PER_RANGE;
+      ranges.addRange(Range.newBuilder().setBegin(begin).setEnd(begin + PORTS_PER_RANGE - 1));
+    }
+
+    offered = Arrays.asList(
+        BenchmarkFixtures.scalar(MesosUtils.CPUS, 32),
+        BenchmarkFixtures.scalar(MesosUtils.MEMORY, 65536),
+        Resource.newBuilder().setType(Type.RANGES).setName(MesosUtils.PORTS).setRanges(ranges).build());
+
+    taskResources = Lists.newArrayListWithCapacity(numTasks);
+
+    for (int i = 0; i < numTasks; i++) {
+      final long port = FIRST_PORT + (i % NUM_PORT_RANGES) * 2 * PORTS_PER_RANGE + 2 * (i / NUM_PORT_RANGES);
+
+      taskResources.add(Arrays.asList(
+          BenchmarkFixtures.scalar(MesosUtils.CPUS, 0.5),
+          BenchmarkFixtures.scalar(MesosUtils.MEMORY, 256),
+          BenchmarkFixtures.ports(port, port + 1)));
+    }
+  }
+
+  @Benchmark
+  public List<Resource> mesosUtils() {
+    List<Resource> remaining = offered;
+
+    for (List<Resource> resources : taskResources) {
+      remaining = MesosUtils.subtractResources(remaining, resources);
+    }
+
+    return remaining;
+  }
+
+  @Benchmark
+  public SingularityOfferResources offerResources() {
+    final SingularityOfferResources remaining = new SingularityOfferResources(offered);
+
+    for (List<Resource> resources : taskResources) {
+      remaining.subtract(resources);
+    }
+
+    return remaining;
+  }
+
+}
@@ -0,0 +1,144 @@
+package com.hubspot.singularity.s3.base;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
+
+/**
+ * Extracting and copying a cached artifact into a task sandbox: in process against forking tar (untarInProcess), and
+ * FileChannel.transferTo against Files.copy. The artifact is generated once per trial - numFiles files of fileSize bytes of
+ * partly compressible data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtifactManagerBenchmark {
+
+  @Param({ "true", "false" })
+  public boolean untarInProcess;
+
+  @Param({ "500" })
+  public int numFiles;
+
+  @Param({ "65536" })
+  public int fileSize;
+
+  private Path workDirectory;
+  private Path artifact;
+  private Path sandbox;
+
+  private ArtifactManager artifactManager;
+
+  @Setup
+  public void setup() throws IOException {
+    workDirectory = Files.createTempDirectory("artifact-benchmark");
+    artifact = workDirectory.resolve("artifact.tar.gz");
+
+    writeArtifact();
+
+    final SingularityS3Configuration configuration = new SingularityS3Configuration(workDirectory.toString(), "0", "0", "0", Boolean.toString(untarInProcess), "", "", "104857600", "60000", "16", "8388608", "10000",
+        "7070", "/download");
+
+    artifactManager = new ArtifactManager(configuration, LoggerFactory.getLogger(ArtifactManagerBenchmark.class));
+  }
+
+  private void writeArtifact() throws IOException {
+    final Random random = new Random(0);
+    final byte[] data = new byte[fileSize];
+
+    try (TarArchiveOutputStream tarStream = new TarArchiveOutputStream(new GZIPOutputStream(Files.newOutputStream(artifact)))) {
+      for (int i = 0; i < numFiles; i++) {
+        // half random, half zeroes - roughly as compressible as a typical build
+        random.nextBytes(data);
+        for (int j = fileSize / 2; j < fileSize; j++) {
+          data[j] = 0;
+        }
+
+        final TarArchiveEntry entry = new TarArchiveEntry(String.format("app/lib/%s/file-%s.jar", i % 10, i));
+        entry.setSize(fileSize);
+        entry.setMode(0644);
+
+        tarStream.putArchiveEntry(entry);
+        tarStream.write(data);
+        tarStream.closeArchiveEntry();
+      }
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void createSandbox() throws IOException {
+    sandbox = Files.createTempDirectory(workDirectory, "sandbox");
+  }
+
+  @TearDown(Level.Invocation)
+  public void deleteSandbox() throws IOException {
+    delete(sandbox);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    delete(workDirectory);
+  }
+
+  @Benchmark
+  public void untar() {
+    artifactManager.untar(artifact, sandbox);
+  }
+
+  @Benchmark
+  public void copy() {
+    artifactManager.copy(artifact, sandbox);
+  }
+
+  @Benchmark
+  public void copyWithFilesCopy() throws IOException {
+    Files.copy(artifact, sandbox.resolve(artifact.getFileName()));
+  }
+
+  private void delete(Path directory) throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+  }
+
+}
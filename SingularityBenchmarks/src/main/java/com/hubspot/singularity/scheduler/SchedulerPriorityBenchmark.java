@@ -0,0 +1,111 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+import com.hubspot.singularity.SingularityDeploy;
+import com.hubspot.singularity.SingularityRequest;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskRequest;
+import com.hubspot.singularity.benchmarks.BenchmarkFixtures;
+import com.hubspot.singularity.benchmarks.InProcessSingularity;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.TaskManager;
+
+/**
+ * Sorting the due tasks of an offer cycle, both by a priority which has already indexed every request's launches (warm) and by
+ * a new one which has to seed its index from ZooKeeper first (cold, as after a leader change).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerPriorityBenchmark {
+
+  @Param({ "100", "1000" })
+  private int numTaskRequests;
+
+  @Param({ "3" })
+  private int tasksPerRequest;
+
+  private InProcessSingularity singularity;
+  private TaskManager taskManager;
+  private SingularityConfiguration configuration;
+
+  private SingularitySchedulerPriority warmPriority;
+  private List<SingularityTaskRequest> taskRequests;
+
+  @Setup(Level.Trial)
+  public void startSingularity() throws Exception {
+    singularity = new InProcessSingularity();
+
+    taskManager = singularity.getInstance(TaskManager.class);
+    configuration = singularity.getInstance(SingularityConfiguration.class);
+
+    final Random random = new Random(numTaskRequests);
+    final long now = System.currentTimeMillis();
+    final List<SingularityTask> tasks = Lists.newArrayList();
+
+    taskRequests = Lists.newArrayListWithCapacity(numTaskRequests);
+
+    for (int i = 0; i < numTaskRequests; i++) {
+      final SingularityRequest request = BenchmarkFixtures.buildRequest("benchmark-request-" + i, tasksPerRequest);
+      final SingularityDeploy deploy = BenchmarkFixtures.buildDeploy(request.getId(), "deploy1");
+
+      for (int instanceNo = 1; instanceNo <= tasksPerRequest; instanceNo++) {
+        final SingularityTask task = BenchmarkFixtures.buildTask(request, deploy, now - random.nextInt(1000000), instanceNo);
+
+        taskManager.savePendingTask(task.getTaskRequest().getPendingTask());
+        tasks.add(task);
+      }
+
+      taskRequests.add(new SingularityTaskRequest(request, deploy, BenchmarkFixtures.buildPendingTask(request, deploy, now, tasksPerRequest + 1)));
+    }
+
+    taskManager.createTasksAndDeletePendingTasks(tasks);
+
+    Collections.shuffle(taskRequests, random);
+
+    warmPriority = new SingularitySchedulerPriority(taskManager, configuration);
+    warmPriority.seed();
+  }
+
+  @TearDown(Level.Trial)
+  public void stopSingularity() throws Exception {
+    singularity.close();
+  }
+
+  @Benchmark
+  public List<SingularityTaskRequest> sortWarm() {
+    final List<SingularityTaskRequest> sorted = Lists.newArrayList(taskRequests);
+    warmPriority.sortTaskRequestsInPriorityOrder(sorted);
+    return sorted;
+  }
+
+  @Benchmark
+  public List<SingularityTaskRequest> sortCold() {
+    final List<SingularityTaskRequest> sorted = Lists.newArrayList(taskRequests);
+    new SingularitySchedulerPriority(taskManager, configuration).sortTaskRequestsInPriorityOrder(sorted);
+    return sorted;
+  }
+
+}
@@ -82,6 +82,8 @@ public class SingularityClient {
   private static final String REQUEST_ACTIVE_TASKS_HISTORY_FORMAT = HISTORY_FORMAT + "/request/%s/tasks/active";
   private static final String REQUEST_INACTIVE_TASKS_HISTORY_FORMAT = HISTORY_FORMAT + "/request/%s/tasks";
   private static final String REQUEST_DEPLOY_HISTORY_FORMAT = HISTORY_FORMAT + "/request/%s/deploy/%s";
+  private static final String REQUEST_DEPLOYS_HISTORY_FORMAT = HISTORY_FORMAT + "/request/%s/deploys";
+  private static final String REQUEST_UPDATES_HISTORY_FORMAT = HISTORY_FORMAT + "/request/%s/requests";
 
   private static final String REQUESTS_FORMAT = "http://%s/%s/requests";
   private static final String REQUESTS_GET_ACTIVE_FORMAT = REQUESTS_FORMAT + "/active";
@@ -114,6 +116,7 @@ public class SingularityClient {
   private static final TypeReference<Collection<SingularityPendingRequest>> PENDING_REQUESTS_COLLECTION = new TypeReference<Collection<SingularityPendingRequest>>() {};
   private static final TypeReference<Collection<SingularityRequestCleanup>> CLEANUP_REQUESTS_COLLECTION = new TypeReference<Collection<SingularityRequestCleanup>>() {};
   private static final TypeReference<Collection<SingularityTask>> TASKS_COLLECTION = new TypeReference<Collection<SingularityTask>>() {};
+  private static final TypeReference<Collection<SingularityDeployHistory>> DEPLOY_HISTORY_COLLECTION = new TypeReference<Collection<SingularityDeployHistory>>() {};
   private static final TypeReference<Collection<SingularityTaskIdHistory>> TASKID_HISTORY_COLLECTION = new TypeReference<Collection<SingularityTaskIdHistory>>() {};
   private static final TypeReference<Collection<SingularityRack>> RACKS_COLLECTION = new TypeReference<Collection<SingularityRack>>() {};
   private static final TypeReference<Collection<SingularitySlave>> SLAVES_COLLECTION = new TypeReference<Collection<SingularitySlave>>() {};
@@ -707,12 +710,104 @@ public class SingularityClient {
     return getCollection(requestUri, type, TASKID_HISTORY_COLLECTION);
   }
 
+  /**
+   * Pages through the inactive task history of a request, newest first. Each page starts after the last task of the previous
+   * page rather than at an offset, so later pages are as quick to fetch as the first.
+   *
+   * @param count
+   *    Maximum number of tasks to return
+   * @param lastTaskIdHistory
+   *    The last task of the previous page, absent for the first page
+   * @param updatedAfter
+   *    Optionally only return tasks updated at or after this timestamp
+   * @param updatedBefore
+   *    Optionally only return tasks updated before this timestamp
+   */
+  public Collection<SingularityTaskIdHistory> getInactiveTaskHistoryForRequest(String requestId, int count, Optional<SingularityTaskIdHistory> lastTaskIdHistory, Optional<Long> updatedAfter,
+      Optional<Long> updatedBefore) {
+    final String requestUri = String.format(REQUEST_INACTIVE_TASKS_HISTORY_FORMAT, getHost(), contextPath, requestId);
+
+    final Builder<String, Object> queryParams = ImmutableMap.<String, Object> builder().put("count", count);
+
+    if (lastTaskIdHistory.isPresent()) {
+      queryParams.put("lastUpdatedAt", lastTaskIdHistory.get().getUpdatedAt()).put("lastTaskId", lastTaskIdHistory.get().getTaskId().getId());
+    }
+    if (updatedAfter.isPresent()) {
+      queryParams.put("updatedAfter", updatedAfter.get());
+    }
+    if (updatedBefore.isPresent()) {
+      queryParams.put("updatedBefore", updatedBefore.get());
+    }
+
+    final String type = String.format("inactive (failed, killed, lost) task history for request %s", requestId);
+
+    return getCollectionWithParams(requestUri, type, Optional.<Map<String, Object>> of(queryParams.build()), TASKID_HISTORY_COLLECTION);
+  }
+
   public Optional<SingularityDeployHistory> getHistoryForRequestDeploy(String requestId, String deployId) {
     final String requestUri = String.format(REQUEST_DEPLOY_HISTORY_FORMAT, getHost(), contextPath, requestId, deployId);
 
     return getSingle(requestUri, "deploy history", new SingularityDeployKey(requestId, deployId).getId(), SingularityDeployHistory.class);
   }
 
+  /**
+   * Pages through the deploys of a request, newest first, starting each page after the last deploy of the previous page.
+   *
+   * @param lastDeployHistory
+   *    The last deploy of the previous page, absent for the first page
+   * @param createdAfter
+   *    Optionally only return deploys created at or after this timestamp
+   * @param createdBefore
+   *    Optionally only return deploys created before this timestamp
+   */
+  public Collection<SingularityDeployHistory> getDeployHistoryForRequest(String requestId, int count, Optional<SingularityDeployHistory> lastDeployHistory, Optional<Long> createdAfter,
+      Optional<Long> createdBefore) {
+    final String requestUri = String.format(REQUEST_DEPLOYS_HISTORY_FORMAT, getHost(), contextPath, requestId);
+
+    final Builder<String, Object> queryParams = ImmutableMap.<String, Object> builder().put("count", count);
+
+    if (lastDeployHistory.isPresent()) {
+      queryParams.put("lastCreatedAt", lastDeployHistory.get().getDeployMarker().getTimestamp()).put("lastDeployId", lastDeployHistory.get().getDeployMarker().getDeployId());
+    }
+    if (createdAfter.isPresent()) {
+      queryParams.put("createdAfter", createdAfter.get());
+    }
+    if (createdBefore.isPresent()) {
+      queryParams.put("createdBefore", createdBefore.get());
+    }
+
+    return getCollectionWithParams(requestUri, String.format("deploy history for request %s", requestId), Optional.<Map<String, Object>> of(queryParams.build()), DEPLOY_HISTORY_COLLECTION);
+  }
+
+  /**
+   * Pages through the updates to a request, newest first, starting each page after the last update of the previous page.
+   *
+   * @param lastRequestHistory
+   *    The last update of the previous page, absent for the first page
+   * @param createdAfter
+   *    Optionally only return updates made at or after this timestamp
+   * @param createdBefore
+   *    Optionally only return updates made before this timestamp
+   */
+  public Collection<SingularityRequestHistory> getRequestHistory(String requestId, int count, Optional<SingularityRequestHistory> lastRequestHistory, Optional<Long> createdAfter,
+      Optional<Long> createdBefore) {
+    final String requestUri = String.format(REQUEST_UPDATES_HISTORY_FORMAT, getHost(), contextPath, requestId);
+
+    final Builder<String, Object> queryParams = ImmutableMap.<String, Object> builder().put("count", count);
+
+    if (lastRequestHistory.isPresent()) {
+      queryParams.put("lastCreatedAt", lastRequestHistory.get().getCreatedAt());
+    }
+    if (createdAfter.isPresent()) {
+      queryParams.put("createdAfter", createdAfter.get());
+    }
+    if (createdBefore.isPresent()) {
+      queryParams.put("createdBefore", createdBefore.get());
+    }
+
+    return getCollectionWithParams(requestUri, String.format("request history for %s", requestId), Optional.<Map<String, Object>> of(queryParams.build()), REQUEST_UPDATES_COLLECTION);
+  }
+
   //
   // WEBHOOKS
   //
@@ -17,8 +17,10 @@ import com.hubspot.deploy.S3Artifact;
 import com.hubspot.mesos.JavaUtils;
 import com.hubspot.singularity.executor.config.SingularityExecutorConfiguration;
 import com.hubspot.singularity.executor.config.SingularityExecutorModule;
+import com.hubspot.singularity.s3.base.ArtifactCache;
 import com.hubspot.singularity.s3.base.ArtifactDownloadRequest;
 import com.hubspot.singularity.s3.base.ArtifactManager;
+import com.hubspot.singularity.s3.base.S3DownloadScheduler;
 import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
@@ -34,20 +36,24 @@ public class SingularityExecutorArtifactFetcher {
   private final SingularityExecutorConfiguration executorConfiguration;
   private final SingularityS3Configuration s3Configuration;
   private final ObjectMapper objectMapper;
+  private final ArtifactCache artifactCache;
+  private final S3DownloadScheduler downloadScheduler;
 
   @Inject
   public SingularityExecutorArtifactFetcher(@Named(SingularityExecutorModule.LOCAL_DOWNLOAD_HTTP_CLIENT) AsyncHttpClient localDownloadHttpClient, SingularityS3Configuration s3Configuration,
-      SingularityExecutorConfiguration executorConfiguration, ObjectMapper objectMapper) {
+      SingularityExecutorConfiguration executorConfiguration, ObjectMapper objectMapper, ArtifactCache artifactCache, S3DownloadScheduler downloadScheduler) {
     this.localDownloadHttpClient = localDownloadHttpClient;
     this.executorConfiguration = executorConfiguration;
     this.s3Configuration = s3Configuration;
     this.objectMapper = objectMapper;
+    this.artifactCache = artifactCache;
+    this.downloadScheduler = downloadScheduler;
 
     this.localDownloadUri = String.format(LOCAL_DOWNLOAD_STRING_FORMAT, s3Configuration.getLocalDownloadHttpPort(), s3Configuration.getLocalDownloadPath());
   }
 
   public SingularityExecutorTaskArtifactFetcher buildTaskFetcher(ExecutorData executorData, SingularityExecutorTask task) {
-    ArtifactManager artifactManager = new ArtifactManager(s3Configuration, task.getLog());
+    ArtifactManager artifactManager = new ArtifactManager(s3Configuration, task.getLog(), artifactCache, downloadScheduler);
 
     return new SingularityExecutorTaskArtifactFetcher(artifactManager, executorData, task);
   }
@@ -151,10 +157,14 @@ public class SingularityExecutorArtifactFetcher {
     private void downloadRemoteArtifact(RemoteArtifact remoteArtifact, ArtifactManager artifactManager, SingularityExecutorTask task) {
       Path fetched = artifactManager.fetch(remoteArtifact);
 
-      if (fetched.getFileName().toString().endsWith(".tar.gz")) {
-        artifactManager.untar(fetched, task.getTaskDefinition().getTaskDirectoryPath());
-      } else {
-        artifactManager.copy(fetched, task.getTaskDefinition().getTaskAppDirectoryPath());
+      try {
+        if (fetched.getFileName().toString().endsWith(".tar.gz")) {
+          artifactManager.untar(fetched, task.getTaskDefinition().getTaskDirectoryPath());
+        } else {
+          artifactManager.copy(fetched, task.getTaskDefinition().getTaskAppDirectoryPath());
+        }
+      } finally {
+        artifactManager.release(fetched);
       }
     }
 
@@ -0,0 +1,349 @@
+package com.hubspot.singularity.s3.base;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Optional;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
+
+/**
+ * State shared by the ArtifactManagers using one cache directory: which artifacts are being downloaded (so that concurrent
+ * fetches of an artifact wait for a single download), which are in use, and the least recently used order in which unused
+ * artifacts are evicted once the directory is over cacheMaxSizeBytes or they are older than cacheMaxAgeMillis.
+ *
+ * Hits and misses count fetches for task launches; prefetches are counted separately so they don't skew the launch hit rate.
+ *
+ * Recency is kept in file modification times (of the artifact's checksum index entry, if it has one), so it survives restarts and
+ * includes fetches by other processes.
+ */
+@Singleton
+public class ArtifactCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ArtifactCache.class);
+
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final CharMatcher TEMP_FILE_RANDOM = CharMatcher.inRange('0', '9');
+
+  private final Path cacheDirectory;
+  private final long maxSizeBytes;
+  private final long maxAgeMillis;
+  private final ArtifactChecksumIndex checksumIndex;
+
+  private final ConcurrentMap<String, ListenableFuture<Path>> downloads;
+  private final Multiset<String> pinned;
+
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+  private final AtomicLong prefetchHits;
+  private final AtomicLong prefetchMisses;
+  private final AtomicLong evictions;
+
+  @Inject
+  public ArtifactCache(SingularityS3Configuration configuration) {
+    this.cacheDirectory = Paths.get(configuration.getCacheDirectory());
+    this.maxSizeBytes = configuration.getCacheMaxSizeBytes();
+    this.maxAgeMillis = configuration.getCacheMaxAgeMillis();
+    this.checksumIndex = new ArtifactChecksumIndex(cacheDirectory);
+
+    this.downloads = new ConcurrentHashMap<>();
+    this.pinned = ConcurrentHashMultiset.create();
+
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    this.prefetchHits = new AtomicLong();
+    this.prefetchMisses = new AtomicLong();
+    this.evictions = new AtomicLong();
+  }
+
+  /**
+   * @return absent if the caller should fetch filename and then call finishDownload with download, or the download of filename
+   * another caller is already running
+   */
+  Optional<ListenableFuture<Path>> startDownload(String filename, SettableFuture<Path> download) {
+    return Optional.fromNullable(downloads.putIfAbsent(filename, download));
+  }
+
+  void finishDownload(String filename, SettableFuture<Path> download) {
+    downloads.remove(filename, download);
+  }
+
+  /**
+   * @return a new file in the cache directory to download filename to, which is kept out of eviction while filename is downloading
+   */
+  Path createTempPath(String filename) throws IOException {
+    return Files.createTempFile(cacheDirectory, filename, TEMP_FILE_SUFFIX);
+  }
+
+  void pin(String filename) {
+    pinned.add(filename);
+  }
+
+  void release(String filename) {
+    pinned.remove(filename);
+  }
+
+  void recordHit(Path cachedPath, boolean prefetch) {
+    (prefetch ? prefetchHits : hits).incrementAndGet();
+
+    // touching the artifact itself would invalidate its checksum
+    if (checksumIndex.touch(cachedPath)) {
+      return;
+    }
+
+    try {
+      Files.setLastModifiedTime(cachedPath, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException ioe) {
+      LOG.warn("Couldn't update the modification time of {}", cachedPath, ioe);
+    }
+  }
+
+  void recordMiss(boolean prefetch) {
+    (prefetch ? prefetchMisses : misses).incrementAndGet();
+  }
+
+  Optional<String> getMd5sum(Path cachedPath) {
+    return checksumIndex.getMd5(cachedPath);
+  }
+
+  void recordMd5sum(Path cachedPath, String md5sum) {
+    checksumIndex.put(cachedPath, md5sum);
+  }
+
+  boolean recordMd5sum(Path cachedPath, Path downloadedPath, String md5sum, boolean prefetch) {
+    return checksumIndex.put(cachedPath, downloadedPath, md5sum, prefetch);
+  }
+
+  void removeMd5sum(Path cachedPath) {
+    checksumIndex.remove(cachedPath);
+  }
+
+  boolean isPrefetched(Path cachedPath) {
+    return checksumIndex.isPrefetched(cachedPath);
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getPrefetchHits() {
+    return prefetchHits.get();
+  }
+
+  public long getPrefetchMisses() {
+    return prefetchMisses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /**
+   * Deletes the cached files which are neither in use nor being downloaded, oldest first, until none are older than
+   * cacheMaxAgeMillis and the cache directory is no bigger than cacheMaxSizeBytes. Either bound is ignored when it is 0.
+   *
+   * @return the number of files deleted
+   */
+  public synchronized int evict() {
+    if (maxSizeBytes < 1 && maxAgeMillis < 1) {
+      return 0;
+    }
+
+    final long start = System.currentTimeMillis();
+    final List<CachedFile> cachedFiles = Lists.newArrayList();
+
+    long totalBytes = 0;
+
+    try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(cacheDirectory)) {
+      for (Path path : directoryStream) {
+        try {
+          final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+          if (attributes.isRegularFile()) {
+            final long lastUsed = Math.max(attributes.lastModifiedTime().toMillis(), checksumIndex.getLastUsed(path).or(0L));
+
+            cachedFiles.add(new CachedFile(path, attributes.size(), lastUsed));
+            totalBytes += attributes.size();
+          }
+        } catch (NoSuchFileException nsfe) {
+          LOG.trace("{} was removed while evicting", path);
+        }
+      }
+    } catch (IOException ioe) {
+      LOG.error("Couldn't list {} to evict cached artifacts", cacheDirectory, ioe);
+      return 0;
+    }
+
+    Collections.sort(cachedFiles, CachedFile.LEAST_RECENTLY_USED_FIRST);
+
+    int evicted = 0;
+
+    for (CachedFile cachedFile : cachedFiles) {
+      final boolean tooOld = maxAgeMillis > 0 && start - cachedFile.lastModified > maxAgeMillis;
+      final boolean tooBig = maxSizeBytes > 0 && totalBytes > maxSizeBytes;
+
+      if (!tooOld && !tooBig) {
+        break;
+      }
+
+      final String filename = cachedFile.path.getFileName().toString();
+
+      if (isInUse(filename)) {
+        continue;
+      }
+
+      try {
+        if (Files.deleteIfExists(cachedFile.path)) {
+          checksumIndex.remove(cachedFile.path);
+          LOG.info("Evicted {} ({} bytes, last used {} ago)", cachedFile.path, cachedFile.size, JavaUtils.durationFromMillis(start - cachedFile.lastModified));
+          totalBytes -= cachedFile.size;
+          evicted++;
+        }
+      } catch (IOException ioe) {
+        LOG.warn("Couldn't evict {}", cachedFile.path, ioe);
+      }
+    }
+
+    evictions.addAndGet(evicted);
+
+    if (evicted > 0 || totalBytes > maxSizeBytes && maxSizeBytes > 0) {
+      LOG.info("Evicted {} of {} cached artifacts, {} bytes remain (took {})", evicted, cachedFiles.size(), totalBytes, JavaUtils.duration(start));
+    }
+
+    return evicted;
+  }
+
+  /**
+   * Hashes every cached artifact which has a checksum recorded and isn't in use, deleting those which no longer match it.
+   *
+   * @return the number of artifacts deleted
+   */
+  public int scrub() {
+    final long start = System.currentTimeMillis();
+
+    int checked = 0;
+    int corrupted = 0;
+
+    try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(cacheDirectory)) {
+      for (Path path : directoryStream) {
+        final String filename = path.getFileName().toString();
+
+        if (!Files.isRegularFile(path) || isInUse(filename)) {
+          continue;
+        }
+
+        final Optional<String> md5sum = checksumIndex.getMd5(path);
+
+        if (!md5sum.isPresent()) {
+          continue;
+        }
+
+        final String actualMd5sum;
+
+        try {
+          actualMd5sum = ArtifactChecksumIndex.calculateMd5sum(path);
+        } catch (IOException ioe) {
+          LOG.warn("Couldn't hash {} while scrubbing", path, ioe);
+          continue;
+        }
+
+        checked++;
+
+        if (md5sum.get().equals(actualMd5sum) || isInUse(filename)) {
+          continue;
+        }
+
+        LOG.warn("{} has md5 {} instead of {}, deleting it", path, actualMd5sum, md5sum.get());
+
+        try {
+          Files.deleteIfExists(path);
+          checksumIndex.remove(path);
+          corrupted++;
+        } catch (IOException ioe) {
+          LOG.error("Couldn't delete corrupted {}", path, ioe);
+        }
+      }
+    } catch (IOException ioe) {
+      LOG.error("Couldn't list {} to scrub cached artifacts", cacheDirectory, ioe);
+    }
+
+    LOG.info("Scrubbed {} cached artifacts, deleted {} corrupted (took {})", checked, corrupted, JavaUtils.duration(start));
+
+    return corrupted;
+  }
+
+  private boolean isInUse(String filename) {
+    if (pinned.contains(filename) || downloads.containsKey(filename)) {
+      return true;
+    }
+
+    for (String downloading : downloads.keySet()) {
+      if (isTempPathOf(filename, downloading)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  // createTempPath names files after the artifact, followed by a random number and TEMP_FILE_SUFFIX
+  private static boolean isTempPathOf(String filename, String downloading) {
+    if (filename.length() <= downloading.length() + TEMP_FILE_SUFFIX.length() || !filename.startsWith(downloading) || !filename.endsWith(TEMP_FILE_SUFFIX)) {
+      return false;
+    }
+
+    return TEMP_FILE_RANDOM.matchesAllOf(filename.substring(downloading.length(), filename.length() - TEMP_FILE_SUFFIX.length()));
+  }
+
+  private static class CachedFile {
+
+    private static final Comparator<CachedFile> LEAST_RECENTLY_USED_FIRST = new Comparator<CachedFile>() {
+
+      @Override
+      public int compare(CachedFile o1, CachedFile o2) {
+        return Longs.compare(o1.lastModified, o2.lastModified);
+      }
+
+    };
+
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+
+    CachedFile(Path path, long size, long lastModified) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+  }
+
+}
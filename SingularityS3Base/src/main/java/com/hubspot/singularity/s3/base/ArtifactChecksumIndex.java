@@ -0,0 +1,171 @@
+package com.hubspot.singularity.s3.base;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hashing;
+
+/**
+ * Sidecar files (in INDEX_DIRECTORY under the cache directory) recording the md5 of each cached artifact along with the size and
+ * modification time it had when it was hashed. As long as the artifact still has that size and modification time the md5 is
+ * trusted instead of hashing the artifact again.
+ *
+ * Entries of artifacts which were prefetched carry a PREFETCHED marker, as their filename was chosen by whoever asked for the
+ * prefetch rather than by a task's own artifact list.
+ *
+ * The modification time of an entry is when its artifact was last used.
+ */
+class ArtifactChecksumIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ArtifactChecksumIndex.class);
+
+  static final String INDEX_DIRECTORY = ".checksums";
+
+  private static final String PREFETCHED = "prefetched";
+
+  private static final Joiner JOINER = Joiner.on(' ');
+  private static final Splitter SPLITTER = Splitter.on(' ');
+
+  private final Path indexDirectory;
+
+  ArtifactChecksumIndex(Path cacheDirectory) {
+    this.indexDirectory = cacheDirectory.resolve(INDEX_DIRECTORY);
+  }
+
+  private Path getEntryPath(Path cachedPath) {
+    return indexDirectory.resolve(cachedPath.getFileName().toString());
+  }
+
+  /**
+   * @return the md5 recorded for cachedPath, unless there is none or cachedPath has been modified since it was recorded
+   */
+  Optional<String> getMd5(Path cachedPath) {
+    final Optional<List<String>> fields = readEntry(cachedPath);
+
+    if (!fields.isPresent()) {
+      return Optional.absent();
+    }
+
+    return Optional.of(fields.get().get(0));
+  }
+
+  /**
+   * @return whether cachedPath was written by a prefetch and hasn't been modified since
+   */
+  boolean isPrefetched(Path cachedPath) {
+    final Optional<List<String>> fields = readEntry(cachedPath);
+
+    return fields.isPresent() && fields.get().size() > 3 && PREFETCHED.equals(fields.get().get(3));
+  }
+
+  private Optional<List<String>> readEntry(Path cachedPath) {
+    final Path entryPath = getEntryPath(cachedPath);
+
+    try {
+      final List<String> fields = SPLITTER.splitToList(new String(Files.readAllBytes(entryPath), StandardCharsets.UTF_8).trim());
+
+      if (fields.size() != 3 && fields.size() != 4) {
+        LOG.warn("Ignoring malformed checksum entry {}", entryPath);
+        return Optional.absent();
+      }
+
+      final BasicFileAttributes attributes = Files.readAttributes(cachedPath, BasicFileAttributes.class);
+
+      if (attributes.size() != Long.parseLong(fields.get(1)) || attributes.lastModifiedTime().toMillis() != Long.parseLong(fields.get(2))) {
+        LOG.debug("{} changed since its checksum was recorded", cachedPath);
+        return Optional.absent();
+      }
+
+      return Optional.of(fields);
+    } catch (NoSuchFileException nsfe) {
+      return Optional.absent();
+    } catch (IOException | NumberFormatException e) {
+      LOG.warn("Couldn't read checksum entry {}", entryPath, e);
+      return Optional.absent();
+    }
+  }
+
+  void put(Path cachedPath, String md5) {
+    put(cachedPath, cachedPath, md5, false);
+  }
+
+  /**
+   * Records the md5 of contentPath as that of cachedPath, so that the entry can be written before contentPath is moved there.
+   *
+   * @return whether the entry was recorded
+   */
+  boolean put(Path cachedPath, Path contentPath, String md5, boolean prefetched) {
+    final Path entryPath = getEntryPath(cachedPath);
+
+    try {
+      final BasicFileAttributes attributes = Files.readAttributes(contentPath, BasicFileAttributes.class);
+      final String fields = JOINER.join(md5, attributes.size(), attributes.lastModifiedTime().toMillis());
+      final byte[] entry = (prefetched ? JOINER.join(fields, PREFETCHED) : fields).getBytes(StandardCharsets.UTF_8);
+
+      Files.createDirectories(indexDirectory);
+
+      final Path tempPath = Files.createTempFile(indexDirectory, entryPath.getFileName().toString(), null);
+
+      try {
+        Files.write(tempPath, entry);
+        Files.move(tempPath, entryPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(tempPath);
+      }
+
+      return true;
+    } catch (IOException ioe) {
+      LOG.warn("Couldn't record checksum of {} in {}", cachedPath, entryPath, ioe);
+      return false;
+    }
+  }
+
+  /**
+   * @return whether there was an entry for cachedPath to mark as used
+   */
+  boolean touch(Path cachedPath) {
+    try {
+      Files.setLastModifiedTime(getEntryPath(cachedPath), FileTime.fromMillis(System.currentTimeMillis()));
+      return true;
+    } catch (NoSuchFileException nsfe) {
+      return false;
+    } catch (IOException ioe) {
+      LOG.warn("Couldn't mark {} as used", cachedPath, ioe);
+      return false;
+    }
+  }
+
+  Optional<Long> getLastUsed(Path cachedPath) {
+    try {
+      return Optional.of(Files.getLastModifiedTime(getEntryPath(cachedPath)).toMillis());
+    } catch (IOException ioe) {
+      return Optional.absent();
+    }
+  }
+
+  static String calculateMd5sum(Path path) throws IOException {
+    return com.google.common.io.Files.hash(path.toFile(), Hashing.md5()).toString();
+  }
+
+  void remove(Path cachedPath) {
+    try {
+      Files.deleteIfExists(getEntryPath(cachedPath));
+    } catch (IOException ioe) {
+      LOG.warn("Couldn't remove checksum entry for {}", cachedPath, ioe);
+    }
+  }
+
+}
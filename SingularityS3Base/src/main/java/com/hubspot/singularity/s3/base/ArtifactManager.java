@@ -2,6 +2,7 @@ package com.hubspot.singularity.s3.base;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -10,18 +11,21 @@ import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
-import com.google.common.hash.HashCode;
-import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.hubspot.deploy.Artifact;
 import com.hubspot.deploy.EmbeddedArtifact;
 import com.hubspot.deploy.ExternalArtifact;
 import com.hubspot.deploy.RemoteArtifact;
 import com.hubspot.deploy.S3Artifact;
+import com.hubspot.mesos.JavaUtils;
 import com.hubspot.singularity.runner.base.shared.ProcessFailedException;
 import com.hubspot.singularity.runner.base.shared.SimpleProcessManager;
 import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
@@ -31,13 +35,21 @@ public class ArtifactManager extends SimpleProcessManager {
   private final Path cacheDirectory;
   private final Logger log;
   private final S3ArtifactDownloader s3ArtifactDownloader;
+  private final ArtifactCache artifactCache;
+  private final boolean untarInProcess;
 
   public ArtifactManager(SingularityS3Configuration configuration, Logger log) {
+    this(configuration, log, new ArtifactCache(configuration), new S3DownloadScheduler(configuration));
+  }
+
+  public ArtifactManager(SingularityS3Configuration configuration, Logger log, ArtifactCache artifactCache, S3DownloadScheduler downloadScheduler) {
     super(log);
 
     this.cacheDirectory = Paths.get(configuration.getCacheDirectory());
     this.log = log;
-    this.s3ArtifactDownloader = new S3ArtifactDownloader(configuration, log);
+    this.s3ArtifactDownloader = new S3ArtifactDownloader(configuration, log, downloadScheduler);
+    this.artifactCache = artifactCache;
+    this.untarInProcess = configuration.isUntarInProcess();
   }
 
   private long getSize(Path path) {
@@ -52,41 +64,52 @@ public class ArtifactManager extends SimpleProcessManager {
     return !artifact.getFilesize().isPresent() || (artifact.getFilesize().get() == getSize(path));
   }
 
-  private boolean md5Matches(Artifact artifact, Path path) {
-    return !artifact.getMd5sum().isPresent() || artifact.getMd5sum().get().equals(calculateMd5sum(path));
-  }
-
   private void checkFilesize(RemoteArtifact artifact, Path path) {
     if (!filesSizeMatches(artifact, path)) {
       throw new RuntimeException(String.format("Filesize %s (%s) does not match expected (%s)", getSize(path), path, artifact.getFilesize()));
     }
   }
 
-  private void checkMd5(Artifact artifact, Path path) {
-    if (!md5Matches(artifact, path)) {
-      throw new RuntimeException(String.format("Md5sum %s (%s) does not match expected (%s)", calculateMd5sum(path), path, artifact.getMd5sum().get()));
-    }
-  }
-
   private Path createTempPath(String filename) {
     try {
-      return Files.createTempFile(cacheDirectory, filename, null);
+      return artifactCache.createTempPath(filename);
     } catch (IOException e) {
       throw new RuntimeException(String.format("Couldn't create temporary file for %s", filename), e);
     }
   }
 
-  private void downloadAndCheck(RemoteArtifact artifact, Path downloadTo) {
+  private void downloadAndCheck(RemoteArtifact artifact, Path downloadTo, boolean prefetch) {
+    Optional<String> md5sum = Optional.absent();
+
     if (artifact instanceof ExternalArtifact) {
       downloadExternalArtifact((ExternalArtifact) artifact, downloadTo);
     } else if (artifact instanceof S3Artifact) {
-      downloadS3Artifact((S3Artifact) artifact, downloadTo);
+      md5sum = Optional.of(downloadS3Artifact((S3Artifact) artifact, downloadTo, prefetch));
     } else {
       throw new IllegalArgumentException("Unknown artifact type: " + artifact.getClass());
     }
 
     checkFilesize(artifact, downloadTo);
-    checkMd5(artifact, downloadTo);
+    checkMd5(artifact, downloadTo, md5sum);
+  }
+
+  private void checkMd5(Artifact artifact, Path path) {
+    checkMd5(artifact, path, Optional.<String> absent());
+  }
+
+  /**
+   * @param knownMd5sum the md5 of path if it was computed while writing it, to save reading it again
+   */
+  private void checkMd5(Artifact artifact, Path path, Optional<String> knownMd5sum) {
+    if (!artifact.getMd5sum().isPresent()) {
+      return;
+    }
+
+    final String md5sum = knownMd5sum.isPresent() ? knownMd5sum.get() : calculateMd5sum(path);
+
+    if (!artifact.getMd5sum().get().equals(md5sum)) {
+      throw new RuntimeException(String.format("Md5sum %s (%s) does not match expected (%s)", md5sum, path, artifact.getMd5sum().get()));
+    }
   }
 
   public void extract(EmbeddedArtifact embeddedArtifact, Path directory) {
@@ -109,13 +132,23 @@ public class ArtifactManager extends SimpleProcessManager {
     checkMd5(embeddedArtifact, extractTo);
   }
 
-  private Path downloadAndCache(RemoteArtifact artifact, String filename) {
+  private Path downloadAndCache(RemoteArtifact artifact, String filename, boolean prefetch) {
     Path tempFilePath = createTempPath(filename);
 
-    downloadAndCheck(artifact, tempFilePath);
+    downloadAndCheck(artifact, tempFilePath, prefetch);
 
     Path cachedPath = getCachedPath(filename);
 
+    // recorded before the move, so that no process sees a prefetched artifact without its marker
+    if (artifact.getMd5sum().isPresent()) {
+      if (!artifactCache.recordMd5sum(cachedPath, tempFilePath, artifact.getMd5sum().get(), prefetch) && prefetch) {
+        deleteQuietly(tempFilePath);
+        throw new RuntimeException(String.format("Couldn't record md5sum of prefetched %s", filename));
+      }
+    } else {
+      artifactCache.removeMd5sum(cachedPath);
+    }
+
     try {
       Files.move(tempFilePath, cachedPath, StandardCopyOption.ATOMIC_MOVE);
     } catch (IOException e) {
@@ -125,48 +158,146 @@ public class ArtifactManager extends SimpleProcessManager {
     return cachedPath;
   }
 
+  private void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      log.warn("Couldn't delete {}", path, e);
+    }
+  }
+
   private Path getCachedPath(String filename) {
     return cacheDirectory.resolve(filename);
   }
 
-  private boolean checkCached(RemoteArtifact artifact, Path cachedPath) {
+  private boolean checkCached(RemoteArtifact artifact, Path cachedPath, boolean prefetch) {
     if (!Files.exists(cachedPath)) {
       log.debug("Cached {} did not exist", cachedPath);
       return false;
     }
 
+    // whoever asked for a prefetch chose its filename, so a launch which can't check the md5 doesn't trust the prefetched file
+    if (!prefetch && !artifact.getMd5sum().isPresent() && artifactCache.isPrefetched(cachedPath)) {
+      log.debug("Cached {} was prefetched and {} has no md5 to check it against", cachedPath, artifact);
+      return false;
+    }
+
     if (!filesSizeMatches(artifact, cachedPath)) {
       log.debug("Cached {} ({}) did not match file size {}", cachedPath, getSize(cachedPath), artifact.getFilesize());
       return false;
     }
 
-    if (!md5Matches(artifact, cachedPath)) {
-      log.debug("Cached {} ({}) did not match md5 {}", cachedPath, calculateMd5sum(cachedPath), artifact.getMd5sum().get());
-      return false;
+    if (artifact.getMd5sum().isPresent()) {
+      final Optional<String> recordedMd5sum = artifactCache.getMd5sum(cachedPath);
+      final String md5sum = recordedMd5sum.isPresent() ? recordedMd5sum.get() : calculateMd5sum(cachedPath);
+
+      if (!artifact.getMd5sum().get().equals(md5sum)) {
+        log.debug("Cached {} ({}) did not match md5 {}", cachedPath, md5sum, artifact.getMd5sum().get());
+        return false;
+      }
+
+      if (!recordedMd5sum.isPresent()) {
+        artifactCache.recordMd5sum(cachedPath, md5sum);
+      }
     }
 
     return true;
   }
 
+  /**
+   * The returned file is kept out of cache eviction until it is given to release(). Artifacts with the same filename are
+   * downloaded one at a time - callers fetching one which is already being downloaded wait for that download and use its result
+   * if it matches.
+   */
   public Path fetch(RemoteArtifact artifact) {
+    return fetch(artifact, false);
+  }
+
+  /**
+   * Downloads artifact into the cache ahead of a launch which is expected to need it, with its chunks queued behind those of
+   * downloads for launches. Only artifacts with an md5sum are prefetched.
+   */
+  public void prefetch(S3Artifact artifact) {
+    if (!artifact.getMd5sum().isPresent()) {
+      throw new IllegalArgumentException(String.format("Can't prefetch %s without an md5sum", artifact));
+    }
+
+    release(fetch(artifact, true));
+  }
+
+  private Path fetch(RemoteArtifact artifact, boolean prefetch) {
     String filename = artifact.getFilename();
     Path cachedPath = getCachedPath(filename);
 
-    if (!checkCached(artifact, cachedPath)) {
-      downloadAndCache(artifact, filename);
-    } else {
-      log.info("Using cached file {}", cachedPath);
+    artifactCache.pin(filename);
+
+    try {
+      while (!fetchOrWait(artifact, filename, cachedPath, prefetch)) {
+        log.debug("Download of {} by another caller didn't match {}, fetching it again", filename, artifact);
+      }
+    } catch (Throwable t) {
+      artifactCache.release(filename);
+      throw Throwables.propagate(t);
     }
 
     return cachedPath;
   }
 
+  public void release(Path fetched) {
+    artifactCache.release(fetched.getFileName().toString());
+  }
+
+  private boolean fetchOrWait(RemoteArtifact artifact, String filename, Path cachedPath, boolean prefetch) {
+    final SettableFuture<Path> download = SettableFuture.create();
+    final Optional<ListenableFuture<Path>> inFlight = artifactCache.startDownload(filename, download);
+
+    if (inFlight.isPresent()) {
+      log.info("Waiting for in-flight download of {}", filename);
+
+      try {
+        inFlight.get().get();
+      } catch (ExecutionException ee) {
+        log.debug("In-flight download of {} failed", filename, ee.getCause());
+      } catch (InterruptedException ie) {
+        throw Throwables.propagate(ie);
+      }
+
+      if (!checkCached(artifact, cachedPath, prefetch)) {
+        return false;
+      }
+
+      log.info("Using {} downloaded by another caller", cachedPath);
+      artifactCache.recordHit(cachedPath, prefetch);
+
+      return true;
+    }
+
+    try {
+      if (!checkCached(artifact, cachedPath, prefetch)) {
+        artifactCache.recordMiss(prefetch);
+        downloadAndCache(artifact, filename, prefetch);
+      } else {
+        log.info("Using cached file {}", cachedPath);
+        artifactCache.recordHit(cachedPath, prefetch);
+      }
+
+      download.set(cachedPath);
+    } catch (Throwable t) {
+      download.setException(t);
+      throw t;
+    } finally {
+      artifactCache.finishDownload(filename, download);
+    }
+
+    return true;
+  }
+
   private void downloadExternalArtifact(ExternalArtifact externalArtifact, Path downloadTo) {
     downloadUri(externalArtifact.getUrl(), downloadTo);
   }
 
-  private void downloadS3Artifact(S3Artifact s3Artifact, Path downloadTo) {
-    s3ArtifactDownloader.download(s3Artifact, downloadTo);
+  private String downloadS3Artifact(S3Artifact s3Artifact, Path downloadTo, boolean prefetch) {
+    return s3ArtifactDownloader.download(s3Artifact, downloadTo, prefetch ? S3DownloadScheduler.LOW_PRIORITY : S3DownloadScheduler.DEFAULT_PRIORITY);
   }
 
   private void downloadUri(String uri, Path path) {
@@ -186,16 +317,42 @@ public class ArtifactManager extends SimpleProcessManager {
   public void copy(Path source, Path destination) {
     log.info("Copying {} to {}", source, destination);
 
-    try {
-      Files.copy(source, destination.resolve(source.getFileName()));
+    try (FileChannel readChannel = FileChannel.open(source, StandardOpenOption.READ);
+        FileChannel writeChannel = FileChannel.open(destination.resolve(source.getFileName()), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      final long size = readChannel.size();
+
+      long position = 0;
+
+      while (position < size) {
+        position += readChannel.transferTo(position, size - position, writeChannel);
+      }
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
   }
 
   public void untar(Path source, Path destination) {
+    if (!untarInProcess) {
+      untarWithTar(source, destination);
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+
     log.info("Untarring {} to {}", source, destination);
 
+    try {
+      final int entries = TarGzExtractor.extract(source, destination);
+
+      log.info("Untarred {} entries from {} in {}", entries, source, JavaUtils.duration(start));
+    } catch (IOException e) {
+      throw new RuntimeException(String.format("Couldn't untar %s to %s", source, destination), e);
+    }
+  }
+
+  private void untarWithTar(Path source, Path destination) {
+    log.info("Untarring {} to {} with tar", source, destination);
+
     final List<String> command = ImmutableList.of(
         "tar",
         "-oxzf",
@@ -216,9 +373,7 @@ public class ArtifactManager extends SimpleProcessManager {
 
   private String calculateMd5sum(Path path) {
     try {
-      HashCode hc = com.google.common.io.Files.hash(path.toFile(), Hashing.md5());
-
-      return hc.toString();
+      return ArtifactChecksumIndex.calculateMd5sum(path);
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
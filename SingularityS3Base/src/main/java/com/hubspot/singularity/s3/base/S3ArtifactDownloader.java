@@ -1,94 +1,135 @@
 package com.hubspot.singularity.s3.base;
 
-import java.io.InputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
-import java.nio.channels.WritableByteChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.jets3t.service.S3Service;
-import org.jets3t.service.impl.rest.httpclient.RestS3Service;
 import org.jets3t.service.model.S3Object;
 import org.jets3t.service.model.StorageObject;
-import org.jets3t.service.security.AWSCredentials;
 import org.slf4j.Logger;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.hubspot.deploy.S3Artifact;
 import com.hubspot.mesos.JavaUtils;
 import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
 
+/**
+ * Downloads an artifact in ranged chunks, in parallel, each written straight to its place in the (preallocated) target file. The
+ * md5 is computed while the download runs, hashing each chunk as soon as it and those before it have arrived.
+ *
+ * Chunks are sized and run by the S3DownloadScheduler shared by every download, so s3DownloadTimeoutMillis includes the time
+ * chunks spend queued behind those of other downloads.
+ */
 public class S3ArtifactDownloader {
 
+  private static final int BUFFER_SIZE = 65536;
+
   private final Logger log;
   private final SingularityS3Configuration configuration;
+  private final S3DownloadScheduler downloadScheduler;
 
-  public S3ArtifactDownloader(SingularityS3Configuration configuration, Logger log) {
+  public S3ArtifactDownloader(SingularityS3Configuration configuration, Logger log, S3DownloadScheduler downloadScheduler) {
     this.configuration = configuration;
     this.log = log;
+    this.downloadScheduler = downloadScheduler;
+  }
+
+  /**
+   * @return the md5 of the downloaded file
+   */
+  public String download(S3Artifact s3Artifact, Path downloadTo) {
+    return download(s3Artifact, downloadTo, S3DownloadScheduler.DEFAULT_PRIORITY);
   }
 
-  public void download(S3Artifact s3Artifact, Path downloadTo) {
+  /**
+   * @param priority chunks of downloads with a lower priority value are run first
+   * @return the md5 of the downloaded file
+   */
+  public String download(S3Artifact s3Artifact, Path downloadTo, int priority) {
     final long start = System.currentTimeMillis();
     boolean success = false;
 
+    downloadScheduler.startDownload();
+
     try {
-      downloadThrows(s3Artifact, downloadTo);
+      final String md5sum = downloadThrows(s3Artifact, downloadTo, priority);
       success = true;
+      return md5sum;
     } catch (Throwable t) {
       throw Throwables.propagate(t);
     } finally {
+      downloadScheduler.finishDownload();
       log.info("S3 Download {}/{} finished {} after {}", s3Artifact.getS3Bucket(), s3Artifact.getS3ObjectKey(), success ? "successfully" : "with error", JavaUtils.duration(start));
     }
   }
 
-  private Callable<Path> buildChunkDownloader(final S3Service s3, final S3Artifact s3Artifact, final Path downloadTo, final int chunk, final long chunkSize, final long length) {
-    return new Callable<Path>() {
+  private Callable<Long> buildChunkDownloader(final S3Service s3, final S3Artifact s3Artifact, final Path downloadTo, final int chunk, final long chunkSize, final long length) {
+    return new Callable<Long>() {
 
       @Override
-      public Path call() throws Exception {
-        final Path chunkPath = (chunk == 0) ? downloadTo : Paths.get(downloadTo + "_" + chunk);
-        chunkPath.toFile().deleteOnExit();
-
+      public Long call() throws Exception {
         final long startTime = System.currentTimeMillis();
 
         final long byteRangeStart = chunk * chunkSize;
-        final long byteRangeEnd = Math.min((chunk + 1) * chunkSize - 1, length);
+        final long byteRangeEnd = Math.min((chunk + 1) * chunkSize - 1, length - 1);
 
-        log.info("Downloading chunk {} ({}-{}) to {}", chunk, byteRangeStart, byteRangeEnd, chunkPath);
+        log.info("Downloading chunk {} ({}-{}) to {}", chunk, byteRangeStart, byteRangeEnd, downloadTo);
 
         S3Object fetchedObject = s3.getObject(s3Artifact.getS3Bucket(), s3Artifact.getS3ObjectKey(), null, null, null, null, byteRangeStart, byteRangeEnd);
 
-        try (InputStream is = fetchedObject.getDataInputStream()) {
-          Files.copy(is, chunkPath, StandardCopyOption.REPLACE_EXISTING);
+        long position = byteRangeStart;
+
+        try (ReadableByteChannel readChannel = Channels.newChannel(fetchedObject.getDataInputStream());
+            FileChannel writeChannel = FileChannel.open(downloadTo, StandardOpenOption.WRITE)) {
+          final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+          while (readChannel.read(buffer) != -1) {
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+              position += writeChannel.write(buffer, position);
+            }
+
+            buffer.clear();
+          }
         }
 
-        log.info("Finished downloading chunk {} ({} bytes) in {}", chunk, byteRangeEnd - byteRangeStart, JavaUtils.duration(startTime));
+        final long bytes = position - byteRangeStart;
+
+        Preconditions.checkState(bytes == byteRangeEnd - byteRangeStart + 1, "Chunk %s was %s bytes, expected %s", chunk, bytes, byteRangeEnd - byteRangeStart + 1);
 
-        return chunkPath;
+        downloadScheduler.recordChunk(bytes, System.currentTimeMillis() - startTime);
+
+        log.info("Finished downloading chunk {} ({} bytes) in {}", chunk, bytes, JavaUtils.duration(startTime));
+
+        return bytes;
       }
 
     };
   }
 
-  private void downloadThrows(final S3Artifact s3Artifact, final Path downloadTo) throws Exception {
+  private String downloadThrows(final S3Artifact s3Artifact, final Path downloadTo, int priority) throws Exception {
     log.info("Downloading {}", s3Artifact);
 
-    final S3Service s3 = new RestS3Service(new AWSCredentials(configuration.getS3AccessKey(), configuration.getS3SecretKey()));
+    final long downloadStart = System.currentTimeMillis();
+    final S3Service s3 = downloadScheduler.getS3Service();
 
     long length = 0;
 
@@ -102,61 +143,83 @@ public class S3ArtifactDownloader {
       length = details.getContentLength();
     }
 
-    int numChunks = (int) (length / configuration.getS3ChunkSize());
-
-    if (length % configuration.getS3ChunkSize() > 0) {
-      numChunks++;
+    if (length == 0) {
+      Files.write(downloadTo, new byte[0]);
+      return Hashing.md5().hashBytes(new byte[0]).toString();
     }
 
-    final long chunkSize = length / numChunks + (length % numChunks);
+    // spread evenly over as many chunks as the current chunk size calls for
+    final long chunkSize = divideRoundingUp(length, divideRoundingUp(length, downloadScheduler.getChunkSize()));
+    final int numChunks = (int) divideRoundingUp(length, chunkSize);
 
     log.info("Downloading {}/{} in {} chunks of {} bytes to {}", s3Artifact.getS3Bucket(), s3Artifact.getS3ObjectKey(), numChunks, chunkSize, downloadTo);
 
-    final ExecutorService chunkExecutorService = Executors.newFixedThreadPool(numChunks, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("S3ArtifactDownloaderChunkThread-%d").build());
-    final List<Future<Path>> futures = Lists.newArrayListWithCapacity(numChunks);
+    try (RandomAccessFile file = new RandomAccessFile(downloadTo.toFile(), "rw")) {
+      file.setLength(length);
+    }
 
-    for (int i = 0; i < numChunks; i++) {
-      final int chunk = i;
+    final List<Future<Long>> futures = Lists.newArrayListWithCapacity(numChunks);
 
-      futures.add(chunkExecutorService.submit(buildChunkDownloader(s3, s3Artifact, downloadTo, chunk, chunkSize, length)));
+    for (int chunk = 0; chunk < numChunks; chunk++) {
+      futures.add(downloadScheduler.submitChunk(buildChunkDownloader(s3, s3Artifact, downloadTo, chunk, chunkSize, length), priority, chunk));
     }
 
     long remainingMillis = configuration.getS3DownloadTimeoutMillis();
     boolean failed = false;
 
-    for (int chunk = 0; chunk < numChunks; chunk++) {
-      final Future<Path> future = futures.get(chunk);
+    final Hasher hasher = Hashing.md5().newHasher();
 
-      if (failed) {
-        future.cancel(true);
-        continue;
-      }
+    try (FileChannel readChannel = FileChannel.open(downloadTo, StandardOpenOption.READ)) {
+      for (int chunk = 0; chunk < numChunks && !failed; chunk++) {
+        final Future<Long> future = futures.get(chunk);
+        final long start = System.currentTimeMillis();
 
-      final long start = System.currentTimeMillis();
+        if (!handleChunk(future, readChannel, hasher, chunk, chunk * chunkSize, Math.min((chunk + 1) * chunkSize, length), start, remainingMillis)) {
+          failed = true;
+        }
 
-      if (!handleChunk(future, downloadTo, chunk, start, remainingMillis)) {
-        failed = true;
+        remainingMillis -= (System.currentTimeMillis() - start);
       }
-
-      remainingMillis -= (System.currentTimeMillis() - start);
+    } finally {
+      // the chunks are on a shared pool, so anything left of a failed download mustn't keep running or queued
+      cancelRemaining(futures);
     }
 
-    chunkExecutorService.shutdown();
-
     Preconditions.checkState(!failed, "Downloading %s/%s failed", s3Artifact.getS3Bucket(), s3Artifact.getS3ObjectKey());
+
+    downloadScheduler.recordDownload(length, System.currentTimeMillis() - downloadStart);
+
+    return hasher.hash().toString();
+  }
+
+  private static long divideRoundingUp(long dividend, long divisor) {
+    return (dividend + divisor - 1) / divisor;
+  }
+
+  private void cancelRemaining(List<Future<Long>> futures) {
+    boolean cancelled = false;
+
+    for (Future<Long> future : futures) {
+      if (!future.isDone()) {
+        future.cancel(true);
+        cancelled = true;
+      }
+    }
+
+    if (cancelled) {
+      downloadScheduler.purge();
+    }
   }
 
-  private boolean handleChunk(Future<Path> future, Path downloadTo, int chunk, long start, long remainingMillis) {
+  private boolean handleChunk(Future<Long> future, FileChannel readChannel, Hasher hasher, int chunk, long chunkStart, long chunkEnd, long start, long remainingMillis) {
     if (remainingMillis <= 0) {
       remainingMillis = 1;
     }
 
     try {
-      Path path = future.get(remainingMillis, TimeUnit.MILLISECONDS);
+      future.get(remainingMillis, TimeUnit.MILLISECONDS);
 
-      if (chunk > 0) {
-        combineChunk(downloadTo, path);
-      }
+      hashChunk(readChannel, hasher, chunkStart, chunkEnd);
 
       return true;
     } catch (TimeoutException te) {
@@ -172,20 +235,24 @@ public class S3ArtifactDownloader {
     return false;
   }
 
-  private void combineChunk(Path downloadTo, Path path) throws Exception {
-    final long start = System.currentTimeMillis();
-    long bytes = 0;
+  private void hashChunk(FileChannel readChannel, Hasher hasher, long chunkStart, long chunkEnd) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    long position = chunkStart;
+
+    while (position < chunkEnd) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), chunkEnd - position));
 
-    log.info("Writing {} to {}", path, downloadTo);
+      final int read = readChannel.read(buffer, position);
 
-    try (WritableByteChannel wbs = Files.newByteChannel(downloadTo, EnumSet.of(StandardOpenOption.APPEND, StandardOpenOption.WRITE))) {
-      try (FileChannel readChannel = FileChannel.open(path, EnumSet.of(StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE))) {
-        bytes = readChannel.size();
-        readChannel.transferTo(0, bytes, wbs);
+      if (read < 0) {
+        throw new EOFException(String.format("Reached the end of the file at %s while hashing up to %s", position, chunkEnd));
       }
-    }
 
-    log.info("Finished writing {} bytes in {}", bytes, JavaUtils.duration(start));
+      hasher.putBytes(buffer.array(), 0, read);
+      position += read;
+    }
   }
 
 }
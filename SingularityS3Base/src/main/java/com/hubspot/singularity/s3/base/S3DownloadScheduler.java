@@ -0,0 +1,280 @@
+package com.hubspot.singularity.s3.base;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jets3t.service.Constants;
+import org.jets3t.service.Jets3tProperties;
+import org.jets3t.service.S3Service;
+import org.jets3t.service.S3ServiceException;
+import org.jets3t.service.impl.rest.httpclient.RestS3Service;
+import org.jets3t.service.security.AWSCredentials;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
+
+/**
+ * Runs the chunk downloads of every S3ArtifactDownloader on one bounded pool, through one S3Service whose HTTP connections are
+ * pooled and kept alive between downloads.
+ *
+ * Queued chunks run in order of priority, then of their index within their download, so concurrent downloads take turns instead
+ * of the first one queued taking every thread. A chunk which has been queued for more than a quarter of s3DownloadTimeoutMillis
+ * runs next regardless of its priority, so a steady stream of downloads for launches can't starve prefetches. Chunks are sized so that one takes about s3DownloaderChunkTargetMillis at the
+ * recently observed per chunk throughput, between s3DownloaderMinChunkSize and s3ChunkSize.
+ */
+@Singleton
+public class S3DownloadScheduler {
+
+  public static final int DEFAULT_PRIORITY = 0;
+  public static final int LOW_PRIORITY = 10;
+
+  private static final String MAX_CONNECTIONS_PROPERTY = "httpclient.max-connections";
+  private static final String MAX_CONNECTIONS_PER_HOST_PROPERTY = "httpclient.max-connections-per-host";
+
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  // weight given to each new chunk in the moving average of throughput
+  private static final double THROUGHPUT_ALPHA = 0.2;
+
+  private final SingularityS3Configuration configuration;
+  private final S3Service s3Service;
+  private final ThreadPoolExecutor chunkExecutor;
+  private final long maxChunkWaitMillis;
+
+  // guarded by queuedChunks - the same chunks in the order they run in, and in the order they were submitted
+  private final NavigableSet<ChunkTask> queuedChunks;
+  private final Set<ChunkTask> queuedChunksBySubmission;
+  private final Runnable runNextChunk;
+
+  private final AtomicLong sequence;
+
+  private final AtomicLong activeDownloads;
+  private final AtomicLong completedDownloads;
+  private final AtomicLong bytesDownloaded;
+  private final AtomicLong lastDownloadBytesPerSecond;
+
+  private double chunkBytesPerSecond;
+  private double downloadBytesPerSecond;
+
+  @Inject
+  public S3DownloadScheduler(SingularityS3Configuration configuration) {
+    this.configuration = configuration;
+    this.s3Service = buildS3Service(configuration);
+
+    this.chunkExecutor = new ThreadPoolExecutor(configuration.getS3DownloaderThreads(), configuration.getS3DownloaderThreads(), KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setDaemon(true).setNameFormat("S3ArtifactDownloaderChunkThread-%d").build());
+    this.chunkExecutor.allowCoreThreadTimeOut(true);
+    this.maxChunkWaitMillis = configuration.getS3DownloadTimeoutMillis() / 4;
+
+    this.queuedChunks = Sets.newTreeSet();
+    this.queuedChunksBySubmission = Sets.newLinkedHashSet();
+    this.runNextChunk = new Runnable() {
+
+      @Override
+      public void run() {
+        final Optional<ChunkTask> chunkTask = pollNextChunk();
+
+        if (chunkTask.isPresent()) {
+          chunkTask.get().run();
+        }
+      }
+
+    };
+
+    this.sequence = new AtomicLong();
+
+    this.activeDownloads = new AtomicLong();
+    this.completedDownloads = new AtomicLong();
+    this.bytesDownloaded = new AtomicLong();
+    this.lastDownloadBytesPerSecond = new AtomicLong();
+  }
+
+  private static S3Service buildS3Service(SingularityS3Configuration configuration) {
+    final Jets3tProperties jets3tProperties = new Jets3tProperties();
+
+    jets3tProperties.loadAndReplaceProperties(Jets3tProperties.getInstance(Constants.JETS3T_PROPERTIES_FILENAME), Constants.JETS3T_PROPERTIES_FILENAME);
+    jets3tProperties.setProperty(MAX_CONNECTIONS_PROPERTY, Integer.toString(configuration.getS3DownloaderThreads()));
+    jets3tProperties.setProperty(MAX_CONNECTIONS_PER_HOST_PROPERTY, Integer.toString(configuration.getS3DownloaderThreads()));
+
+    try {
+      return new RestS3Service(new AWSCredentials(configuration.getS3AccessKey(), configuration.getS3SecretKey()), null, null, jets3tProperties);
+    } catch (S3ServiceException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  S3Service getS3Service() {
+    return s3Service;
+  }
+
+  Future<Long> submitChunk(Callable<Long> chunkDownloader, int priority, int chunk) {
+    final ChunkTask chunkTask = new ChunkTask(chunkDownloader, priority, chunk, sequence.getAndIncrement(), System.currentTimeMillis());
+
+    synchronized (queuedChunks) {
+      queuedChunks.add(chunkTask);
+      queuedChunksBySubmission.add(chunkTask);
+    }
+
+    // each submitted chunk hands the pool one turn, which runs whichever queued chunk is next at the time
+    chunkExecutor.execute(runNextChunk);
+
+    return chunkTask;
+  }
+
+  private Optional<ChunkTask> pollNextChunk() {
+    synchronized (queuedChunks) {
+      if (queuedChunks.isEmpty()) {
+        return Optional.absent();
+      }
+
+      final ChunkTask oldest = queuedChunksBySubmission.iterator().next();
+      final ChunkTask next = System.currentTimeMillis() - oldest.submittedAt > maxChunkWaitMillis ? oldest : queuedChunks.first();
+
+      queuedChunks.remove(next);
+      queuedChunksBySubmission.remove(next);
+
+      return Optional.of(next);
+    }
+  }
+
+  /**
+   * Drops cancelled chunks from the queue rather than leaving them to be skipped when their turn comes.
+   */
+  void purge() {
+    synchronized (queuedChunks) {
+      final Iterator<ChunkTask> iterator = queuedChunksBySubmission.iterator();
+
+      while (iterator.hasNext()) {
+        final ChunkTask chunkTask = iterator.next();
+
+        if (chunkTask.isCancelled()) {
+          iterator.remove();
+          queuedChunks.remove(chunkTask);
+        }
+      }
+    }
+  }
+
+  public long getChunkSize() {
+    final long maxChunkSize = configuration.getS3ChunkSize();
+    final long bytesPerSecond = getChunkBytesPerSecond();
+
+    if (bytesPerSecond <= 0) {
+      return maxChunkSize;
+    }
+
+    final long chunkSize = (long) (bytesPerSecond * configuration.getS3DownloaderChunkTargetMillis() / 1000);
+
+    return Math.max(1, Math.max(Math.min(chunkSize, maxChunkSize), Math.min(configuration.getS3DownloaderMinChunkSize(), maxChunkSize)));
+  }
+
+  void startDownload() {
+    activeDownloads.incrementAndGet();
+  }
+
+  void finishDownload() {
+    activeDownloads.decrementAndGet();
+  }
+
+  synchronized void recordChunk(long bytes, long millis) {
+    bytesDownloaded.addAndGet(bytes);
+
+    if (millis > 0) {
+      chunkBytesPerSecond = movingAverage(chunkBytesPerSecond, bytes * 1000.0 / millis);
+    }
+  }
+
+  synchronized void recordDownload(long bytes, long millis) {
+    completedDownloads.incrementAndGet();
+
+    if (millis > 0) {
+      final double bytesPerSecond = bytes * 1000.0 / millis;
+
+      lastDownloadBytesPerSecond.set((long) bytesPerSecond);
+      downloadBytesPerSecond = movingAverage(downloadBytesPerSecond, bytesPerSecond);
+    }
+  }
+
+  private static double movingAverage(double average, double value) {
+    if (average <= 0) {
+      return value;
+    }
+
+    return THROUGHPUT_ALPHA * value + (1 - THROUGHPUT_ALPHA) * average;
+  }
+
+  public long getActiveDownloads() {
+    return activeDownloads.get();
+  }
+
+  public long getCompletedDownloads() {
+    return completedDownloads.get();
+  }
+
+  public long getBytesDownloaded() {
+    return bytesDownloaded.get();
+  }
+
+  public long getActiveChunks() {
+    return chunkExecutor.getActiveCount();
+  }
+
+  public long getQueuedChunks() {
+    synchronized (queuedChunks) {
+      return queuedChunks.size();
+    }
+  }
+
+  public long getLastDownloadBytesPerSecond() {
+    return lastDownloadBytesPerSecond.get();
+  }
+
+  public synchronized long getDownloadBytesPerSecond() {
+    return (long) downloadBytesPerSecond;
+  }
+
+  public synchronized long getChunkBytesPerSecond() {
+    return (long) chunkBytesPerSecond;
+  }
+
+  private static class ChunkTask extends FutureTask<Long> implements Comparable<ChunkTask> {
+
+    private final int priority;
+    private final int chunk;
+    private final long sequence;
+    private final long submittedAt;
+
+    ChunkTask(Callable<Long> callable, int priority, int chunk, long sequence, long submittedAt) {
+      super(callable);
+      this.priority = priority;
+      this.chunk = chunk;
+      this.sequence = sequence;
+      this.submittedAt = submittedAt;
+    }
+
+    @Override
+    public int compareTo(ChunkTask other) {
+      return ComparisonChain.start()
+          .compare(priority, other.priority)
+          .compare(chunk, other.chunk)
+          .compare(sequence, other.sequence)
+          .result();
+    }
+
+  }
+
+}
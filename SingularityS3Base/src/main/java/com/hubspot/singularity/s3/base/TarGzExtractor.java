@@ -0,0 +1,170 @@
+package com.hubspot.singularity.s3.base;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Extracts a .tar.gz the way `tar -oxzf` does - keeping permission bits and modification times but not ownership - in a single
+ * streaming pass, without forking. Entries whose names lead outside the destination are refused.
+ *
+ * Like tar, symbolic links are created after every other entry, so that a link in the archive can't redirect a later entry
+ * outside the destination. Nothing is written beneath a directory which resolves outside the destination either, and directory
+ * permissions are only set on directories which are still inside it once the links are in place.
+ */
+class TarGzExtractor {
+
+  private static final int BUFFER_SIZE = 65536;
+
+  private static final PosixFilePermission[] PERMISSIONS = {
+    PosixFilePermission.OTHERS_EXECUTE, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_READ,
+    PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_READ,
+    PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_READ
+  };
+
+  private TarGzExtractor() {}
+
+  /**
+   * @return the number of entries extracted
+   */
+  static int extract(Path source, Path destination) throws IOException {
+    final Path root = destination.toAbsolutePath().normalize();
+    final Path realRoot = root.toRealPath();
+
+    // like tar, directory permissions are set last so that read only directories can still be extracted into
+    final Map<Path, Integer> directoryModes = Maps.newLinkedHashMap();
+    final Map<Path, String> symbolicLinks = Maps.newLinkedHashMap();
+
+    int entries = 0;
+
+    try (InputStream fileStream = new BufferedInputStream(Files.newInputStream(source), BUFFER_SIZE);
+        TarArchiveInputStream tarStream = new TarArchiveInputStream(new GZIPInputStream(fileStream, BUFFER_SIZE))) {
+      TarArchiveEntry entry = tarStream.getNextTarEntry();
+
+      while (entry != null) {
+        extractEntry(tarStream, entry, root, realRoot, directoryModes, symbolicLinks);
+        entries++;
+
+        entry = tarStream.getNextTarEntry();
+      }
+    }
+
+    for (Map.Entry<Path, String> symbolicLink : symbolicLinks.entrySet()) {
+      final Path path = symbolicLink.getKey();
+
+      checkInside(realRoot, path.getParent());
+      Files.deleteIfExists(path);
+      Files.createSymbolicLink(path, Paths.get(symbolicLink.getValue()));
+    }
+
+    for (Map.Entry<Path, Integer> directoryMode : directoryModes.entrySet()) {
+      final Path path = directoryMode.getKey();
+
+      // a link could have replaced the directory or one of its parents since, and setting permissions follows links
+      if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) && path.toRealPath().startsWith(realRoot)) {
+        setPermissions(path, directoryMode.getValue());
+      }
+    }
+
+    return entries;
+  }
+
+  private static void extractEntry(TarArchiveInputStream tarStream, TarArchiveEntry entry, Path root, Path realRoot, Map<Path, Integer> directoryModes,
+      Map<Path, String> symbolicLinks) throws IOException {
+    final Path path = resolve(root, entry.getName());
+
+    // a later entry for the same name replaces an earlier one
+    symbolicLinks.remove(path);
+    directoryModes.remove(path);
+
+    if (entry.isSymbolicLink()) {
+      symbolicLinks.put(path, entry.getLinkName());
+      return;
+    }
+
+    if (entry.isDirectory()) {
+      createDirectories(realRoot, path);
+      directoryModes.put(path, entry.getMode());
+      return;
+    }
+
+    createDirectories(realRoot, path.getParent());
+    Files.deleteIfExists(path);
+
+    if (entry.isLink()) {
+      final Path target = resolve(root, entry.getLinkName());
+
+      checkInside(realRoot, target.getParent());
+      Files.createLink(path, target);
+    } else if (entry.isFile()) {
+      Files.copy(tarStream, path, StandardCopyOption.REPLACE_EXISTING);
+      setPermissions(path, entry.getMode());
+      Files.setLastModifiedTime(path, FileTime.fromMillis(entry.getModTime().getTime()));
+    } else {
+      throw new IOException(String.format("Can't extract %s, unsupported tar entry type", entry.getName()));
+    }
+  }
+
+  private static Path resolve(Path root, String name) throws IOException {
+    final Path path = root.resolve(name).normalize();
+
+    if (!path.startsWith(root)) {
+      throw new IOException(String.format("Refusing to extract %s outside of %s", name, root));
+    }
+
+    return path;
+  }
+
+  private static void createDirectories(Path realRoot, Path directory) throws IOException {
+    Path existing = directory;
+
+    while (!Files.exists(existing)) {
+      existing = existing.getParent();
+    }
+
+    checkInside(realRoot, existing);
+    Files.createDirectories(directory);
+    checkInside(realRoot, directory);
+  }
+
+  private static void checkInside(Path realRoot, Path directory) throws IOException {
+    final Path realDirectory = directory.toRealPath();
+
+    if (!realDirectory.startsWith(realRoot)) {
+      throw new IOException(String.format("Refusing to extract into %s, which resolves to %s outside of %s", directory, realDirectory, realRoot));
+    }
+  }
+
+  private static void setPermissions(Path path, int mode) throws IOException {
+    final Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+
+    for (int i = 0; i < PERMISSIONS.length; i++) {
+      if ((mode & (1 << i)) != 0) {
+        permissions.add(PERMISSIONS[i]);
+      }
+    }
+
+    try {
+      Files.setPosixFilePermissions(path, permissions);
+    } catch (UnsupportedOperationException uoe) {
+      // not a POSIX file system, so there are no permission bits to keep
+    }
+  }
+
+}
@@ -8,12 +8,19 @@ import com.google.inject.name.Named;
 public class SingularityS3Configuration {
 
   private final String cacheDirectory;
+  private final long cacheMaxSizeBytes;
+  private final long cacheMaxAgeMillis;
+  private final long cacheScrubIntervalMillis;
+  private final boolean untarInProcess;
 
   private final String s3AccessKey;
   private final String s3SecretKey;
 
   private final long s3ChunkSize;
   private final long s3DownloadTimeoutMillis;
+  private final int s3DownloaderThreads;
+  private final long s3DownloaderMinChunkSize;
+  private final long s3DownloaderChunkTargetMillis;
 
   private final int localDownloadHttpPort;
   private final String localDownloadPath;
@@ -21,18 +28,32 @@ public class SingularityS3Configuration {
   @Inject
   public SingularityS3Configuration(
       @Named(SingularityS3ConfigurationLoader.ARTIFACT_CACHE_DIRECTORY) String cacheDirectory,
+      @Named(SingularityS3ConfigurationLoader.ARTIFACT_CACHE_MAX_SIZE_BYTES) String cacheMaxSizeBytes,
+      @Named(SingularityS3ConfigurationLoader.ARTIFACT_CACHE_MAX_AGE_MILLIS) String cacheMaxAgeMillis,
+      @Named(SingularityS3ConfigurationLoader.ARTIFACT_CACHE_SCRUB_INTERVAL_MILLIS) String cacheScrubIntervalMillis,
+      @Named(SingularityS3ConfigurationLoader.ARTIFACT_UNTAR_IN_PROCESS) String untarInProcess,
       @Named(SingularityS3ConfigurationLoader.S3_ACCESS_KEY) String s3AccessKey,
       @Named(SingularityS3ConfigurationLoader.S3_SECRET_KEY) String s3SecretKey,
       @Named(SingularityS3ConfigurationLoader.S3_CHUNK_SIZE) String s3ChunkSize,
       @Named(SingularityS3ConfigurationLoader.S3_DOWNLOAD_TIMEOUT_MILLIS) String s3DownloadTimeoutMillis,
+      @Named(SingularityS3ConfigurationLoader.S3_DOWNLOADER_THREADS) String s3DownloaderThreads,
+      @Named(SingularityS3ConfigurationLoader.S3_DOWNLOADER_MIN_CHUNK_SIZE) String s3DownloaderMinChunkSize,
+      @Named(SingularityS3ConfigurationLoader.S3_DOWNLOADER_CHUNK_TARGET_MILLIS) String s3DownloaderChunkTargetMillis,
       @Named(SingularityS3ConfigurationLoader.LOCAL_DOWNLOAD_HTTP_PORT) String localDownloadHttpPort,
       @Named(SingularityS3ConfigurationLoader.LOCAL_DOWNLOAD_HTTP_DOWNLOAD_PATH) String localDownloadPath
       ) {
     this.cacheDirectory = cacheDirectory;
+    this.cacheMaxSizeBytes = Long.parseLong(cacheMaxSizeBytes);
+    this.cacheMaxAgeMillis = Long.parseLong(cacheMaxAgeMillis);
+    this.cacheScrubIntervalMillis = Long.parseLong(cacheScrubIntervalMillis);
+    this.untarInProcess = Boolean.parseBoolean(untarInProcess);
     this.s3AccessKey = s3AccessKey;
     this.s3SecretKey = s3SecretKey;
     this.s3ChunkSize = Long.parseLong(s3ChunkSize);
     this.s3DownloadTimeoutMillis = Long.parseLong(s3DownloadTimeoutMillis);
+    this.s3DownloaderThreads = Integer.parseInt(s3DownloaderThreads);
+    this.s3DownloaderMinChunkSize = Long.parseLong(s3DownloaderMinChunkSize);
+    this.s3DownloaderChunkTargetMillis = Long.parseLong(s3DownloaderChunkTargetMillis);
     this.localDownloadHttpPort = Integer.parseInt(localDownloadHttpPort);
     this.localDownloadPath = localDownloadPath;
   }
@@ -49,6 +70,22 @@ public class SingularityS3Configuration {
     return cacheDirectory;
   }
 
+  public long getCacheMaxSizeBytes() {
+    return cacheMaxSizeBytes;
+  }
+
+  public long getCacheMaxAgeMillis() {
+    return cacheMaxAgeMillis;
+  }
+
+  public long getCacheScrubIntervalMillis() {
+    return cacheScrubIntervalMillis;
+  }
+
+  public boolean isUntarInProcess() {
+    return untarInProcess;
+  }
+
   public String getS3AccessKey() {
     return s3AccessKey;
   }
@@ -65,9 +102,22 @@ public class SingularityS3Configuration {
     return s3DownloadTimeoutMillis;
   }
 
+  public int getS3DownloaderThreads() {
+    return s3DownloaderThreads;
+  }
+
+  public long getS3DownloaderMinChunkSize() {
+    return s3DownloaderMinChunkSize;
+  }
+
+  public long getS3DownloaderChunkTargetMillis() {
+    return s3DownloaderChunkTargetMillis;
+  }
+
   @Override
   public String toString() {
-    return "SingularityS3Configuration [cacheDirectory=" + cacheDirectory + ", s3AccessKey=" + s3AccessKey + ", s3SecretKey=" + s3SecretKey + ", s3ChunkSize=" + s3ChunkSize + ", s3DownloadTimeoutMillis=" + s3DownloadTimeoutMillis
+    return "SingularityS3Configuration [cacheDirectory=" + cacheDirectory + ", cacheMaxSizeBytes=" + cacheMaxSizeBytes + ", cacheMaxAgeMillis=" + cacheMaxAgeMillis + ", cacheScrubIntervalMillis=" + cacheScrubIntervalMillis + ", untarInProcess=" + untarInProcess + ", s3AccessKey=" + s3AccessKey + ", s3SecretKey=" + s3SecretKey + ", s3ChunkSize=" + s3ChunkSize + ", s3DownloadTimeoutMillis=" + s3DownloadTimeoutMillis
+        + ", s3DownloaderThreads=" + s3DownloaderThreads + ", s3DownloaderMinChunkSize=" + s3DownloaderMinChunkSize + ", s3DownloaderChunkTargetMillis=" + s3DownloaderChunkTargetMillis
         + ", localDownloadHttpPort=" + localDownloadHttpPort + ", localDownloadPath=" + localDownloadPath + "]";
   }
 
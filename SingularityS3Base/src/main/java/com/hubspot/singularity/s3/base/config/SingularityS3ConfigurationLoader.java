@@ -9,12 +9,19 @@ import com.hubspot.singularity.runner.base.config.SingularityConfigurationLoader
 public class SingularityS3ConfigurationLoader extends SingularityConfigurationLoader {
 
   public static final String ARTIFACT_CACHE_DIRECTORY = "artifact.cache.directory";
+  public static final String ARTIFACT_CACHE_MAX_SIZE_BYTES = "artifact.cache.max.size.bytes";
+  public static final String ARTIFACT_CACHE_MAX_AGE_MILLIS = "artifact.cache.max.age.millis";
+  public static final String ARTIFACT_CACHE_SCRUB_INTERVAL_MILLIS = "artifact.cache.scrub.interval.millis";
+  public static final String ARTIFACT_UNTAR_IN_PROCESS = "artifact.untar.in.process";
 
   public static final String S3_ACCESS_KEY = "s3.access.key";
   public static final String S3_SECRET_KEY = "s3.secret.key";
 
   public static final String S3_CHUNK_SIZE = "s3.downloader.chunk.size";
   public static final String S3_DOWNLOAD_TIMEOUT_MILLIS = "s3.downloader.timeout.millis";
+  public static final String S3_DOWNLOADER_THREADS = "s3.downloader.threads";
+  public static final String S3_DOWNLOADER_MIN_CHUNK_SIZE = "s3.downloader.min.chunk.size";
+  public static final String S3_DOWNLOADER_CHUNK_TARGET_MILLIS = "s3.downloader.chunk.target.millis";
 
   public static final String LOCAL_DOWNLOAD_HTTP_PORT = "s3.downloader.http.port";
   public static final String LOCAL_DOWNLOAD_HTTP_DOWNLOAD_PATH = "s3.downloader.http.download.path";
@@ -25,11 +32,19 @@ public class SingularityS3ConfigurationLoader extends SingularityConfigurationLo
 
   @Override
   protected void bindDefaults(Properties properties) {
+    properties.put(ARTIFACT_CACHE_MAX_SIZE_BYTES, "0");
+    properties.put(ARTIFACT_CACHE_MAX_AGE_MILLIS, "0");
+    properties.put(ARTIFACT_CACHE_SCRUB_INTERVAL_MILLIS, "0");
+    properties.put(ARTIFACT_UNTAR_IN_PROCESS, Boolean.toString(true));
+
     properties.put(S3_ACCESS_KEY, "");
     properties.put(S3_SECRET_KEY, "");
 
     properties.put(S3_CHUNK_SIZE, "104857600");
     properties.put(S3_DOWNLOAD_TIMEOUT_MILLIS, Long.toString(TimeUnit.MINUTES.toMillis(1)));
+    properties.put(S3_DOWNLOADER_THREADS, "16");
+    properties.put(S3_DOWNLOADER_MIN_CHUNK_SIZE, "8388608");
+    properties.put(S3_DOWNLOADER_CHUNK_TARGET_MILLIS, Long.toString(TimeUnit.SECONDS.toMillis(10)));
 
     properties.put(LOCAL_DOWNLOAD_HTTP_DOWNLOAD_PATH, "/download");
     properties.put(LOCAL_DOWNLOAD_HTTP_PORT, "7070");
@@ -0,0 +1,181 @@
+package com.hubspot.singularity.s3.base;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
+
+public class ArtifactCacheTest {
+
+  private Path directory;
+
+  @Before
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("ArtifactCacheTest");
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+  }
+
+  private ArtifactCache buildCache(long maxSizeBytes) {
+    return new ArtifactCache(new SingularityS3Configuration(directory.toString(), Long.toString(maxSizeBytes), "0", "0", "true", "", "", "104857600", "60000", "1", "8388608", "10000",
+        "7070", "/download"));
+  }
+
+  private Path writeFile(String filename, String content, long ageMillis) throws IOException {
+    final Path path = directory.resolve(filename);
+
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - ageMillis));
+
+    return path;
+  }
+
+  @Test
+  public void testConcurrentDownloadsShareOne() {
+    final ArtifactCache cache = buildCache(0);
+
+    final SettableFuture<Path> first = SettableFuture.create();
+    final SettableFuture<Path> second = SettableFuture.create();
+
+    Assert.assertFalse(cache.startDownload("artifact.tar.gz", first).isPresent());
+
+    final Optional<ListenableFuture<Path>> inFlight = cache.startDownload("artifact.tar.gz", second);
+
+    Assert.assertTrue(inFlight.isPresent());
+    Assert.assertSame(first, inFlight.get());
+    Assert.assertFalse(cache.startDownload("other.tar.gz", second).isPresent());
+
+    cache.finishDownload("other.tar.gz", second);
+    cache.finishDownload("artifact.tar.gz", first);
+
+    Assert.assertFalse(cache.startDownload("artifact.tar.gz", second).isPresent());
+  }
+
+  @Test
+  public void testPinnedArtifactsAreNotEvicted() throws IOException {
+    final ArtifactCache cache = buildCache(1);
+
+    final Path pinned = writeFile("pinned.tar.gz", "pinned", TimeUnit.HOURS.toMillis(2));
+    final Path unpinned = writeFile("unpinned.tar.gz", "unpinned", TimeUnit.HOURS.toMillis(1));
+
+    cache.pin("pinned.tar.gz");
+    cache.pin("pinned.tar.gz");
+
+    Assert.assertEquals(1, cache.evict());
+    Assert.assertTrue(Files.exists(pinned));
+    Assert.assertFalse(Files.exists(unpinned));
+
+    cache.release("pinned.tar.gz");
+
+    Assert.assertEquals(0, cache.evict());
+    Assert.assertTrue(Files.exists(pinned));
+
+    cache.release("pinned.tar.gz");
+
+    Assert.assertEquals(1, cache.evict());
+    Assert.assertFalse(Files.exists(pinned));
+    Assert.assertEquals(2, cache.getEvictions());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvictedFirst() throws IOException {
+    final ArtifactCache cache = buildCache(25);
+
+    final Path first = writeFile("first.tar.gz", "0123456789", TimeUnit.HOURS.toMillis(3));
+    final Path second = writeFile("second.tar.gz", "0123456789", TimeUnit.HOURS.toMillis(2));
+    final Path third = writeFile("third.tar.gz", "0123456789", TimeUnit.HOURS.toMillis(1));
+
+    // the oldest file was used most recently, which is recorded on its checksum entry rather than the file itself
+    cache.recordMd5sum(first, ArtifactChecksumIndex.calculateMd5sum(first));
+    cache.recordHit(first, false);
+
+    Assert.assertEquals(1, cache.evict());
+    Assert.assertTrue(Files.exists(first));
+    Assert.assertFalse(Files.exists(second));
+    Assert.assertTrue(Files.exists(third));
+    Assert.assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void testOnlyTempFilesOfInFlightDownloadsAreKept() throws IOException {
+    final ArtifactCache cache = buildCache(1);
+
+    Assert.assertFalse(cache.startDownload("artifact.tar.gz", SettableFuture.<Path> create()).isPresent());
+
+    final Path tempPath = cache.createTempPath("artifact.tar.gz");
+    Files.setLastModifiedTime(tempPath, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+
+    final Path sameName = writeFile("artifact.tar.gz", "stale", TimeUnit.HOURS.toMillis(1));
+    final Path samePrefix = writeFile("artifact.tar.gz.backup", "unrelated", TimeUnit.HOURS.toMillis(1));
+    final Path otherTempPath = writeFile("artifact.tar.gz.backup123.tmp", "unrelated", TimeUnit.HOURS.toMillis(1));
+
+    Assert.assertEquals(2, cache.evict());
+    Assert.assertTrue(Files.exists(tempPath));
+    Assert.assertTrue(Files.exists(sameName));
+    Assert.assertFalse(Files.exists(samePrefix));
+    Assert.assertFalse(Files.exists(otherTempPath));
+  }
+
+  @Test
+  public void testScrubDeletesCorruptedArtifacts() throws IOException {
+    final ArtifactCache cache = buildCache(0);
+
+    final Path intact = writeFile("intact.tar.gz", "intact", TimeUnit.HOURS.toMillis(1));
+    final Path corrupted = writeFile("corrupted.tar.gz", "original", TimeUnit.HOURS.toMillis(1));
+    final Path unindexed = writeFile("unindexed.tar.gz", "unindexed", TimeUnit.HOURS.toMillis(1));
+
+    cache.recordMd5sum(intact, ArtifactChecksumIndex.calculateMd5sum(intact));
+    cache.recordMd5sum(corrupted, ArtifactChecksumIndex.calculateMd5sum(corrupted));
+
+    // same size and modification time, so the recorded md5 is still trusted until the file is hashed again
+    final FileTime lastModified = Files.getLastModifiedTime(corrupted);
+    Files.write(corrupted, "0riginal".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(corrupted, lastModified);
+
+    cache.pin("corrupted.tar.gz");
+
+    Assert.assertEquals(0, cache.scrub());
+    Assert.assertTrue(Files.exists(corrupted));
+
+    cache.release("corrupted.tar.gz");
+
+    Assert.assertEquals(1, cache.scrub());
+    Assert.assertTrue(Files.exists(intact));
+    Assert.assertFalse(Files.exists(corrupted));
+    Assert.assertFalse(cache.getMd5sum(corrupted).isPresent());
+    Assert.assertTrue(Files.exists(unindexed));
+  }
+
+}
@@ -0,0 +1,137 @@
+package com.hubspot.singularity.s3.base;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArtifactChecksumIndexTest {
+
+  private Path directory;
+  private Path artifact;
+  private ArtifactChecksumIndex checksumIndex;
+
+  @Before
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("ArtifactChecksumIndexTest");
+    artifact = directory.resolve("artifact.tar.gz");
+    checksumIndex = new ArtifactChecksumIndex(directory);
+
+    Files.write(artifact, "contents".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(artifact, FileTime.fromMillis(1000000));
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+  }
+
+  private void writeEntry(String entry) throws IOException {
+    Files.createDirectories(directory.resolve(ArtifactChecksumIndex.INDEX_DIRECTORY));
+    Files.write(directory.resolve(ArtifactChecksumIndex.INDEX_DIRECTORY).resolve(artifact.getFileName()), entry.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testMd5IsTrustedWhileSizeAndModificationTimeMatch() throws IOException {
+    // deliberately not the real md5, to show the artifact isn't hashed again
+    checksumIndex.put(artifact, "recorded");
+
+    Assert.assertEquals("recorded", checksumIndex.getMd5(artifact).get());
+    Assert.assertFalse(checksumIndex.isPrefetched(artifact));
+
+    Assert.assertTrue(checksumIndex.touch(artifact));
+    Assert.assertEquals("recorded", checksumIndex.getMd5(artifact).get());
+  }
+
+  @Test
+  public void testMd5IsInvalidatedWhenSizeChanges() throws IOException {
+    checksumIndex.put(artifact, "recorded");
+
+    Files.write(artifact, "longer contents".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(artifact, FileTime.fromMillis(1000000));
+
+    Assert.assertFalse(checksumIndex.getMd5(artifact).isPresent());
+  }
+
+  @Test
+  public void testMd5IsInvalidatedWhenModificationTimeChanges() throws IOException {
+    checksumIndex.put(artifact, "recorded");
+
+    Files.setLastModifiedTime(artifact, FileTime.fromMillis(2000000));
+
+    Assert.assertFalse(checksumIndex.getMd5(artifact).isPresent());
+  }
+
+  @Test
+  public void testPrefetchedMarker() throws IOException {
+    final Path downloaded = directory.resolve("artifact.tar.gz.download");
+
+    Files.move(artifact, downloaded);
+
+    // recorded against the downloaded file before it is moved into place, as ArtifactManager does
+    Assert.assertTrue(checksumIndex.put(artifact, downloaded, "recorded", true));
+
+    Files.move(downloaded, artifact);
+
+    Assert.assertEquals("recorded", checksumIndex.getMd5(artifact).get());
+    Assert.assertTrue(checksumIndex.isPrefetched(artifact));
+
+    Files.setLastModifiedTime(artifact, FileTime.fromMillis(2000000));
+
+    Assert.assertFalse(checksumIndex.isPrefetched(artifact));
+
+    checksumIndex.put(artifact, "recorded");
+
+    Assert.assertFalse(checksumIndex.isPrefetched(artifact));
+  }
+
+  @Test
+  public void testMalformedEntriesAreIgnored() throws IOException {
+    writeEntry("recorded 8");
+    Assert.assertFalse(checksumIndex.getMd5(artifact).isPresent());
+
+    writeEntry("recorded 8 1000000 prefetched extra");
+    Assert.assertFalse(checksumIndex.getMd5(artifact).isPresent());
+    Assert.assertFalse(checksumIndex.isPrefetched(artifact));
+
+    writeEntry("recorded eight 1000000");
+    Assert.assertFalse(checksumIndex.getMd5(artifact).isPresent());
+
+    writeEntry("recorded 8 1000000");
+    Assert.assertEquals("recorded", checksumIndex.getMd5(artifact).get());
+  }
+
+  @Test
+  public void testRemovedEntriesAreForgotten() throws IOException {
+    checksumIndex.put(artifact, "recorded");
+    checksumIndex.remove(artifact);
+
+    Assert.assertFalse(checksumIndex.getMd5(artifact).isPresent());
+    Assert.assertFalse(checksumIndex.getLastUsed(artifact).isPresent());
+    Assert.assertFalse(checksumIndex.touch(artifact));
+  }
+
+}
@@ -0,0 +1,176 @@
+package com.hubspot.singularity.s3.base;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
+
+public class S3DownloadSchedulerTest {
+
+  private S3DownloadScheduler buildScheduler(int threads, long downloadTimeoutMillis) {
+    return new S3DownloadScheduler(new SingularityS3Configuration("/tmp", "0", "0", "0", "true", "", "", "104857600", Long.toString(downloadTimeoutMillis), Integer.toString(threads),
+        "8388608", "10000", "7070", "/download"));
+  }
+
+  private Future<Long> submitBlockingChunk(S3DownloadScheduler scheduler, final CountDownLatch started, final CountDownLatch release) {
+    return scheduler.submitChunk(new Callable<Long>() {
+
+      @Override
+      public Long call() throws Exception {
+        started.countDown();
+        release.await();
+        return 0L;
+      }
+
+    }, S3DownloadScheduler.DEFAULT_PRIORITY, 0);
+  }
+
+  private Future<Long> submitRecordingChunk(S3DownloadScheduler scheduler, final List<String> ran, final String name, int priority, int chunk) {
+    return scheduler.submitChunk(new Callable<Long>() {
+
+      @Override
+      public Long call() {
+        synchronized (ran) {
+          ran.add(name);
+        }
+        return 0L;
+      }
+
+    }, priority, chunk);
+  }
+
+  @Test
+  public void testChunksRunInOrderOfPriorityThenIndex() throws Exception {
+    final S3DownloadScheduler scheduler = buildScheduler(1, TimeUnit.MINUTES.toMillis(10));
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<String> ran = Lists.newArrayList();
+    final List<Future<Long>> futures = Lists.newArrayList();
+
+    futures.add(submitBlockingChunk(scheduler, started, release));
+    started.await();
+
+    futures.add(submitRecordingChunk(scheduler, ran, "prefetch-0", S3DownloadScheduler.LOW_PRIORITY, 0));
+    futures.add(submitRecordingChunk(scheduler, ran, "first-1", S3DownloadScheduler.DEFAULT_PRIORITY, 1));
+    futures.add(submitRecordingChunk(scheduler, ran, "first-2", S3DownloadScheduler.DEFAULT_PRIORITY, 2));
+    futures.add(submitRecordingChunk(scheduler, ran, "second-0", S3DownloadScheduler.DEFAULT_PRIORITY, 0));
+    futures.add(submitRecordingChunk(scheduler, ran, "second-1", S3DownloadScheduler.DEFAULT_PRIORITY, 1));
+
+    Assert.assertEquals(5, scheduler.getQueuedChunks());
+
+    release.countDown();
+
+    for (Future<Long> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+
+    Assert.assertEquals(ImmutableList.of("second-0", "first-1", "second-1", "first-2", "prefetch-0"), ran);
+    Assert.assertEquals(0, scheduler.getQueuedChunks());
+  }
+
+  @Test
+  public void testLowPriorityChunksAreNotStarved() throws Exception {
+    final S3DownloadScheduler scheduler = buildScheduler(1, 400);
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<String> ran = Lists.newArrayList();
+    final List<Future<Long>> futures = Lists.newArrayList();
+
+    futures.add(submitBlockingChunk(scheduler, started, release));
+    started.await();
+
+    futures.add(submitRecordingChunk(scheduler, ran, "prefetch-0", S3DownloadScheduler.LOW_PRIORITY, 0));
+
+    Thread.sleep(200);
+
+    futures.add(submitRecordingChunk(scheduler, ran, "launch-0", S3DownloadScheduler.DEFAULT_PRIORITY, 0));
+
+    release.countDown();
+
+    for (Future<Long> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+
+    Assert.assertEquals(ImmutableList.of("prefetch-0", "launch-0"), ran);
+  }
+
+  @Test
+  public void testChunksShareOneBoundedPool() throws Exception {
+    final S3DownloadScheduler scheduler = buildScheduler(2, TimeUnit.MINUTES.toMillis(10));
+
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final List<Future<Long>> futures = Lists.newArrayList();
+
+    for (int download = 0; download < 3; download++) {
+      for (int chunk = 0; chunk < 4; chunk++) {
+        futures.add(scheduler.submitChunk(new Callable<Long>() {
+
+          @Override
+          public Long call() throws Exception {
+            final int nowRunning = running.incrementAndGet();
+
+            synchronized (maxRunning) {
+              maxRunning.set(Math.max(maxRunning.get(), nowRunning));
+            }
+
+            Thread.sleep(20);
+            running.decrementAndGet();
+
+            return 1L;
+          }
+
+        }, download == 0 ? S3DownloadScheduler.LOW_PRIORITY : S3DownloadScheduler.DEFAULT_PRIORITY, chunk));
+      }
+    }
+
+    long total = 0;
+
+    for (Future<Long> future : futures) {
+      total += future.get(10, TimeUnit.SECONDS);
+    }
+
+    Assert.assertEquals(12, total);
+    Assert.assertEquals(2, maxRunning.get());
+    Assert.assertEquals(0, scheduler.getQueuedChunks());
+  }
+
+  @Test
+  public void testPurgeDropsCancelledChunks() throws Exception {
+    final S3DownloadScheduler scheduler = buildScheduler(1, TimeUnit.MINUTES.toMillis(10));
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<String> ran = Lists.newArrayList();
+
+    final Future<Long> blocking = submitBlockingChunk(scheduler, started, release);
+    started.await();
+
+    final Future<Long> cancelled = submitRecordingChunk(scheduler, ran, "cancelled", S3DownloadScheduler.DEFAULT_PRIORITY, 0);
+    final Future<Long> kept = submitRecordingChunk(scheduler, ran, "kept", S3DownloadScheduler.DEFAULT_PRIORITY, 1);
+
+    cancelled.cancel(false);
+    scheduler.purge();
+
+    Assert.assertEquals(1, scheduler.getQueuedChunks());
+
+    release.countDown();
+
+    blocking.get(10, TimeUnit.SECONDS);
+    kept.get(10, TimeUnit.SECONDS);
+
+    Assert.assertEquals(ImmutableList.of("kept"), ran);
+  }
+
+}
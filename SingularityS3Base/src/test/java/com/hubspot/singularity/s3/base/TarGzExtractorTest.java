@@ -0,0 +1,205 @@
+package com.hubspot.singularity.s3.base;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TarGzExtractorTest {
+
+  private Path directory;
+  private Path archive;
+  private Path destination;
+  private Path outside;
+
+  @Before
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("TarGzExtractorTest");
+    archive = directory.resolve("archive.tar.gz");
+    destination = Files.createDirectory(directory.resolve("destination"));
+    outside = Files.createDirectory(directory.resolve("outside"));
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+  }
+
+  private static class ArchiveBuilder implements AutoCloseable {
+
+    private final TarArchiveOutputStream tarStream;
+
+    ArchiveBuilder(Path archive) throws IOException {
+      final OutputStream fileStream = Files.newOutputStream(archive);
+      this.tarStream = new TarArchiveOutputStream(new GZIPOutputStream(fileStream));
+    }
+
+    ArchiveBuilder file(String name, String content) throws IOException {
+      final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+      final TarArchiveEntry entry = new TarArchiveEntry(name);
+      entry.setSize(bytes.length);
+      entry.setMode(0644);
+
+      tarStream.putArchiveEntry(entry);
+      tarStream.write(bytes);
+      tarStream.closeArchiveEntry();
+      return this;
+    }
+
+    ArchiveBuilder directory(String name) throws IOException {
+      return directory(name, 0755);
+    }
+
+    ArchiveBuilder directory(String name, int mode) throws IOException {
+      final TarArchiveEntry entry = new TarArchiveEntry(name + "/");
+      entry.setMode(mode);
+
+      tarStream.putArchiveEntry(entry);
+      tarStream.closeArchiveEntry();
+      return this;
+    }
+
+    ArchiveBuilder link(String name, String linkName, byte type) throws IOException {
+      final TarArchiveEntry entry = new TarArchiveEntry(name, type);
+      entry.setLinkName(linkName);
+
+      tarStream.putArchiveEntry(entry);
+      tarStream.closeArchiveEntry();
+      return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+      tarStream.close();
+    }
+
+  }
+
+  private static String read(Path path) throws IOException {
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testExtractsFilesDirectoriesAndLinks() throws IOException {
+    try (ArchiveBuilder builder = new ArchiveBuilder(archive)) {
+      builder.directory("app")
+          .file("app/run.sh", "run")
+          .link("current", "app", TarConstants.LF_SYMLINK)
+          .link("app/start.sh", "app/run.sh", TarConstants.LF_LINK);
+    }
+
+    Assert.assertEquals(4, TarGzExtractor.extract(archive, destination));
+
+    Assert.assertEquals("run", read(destination.resolve("app/run.sh")));
+    Assert.assertEquals("run", read(destination.resolve("app/start.sh")));
+    Assert.assertTrue(Files.isSymbolicLink(destination.resolve("current")));
+    Assert.assertEquals(Paths.get("app"), Files.readSymbolicLink(destination.resolve("current")));
+    Assert.assertEquals("run", read(destination.resolve("current/run.sh")));
+  }
+
+  @Test
+  public void testRefusesToWriteThroughLinkInArchive() throws IOException {
+    try (ArchiveBuilder builder = new ArchiveBuilder(archive)) {
+      builder.link("d", outside.toString(), TarConstants.LF_SYMLINK)
+          .file("d/x", "escaped");
+    }
+
+    try {
+      TarGzExtractor.extract(archive, destination);
+      Assert.fail("extracted through a symbolic link outside of the destination");
+    } catch (IOException expected) {
+    }
+
+    Assert.assertFalse(Files.exists(outside.resolve("x")));
+  }
+
+  @Test
+  public void testRefusesToWriteThroughExistingLinkOutside() throws IOException {
+    Files.createSymbolicLink(destination.resolve("d"), outside);
+
+    try (ArchiveBuilder builder = new ArchiveBuilder(archive)) {
+      builder.file("d/x", "escaped");
+    }
+
+    try {
+      TarGzExtractor.extract(archive, destination);
+      Assert.fail("extracted through a symbolic link outside of the destination");
+    } catch (IOException expected) {
+    }
+
+    Assert.assertFalse(Files.exists(outside.resolve("x")));
+  }
+
+  @Test
+  public void testRefusesNamesOutside() throws IOException {
+    try (ArchiveBuilder builder = new ArchiveBuilder(archive)) {
+      builder.file("../outside/x", "escaped");
+    }
+
+    try {
+      TarGzExtractor.extract(archive, destination);
+      Assert.fail("extracted an entry named outside of the destination");
+    } catch (IOException expected) {
+    }
+
+    Assert.assertFalse(Files.exists(outside.resolve("x")));
+  }
+
+  @Test
+  public void testDirectoryModeIsNotSetThroughLinkReplacingIt() throws IOException {
+    Files.setPosixFilePermissions(outside, PosixFilePermissions.fromString("rwx------"));
+
+    try (ArchiveBuilder builder = new ArchiveBuilder(archive)) {
+      builder.directory("d", 0777)
+          .link("d", outside.toString(), TarConstants.LF_SYMLINK);
+    }
+
+    Assert.assertEquals(2, TarGzExtractor.extract(archive, destination));
+
+    Assert.assertTrue(Files.isSymbolicLink(destination.resolve("d")));
+    Assert.assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(outside));
+  }
+
+  @Test
+  public void testDirectoryModeIsKeptWhenLinkIsReplacedByDirectory() throws IOException {
+    try (ArchiveBuilder builder = new ArchiveBuilder(archive)) {
+      builder.link("d", outside.toString(), TarConstants.LF_SYMLINK)
+          .directory("d", 0750);
+    }
+
+    Assert.assertEquals(2, TarGzExtractor.extract(archive, destination));
+
+    Assert.assertFalse(Files.isSymbolicLink(destination.resolve("d")));
+    Assert.assertEquals(PosixFilePermissions.fromString("rwxr-x---"), Files.getPosixFilePermissions(destination.resolve("d")));
+  }
+
+}
@@ -6,10 +6,13 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
 import com.codahale.metrics.Timer;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
+import com.hubspot.singularity.s3.base.ArtifactCache;
+import com.hubspot.singularity.s3.base.S3DownloadScheduler;
 import com.hubspot.singularity.s3downloader.config.SingularityS3DownloaderModule;
 
 @Singleton
@@ -22,9 +25,12 @@ public class SingularityS3DownloaderMetrics {
   private final Meter clientErrors;
   private final Meter serverErrors;
   private final Meter requests;
+  private final Meter prefetchRequests;
+  private final Meter prefetchErrors;
 
   @Inject
-  public SingularityS3DownloaderMetrics(MetricRegistry registry, @Named(SingularityS3DownloaderModule.DOWNLOAD_EXECUTOR_SERVICE) final ThreadPoolExecutor asyncDownloadService) {
+  public SingularityS3DownloaderMetrics(MetricRegistry registry, @Named(SingularityS3DownloaderModule.DOWNLOAD_EXECUTOR_SERVICE) final ThreadPoolExecutor asyncDownloadService,
+      @Named(SingularityS3DownloaderModule.PREFETCH_EXECUTOR_SERVICE) final ThreadPoolExecutor prefetchService, final ArtifactCache artifactCache, final S3DownloadScheduler downloadScheduler) {
     this.registry = registry;
 
     this.downloadTimer = registry.timer(name("downloads", "timer"));
@@ -32,6 +38,8 @@ public class SingularityS3DownloaderMetrics {
     this.clientErrors = registry.meter(name("server", "clientErrors"));
     this.serverErrors = registry.meter(name("server", "serverErrors"));
     this.requests = registry.meter(name("server", "requests"));
+    this.prefetchRequests = registry.meter(name("prefetch", "requests"));
+    this.prefetchErrors = registry.meter(name("prefetch", "errors"));
 
     registry.register(name("downloads", "active"), new Gauge<Integer>() {
       @Override
@@ -40,6 +48,125 @@ public class SingularityS3DownloaderMetrics {
       }
     });
 
+    registry.register(name("prefetch", "active"), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return prefetchService.getActiveCount();
+      }
+    });
+
+    registry.register(name("prefetch", "queued"), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return prefetchService.getQueue().size();
+      }
+    });
+
+    registry.register(name("prefetch", "hits"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return artifactCache.getPrefetchHits();
+      }
+    });
+
+    registry.register(name("prefetch", "misses"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return artifactCache.getPrefetchMisses();
+      }
+    });
+
+    registry.register(name("cache", "hits"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return artifactCache.getHits();
+      }
+    });
+
+    registry.register(name("cache", "misses"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return artifactCache.getMisses();
+      }
+    });
+
+    registry.register(name("cache", "evictions"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return artifactCache.getEvictions();
+      }
+    });
+
+    registry.register(name("cache", "hitRatio"), new RatioGauge() {
+      @Override
+      protected Ratio getRatio() {
+        return Ratio.of(artifactCache.getHits(), artifactCache.getHits() + artifactCache.getMisses());
+      }
+    });
+
+    registry.register(name("s3", "activeDownloads"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return downloadScheduler.getActiveDownloads();
+      }
+    });
+
+    registry.register(name("s3", "completedDownloads"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return downloadScheduler.getCompletedDownloads();
+      }
+    });
+
+    registry.register(name("s3", "bytes"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return downloadScheduler.getBytesDownloaded();
+      }
+    });
+
+    registry.register(name("s3", "activeChunks"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return downloadScheduler.getActiveChunks();
+      }
+    });
+
+    registry.register(name("s3", "queuedChunks"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return downloadScheduler.getQueuedChunks();
+      }
+    });
+
+    registry.register(name("s3", "chunkSize"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return downloadScheduler.getChunkSize();
+      }
+    });
+
+    registry.register(name("s3", "chunkBytesPerSecond"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return downloadScheduler.getChunkBytesPerSecond();
+      }
+    });
+
+    registry.register(name("s3", "downloadBytesPerSecond"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return downloadScheduler.getDownloadBytesPerSecond();
+      }
+    });
+
+    registry.register(name("s3", "lastDownloadBytesPerSecond"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return downloadScheduler.getLastDownloadBytesPerSecond();
+      }
+    });
+
     startJmxReporter();
   }
 
@@ -55,6 +182,14 @@ public class SingularityS3DownloaderMetrics {
     return requests;
   }
 
+  public Meter getPrefetchRequestsMeter() {
+    return prefetchRequests;
+  }
+
+  public Meter getPrefetchErrorsMeter() {
+    return prefetchErrors;
+  }
+
   public Timer getDownloadTimer() {
     return downloadTimer;
   }
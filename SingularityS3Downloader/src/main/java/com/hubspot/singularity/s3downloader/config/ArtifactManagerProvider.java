@@ -5,23 +5,29 @@ import org.slf4j.LoggerFactory;
 
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.hubspot.singularity.s3.base.ArtifactCache;
 import com.hubspot.singularity.s3.base.ArtifactManager;
+import com.hubspot.singularity.s3.base.S3DownloadScheduler;
 import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
 
 public class ArtifactManagerProvider implements Provider<ArtifactManager> {
 
   private final Logger log;
   private final SingularityS3Configuration s3Configuration;
+  private final ArtifactCache artifactCache;
+  private final S3DownloadScheduler downloadScheduler;
 
   @Inject
-  public ArtifactManagerProvider(SingularityS3Configuration s3Configuration) {
+  public ArtifactManagerProvider(SingularityS3Configuration s3Configuration, ArtifactCache artifactCache, S3DownloadScheduler downloadScheduler) {
     this.log = LoggerFactory.getLogger(ArtifactManager.class);
     this.s3Configuration = s3Configuration;
+    this.artifactCache = artifactCache;
+    this.downloadScheduler = downloadScheduler;
   }
 
   @Override
   public ArtifactManager get() {
-    return new ArtifactManager(s3Configuration, log);
+    return new ArtifactManager(s3Configuration, log, artifactCache, downloadScheduler);
   }
 
 }
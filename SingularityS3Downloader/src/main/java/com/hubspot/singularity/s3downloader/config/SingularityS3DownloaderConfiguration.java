@@ -9,14 +9,29 @@ public class SingularityS3DownloaderConfiguration {
 
   private final long httpServerTimeout;
   private final int numDownloaderThreads;
+  private final String prefetchHttpHost;
+  private final int prefetchHttpPort;
+  private final String prefetchHttpPath;
+  private final int numPrefetchThreads;
+  private final String prefetchToken;
 
   @Inject
   public SingularityS3DownloaderConfiguration(
       @Named(SingularityS3DownloaderConfigurationLoader.HTTP_SERVER_TIMEOUT) String httpServerTimeout,
-      @Named(SingularityS3DownloaderConfigurationLoader.NUM_DOWNLOADER_THREADS) String numDownloaderThreads
+      @Named(SingularityS3DownloaderConfigurationLoader.NUM_DOWNLOADER_THREADS) String numDownloaderThreads,
+      @Named(SingularityS3DownloaderConfigurationLoader.PREFETCH_HTTP_HOST) String prefetchHttpHost,
+      @Named(SingularityS3DownloaderConfigurationLoader.PREFETCH_HTTP_PORT) String prefetchHttpPort,
+      @Named(SingularityS3DownloaderConfigurationLoader.PREFETCH_HTTP_PATH) String prefetchHttpPath,
+      @Named(SingularityS3DownloaderConfigurationLoader.NUM_PREFETCH_THREADS) String numPrefetchThreads,
+      @Named(SingularityS3DownloaderConfigurationLoader.PREFETCH_TOKEN) String prefetchToken
       ) {
     this.httpServerTimeout = Long.parseLong(httpServerTimeout);
     this.numDownloaderThreads = Integer.parseInt(numDownloaderThreads);
+    this.prefetchHttpHost = prefetchHttpHost;
+    this.prefetchHttpPort = Integer.parseInt(prefetchHttpPort);
+    this.prefetchHttpPath = prefetchHttpPath;
+    this.numPrefetchThreads = Integer.parseInt(numPrefetchThreads);
+    this.prefetchToken = prefetchToken;
   }
 
   public int getNumDownloaderThreads() {
@@ -27,9 +42,30 @@ public class SingularityS3DownloaderConfiguration {
     return httpServerTimeout;
   }
 
+  public String getPrefetchHttpHost() {
+    return prefetchHttpHost;
+  }
+
+  public int getPrefetchHttpPort() {
+    return prefetchHttpPort;
+  }
+
+  public String getPrefetchHttpPath() {
+    return prefetchHttpPath;
+  }
+
+  public int getNumPrefetchThreads() {
+    return numPrefetchThreads;
+  }
+
+  public String getPrefetchToken() {
+    return prefetchToken;
+  }
+
   @Override
   public String toString() {
-    return "SingularityS3DownloaderConfiguration [httpServerTimeout=" + httpServerTimeout + ", numDownloaderThreads=" + numDownloaderThreads + "]";
+    return "SingularityS3DownloaderConfiguration [httpServerTimeout=" + httpServerTimeout + ", numDownloaderThreads=" + numDownloaderThreads + ", prefetchHttpHost=" + prefetchHttpHost + ", prefetchHttpPort=" + prefetchHttpPort + ", prefetchHttpPath=" + prefetchHttpPath
+        + ", numPrefetchThreads=" + numPrefetchThreads + "]";
   }
 
 }
@@ -12,6 +12,12 @@ public class SingularityS3DownloaderConfigurationLoader extends SingularityConfi
 
   public static final String HTTP_SERVER_TIMEOUT = "s3downloader.http.timeout";
 
+  public static final String PREFETCH_HTTP_HOST = "s3downloader.prefetch.http.host";
+  public static final String PREFETCH_HTTP_PORT = "s3downloader.prefetch.http.port";
+  public static final String PREFETCH_HTTP_PATH = "s3downloader.prefetch.http.path";
+  public static final String NUM_PREFETCH_THREADS = "s3downloader.prefetch.threads";
+  public static final String PREFETCH_TOKEN = "s3downloader.prefetch.token";
+
 
   public SingularityS3DownloaderConfigurationLoader() {
     super("/etc/singularity.s3downloader.properties", Optional.of("singularity-s3downloader.log"));
@@ -21,6 +27,11 @@ public class SingularityS3DownloaderConfigurationLoader extends SingularityConfi
   protected void bindDefaults(Properties properties) {
     properties.put(HTTP_SERVER_TIMEOUT, Long.toString(TimeUnit.MINUTES.toMillis(30)));
     properties.put(NUM_DOWNLOADER_THREADS, "25");
+    properties.put(PREFETCH_HTTP_HOST, "");
+    properties.put(PREFETCH_HTTP_PORT, "0");
+    properties.put(PREFETCH_HTTP_PATH, "/prefetch");
+    properties.put(NUM_PREFETCH_THREADS, "2");
+    properties.put(PREFETCH_TOKEN, "");
   }
 
 }
@@ -15,6 +15,7 @@ import com.hubspot.singularity.s3downloader.server.SingularityS3DownloaderServer
 public class SingularityS3DownloaderModule extends AbstractModule {
 
   public static final String DOWNLOAD_EXECUTOR_SERVICE = "singularity.s3downloader.executor.service";
+  public static final String PREFETCH_EXECUTOR_SERVICE = "singularity.s3downloader.prefetch.executor.service";
 
   @Override
   protected void configure() {
@@ -29,4 +30,11 @@ public class SingularityS3DownloaderModule extends AbstractModule {
     return (ThreadPoolExecutor) Executors.newFixedThreadPool(configuration.getNumDownloaderThreads(), new ThreadFactoryBuilder().setDaemon(true).setNameFormat("S3AsyncDownloaderMainThread-%d").build());
   }
 
+  @Provides
+  @Singleton
+  @Named(PREFETCH_EXECUTOR_SERVICE)
+  public ThreadPoolExecutor getPrefetchService(SingularityS3DownloaderConfiguration configuration) {
+    return (ThreadPoolExecutor) Executors.newFixedThreadPool(configuration.getNumPrefetchThreads(), new ThreadFactoryBuilder().setDaemon(true).setNameFormat("S3AsyncDownloaderPrefetchThread-%d").build());
+  }
+
 }
@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import com.codahale.metrics.Timer.Context;
 import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.s3.base.ArtifactCache;
 import com.hubspot.singularity.s3.base.ArtifactDownloadRequest;
 import com.hubspot.singularity.s3.base.ArtifactManager;
 import com.hubspot.singularity.s3downloader.SingularityS3DownloaderMetrics;
@@ -22,11 +23,14 @@ public class SingularityS3DownloaderAsyncHandler implements Runnable {
   private final ArtifactDownloadRequest artifactDownloadRequest;
   private final Continuation continuation;
   private final ArtifactManager artifactManager;
+  private final ArtifactCache artifactCache;
   private final long start;
   private final SingularityS3DownloaderMetrics metrics;
 
-  public SingularityS3DownloaderAsyncHandler(ArtifactManager artifactManager, ArtifactDownloadRequest artifactDownloadRequest, Continuation continuation, SingularityS3DownloaderMetrics metrics) {
+  public SingularityS3DownloaderAsyncHandler(ArtifactManager artifactManager, ArtifactCache artifactCache, ArtifactDownloadRequest artifactDownloadRequest, Continuation continuation,
+      SingularityS3DownloaderMetrics metrics) {
     this.artifactManager = artifactManager;
+    this.artifactCache = artifactCache;
     this.artifactDownloadRequest = artifactDownloadRequest;
     this.continuation = continuation;
     this.metrics = metrics;
@@ -44,15 +48,19 @@ public class SingularityS3DownloaderAsyncHandler implements Runnable {
     final Path fetched = artifactManager.fetch(artifactDownloadRequest.getS3Artifact());
     final Path targetDirectory = Paths.get(artifactDownloadRequest.getTargetDirectory());
 
-    if (continuation.isExpired()) {
-      LOG.info("Continuation expired for {} after download, aborting...", artifactDownloadRequest);
-      return;
-    }
+    try {
+      if (continuation.isExpired()) {
+        LOG.info("Continuation expired for {} after download, aborting...", artifactDownloadRequest);
+        return;
+      }
 
-    if (fetched.getFileName().toString().endsWith(".tar.gz")) {
-      artifactManager.untar(fetched, targetDirectory);
-    } else {
-      artifactManager.copy(fetched, targetDirectory);
+      if (fetched.getFileName().toString().endsWith(".tar.gz")) {
+        artifactManager.untar(fetched, targetDirectory);
+      } else {
+        artifactManager.copy(fetched, targetDirectory);
+      }
+    } finally {
+      artifactManager.release(fetched);
     }
 
     LOG.info("Finishing request {} after {}", artifactDownloadRequest, JavaUtils.duration(start));
@@ -79,5 +87,11 @@ public class SingularityS3DownloaderAsyncHandler implements Runnable {
     } finally {
       continuation.complete();
     }
+
+    try {
+      artifactCache.evict();
+    } catch (Throwable t) {
+      LOG.error("While evicting cached artifacts", t);
+    }
   }
 }
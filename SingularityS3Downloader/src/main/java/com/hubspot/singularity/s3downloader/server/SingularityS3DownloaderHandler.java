@@ -1,6 +1,13 @@
 package com.hubspot.singularity.s3downloader.server;
 
+import static com.hubspot.singularity.SingularityArtifactPrefetch.PREFETCH_TOKEN_HEADER;
+
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.servlet.ServletException;
@@ -15,42 +22,66 @@ import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.name.Named;
+import com.hubspot.deploy.S3Artifact;
+import com.hubspot.singularity.s3.base.ArtifactCache;
 import com.hubspot.singularity.s3.base.ArtifactDownloadRequest;
 import com.hubspot.singularity.s3.base.ArtifactManager;
 import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
 import com.hubspot.singularity.s3downloader.SingularityS3DownloaderMetrics;
+import com.hubspot.singularity.s3downloader.config.SingularityS3DownloaderConfiguration;
 import com.hubspot.singularity.s3downloader.config.SingularityS3DownloaderModule;
 
 public class SingularityS3DownloaderHandler extends AbstractHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(SingularityS3DownloaderHandler.class);
 
+  private static final TypeReference<List<S3Artifact>> S3_ARTIFACTS_TYPE = new TypeReference<List<S3Artifact>>() {};
+
+  private final SingularityS3DownloaderConfiguration configuration;
   private final SingularityS3Configuration s3Configuration;
   private final ObjectMapper objectMapper;
   private final Provider<ArtifactManager> artifactManagerProvider;
+  private final ArtifactCache artifactCache;
   private final ThreadPoolExecutor asyncDownloadService;
+  private final ThreadPoolExecutor prefetchService;
   private final SingularityS3DownloaderMetrics metrics;
+  private final Set<String> queuedPrefetches;
 
   @Inject
-  public SingularityS3DownloaderHandler(Provider<ArtifactManager> artifactManagerProvider, SingularityS3Configuration s3Configuration, ObjectMapper objectMapper,
-      @Named(SingularityS3DownloaderModule.DOWNLOAD_EXECUTOR_SERVICE) ThreadPoolExecutor asyncDownloadService, SingularityS3DownloaderMetrics metrics) {
+  public SingularityS3DownloaderHandler(Provider<ArtifactManager> artifactManagerProvider, ArtifactCache artifactCache, SingularityS3DownloaderConfiguration configuration,
+      SingularityS3Configuration s3Configuration, ObjectMapper objectMapper, @Named(SingularityS3DownloaderModule.DOWNLOAD_EXECUTOR_SERVICE) ThreadPoolExecutor asyncDownloadService,
+      @Named(SingularityS3DownloaderModule.PREFETCH_EXECUTOR_SERVICE) ThreadPoolExecutor prefetchService, SingularityS3DownloaderMetrics metrics) {
     this.artifactManagerProvider = artifactManagerProvider;
+    this.artifactCache = artifactCache;
+    this.configuration = configuration;
     this.s3Configuration = s3Configuration;
     this.objectMapper = objectMapper;
     this.asyncDownloadService = asyncDownloadService;
+    this.prefetchService = prefetchService;
     this.metrics = metrics;
+    this.queuedPrefetches = Sets.newConcurrentHashSet();
   }
 
   @Override
   public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
     metrics.getRequestsMeter().mark();
 
-    if (!target.equals(s3Configuration.getLocalDownloadPath())) {
+    if (target.equals(configuration.getPrefetchHttpPath())) {
+      baseRequest.setHandled(true);
+      handlePrefetch(request, response);
+      return;
+    }
+
+    // downloads write into the requested directory, so they are only served to local callers
+    if (isPrefetchConnector(request) || !target.equals(s3Configuration.getLocalDownloadPath())) {
       metrics.getClientErrorsMeter().mark();
       response.sendError(404);
       return;
@@ -75,11 +106,106 @@ public class SingularityS3DownloaderHandler extends AbstractHandler {
 
     LOG.info("Queing handler for {} ({} active threads, {} queue size)", artifactOptional.get(), asyncDownloadService.getActiveCount(), asyncDownloadService.getQueue().size());
 
-    SingularityS3DownloaderAsyncHandler asyncHandler = new SingularityS3DownloaderAsyncHandler(artifactManagerProvider.get(), artifactOptional.get(), continuation, metrics);
+    SingularityS3DownloaderAsyncHandler asyncHandler = new SingularityS3DownloaderAsyncHandler(artifactManagerProvider.get(), artifactCache, artifactOptional.get(), continuation, metrics);
 
     asyncDownloadService.submit(asyncHandler);
   }
 
+  private boolean isPrefetchConnector(HttpServletRequest request) {
+    return configuration.getPrefetchHttpPort() > 0 && request.getLocalPort() == configuration.getPrefetchHttpPort();
+  }
+
+  /**
+   * POST queues downloads of a JSON list of S3 artifacts into the cache and returns 202 straight away. GET returns the cache hit
+   * and miss counts, for launches and for prefetches. Either needs the configured prefetch token in PREFETCH_TOKEN_HEADER.
+   */
+  private void handlePrefetch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!hasPrefetchToken(request)) {
+      metrics.getClientErrorsMeter().mark();
+      response.sendError(403);
+      return;
+    }
+
+    if (request.getMethod().equalsIgnoreCase(HttpMethod.GET.name())) {
+      response.setContentType("application/json");
+      objectMapper.writeValue(response.getOutputStream(), ImmutableMap.of(
+          "hits", artifactCache.getHits(),
+          "misses", artifactCache.getMisses(),
+          "prefetchHits", artifactCache.getPrefetchHits(),
+          "prefetchMisses", artifactCache.getPrefetchMisses()));
+      return;
+    }
+
+    if (!request.getMethod().equalsIgnoreCase(HttpMethod.POST.name())) {
+      metrics.getClientErrorsMeter().mark();
+      response.sendError(405);
+      return;
+    }
+
+    Optional<List<S3Artifact>> s3Artifacts = readPrefetchRequest(request);
+
+    if (!s3Artifacts.isPresent() || !canPrefetch(s3Artifacts.get())) {
+      metrics.getClientErrorsMeter().mark();
+      response.sendError(400);
+      return;
+    }
+
+    metrics.getPrefetchRequestsMeter().mark();
+
+    for (S3Artifact s3Artifact : s3Artifacts.get()) {
+      if (!queuedPrefetches.add(s3Artifact.getFilename())) {
+        LOG.debug("Prefetch of {} is already queued", s3Artifact.getFilename());
+        continue;
+      }
+
+      LOG.info("Queueing prefetch of {} ({} active threads, {} queue size)", s3Artifact, prefetchService.getActiveCount(), prefetchService.getQueue().size());
+
+      prefetchService.submit(new SingularityS3DownloaderPrefetchHandler(artifactManagerProvider.get(), artifactCache, s3Artifact, queuedPrefetches, metrics));
+    }
+
+    response.setStatus(HttpServletResponse.SC_ACCEPTED);
+  }
+
+  private boolean hasPrefetchToken(HttpServletRequest request) {
+    final String token = request.getHeader(PREFETCH_TOKEN_HEADER);
+
+    if (configuration.getPrefetchToken().isEmpty() || token == null) {
+      return false;
+    }
+
+    return MessageDigest.isEqual(configuration.getPrefetchToken().getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Prefetched artifacts are cached under a filename chosen by the caller, so each must name a plain file in the cache directory
+   * and carry an md5sum for the download to be checked against.
+   */
+  private boolean canPrefetch(List<S3Artifact> s3Artifacts) {
+    for (S3Artifact s3Artifact : s3Artifacts) {
+      if (!s3Artifact.getMd5sum().isPresent()) {
+        LOG.warn("Refusing to prefetch {} without an md5sum", s3Artifact);
+        return false;
+      }
+
+      final String filename = s3Artifact.getFilename();
+
+      if (filename == null || filename.isEmpty() || filename.startsWith(".") || !filename.equals(Paths.get(filename).getFileName().toString())) {
+        LOG.warn("Refusing to prefetch {} to {}", s3Artifact, filename);
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private Optional<List<S3Artifact>> readPrefetchRequest(HttpServletRequest request) {
+    try {
+      return Optional.<List<S3Artifact>> of(objectMapper.<List<S3Artifact>> readValue(request.getInputStream(), S3_ARTIFACTS_TYPE));
+    } catch (Throwable t) {
+      return Optional.absent();
+    }
+  }
+
   private Optional<ArtifactDownloadRequest> readDownloadRequest(HttpServletRequest request) {
     try {
       return Optional.of(objectMapper.readValue(request.getInputStream(), ArtifactDownloadRequest.class));
@@ -0,0 +1,56 @@
+package com.hubspot.singularity.s3downloader.server;
+
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hubspot.deploy.S3Artifact;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.s3.base.ArtifactCache;
+import com.hubspot.singularity.s3.base.ArtifactManager;
+import com.hubspot.singularity.s3downloader.SingularityS3DownloaderMetrics;
+
+public class SingularityS3DownloaderPrefetchHandler implements Runnable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityS3DownloaderPrefetchHandler.class);
+
+  private final ArtifactManager artifactManager;
+  private final ArtifactCache artifactCache;
+  private final S3Artifact s3Artifact;
+  private final Set<String> queuedPrefetches;
+  private final SingularityS3DownloaderMetrics metrics;
+  private final long start;
+
+  public SingularityS3DownloaderPrefetchHandler(ArtifactManager artifactManager, ArtifactCache artifactCache, S3Artifact s3Artifact, Set<String> queuedPrefetches, SingularityS3DownloaderMetrics metrics) {
+    this.artifactManager = artifactManager;
+    this.artifactCache = artifactCache;
+    this.s3Artifact = s3Artifact;
+    this.queuedPrefetches = queuedPrefetches;
+    this.metrics = metrics;
+    this.start = System.currentTimeMillis();
+  }
+
+  @Override
+  public void run() {
+    queuedPrefetches.remove(s3Artifact.getFilename());
+
+    LOG.info("Beginning prefetch of {} after {}", s3Artifact, JavaUtils.duration(start));
+
+    try {
+      artifactManager.prefetch(s3Artifact);
+
+      LOG.info("Finished prefetch of {} after {}", s3Artifact, JavaUtils.duration(start));
+    } catch (Throwable t) {
+      metrics.getPrefetchErrorsMeter().mark();
+      LOG.warn("While prefetching {}", s3Artifact, t);
+    }
+
+    try {
+      artifactCache.evict();
+    } catch (Throwable t) {
+      LOG.error("While evicting cached artifacts", t);
+    }
+  }
+
+}
@@ -1,5 +1,9 @@
 package com.hubspot.singularity.s3downloader.server;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.slf4j.Logger;
@@ -8,10 +12,14 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import com.hubspot.mesos.JavaUtils;
 import com.hubspot.singularity.runner.base.shared.SingularityDriver;
+import com.hubspot.singularity.s3.base.ArtifactCache;
 import com.hubspot.singularity.s3.base.config.SingularityS3Configuration;
 import com.hubspot.singularity.s3downloader.config.SingularityS3DownloaderConfiguration;
+import com.hubspot.singularity.s3downloader.config.SingularityS3DownloaderConfigurationLoader;
 
 public class SingularityS3DownloaderServer implements SingularityDriver {
 
@@ -20,18 +28,25 @@ public class SingularityS3DownloaderServer implements SingularityDriver {
   private final SingularityS3DownloaderConfiguration configuration;
   private final SingularityS3Configuration s3Configuration;
   private final SingularityS3DownloaderHandler handler;
+  private final ArtifactCache artifactCache;
+  private final ScheduledExecutorService scrubber;
   private Optional<Server> server;
 
   @Inject
-  public SingularityS3DownloaderServer(SingularityS3DownloaderConfiguration configuration, SingularityS3Configuration s3Configuration, SingularityS3DownloaderHandler handler) {
+  public SingularityS3DownloaderServer(SingularityS3DownloaderConfiguration configuration, SingularityS3Configuration s3Configuration, SingularityS3DownloaderHandler handler,
+      ArtifactCache artifactCache) {
     this.configuration = configuration;
     this.s3Configuration = s3Configuration;
     this.handler = handler;
+    this.artifactCache = artifactCache;
+    this.scrubber = Executors.newScheduledThreadPool(1, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("SingularityS3DownloaderScrubber-%d").build());
     this.server = Optional.absent();
   }
 
   @Override
   public void shutdown() {
+    scrubber.shutdownNow();
+
     if (server.isPresent()) {
       try {
         server.get().stop();
@@ -53,8 +68,23 @@ public class SingularityS3DownloaderServer implements SingularityDriver {
     http.setIdleTimeout(configuration.getHttpServerTimeout());
     server.addConnector(http);
 
+    if (configuration.getPrefetchHttpPort() > 0) {
+      Preconditions.checkState(!configuration.getPrefetchToken().isEmpty(), "%s must be set to accept prefetches", SingularityS3DownloaderConfigurationLoader.PREFETCH_TOKEN);
+
+      // reachable by the scheduler (on every interface unless a host is set) - the handler serves nothing but prefetches on this port
+      ServerConnector prefetchHttp = new ServerConnector(server);
+      if (!configuration.getPrefetchHttpHost().isEmpty()) {
+        prefetchHttp.setHost(configuration.getPrefetchHttpHost());
+      }
+      prefetchHttp.setPort(configuration.getPrefetchHttpPort());
+      prefetchHttp.setIdleTimeout(configuration.getHttpServerTimeout());
+      server.addConnector(prefetchHttp);
+    }
+
     server.setHandler(handler);
 
+    startScrubber();
+
     try {
       LOG.info("Starting server on {} (configuration: {})", s3Configuration.getLocalDownloadHttpPort(), configuration);
 
@@ -68,5 +98,27 @@ public class SingularityS3DownloaderServer implements SingularityDriver {
     }
   }
 
+  private void startScrubber() {
+    final long intervalMillis = s3Configuration.getCacheScrubIntervalMillis();
+
+    if (intervalMillis < 1) {
+      return;
+    }
+
+    LOG.info("Scrubbing cached artifacts every {}", JavaUtils.durationFromMillis(intervalMillis));
+
+    scrubber.scheduleWithFixedDelay(new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          artifactCache.scrub();
+        } catch (Throwable t) {
+          LOG.error("While scrubbing cached artifacts", t);
+        }
+      }
+
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
 
 }
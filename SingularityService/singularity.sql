@@ -20,7 +20,7 @@ CREATE TABLE deployHistory (
   deployState VARCHAR(25) NOT NULL,
   bytes BLOB NOT NULL,
   PRIMARY KEY (requestId, deployId),
-  INDEX (requestId, createdAt)
+  INDEX requestCreatedAt (requestId, createdAt, deployId, user, deployStateAt, deployState)
 ) ENGINE=InnoDB;
 
 CREATE TABLE taskHistory (
@@ -29,7 +29,14 @@ CREATE TABLE taskHistory (
   updatedAt TIMESTAMP NOT NULL DEFAULT '1971-01-01 00:00:01',
   lastTaskStatus VARCHAR(25) NULL,
   bytes BLOB NOT NULL,
-  INDEX (requestId, updatedAt)
+  INDEX requestUpdatedAt (requestId, updatedAt, taskId, lastTaskStatus)
+) ENGINE=InnoDB;
+
+CREATE TABLE taskHealthchecks (
+  taskId VARCHAR(200) NOT NULL,
+  timestamp BIGINT NOT NULL,
+  bytes BLOB NOT NULL,
+  PRIMARY KEY (taskId, timestamp)
 ) ENGINE=InnoDB;
 
 CREATE USER 'singularity'@'%' IDENTIFIED BY '';
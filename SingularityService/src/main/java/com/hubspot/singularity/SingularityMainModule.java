@@ -47,6 +47,7 @@ import com.hubspot.singularity.config.ZooKeeperConfiguration;
 import com.hubspot.singularity.guice.DropwizardObjectMapperProvider;
 import com.hubspot.singularity.hooks.LoadBalancerClient;
 import com.hubspot.singularity.hooks.LoadBalancerClientImpl;
+import com.hubspot.singularity.hooks.SingularityArtifactPrefetcher;
 import com.hubspot.singularity.hooks.SingularityWebhookPoller;
 import com.hubspot.singularity.hooks.SingularityWebhookSender;
 import com.hubspot.singularity.sentry.NotifyingExceptionMapper;
@@ -87,6 +88,9 @@ public class SingularityMainModule implements Module {
   public static final String NEW_TASK_THREADPOOL_NAME = "_new_task_threadpool";
   public static final Named NEW_TASK_THREADPOOL_NAMED = Names.named(NEW_TASK_THREADPOOL_NAME);
 
+  public static final String S3_LOG_THREADPOOL_NAME = "_s3_log_threadpool";
+  public static final Named S3_LOG_THREADPOOL_NAMED = Names.named(S3_LOG_THREADPOOL_NAME);
+
   private final SingularityConfiguration configuration;
 
   public SingularityMainModule(final SingularityConfiguration configuration) {
@@ -122,6 +126,7 @@ public class SingularityMainModule implements Module {
     binder.bind(SingularityAbort.class).in(Scopes.SINGLETON);
     binder.bind(SingularityExceptionNotifierManaged.class).in(Scopes.SINGLETON);
     binder.bind(SingularityWebhookSender.class).in(Scopes.SINGLETON);
+    binder.bind(SingularityArtifactPrefetcher.class).in(Scopes.SINGLETON);
 
     binder.bind(NotifyingExceptionMapper.class).in(Scopes.SINGLETON);
 
@@ -143,6 +148,11 @@ public class SingularityMainModule implements Module {
         configuration.getThreadpoolShutdownDelayInSeconds(),
         "check-new-task")).in(Scopes.SINGLETON);
 
+    binder.bind(ScheduledExecutorService.class).annotatedWith(S3_LOG_THREADPOOL_NAMED).toProvider(new SingularityManagedScheduledExecutorServiceProvider(
+        configuration.getS3Configuration().isPresent() ? configuration.getS3Configuration().get().getMaxS3Threads() : 1,
+        configuration.getThreadpoolShutdownDelayInSeconds(),
+        "s3-logs")).in(Scopes.SINGLETON);
+
     try {
       binder.bindConstant().annotatedWith(Names.named(HOST_ADDRESS_PROPERTY)).to(JavaUtils.getHostAddress());
     } catch (SocketException e) {
@@ -6,6 +6,12 @@ import com.google.common.base.Optional;
 
 public class MesosConfiguration {
 
+  public static enum OfferMatchStrategy {
+    FIRST_FIT,
+    BEST_FIT,
+    SPREAD;
+  }
+
   private boolean useNativeCode = true;
 
   @NotNull
@@ -39,6 +45,9 @@ public class MesosConfiguration {
   private int maxMemoryMbPerInstance = 24000;
   private int maxMemoryMbPerRequest = 450000;
 
+  @NotNull
+  private OfferMatchStrategy offerMatchStrategy = OfferMatchStrategy.SPREAD;
+
   public boolean isUseNativeCode() {
     return useNativeCode;
   }
@@ -174,4 +183,12 @@ public class MesosConfiguration {
   public void setSlaveHttpsPort(Optional<Integer> slaveHttpsPort) {
     this.slaveHttpsPort = slaveHttpsPort;
   }
+
+  public OfferMatchStrategy getOfferMatchStrategy() {
+    return offerMatchStrategy;
+  }
+
+  public void setOfferMatchStrategy(OfferMatchStrategy offerMatchStrategy) {
+    this.offerMatchStrategy = offerMatchStrategy;
+  }
 }
@@ -6,8 +6,11 @@ import javax.validation.constraints.NotNull;
 
 public class S3Configuration {
 
+  /**
+   * Threads listing and signing logs, shared by every /logs API call.
+   */
   @NotNull
-  private int maxS3Threads = 3;
+  private int maxS3Threads = 10;
 
   @NotNull
   private int waitForS3ListSeconds = 5;
@@ -22,6 +25,16 @@ public class S3Configuration {
   @NotNull
   private long expireS3LinksAfterMillis = TimeUnit.DAYS.toMillis(1);
 
+  /**
+   * Signed listings of each S3 key prefix are reused for this long, or for half of
+   * expireS3LinksAfterMillis if that is shorter, so links are always valid for a while.
+   */
+  @NotNull
+  private long listingCacheExpireMillis = TimeUnit.MINUTES.toMillis(1);
+
+  @NotNull
+  private int maxCachedListings = 1000;
+
   @NotNull
   private String s3Bucket;
 
@@ -71,6 +84,22 @@ public class S3Configuration {
     this.expireS3LinksAfterMillis = expireS3LinksAfterMillis;
   }
 
+  public long getListingCacheExpireMillis() {
+    return listingCacheExpireMillis;
+  }
+
+  public void setListingCacheExpireMillis(long listingCacheExpireMillis) {
+    this.listingCacheExpireMillis = listingCacheExpireMillis;
+  }
+
+  public int getMaxCachedListings() {
+    return maxCachedListings;
+  }
+
+  public void setMaxCachedListings(int maxCachedListings) {
+    this.maxCachedListings = maxCachedListings;
+  }
+
   public String getS3Bucket() {
     return s3Bucket;
   }
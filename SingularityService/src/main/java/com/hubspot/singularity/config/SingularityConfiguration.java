@@ -16,6 +16,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 import com.hubspot.singularity.SlavePlacement;
+import com.hubspot.singularity.data.transcoders.HistoryBlobCodec;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class SingularityConfiguration extends Configuration {
@@ -24,8 +25,22 @@ public class SingularityConfiguration extends Configuration {
 
   private boolean allowTestResourceCalls = false;
 
+  private int artifactPrefetchMaxSlaves = 10;
+
+  private String artifactPrefetchPath = "/prefetch";
+
+  private int artifactPrefetchPort = 0;
+
+  private String artifactPrefetchToken;
+
   private long askDriverToKillTasksAgainAfterMillis = TimeUnit.MINUTES.toMillis(5);
 
+  private long blendedHistoryCacheExpireMillis = 10000;
+
+  private int blendedHistoryCacheMaxPagesPerRequest = 10;
+
+  private int blendedHistoryCacheMaxRequests = 500;
+
   private long cacheStateForMillis = TimeUnit.SECONDS.toMillis(30);
 
   private long checkDeploysEverySeconds = 5;
@@ -40,8 +55,14 @@ public class SingularityConfiguration extends Configuration {
 
   private long checkSchedulerEverySeconds = 5;
 
+  private long checkTaskMirrorEverySeconds = 60;
+
+  private long checkTrackedStateEverySeconds = 300;
+
   private long checkWebhooksEveryMillis = TimeUnit.SECONDS.toMillis(10);
 
+  private long checkWheelTickMillis = 100;
+
   private long cleanupEverySeconds = 5;
 
   private long closeWaitSeconds = 5;
@@ -66,8 +87,12 @@ public class SingularityConfiguration extends Configuration {
   @NotNull
   private SlavePlacement defaultSlavePlacement = SlavePlacement.GREEDY;
 
+  private double defaultTaskPriorityLevel = 1.0;
+
   private boolean defaultValueForKillTasksOfPausedRequests = true;
 
+  private boolean deferLastActiveTaskStatusWrites = false;
+
   private long deleteDeploysFromZkWhenNoDatabaseAfterHours = TimeUnit.DAYS.toHours(14);
 
   private long deleteStaleRequestsFromZkWhenNoDatabaseAfterHours = TimeUnit.DAYS.toHours(14);
@@ -82,12 +107,22 @@ public class SingularityConfiguration extends Configuration {
 
   private boolean enableCorsFilter = false;
 
+  private long flushLastActiveTaskStatusesEveryMillis = 1000;
+
   private long healthcheckIntervalSeconds = 5;
 
+  private int healthcheckMaxConcurrentRequests = 100;
+
   private int healthcheckStartThreads = 3;
 
   private long healthcheckTimeoutSeconds = 5;
 
+  private HistoryBlobCodec historyBlobCodec;
+
+  private int historyPersisterBatchSize = 500;
+
+  private int historyRecompressionBatchSize = 200;
+
   private String hostname;
 
   private long killAfterTasksDoNotRunDefaultSeconds = 600;
@@ -96,6 +131,10 @@ public class SingularityConfiguration extends Configuration {
 
   private int listenerThreadpoolSize = 3;
 
+  private String loadBalancerBatchStateUri;
+
+  private int loadBalancerMaxConcurrentRequests = 20;
+
   @JsonProperty("loadBalancerQueryParams")
   private Map<String, String> loadBalancerQueryParams;
 
@@ -109,6 +148,8 @@ public class SingularityConfiguration extends Configuration {
 
   private int maxHealthcheckResponseBodyBytes = 8192;
 
+  private int maxHealthcheckResultsPerTask = 25;
+
   private int maxQueuedUpdatesPerWebhook = 50;
 
   private int maxRequestIdSize = 100;
@@ -121,6 +162,8 @@ public class SingularityConfiguration extends Configuration {
 
   private long persistHistoryEverySeconds = TimeUnit.HOURS.toSeconds(1);
 
+  private long recompressHistoryEverySeconds = 60;
+
   @JsonProperty("s3")
   private S3Configuration s3Configuration;
 
@@ -130,6 +173,8 @@ public class SingularityConfiguration extends Configuration {
 
   private long saveStateEverySeconds = 60;
 
+  private long schedulerPriorityHalfLifeSeconds = TimeUnit.MINUTES.toSeconds(5);
+
   @JsonProperty("sentry")
   private SentryConfiguration sentryConfiguration;
 
@@ -138,6 +183,10 @@ public class SingularityConfiguration extends Configuration {
 
   private long startNewReconcileEverySeconds = TimeUnit.MINUTES.toSeconds(10);
 
+  private int statusUpdateLanes = 4;
+
+  private long statusUpdateQueueDrainTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+
   @JsonProperty("ui")
   @Valid
   private UIConfiguration uiConfiguration = new UIConfiguration();
@@ -149,6 +198,10 @@ public class SingularityConfiguration extends Configuration {
 
   private int warnIfScheduledJobIsRunningPastNextRunPct = 200;
 
+  private boolean writeBinaryDataObjects = false;
+
+  private int zookeeperAsyncMaxInFlight = 200;
+
   private long zookeeperAsyncTimeout = 5000;
 
   private int coreThreadpoolSize = 8;
@@ -170,10 +223,38 @@ public class SingularityConfiguration extends Configuration {
   @Valid
   private ZooKeeperConfiguration zooKeeperConfiguration;
 
+  public int getArtifactPrefetchMaxSlaves() {
+    return artifactPrefetchMaxSlaves;
+  }
+
+  public String getArtifactPrefetchPath() {
+    return artifactPrefetchPath;
+  }
+
+  public int getArtifactPrefetchPort() {
+    return artifactPrefetchPort;
+  }
+
+  public Optional<String> getArtifactPrefetchToken() {
+    return Optional.fromNullable(artifactPrefetchToken);
+  }
+
   public long getAskDriverToKillTasksAgainAfterMillis() {
     return askDriverToKillTasksAgainAfterMillis;
   }
 
+  public long getBlendedHistoryCacheExpireMillis() {
+    return blendedHistoryCacheExpireMillis;
+  }
+
+  public int getBlendedHistoryCacheMaxPagesPerRequest() {
+    return blendedHistoryCacheMaxPagesPerRequest;
+  }
+
+  public int getBlendedHistoryCacheMaxRequests() {
+    return blendedHistoryCacheMaxRequests;
+  }
+
   public long getCacheStateForMillis() {
     return cacheStateForMillis;
   }
@@ -202,10 +283,22 @@ public class SingularityConfiguration extends Configuration {
     return checkSchedulerEverySeconds;
   }
 
+  public long getCheckTaskMirrorEverySeconds() {
+    return checkTaskMirrorEverySeconds;
+  }
+
+  public long getCheckTrackedStateEverySeconds() {
+    return checkTrackedStateEverySeconds;
+  }
+
   public long getCheckWebhooksEveryMillis() {
     return checkWebhooksEveryMillis;
   }
 
+  public long getCheckWheelTickMillis() {
+    return checkWheelTickMillis;
+  }
+
   public long getCleanupEverySeconds() {
     return cleanupEverySeconds;
   }
@@ -250,6 +343,10 @@ public class SingularityConfiguration extends Configuration {
     return defaultSlavePlacement;
   }
 
+  public double getDefaultTaskPriorityLevel() {
+    return defaultTaskPriorityLevel;
+  }
+
   public long getDeleteDeploysFromZkWhenNoDatabaseAfterHours() {
     return deleteDeploysFromZkWhenNoDatabaseAfterHours;
   }
@@ -274,10 +371,18 @@ public class SingularityConfiguration extends Configuration {
     return deployHealthyBySeconds;
   }
 
+  public long getFlushLastActiveTaskStatusesEveryMillis() {
+    return flushLastActiveTaskStatusesEveryMillis;
+  }
+
   public long getHealthcheckIntervalSeconds() {
     return healthcheckIntervalSeconds;
   }
 
+  public int getHealthcheckMaxConcurrentRequests() {
+    return healthcheckMaxConcurrentRequests;
+  }
+
   public int getHealthcheckStartThreads() {
     return healthcheckStartThreads;
   }
@@ -286,6 +391,18 @@ public class SingularityConfiguration extends Configuration {
     return healthcheckTimeoutSeconds;
   }
 
+  public Optional<HistoryBlobCodec> getHistoryBlobCodec() {
+    return Optional.fromNullable(historyBlobCodec);
+  }
+
+  public int getHistoryPersisterBatchSize() {
+    return historyPersisterBatchSize;
+  }
+
+  public int getHistoryRecompressionBatchSize() {
+    return historyRecompressionBatchSize;
+  }
+
   public Optional<String> getHostname() {
     return Optional.fromNullable(Strings.emptyToNull(hostname));
   }
@@ -302,6 +419,14 @@ public class SingularityConfiguration extends Configuration {
     return listenerThreadpoolSize;
   }
 
+  public Optional<String> getLoadBalancerBatchStateUri() {
+    return Optional.fromNullable(Strings.emptyToNull(loadBalancerBatchStateUri));
+  }
+
+  public int getLoadBalancerMaxConcurrentRequests() {
+    return loadBalancerMaxConcurrentRequests;
+  }
+
   public Optional<Map<String, String>> getLoadBalancerQueryParams() {
     return Optional.fromNullable(loadBalancerQueryParams);
   }
@@ -326,6 +451,10 @@ public class SingularityConfiguration extends Configuration {
     return maxHealthcheckResponseBodyBytes;
   }
 
+  public int getMaxHealthcheckResultsPerTask() {
+    return maxHealthcheckResultsPerTask;
+  }
+
   public int getMaxQueuedUpdatesPerWebhook() {
     return maxQueuedUpdatesPerWebhook;
   }
@@ -346,6 +475,10 @@ public class SingularityConfiguration extends Configuration {
     return persistHistoryEverySeconds;
   }
 
+  public long getRecompressHistoryEverySeconds() {
+    return recompressHistoryEverySeconds;
+  }
+
   public Optional<S3Configuration> getS3Configuration() {
     return Optional.fromNullable(s3Configuration);
   }
@@ -358,6 +491,10 @@ public class SingularityConfiguration extends Configuration {
     return saveStateEverySeconds;
   }
 
+  public long getSchedulerPriorityHalfLifeSeconds() {
+    return schedulerPriorityHalfLifeSeconds;
+  }
+
   public Optional<SentryConfiguration> getSentryConfiguration(){
     return Optional.fromNullable(sentryConfiguration);
   }
@@ -370,6 +507,14 @@ public class SingularityConfiguration extends Configuration {
     return startNewReconcileEverySeconds;
   }
 
+  public int getStatusUpdateLanes() {
+    return statusUpdateLanes;
+  }
+
+  public long getStatusUpdateQueueDrainTimeoutMillis() {
+    return statusUpdateQueueDrainTimeoutMillis;
+  }
+
   public long getThreadpoolShutdownDelayInSeconds() {
     return threadpoolShutdownDelayInSeconds;
   }
@@ -386,6 +531,10 @@ public class SingularityConfiguration extends Configuration {
     return warnIfScheduledJobIsRunningPastNextRunPct;
   }
 
+  public int getZookeeperAsyncMaxInFlight() {
+    return zookeeperAsyncMaxInFlight;
+  }
+
   public long getZookeeperAsyncTimeout() {
     return zookeeperAsyncTimeout;
   }
@@ -410,6 +559,10 @@ public class SingularityConfiguration extends Configuration {
     return defaultValueForKillTasksOfPausedRequests;
   }
 
+  public boolean isDeferLastActiveTaskStatusWrites() {
+    return deferLastActiveTaskStatusWrites;
+  }
+
   public boolean isEnableCorsFilter() {
     return enableCorsFilter;
   }
@@ -422,6 +575,10 @@ public class SingularityConfiguration extends Configuration {
     return waitForListeners;
   }
 
+  public boolean isWriteBinaryDataObjects() {
+    return writeBinaryDataObjects;
+  }
+
   public void setAllowRequestsWithoutOwners(boolean allowRequestsWithoutOwners) {
     this.allowRequestsWithoutOwners = allowRequestsWithoutOwners;
   }
@@ -430,10 +587,38 @@ public class SingularityConfiguration extends Configuration {
     this.allowTestResourceCalls = allowTestResourceCalls;
   }
 
+  public void setArtifactPrefetchMaxSlaves(int artifactPrefetchMaxSlaves) {
+    this.artifactPrefetchMaxSlaves = artifactPrefetchMaxSlaves;
+  }
+
+  public void setArtifactPrefetchPath(String artifactPrefetchPath) {
+    this.artifactPrefetchPath = artifactPrefetchPath;
+  }
+
+  public void setArtifactPrefetchPort(int artifactPrefetchPort) {
+    this.artifactPrefetchPort = artifactPrefetchPort;
+  }
+
+  public void setArtifactPrefetchToken(String artifactPrefetchToken) {
+    this.artifactPrefetchToken = artifactPrefetchToken;
+  }
+
   public void setAskDriverToKillTasksAgainAfterMillis(long askDriverToKillTasksAgainAfterMillis) {
     this.askDriverToKillTasksAgainAfterMillis = askDriverToKillTasksAgainAfterMillis;
   }
 
+  public void setBlendedHistoryCacheExpireMillis(long blendedHistoryCacheExpireMillis) {
+    this.blendedHistoryCacheExpireMillis = blendedHistoryCacheExpireMillis;
+  }
+
+  public void setBlendedHistoryCacheMaxPagesPerRequest(int blendedHistoryCacheMaxPagesPerRequest) {
+    this.blendedHistoryCacheMaxPagesPerRequest = blendedHistoryCacheMaxPagesPerRequest;
+  }
+
+  public void setBlendedHistoryCacheMaxRequests(int blendedHistoryCacheMaxRequests) {
+    this.blendedHistoryCacheMaxRequests = blendedHistoryCacheMaxRequests;
+  }
+
   public void setCacheStateForMillis(long cacheStateForMillis) {
     this.cacheStateForMillis = cacheStateForMillis;
   }
@@ -462,10 +647,22 @@ public class SingularityConfiguration extends Configuration {
     this.checkSchedulerEverySeconds = checkSchedulerEverySeconds;
   }
 
+  public void setCheckTaskMirrorEverySeconds(long checkTaskMirrorEverySeconds) {
+    this.checkTaskMirrorEverySeconds = checkTaskMirrorEverySeconds;
+  }
+
+  public void setCheckTrackedStateEverySeconds(long checkTrackedStateEverySeconds) {
+    this.checkTrackedStateEverySeconds = checkTrackedStateEverySeconds;
+  }
+
   public void setCheckWebhooksEveryMillis(long checkWebhooksEveryMillis) {
     this.checkWebhooksEveryMillis = checkWebhooksEveryMillis;
   }
 
+  public void setCheckWheelTickMillis(long checkWheelTickMillis) {
+    this.checkWheelTickMillis = checkWheelTickMillis;
+  }
+
   public void setCleanupEverySeconds(long cleanupEverySeconds) {
     this.cleanupEverySeconds = cleanupEverySeconds;
   }
@@ -514,10 +711,18 @@ public class SingularityConfiguration extends Configuration {
     this.defaultSlavePlacement = defaultSlavePlacement;
   }
 
+  public void setDefaultTaskPriorityLevel(double defaultTaskPriorityLevel) {
+    this.defaultTaskPriorityLevel = defaultTaskPriorityLevel;
+  }
+
   public void setDefaultValueForKillTasksOfPausedRequests(boolean defaultValueForKillTasksOfPausedRequests) {
     this.defaultValueForKillTasksOfPausedRequests = defaultValueForKillTasksOfPausedRequests;
   }
 
+  public void setDeferLastActiveTaskStatusWrites(boolean deferLastActiveTaskStatusWrites) {
+    this.deferLastActiveTaskStatusWrites = deferLastActiveTaskStatusWrites;
+  }
+
   public void setDeleteDeploysFromZkWhenNoDatabaseAfterHours(long deleteDeploysFromZkWhenNoDatabaseAfterHours) {
     this.deleteDeploysFromZkWhenNoDatabaseAfterHours = deleteDeploysFromZkWhenNoDatabaseAfterHours;
   }
@@ -546,10 +751,18 @@ public class SingularityConfiguration extends Configuration {
     this.enableCorsFilter = enableCorsFilter;
   }
 
+  public void setFlushLastActiveTaskStatusesEveryMillis(long flushLastActiveTaskStatusesEveryMillis) {
+    this.flushLastActiveTaskStatusesEveryMillis = flushLastActiveTaskStatusesEveryMillis;
+  }
+
   public void setHealthcheckIntervalSeconds(long healthcheckIntervalSeconds) {
     this.healthcheckIntervalSeconds = healthcheckIntervalSeconds;
   }
 
+  public void setHealthcheckMaxConcurrentRequests(int healthcheckMaxConcurrentRequests) {
+    this.healthcheckMaxConcurrentRequests = healthcheckMaxConcurrentRequests;
+  }
+
   public void setHealthcheckStartThreads(int healthcheckStartThreads) {
     this.healthcheckStartThreads = healthcheckStartThreads;
   }
@@ -558,6 +771,18 @@ public class SingularityConfiguration extends Configuration {
     this.healthcheckTimeoutSeconds = healthcheckTimeoutSeconds;
   }
 
+  public void setHistoryBlobCodec(HistoryBlobCodec historyBlobCodec) {
+    this.historyBlobCodec = historyBlobCodec;
+  }
+
+  public void setHistoryPersisterBatchSize(int historyPersisterBatchSize) {
+    this.historyPersisterBatchSize = historyPersisterBatchSize;
+  }
+
+  public void setHistoryRecompressionBatchSize(int historyRecompressionBatchSize) {
+    this.historyRecompressionBatchSize = historyRecompressionBatchSize;
+  }
+
   public void setHostname(String hostname) {
     this.hostname = hostname;
   }
@@ -574,6 +799,14 @@ public class SingularityConfiguration extends Configuration {
     this.listenerThreadpoolSize = listenerThreadpoolSize;
   }
 
+  public void setLoadBalancerBatchStateUri(String loadBalancerBatchStateUri) {
+    this.loadBalancerBatchStateUri = loadBalancerBatchStateUri;
+  }
+
+  public void setLoadBalancerMaxConcurrentRequests(int loadBalancerMaxConcurrentRequests) {
+    this.loadBalancerMaxConcurrentRequests = loadBalancerMaxConcurrentRequests;
+  }
+
   public void setLoadBalancerQueryParams(Map<String, String> loadBalancerQueryParams) {
     this.loadBalancerQueryParams = loadBalancerQueryParams;
   }
@@ -598,6 +831,10 @@ public class SingularityConfiguration extends Configuration {
     this.maxHealthcheckResponseBodyBytes = maxHealthcheckResponseBodyBytes;
   }
 
+  public void setMaxHealthcheckResultsPerTask(int maxHealthcheckResultsPerTask) {
+    this.maxHealthcheckResultsPerTask = maxHealthcheckResultsPerTask;
+  }
+
   public void setMaxQueuedUpdatesPerWebhook(int maxQueuedUpdatesPerWebhook) {
     this.maxQueuedUpdatesPerWebhook = maxQueuedUpdatesPerWebhook;
   }
@@ -618,6 +855,10 @@ public class SingularityConfiguration extends Configuration {
     this.persistHistoryEverySeconds = persistHistoryEverySeconds;
   }
 
+  public void setRecompressHistoryEverySeconds(long recompressHistoryEverySeconds) {
+    this.recompressHistoryEverySeconds = recompressHistoryEverySeconds;
+  }
+
   public void setS3Configuration(S3Configuration s3Configuration) {
     this.s3Configuration = s3Configuration;
   }
@@ -634,6 +875,10 @@ public class SingularityConfiguration extends Configuration {
     this.saveStateEverySeconds = saveStateEverySeconds;
   }
 
+  public void setSchedulerPriorityHalfLifeSeconds(long schedulerPriorityHalfLifeSeconds) {
+    this.schedulerPriorityHalfLifeSeconds = schedulerPriorityHalfLifeSeconds;
+  }
+
   public void setSentryConfiguration(SentryConfiguration sentryConfiguration){
     this.sentryConfiguration = sentryConfiguration;
   }
@@ -646,6 +891,14 @@ public class SingularityConfiguration extends Configuration {
     this.startNewReconcileEverySeconds = startNewReconcileEverySeconds;
   }
 
+  public void setStatusUpdateLanes(int statusUpdateLanes) {
+    this.statusUpdateLanes = statusUpdateLanes;
+  }
+
+  public void setStatusUpdateQueueDrainTimeoutMillis(long statusUpdateQueueDrainTimeoutMillis) {
+    this.statusUpdateQueueDrainTimeoutMillis = statusUpdateQueueDrainTimeoutMillis;
+  }
+
   public void setUiConfiguration(UIConfiguration uiConfiguration) {
     this.uiConfiguration = uiConfiguration;
   }
@@ -662,6 +915,14 @@ public class SingularityConfiguration extends Configuration {
     this.warnIfScheduledJobIsRunningPastNextRunPct = warnIfScheduledJobIsRunningPastNextRunPct;
   }
 
+  public void setWriteBinaryDataObjects(boolean writeBinaryDataObjects) {
+    this.writeBinaryDataObjects = writeBinaryDataObjects;
+  }
+
+  public void setZookeeperAsyncMaxInFlight(int zookeeperAsyncMaxInFlight) {
+    this.zookeeperAsyncMaxInFlight = zookeeperAsyncMaxInFlight;
+  }
+
   public void setZookeeperAsyncTimeout(long zookeeperAsyncTimeout) {
     this.zookeeperAsyncTimeout = zookeeperAsyncTimeout;
   }
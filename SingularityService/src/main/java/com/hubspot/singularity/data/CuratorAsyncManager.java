@@ -1,23 +1,34 @@
 package com.hubspot.singularity.data;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.api.BackgroundCallback;
 import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.SingularityDeleteResult;
 import com.hubspot.singularity.SingularityId;
+import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.transcoders.IdTranscoder;
 import com.hubspot.singularity.data.transcoders.Transcoder;
 import com.hubspot.singularity.data.transcoders.Transcoders;
@@ -26,116 +37,228 @@ public abstract class CuratorAsyncManager extends CuratorManager {
 
   private static final Logger LOG = LoggerFactory.getLogger(CuratorAsyncManager.class);
 
+  private static final int MAX_MISSING_PATHS_TO_LOG = 10;
+  private static final int MAX_WRITE_BATCH_BYTES = 512 * 1024;
+
   private final long zkAsyncTimeout;
+  private final int maxInFlight;
+  private final MetricRegistry metricRegistry;
 
-  public CuratorAsyncManager(CuratorFramework curator, long zkAsyncTimeout) {
+  public CuratorAsyncManager(CuratorFramework curator, SingularityConfiguration configuration, MetricRegistry metricRegistry) {
     super(curator);
 
-    this.zkAsyncTimeout = zkAsyncTimeout;
+    this.zkAsyncTimeout = configuration.getZookeeperAsyncTimeout();
+    this.maxInFlight = Math.max(1, configuration.getZookeeperAsyncMaxInFlight());
+    this.metricRegistry = metricRegistry;
   }
 
-  private <T> List<T> getAsyncChildrenThrows(final String parent, final Transcoder<T> transcoder) throws Exception {
-    final List<String> children = getChildren(parent);
+  private enum AsyncOperation {
+    GET_DATA, GET_CHILDREN, CHECK_EXISTS;
+
+    private void inBackground(CuratorFramework curator, String path, BackgroundCallback callback) throws Exception {
+      switch (this) {
+        case GET_DATA:
+          curator.getData().inBackground(callback).forPath(path);
+          break;
+        case GET_CHILDREN:
+          curator.getChildren().inBackground(callback).forPath(path);
+          break;
+        case CHECK_EXISTS:
+          curator.checkExists().inBackground(callback).forPath(path);
+          break;
+      }
+    }
 
-    LOG.trace("Fetched {} children from path {}", children.size(), parent);
+    private String getMetricName() {
+      return name().toLowerCase();
+    }
+  }
 
-    final List<String> paths = Lists.newArrayListWithCapacity(children.size());
+  /**
+   * Turns the result of a background call into an object, or null if there was nothing at that path.
+   */
+  private interface AsyncResultTranslator<T> {
 
-    for (String child : children) {
-      paths.add(ZKPaths.makePath(parent, child));
-    }
+    T translate(CuratorEvent event) throws Exception;
 
-    return getAsyncThrows(parent, paths, transcoder);
   }
 
-  private <T> List<T> getAsyncThrows(final String pathNameForLogs, final Collection<String> paths, final Transcoder<T> transcoder) throws Exception {
-    final List<T> objects = Lists.newArrayListWithCapacity(paths.size());
-
+  /**
+   * Runs the operation against every path, never having more than maxInFlight requests outstanding. The results are returned in
+   * the same order as the paths they were read from, with missing paths left out.
+   */
+  private <T> List<T> queueAndWait(final String pathNameForLogs, final Collection<String> paths, final AsyncOperation operation, final AsyncResultTranslator<T> translator)
+      throws Exception {
     if (paths.isEmpty()) {
-      return objects;
+      return Lists.newArrayList();
     }
 
-    final CountDownLatch latch = new CountDownLatch(paths.size());
-    final AtomicInteger missing = new AtomicInteger();
+    final List<String> pathList = ImmutableList.copyOf(paths);
+    final AtomicReferenceArray<T> results = queueAndWait(pathNameForLogs, pathList, operation, translator);
 
-    final BackgroundCallback callback = new BackgroundCallback() {
+    final List<T> objects = Lists.newArrayListWithCapacity(pathList.size());
 
-      @Override
-      public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
-        if (event.getData() == null || event.getData().length == 0) {
-          LOG.trace("Expected active node {} but it wasn't there", event.getPath());
+    for (int i = 0; i < pathList.size(); i++) {
+      if (results.get(i) != null) {
+        objects.add(results.get(i));
+      }
+    }
 
-          missing.incrementAndGet();
-          latch.countDown();
+    return objects;
+  }
 
-          return;
-        }
+  /**
+   * Like queueAndWait, but keyed by the path each result was read from.
+   */
+  private <T> Map<String, T> queueAndWaitByPath(final String pathNameForLogs, final Collection<String> paths, final AsyncOperation operation, final AsyncResultTranslator<T> translator)
+      throws Exception {
+    if (paths.isEmpty()) {
+      return Maps.newHashMap();
+    }
+
+    final List<String> pathList = ImmutableList.copyOf(paths);
+    final AtomicReferenceArray<T> results = queueAndWait(pathNameForLogs, pathList, operation, translator);
 
-        objects.add(transcoder.fromBytes(event.getData()));
+    final Map<String, T> objects = Maps.newHashMapWithExpectedSize(pathList.size());
 
-        latch.countDown();
+    for (int i = 0; i < pathList.size(); i++) {
+      if (results.get(i) != null) {
+        objects.put(pathList.get(i), results.get(i));
       }
-    };
+    }
+
+    return objects;
+  }
+
+  private <T> AtomicReferenceArray<T> queueAndWait(final String pathNameForLogs, final List<String> pathList, final AsyncOperation operation, final AsyncResultTranslator<T> translator)
+      throws Exception {
+    final AtomicReferenceArray<T> results = new AtomicReferenceArray<>(pathList.size());
+    final AtomicReference<Exception> firstError = new AtomicReference<>();
+    final CountDownLatch latch = new CountDownLatch(pathList.size());
+    final Semaphore inFlight = new Semaphore(maxInFlight);
 
     final long start = System.currentTimeMillis();
 
-    for (String path : paths) {
-      curator.getData().inBackground(callback).forPath(path);
+    for (int i = 0; i < pathList.size(); i++) {
+      if (!inFlight.tryAcquire(zkAsyncTimeout, TimeUnit.MILLISECONDS)) {
+        throw new IllegalStateException(String.format("Timed out waiting to send request %s of %s for objects from %s, waited %s millis", i + 1, pathList.size(), pathNameForLogs, zkAsyncTimeout));
+      }
+
+      final int index = i;
+
+      final BackgroundCallback callback = new BackgroundCallback() {
+
+        @Override
+        public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+          try {
+            results.set(index, translator.translate(event));
+          } catch (Exception e) {
+            firstError.compareAndSet(null, e);
+          } finally {
+            inFlight.release();
+            latch.countDown();
+          }
+        }
+      };
+
+      try {
+        operation.inBackground(curator, pathList.get(i), callback);
+      } catch (Exception e) {
+        inFlight.release();
+        throw e;
+      }
     }
 
     checkLatch(latch, pathNameForLogs);
 
-    LOG.trace("Fetched {} objects from {} (missing {}) in {}", objects.size(), pathNameForLogs, missing.intValue(), JavaUtils.duration(start));
+    if (firstError.get() != null) {
+      throw firstError.get();
+    }
 
-    return objects;
-  }
+    final List<String> missingPaths = Lists.newArrayList();
 
-  private void checkLatch(CountDownLatch latch, String path) throws InterruptedException {
-    if (!latch.await(zkAsyncTimeout, TimeUnit.MILLISECONDS)) {
-      throw new IllegalStateException(String.format("Timed out waiting response for objects from %s, waited %s millis", path, zkAsyncTimeout));
+    for (int i = 0; i < pathList.size(); i++) {
+      if (results.get(i) == null) {
+        missingPaths.add(pathList.get(i));
+      }
     }
-  }
 
-  private <T extends SingularityId> List<T> getChildrenAsIdsForParentsThrows(final String pathNameforLogs, final Collection<String> parents, final IdTranscoder<T> idTranscoder) throws Exception {
-    if (parents.isEmpty()) {
-      return Collections.emptyList();
+    final long duration = System.currentTimeMillis() - start;
+
+    updateMetrics(operation, pathList.size(), missingPaths.size(), duration);
+
+    if (!missingPaths.isEmpty()) {
+      LOG.trace("{} of {} paths from {} were missing ({}{})", missingPaths.size(), pathList.size(), pathNameForLogs, Iterables.limit(missingPaths, MAX_MISSING_PATHS_TO_LOG),
+          missingPaths.size() > MAX_MISSING_PATHS_TO_LOG ? " ..." : "");
     }
 
-    final List<T> objects = Lists.newArrayListWithExpectedSize(parents.size());
+    LOG.trace("Fetched {} objects from {} (missing {}) in {}", pathList.size() - missingPaths.size(), pathNameForLogs, missingPaths.size(), JavaUtils.durationFromMillis(duration));
 
-    final CountDownLatch latch = new CountDownLatch(parents.size());
-    final AtomicInteger missing = new AtomicInteger();
+    return results;
+  }
 
-    final BackgroundCallback callback = new BackgroundCallback() {
+  private void updateMetrics(AsyncOperation operation, int batchSize, int missing, long duration) {
+    final Histogram batchMillis = metricRegistry.histogram(MetricRegistry.name(CuratorAsyncManager.class, operation.getMetricName(), "batchMillis"));
+    final Histogram batchSizes = metricRegistry.histogram(MetricRegistry.name(CuratorAsyncManager.class, operation.getMetricName(), "batchSize"));
+    final Meter missingPaths = metricRegistry.meter(MetricRegistry.name(CuratorAsyncManager.class, operation.getMetricName(), "missing"));
 
-      @Override
-      public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
-        if (event.getChildren() == null || event.getChildren().size() == 0) {
-          LOG.trace("Expected children for node {} - but found none", event.getPath());
+    batchMillis.update(duration);
+    batchSizes.update(batchSize);
+    missingPaths.mark(missing);
+  }
+
+  private <T> List<T> getAsyncChildrenThrows(final String parent, final Transcoder<T> transcoder) throws Exception {
+    final List<String> children = getChildren(parent);
 
-          missing.incrementAndGet();
-          latch.countDown();
+    LOG.trace("Fetched {} children from path {}", children.size(), parent);
 
-          return;
-        }
+    final List<String> paths = Lists.newArrayListWithCapacity(children.size());
+
+    for (String child : children) {
+      paths.add(ZKPaths.makePath(parent, child));
+    }
+
+    return getAsyncThrows(parent, paths, transcoder);
+  }
+
+  private <T> List<T> getAsyncThrows(final String pathNameForLogs, final Collection<String> paths, final Transcoder<T> transcoder) throws Exception {
+    return queueAndWait(pathNameForLogs, paths, AsyncOperation.GET_DATA, new AsyncResultTranslator<T>() {
 
-        objects.addAll(Lists.transform(event.getChildren(), Transcoders.getFromStringFunction(idTranscoder)));
+      @Override
+      public T translate(CuratorEvent event) throws Exception {
+        if (event.getData() == null || event.getData().length == 0) {
+          LOG.trace("Expected active node {} but it wasn't there", event.getPath());
+          return null;
+        }
 
-        latch.countDown();
+        return transcoder.fromBytes(event.getData());
       }
-    };
 
-    final long start = System.currentTimeMillis();
+    });
+  }
 
-    for (String parent : parents) {
-      curator.getChildren().inBackground(callback).forPath(parent);
+  private void checkLatch(CountDownLatch latch, String path) throws InterruptedException {
+    if (!latch.await(zkAsyncTimeout, TimeUnit.MILLISECONDS)) {
+      throw new IllegalStateException(String.format("Timed out waiting response for %s objects from %s, waited %s millis", latch.getCount(), path, zkAsyncTimeout));
     }
+  }
+
+  private <T extends SingularityId> List<T> getChildrenAsIdsForParentsThrows(final String pathNameforLogs, final Collection<String> parents, final IdTranscoder<T> idTranscoder) throws Exception {
+    final List<List<T>> children = queueAndWait(pathNameforLogs, parents, AsyncOperation.GET_CHILDREN, new AsyncResultTranslator<List<T>>() {
+
+      @Override
+      public List<T> translate(CuratorEvent event) throws Exception {
+        if (event.getChildren() == null || event.getChildren().size() == 0) {
+          LOG.trace("Expected children for node {} - but found none", event.getPath());
+          return null;
+        }
 
-    checkLatch(latch, pathNameforLogs);
+        return Lists.transform(event.getChildren(), Transcoders.getFromStringFunction(idTranscoder));
+      }
 
-    LOG.trace("Fetched {} objects from {} (missing {}) in {}", objects.size(), pathNameforLogs, missing.intValue(), JavaUtils.duration(start));
+    });
 
-    return objects;
+    return Lists.newArrayList(Iterables.concat(children));
   }
 
   protected <T extends SingularityId> List<T> getChildrenAsIdsForParents(final String pathNameforLogs, final Collection<String> parents, final IdTranscoder<T> idTranscoder) {
@@ -151,41 +274,18 @@ public abstract class CuratorAsyncManager extends CuratorManager {
   }
 
   private <T extends SingularityId> List<T> existsThrows(final String pathNameforLogs, final Collection<String> paths, final IdTranscoder<T> idTranscoder) throws Exception {
-    if (paths.isEmpty()) {
-      return Collections.emptyList();
-    }
-
-    final List<T> objects = Lists.newArrayListWithCapacity(paths.size());
-
-    final CountDownLatch latch = new CountDownLatch(paths.size());
-
-    final BackgroundCallback callback = new BackgroundCallback() {
+    return queueAndWait(pathNameforLogs, paths, AsyncOperation.CHECK_EXISTS, new AsyncResultTranslator<T>() {
 
       @Override
-      public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+      public T translate(CuratorEvent event) throws Exception {
         if (event.getStat() == null) {
-          latch.countDown();
-
-          return;
+          return null;
         }
 
-        objects.add(Transcoders.getFromStringFunction(idTranscoder).apply(ZKPaths.getNodeFromPath(event.getPath())));
-
-        latch.countDown();
+        return Transcoders.getFromStringFunction(idTranscoder).apply(ZKPaths.getNodeFromPath(event.getPath()));
       }
-    };
-
-    final long start = System.currentTimeMillis();
-
-    for (String path : paths) {
-      curator.checkExists().inBackground(callback).forPath(path);
-    }
 
-    checkLatch(latch, pathNameforLogs);
-
-    LOG.trace("Found {} objects out of {} from {} in {}", objects.size(), paths.size(), pathNameforLogs, JavaUtils.duration(start));
-
-    return objects;
+    });
   }
 
   protected <T extends SingularityId> List<T> exists(final String pathNameForLogs, final Collection<String> paths, final IdTranscoder<T> idTranscoder) {
@@ -212,5 +312,181 @@ public abstract class CuratorAsyncManager extends CuratorManager {
     }
   }
 
-}
+  private <T> AsyncResultTranslator<T> getDataTranslator(final Transcoder<T> transcoder) {
+    return new AsyncResultTranslator<T>() {
+
+      @Override
+      public T translate(CuratorEvent event) throws Exception {
+        if (event.getData() == null || event.getData().length == 0) {
+          return null;
+        }
+
+        return transcoder.fromBytes(event.getData());
+      }
+
+    };
+  }
+
+  private static final AsyncResultTranslator<List<String>> CHILDREN_TRANSLATOR = new AsyncResultTranslator<List<String>>() {
+
+    @Override
+    public List<String> translate(CuratorEvent event) throws Exception {
+      if (event.getChildren() == null || event.getChildren().isEmpty()) {
+        return null;
+      }
+
+      return event.getChildren();
+    }
 
+  };
+
+  /**
+   * Reads every path, keyed by path. Paths which are missing or empty are left out.
+   */
+  protected <T> Map<String, T> getAsyncByPath(final String pathNameForLogs, final Collection<String> paths, final Transcoder<T> transcoder) {
+    try {
+      return queueAndWaitByPath(pathNameForLogs, paths, AsyncOperation.GET_DATA, getDataTranslator(transcoder));
+    } catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
+  }
+
+  /**
+   * Lists the children of every parent, keyed by parent. Parents which are missing or have no children are left out.
+   */
+  protected Map<String, List<String>> getChildrenByParent(final String pathNameForLogs, final Collection<String> parents) {
+    try {
+      return queueAndWaitByPath(pathNameForLogs, parents, AsyncOperation.GET_CHILDREN, CHILDREN_TRANSLATOR);
+    } catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
+  }
+
+  /**
+   * Reads every child of every parent, keyed by parent, in two rounds of background requests.
+   */
+  protected <T> Map<String, List<T>> getAsyncChildrenByParent(final String pathNameForLogs, final Collection<String> parents, final Transcoder<T> transcoder) {
+    final Map<String, List<String>> childrenByParent = getChildrenByParent(pathNameForLogs, parents);
+    final List<String> childPaths = Lists.newArrayList();
+
+    for (Map.Entry<String, List<String>> children : childrenByParent.entrySet()) {
+      for (String child : children.getValue()) {
+        childPaths.add(ZKPaths.makePath(children.getKey(), child));
+      }
+    }
+
+    final Map<String, T> childData = getAsyncByPath(pathNameForLogs, childPaths, transcoder);
+    final Map<String, List<T>> results = Maps.newHashMapWithExpectedSize(childrenByParent.size());
+
+    for (Map.Entry<String, List<String>> children : childrenByParent.entrySet()) {
+      final List<T> parentResults = Lists.newArrayListWithCapacity(children.getValue().size());
+
+      for (String child : children.getValue()) {
+        final T data = childData.get(ZKPaths.makePath(children.getKey(), child));
+
+        if (data != null) {
+          parentResults.add(data);
+        }
+      }
+
+      results.put(children.getKey(), parentResults);
+    }
+
+    return results;
+  }
+
+  /**
+   * Deletes every path along with everything under it. The trees are listed a level at a time in background requests and deleted
+   * leaves first in as few multi-ops as fit under the ZooKeeper request size, never splitting one path across two. Paths in a
+   * multi-op which fails (for instance because a node was added under one in the meantime) are deleted one at a time instead.
+   *
+   * @return the number of paths which were deleted
+   */
+  protected int deleteRecursively(final String pathNameForLogs, final Collection<String> paths) {
+    final long start = System.currentTimeMillis();
+
+    final Map<String, List<String>> descendants = Maps.newHashMapWithExpectedSize(paths.size());
+    final Map<String, String> rootOf = Maps.newHashMap();
+
+    for (String path : paths) {
+      descendants.put(path, Lists.<String> newArrayList());
+      rootOf.put(path, path);
+    }
+
+    Collection<String> level = paths;
+
+    while (!level.isEmpty()) {
+      final List<String> nextLevel = Lists.newArrayList();
+
+      for (Map.Entry<String, List<String>> children : getChildrenByParent(pathNameForLogs, level).entrySet()) {
+        final String root = rootOf.get(children.getKey());
+
+        for (String child : children.getValue()) {
+          final String childPath = ZKPaths.makePath(children.getKey(), child);
+
+          rootOf.put(childPath, root);
+          descendants.get(root).add(childPath);
+          nextLevel.add(childPath);
+        }
+      }
+
+      level = nextLevel;
+    }
+
+    int numDeleted = 0;
+
+    ZkWriteBatch batch = new ZkWriteBatch();
+    List<String> batchPaths = Lists.newArrayList();
+
+    for (String path : paths) {
+      final ZkWriteBatch pathBatch = new ZkWriteBatch();
+
+      // children were added after their parents, so deleting in reverse removes every node before its parent
+      for (String descendant : Lists.reverse(descendants.get(path))) {
+        pathBatch.delete(descendant);
+      }
+
+      pathBatch.delete(path);
+
+      if (!batch.isEmpty() && batch.getNumBytes() + pathBatch.getNumBytes() > MAX_WRITE_BATCH_BYTES) {
+        numDeleted += commitDeletes(batchPaths, batch);
+
+        batch = new ZkWriteBatch();
+        batchPaths = Lists.newArrayList();
+      }
+
+      batch.addAll(pathBatch);
+      batchPaths.add(path);
+    }
+
+    if (!batch.isEmpty()) {
+      numDeleted += commitDeletes(batchPaths, batch);
+    }
+
+    LOG.debug("Deleted {} of {} paths from {} in {}", numDeleted, paths.size(), pathNameForLogs, JavaUtils.duration(start));
+
+    return numDeleted;
+  }
+
+  private int commitDeletes(List<String> paths, ZkWriteBatch batch) {
+    try {
+      batch.commit(curator);
+      return paths.size();
+    } catch (KeeperException ke) {
+      LOG.debug("Couldn't delete {} paths in one transaction ({}), deleting them one at a time", paths.size(), ke.code());
+
+      int numDeleted = 0;
+
+      for (String path : paths) {
+        if (delete(path) == SingularityDeleteResult.DELETED) {
+          numDeleted++;
+        }
+      }
+
+      return numDeleted;
+    } catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
+  }
+
+}
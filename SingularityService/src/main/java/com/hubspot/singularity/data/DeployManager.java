@@ -9,6 +9,7 @@ import org.apache.curator.utils.ZKPaths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
@@ -50,7 +51,7 @@ public class DeployManager extends CuratorAsyncManager {
 
   private static final String DEPLOY_ROOT = "/deploys";
 
-  private static final String PENDING_ROOT = DEPLOY_ROOT + "/pending";
+  static final String PENDING_ROOT = DEPLOY_ROOT + "/pending";
   private static final String CANCEL_ROOT = DEPLOY_ROOT + "/cancel";
 
   private static final String BY_REQUEST_ROOT = DEPLOY_ROOT + "/requests";
@@ -64,10 +65,10 @@ public class DeployManager extends CuratorAsyncManager {
   private static final String DEPLOY_RESULT_KEY = "RESULT_STATE";
 
   @Inject
-  public DeployManager(SingularityConfiguration configuration, CuratorFramework curator, SingularityEventListener singularityEventListener, Transcoder<SingularityDeploy> deployTranscoder,
+  public DeployManager(SingularityConfiguration configuration, CuratorFramework curator, MetricRegistry metricRegistry, SingularityEventListener singularityEventListener, Transcoder<SingularityDeploy> deployTranscoder,
       Transcoder<SingularityRequestDeployState> requestDeployStateTranscoder, Transcoder<SingularityPendingDeploy> pendingDeployTranscoder, Transcoder<SingularityDeployMarker> deployMarkerTranscoder,
       Transcoder<SingularityDeployStatistics> deployStatisticsTranscoder, Transcoder<SingularityDeployResult> deployStateTranscoder, IdTranscoder<SingularityDeployKey> deployKeyTranscoder) {
-    super(curator, configuration.getZookeeperAsyncTimeout());
+    super(curator, configuration, metricRegistry);
 
     this.singularityEventListener = singularityEventListener;
     this.pendingDeployTranscoder = pendingDeployTranscoder;
@@ -230,6 +231,54 @@ public class DeployManager extends CuratorAsyncManager {
     return Optional.of(new SingularityDeployHistory(deployState, deployMarker.get(), deploy, deployStatistics));
   }
 
+  /**
+   * Loads the entire history of each deploy with a round of background requests per node type. Deploys which are missing their
+   * marker or deploy are left out, as getDeployHistory would.
+   */
+  public Map<SingularityDeployKey, SingularityDeployHistory> getDeployHistories(Collection<SingularityDeployKey> deployKeys) {
+    final Map<String, SingularityDeployKey> keysByMarkerPath = Maps.newHashMapWithExpectedSize(deployKeys.size());
+
+    for (SingularityDeployKey deployKey : deployKeys) {
+      keysByMarkerPath.put(getDeployMarkerPath(deployKey.getRequestId(), deployKey.getDeployId()), deployKey);
+    }
+
+    final Map<String, SingularityDeployMarker> markers = getAsyncByPath("deploy_markers_by_keys", keysByMarkerPath.keySet(), deployMarkerTranscoder);
+
+    final List<SingularityDeployKey> markedKeys = Lists.newArrayListWithCapacity(markers.size());
+    final List<String> resultPaths = Lists.newArrayListWithCapacity(markers.size());
+    final List<String> deployPaths = Lists.newArrayListWithCapacity(markers.size());
+    final List<String> statisticsPaths = Lists.newArrayListWithCapacity(markers.size());
+
+    for (String markerPath : markers.keySet()) {
+      final SingularityDeployKey deployKey = keysByMarkerPath.get(markerPath);
+
+      markedKeys.add(deployKey);
+      resultPaths.add(getDeployResultPath(deployKey.getRequestId(), deployKey.getDeployId()));
+      deployPaths.add(getDeployDataPath(deployKey.getRequestId(), deployKey.getDeployId()));
+      statisticsPaths.add(getDeployStatisticsPath(deployKey.getRequestId(), deployKey.getDeployId()));
+    }
+
+    final Map<String, SingularityDeployResult> results = getAsyncByPath("deploy_results_by_keys", resultPaths, deployStateTranscoder);
+    final Map<String, SingularityDeploy> deploys = getAsyncByPath("deploys_by_keys", deployPaths, deployTranscoder);
+    final Map<String, SingularityDeployStatistics> statistics = getAsyncByPath("deploy_statistics_by_keys", statisticsPaths, deployStatisticsTranscoder);
+
+    final Map<SingularityDeployKey, SingularityDeployHistory> histories = Maps.newHashMapWithExpectedSize(markedKeys.size());
+
+    for (int i = 0; i < markedKeys.size(); i++) {
+      final SingularityDeployKey deployKey = markedKeys.get(i);
+      final Optional<SingularityDeploy> deploy = Optional.fromNullable(deploys.get(deployPaths.get(i)));
+
+      if (!deploy.isPresent()) {
+        continue;
+      }
+
+      histories.put(deployKey, new SingularityDeployHistory(Optional.fromNullable(results.get(resultPaths.get(i))),
+          markers.get(getDeployMarkerPath(deployKey.getRequestId(), deployKey.getDeployId())), deploy, Optional.fromNullable(statistics.get(statisticsPaths.get(i)))));
+    }
+
+    return histories;
+  }
+
   public Optional<SingularityDeploy> getDeploy(String requestId, String deployId) {
     final String deployPath = getDeployDataPath(requestId, deployId);
 
@@ -282,6 +331,19 @@ public class DeployManager extends CuratorAsyncManager {
     return delete(getDeployParentPath(deployKey.getRequestId(), deployKey.getDeployId()));
   }
 
+  /**
+   * @return the number of deploys whose history was deleted
+   */
+  public int deleteDeployHistories(Collection<SingularityDeployKey> deployKeys) {
+    final List<String> paths = Lists.newArrayListWithCapacity(deployKeys.size());
+
+    for (SingularityDeployKey deployKey : deployKeys) {
+      paths.add(getDeployParentPath(deployKey.getRequestId(), deployKey.getDeployId()));
+    }
+
+    return deleteRecursively("deploy_histories", paths);
+  }
+
   public SingularityDeleteResult deletePendingDeploy(String requestId) {
     return delete(getPendingDeployPath(requestId));
   }
@@ -22,6 +22,7 @@ public class MetadataManager extends CuratorManager {
   private static final String MAIL_HISTORY_PATH = ROOT_PATH + "/mails";
   private static final String MAIL_HISTORY_RECORDS_KEY = "timestamps";
   private static final String MAIL_IN_COOLDOWN_MARKER_KEY = "COOLDOWN_ACTIVE";
+  private static final String HISTORY_RECOMPRESSION_PATH = ZKPaths.makePath(ROOT_PATH, "HISTORY_RECOMPRESSION");
 
   @Inject
   public MetadataManager(CuratorFramework curator) {
@@ -56,6 +57,19 @@ public class MetadataManager extends CuratorManager {
     save(ZK_DATA_VERSION_PATH, Optional.of(newVersion.getBytes(UTF_8)));
   }
 
+  // kept per codec, so configuring another one starts its pass from the beginning
+  private String getLastRecompressedTaskIdPath(String codec) {
+    return ZKPaths.makePath(HISTORY_RECOMPRESSION_PATH, codec);
+  }
+
+  public Optional<String> getLastRecompressedTaskId(String codec) {
+    return getStringData(getLastRecompressedTaskIdPath(codec));
+  }
+
+  public void setLastRecompressedTaskId(String codec, String taskId) {
+    save(getLastRecompressedTaskIdPath(codec), Optional.of(taskId.getBytes(UTF_8)));
+  }
+
   public void saveMailRecord(SingularityRequest request, EmailType emailType) {
     create(getMailRecordPathForRequestAndTypeAndTime(request.getId(), emailType.name(), Long.toString(System.currentTimeMillis())));
   }
@@ -2,17 +2,20 @@ package com.hubspot.singularity.data;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.utils.ZKPaths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.hubspot.singularity.RequestState;
@@ -44,15 +47,15 @@ public class RequestManager extends CuratorAsyncManager {
 
   private static final String REQUEST_ROOT = "/requests";
 
-  private static final String NORMAL_PATH_ROOT = REQUEST_ROOT + "/all";
-  private static final String PENDING_PATH_ROOT = REQUEST_ROOT + "/pending";
-  private static final String CLEANUP_PATH_ROOT = REQUEST_ROOT + "/cleanup";
+  static final String NORMAL_PATH_ROOT = REQUEST_ROOT + "/all";
+  static final String PENDING_PATH_ROOT = REQUEST_ROOT + "/pending";
+  static final String CLEANUP_PATH_ROOT = REQUEST_ROOT + "/cleanup";
   private static final String HISTORY_PATH_ROOT = REQUEST_ROOT + "/history";
 
   @Inject
-  public RequestManager(SingularityConfiguration configuration, CuratorFramework curator, SingularityEventListener singularityEventListener, Transcoder<SingularityRequestCleanup> requestCleanupTranscoder,
+  public RequestManager(SingularityConfiguration configuration, CuratorFramework curator, MetricRegistry metricRegistry, SingularityEventListener singularityEventListener, Transcoder<SingularityRequestCleanup> requestCleanupTranscoder,
       Transcoder<SingularityRequestWithState> requestTranscoder, Transcoder<SingularityPendingRequest> pendingRequestTranscoder, Transcoder<SingularityRequestHistory> requestHistoryTranscoder) {
-    super(curator, configuration.getZookeeperAsyncTimeout());
+    super(curator, configuration, metricRegistry);
 
     this.requestTranscoder = requestTranscoder;
     this.requestCleanupTranscoder = requestCleanupTranscoder;
@@ -101,6 +104,19 @@ public class RequestManager extends CuratorAsyncManager {
     return delete(getHistoryParentPath(requestId));
   }
 
+  /**
+   * @return the number of requests whose history was deleted
+   */
+  public int deleteHistoryParents(Collection<String> requestIds) {
+    final List<String> paths = Lists.newArrayListWithCapacity(requestIds.size());
+
+    for (String requestId : requestIds) {
+      paths.add(getHistoryParentPath(requestId));
+    }
+
+    return deleteRecursively("request_histories", paths);
+  }
+
   public SingularityDeleteResult deleteHistoryItem(SingularityRequestHistory history) {
     return delete(getHistoryPath(history));
   }
@@ -134,6 +150,22 @@ public class RequestManager extends CuratorAsyncManager {
     return getAsyncChildren(getHistoryParentPath(requestId), requestHistoryTranscoder);
   }
 
+  public Map<String, List<SingularityRequestHistory>> getRequestHistories(Collection<String> requestIds) {
+    final Map<String, String> requestIdsByPath = Maps.newHashMapWithExpectedSize(requestIds.size());
+
+    for (String requestId : requestIds) {
+      requestIdsByPath.put(getHistoryParentPath(requestId), requestId);
+    }
+
+    final Map<String, List<SingularityRequestHistory>> histories = Maps.newHashMapWithExpectedSize(requestIds.size());
+
+    for (Map.Entry<String, List<SingularityRequestHistory>> history : getAsyncChildrenByParent(HISTORY_PATH_ROOT, requestIdsByPath.keySet(), requestHistoryTranscoder).entrySet()) {
+      histories.put(requestIdsByPath.get(history.getKey()), history.getValue());
+    }
+
+    return histories;
+  }
+
   public SingularityCreateResult createCleanupRequest(SingularityRequestCleanup cleanupRequest) {
     return create(getCleanupPath(cleanupRequest.getRequestId(), cleanupRequest.getCleanupType()), cleanupRequest, requestCleanupTranscoder);
   }
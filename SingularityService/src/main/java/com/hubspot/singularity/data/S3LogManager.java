@@ -0,0 +1,271 @@
+package com.hubspot.singularity.data;
+
+import static com.hubspot.singularity.SingularityMainModule.S3_LOG_THREADPOOL_NAME;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jets3t.service.S3Service;
+import org.jets3t.service.S3ServiceException;
+import org.jets3t.service.StorageObjectsChunk;
+import org.jets3t.service.model.StorageObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.hubspot.singularity.SingularityS3Log;
+import com.hubspot.singularity.config.S3Configuration;
+
+/**
+ * Lists and signs the logs under S3 key prefixes on a pool shared by every caller. A prefix is listed one level at a time (using
+ * "/" as the delimiter) so the sub-prefixes under it are listed in parallel, and its signed logs are cached - callers asking for a
+ * prefix which is already being listed wait for the same listing.
+ *
+ * A page of logs is listed in key order instead, continuing from the last key of the previous page, so only as many keys as the
+ * page needs are listed from S3.
+ */
+@Singleton
+public class S3LogManager {
+
+  private static final Logger LOG = LoggerFactory.getLogger(S3LogManager.class);
+
+  private static final String DELIMITER = "/";
+  private static final long MAX_LISTING_LENGTH = 1000;
+
+  public static final Comparator<SingularityS3Log> LOG_COMPARATOR = new Comparator<SingularityS3Log>() {
+
+    @Override
+    public int compare(SingularityS3Log o1, SingularityS3Log o2) {
+      return Longs.compare(o2.getLastModified(), o1.getLastModified());
+    }
+
+  };
+
+  private final Optional<S3Service> s3;
+  private final Optional<S3Configuration> configuration;
+  private final ListeningExecutorService executorService;
+  private final Cache<String, ListenableFuture<List<SingularityS3Log>>> listingCache;
+
+  @Inject
+  public S3LogManager(Optional<S3Service> s3, Optional<S3Configuration> configuration, @Named(S3_LOG_THREADPOOL_NAME) ScheduledExecutorService executorService) {
+    this.s3 = s3;
+    this.configuration = configuration;
+    this.executorService = MoreExecutors.listeningDecorator(executorService);
+
+    final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
+
+    if (configuration.isPresent()) {
+      cacheBuilder.maximumSize(configuration.get().getMaxCachedListings())
+          .expireAfterWrite(Math.min(configuration.get().getListingCacheExpireMillis(), configuration.get().getExpireS3LinksAfterMillis() / 2), TimeUnit.MILLISECONDS);
+    } else {
+      cacheBuilder.maximumSize(0);
+    }
+
+    this.listingCache = cacheBuilder.build();
+  }
+
+  /**
+   * @return the logs under every prefix, most recently modified first
+   */
+  public ListenableFuture<List<SingularityS3Log>> getLogs(Collection<String> prefixes) {
+    final List<ListenableFuture<List<SingularityS3Log>>> futures = Lists.newArrayListWithCapacity(prefixes.size());
+
+    for (String prefix : prefixes) {
+      futures.add(getLogs(prefix));
+    }
+
+    return Futures.transform(Futures.allAsList(futures), new Function<List<List<SingularityS3Log>>, List<SingularityS3Log>>() {
+
+      @Override
+      public List<SingularityS3Log> apply(List<List<SingularityS3Log>> logsForPrefixes) {
+        final List<SingularityS3Log> logs = flatten(logsForPrefixes);
+
+        Collections.sort(logs, LOG_COMPARATOR);
+
+        return logs;
+      }
+
+    });
+  }
+
+  /**
+   * @return up to count of the logs under every prefix whose keys come after lastKey, in key order
+   */
+  public ListenableFuture<List<SingularityS3Log>> getLogsPage(final Collection<String> prefixes, final int count, final Optional<String> lastKey) {
+    final Date expireAt = new Date(System.currentTimeMillis() + configuration.get().getExpireS3LinksAfterMillis());
+
+    return executorService.submit(new Callable<List<SingularityS3Log>>() {
+
+      @Override
+      public List<SingularityS3Log> call() throws Exception {
+        return listPage(prefixes, count, lastKey, expireAt);
+      }
+
+    });
+  }
+
+  private List<SingularityS3Log> listPage(Collection<String> prefixes, int count, Optional<String> lastKey, Date expireAt) throws Exception {
+    final List<SingularityS3Log> logs = Lists.newArrayListWithCapacity(count);
+
+    for (String prefix : getOutermostPrefixes(prefixes)) {
+      // every key under the prefix sorts before lastKey
+      if (lastKey.isPresent() && lastKey.get().compareTo(prefix) > 0 && !lastKey.get().startsWith(prefix)) {
+        continue;
+      }
+
+      String priorLastKey = lastKey.orNull();
+
+      while (logs.size() < count) {
+        final StorageObjectsChunk chunk = s3.get().listObjectsChunked(configuration.get().getS3Bucket(), prefix, null, Math.min(count - logs.size(), MAX_LISTING_LENGTH), priorLastKey,
+            false);
+
+        for (StorageObject object : chunk.getObjects()) {
+          logs.add(sign(object, expireAt));
+        }
+
+        if (chunk.isListingComplete() || chunk.getObjects().length == 0) {
+          break;
+        }
+
+        priorLastKey = chunk.getPriorLastKey();
+      }
+
+      if (logs.size() >= count) {
+        break;
+      }
+    }
+
+    return logs;
+  }
+
+  /**
+   * @return the prefixes in key order, leaving out those under another prefix so that no key is listed twice
+   */
+  private List<String> getOutermostPrefixes(Collection<String> prefixes) {
+    final List<String> outermostPrefixes = Lists.newArrayListWithCapacity(prefixes.size());
+
+    for (String prefix : Sets.newTreeSet(prefixes)) {
+      if (outermostPrefixes.isEmpty() || !prefix.startsWith(outermostPrefixes.get(outermostPrefixes.size() - 1))) {
+        outermostPrefixes.add(prefix);
+      }
+    }
+
+    return outermostPrefixes;
+  }
+
+  private SingularityS3Log sign(StorageObject object, Date expireAt) throws S3ServiceException {
+    final String getUrl = s3.get().createSignedGetUrl(configuration.get().getS3Bucket(), object.getKey(), expireAt);
+
+    return new SingularityS3Log(getUrl, object.getKey(), object.getLastModifiedDate().getTime(), object.getContentLength());
+  }
+
+  private ListenableFuture<List<SingularityS3Log>> getLogs(final String prefix) {
+    try {
+      return listingCache.get(prefix, new Callable<ListenableFuture<List<SingularityS3Log>>>() {
+
+        @Override
+        public ListenableFuture<List<SingularityS3Log>> call() {
+          final ListenableFuture<List<SingularityS3Log>> logs = listAndSign(prefix, new Date(System.currentTimeMillis() + configuration.get().getExpireS3LinksAfterMillis()));
+
+          Futures.addCallback(logs, new FutureCallback<List<SingularityS3Log>>() {
+
+            @Override
+            public void onSuccess(List<SingularityS3Log> result) {}
+
+            @Override
+            public void onFailure(Throwable t) {
+              LOG.warn("Couldn't list S3 logs under {}", prefix, t);
+              listingCache.asMap().remove(prefix, logs);
+            }
+
+          });
+
+          return logs;
+        }
+
+      });
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private ListenableFuture<List<SingularityS3Log>> listAndSign(final String prefix, final Date expireAt) {
+    final ListenableFuture<StorageObjectsChunk> listing = executorService.submit(new Callable<StorageObjectsChunk>() {
+
+      @Override
+      public StorageObjectsChunk call() throws Exception {
+        return s3.get().listObjectsChunked(configuration.get().getS3Bucket(), prefix, DELIMITER, MAX_LISTING_LENGTH, null, true);
+      }
+
+    });
+
+    // signing is only hashing, so it is done on the thread which finished the listing
+    return Futures.transform(listing, new AsyncFunction<StorageObjectsChunk, List<SingularityS3Log>>() {
+
+      @Override
+      public ListenableFuture<List<SingularityS3Log>> apply(StorageObjectsChunk chunk) throws Exception {
+        final List<SingularityS3Log> logs = Lists.newArrayListWithCapacity(chunk.getObjects().length);
+
+        for (StorageObject object : chunk.getObjects()) {
+          logs.add(sign(object, expireAt));
+        }
+
+        if (chunk.getCommonPrefixes().length == 0) {
+          return Futures.immediateFuture(logs);
+        }
+
+        final List<ListenableFuture<List<SingularityS3Log>>> futures = Lists.newArrayListWithCapacity(chunk.getCommonPrefixes().length + 1);
+
+        futures.add(Futures.immediateFuture(logs));
+
+        for (String commonPrefix : chunk.getCommonPrefixes()) {
+          futures.add(listAndSign(commonPrefix, expireAt));
+        }
+
+        return Futures.transform(Futures.allAsList(futures), new Function<List<List<SingularityS3Log>>, List<SingularityS3Log>>() {
+
+          @Override
+          public List<SingularityS3Log> apply(List<List<SingularityS3Log>> logsForPrefixes) {
+            return flatten(logsForPrefixes);
+          }
+
+        });
+      }
+
+    });
+  }
+
+  private List<SingularityS3Log> flatten(List<List<SingularityS3Log>> logsForPrefixes) {
+    final List<SingularityS3Log> logs = Lists.newArrayList();
+
+    for (List<SingularityS3Log> logsForPrefix : logsForPrefixes) {
+      logs.addAll(logsForPrefix);
+    }
+
+    return logs;
+  }
+
+}
@@ -10,12 +10,16 @@ public class SingularityDataModule extends AbstractModule {
     bind(MetadataManager.class).in(Scopes.SINGLETON);
     bind(StateManager.class).in(Scopes.SINGLETON);
     bind(TaskManager.class).in(Scopes.SINGLETON);
+    bind(SingularityTaskMirror.class).in(Scopes.SINGLETON);
+    bind(SingularityStateTracker.class).in(Scopes.SINGLETON);
+    bind(SingularityTaskStatusStore.class).in(Scopes.SINGLETON);
     bind(DeployManager.class).in(Scopes.SINGLETON);
     bind(RackManager.class).in(Scopes.SINGLETON);
     bind(RequestManager.class).in(Scopes.SINGLETON);
     bind(SlaveManager.class).in(Scopes.SINGLETON);
     bind(TaskRequestManager.class).in(Scopes.SINGLETON);
     bind(SandboxManager.class).in(Scopes.SINGLETON);
+    bind(S3LogManager.class).in(Scopes.SINGLETON);
     bind(SingularityValidator.class).in(Scopes.SINGLETON);
 
     bind(ExecutorIdGenerator.class).in(Scopes.SINGLETON);
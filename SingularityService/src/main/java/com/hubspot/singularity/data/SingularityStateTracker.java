@@ -0,0 +1,480 @@
+package com.hubspot.singularity.data;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache.StartMode;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.utils.ZKPaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.hubspot.singularity.MachineState;
+import com.hubspot.singularity.RequestState;
+import com.hubspot.singularity.SingularityHostState;
+import com.hubspot.singularity.SingularityPendingDeploy;
+import com.hubspot.singularity.SingularityRack;
+import com.hubspot.singularity.SingularityRequestDeployState;
+import com.hubspot.singularity.SingularityRequestWithState;
+import com.hubspot.singularity.SingularitySlave;
+import com.hubspot.singularity.data.transcoders.Transcoder;
+
+/**
+ * Keeps the counts behind SingularityState (requests by state, slaves and racks by state, pending and cleaning requests,
+ * pending deploys and load balancer cleanups) and the host states current from ZooKeeper watches, so they can be read without
+ * listing every tree.
+ * Task counts come from the SingularityTaskMirror. Only started by the leader during scheduler startup.
+ *
+ * Whether a request has an active deploy is read from ZooKeeper once per request and remembered: a request only gains an active
+ * deploy when its pending deploy finishes and only loses it when it is deleted, so the remembered answer is dropped on either.
+ */
+@Singleton
+public class SingularityStateTracker implements Managed {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityStateTracker.class);
+
+  private final CuratorFramework curator;
+  private final DeployManager deployManager;
+
+  private final TrackedChildren<SingularityRequestWithState, RequestState> requests;
+  private final TrackedChildren<Boolean, Boolean> pendingRequests;
+  private final TrackedChildren<Boolean, Boolean> cleanupRequests;
+  private final TrackedChildren<SingularitySlave, MachineState> slaves;
+  private final TrackedChildren<SingularityRack, MachineState> racks;
+  private final TrackedChildren<SingularityPendingDeploy, Boolean> pendingDeploys;
+  private final TrackedChildren<Boolean, Boolean> lbCleanupTasks;
+  private final TrackedChildren<SingularityHostState, Boolean> hostStates;
+
+  private final List<TrackedChildren<?, ?>> allTracked;
+
+  private final ConcurrentMap<String, Boolean> hasActiveDeploy;
+  // incremented whenever a remembered answer is dropped, so a read which overlapped it isn't remembered
+  private long activeDeployGeneration;
+
+  private final AtomicLong version;
+
+  private volatile boolean running;
+
+  @Inject
+  public SingularityStateTracker(CuratorFramework curator, DeployManager deployManager, final Transcoder<SingularityRequestWithState> requestTranscoder, final Transcoder<SingularitySlave> slaveTranscoder,
+      final Transcoder<SingularityRack> rackTranscoder, final Transcoder<SingularityPendingDeploy> pendingDeployTranscoder, final Transcoder<SingularityHostState> hostStateTranscoder) {
+    this.curator = curator;
+    this.deployManager = deployManager;
+    this.version = new AtomicLong();
+    this.hasActiveDeploy = new ConcurrentHashMap<>();
+
+    this.requests = new TrackedChildren<SingularityRequestWithState, RequestState>(RequestManager.NORMAL_PATH_ROOT, true) {
+
+      @Override
+      SingularityRequestWithState read(byte[] data) {
+        return requestTranscoder.fromBytes(data);
+      }
+
+      @Override
+      RequestState getKey(SingularityRequestWithState value) {
+        return value.getState();
+      }
+
+      @Override
+      void removed(String requestId) {
+        forgetActiveDeploy(requestId);
+      }
+
+    };
+
+    this.slaves = new TrackedChildren<SingularitySlave, MachineState>(SlaveManager.SLAVE_ROOT, true) {
+
+      @Override
+      SingularitySlave read(byte[] data) {
+        return slaveTranscoder.fromBytes(data);
+      }
+
+      @Override
+      MachineState getKey(SingularitySlave value) {
+        return value.getCurrentState().getState();
+      }
+
+    };
+
+    this.racks = new TrackedChildren<SingularityRack, MachineState>(RackManager.RACK_ROOT, true) {
+
+      @Override
+      SingularityRack read(byte[] data) {
+        return rackTranscoder.fromBytes(data);
+      }
+
+      @Override
+      MachineState getKey(SingularityRack value) {
+        return value.getCurrentState().getState();
+      }
+
+    };
+
+    this.pendingDeploys = new TrackedChildren<SingularityPendingDeploy, Boolean>(DeployManager.PENDING_ROOT, true) {
+
+      @Override
+      SingularityPendingDeploy read(byte[] data) {
+        return pendingDeployTranscoder.fromBytes(data);
+      }
+
+      @Override
+      void removed(String requestId) {
+        forgetActiveDeploy(requestId);
+      }
+
+    };
+
+    this.hostStates = new TrackedChildren<SingularityHostState, Boolean>(StateManager.ROOT_PATH, true) {
+
+      @Override
+      SingularityHostState read(byte[] data) {
+        return hostStateTranscoder.fromBytes(data);
+      }
+
+    };
+
+    this.pendingRequests = new CountedChildren(RequestManager.PENDING_PATH_ROOT);
+    this.cleanupRequests = new CountedChildren(RequestManager.CLEANUP_PATH_ROOT);
+    this.lbCleanupTasks = new CountedChildren(TaskManager.LB_CLEANUP_PATH_ROOT);
+
+    this.allTracked = ImmutableList.<TrackedChildren<?, ?>> of(requests, pendingRequests, cleanupRequests, slaves, racks, pendingDeploys, lbCleanupTasks, hostStates);
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    stopTracking();
+  }
+
+  public synchronized void startTracking() throws Exception {
+    if (running) {
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+
+    for (TrackedChildren<?, ?> tracked : allTracked) {
+      tracked.start();
+    }
+
+    running = true;
+
+    LOG.info("Tracking state of {} requests, {} slaves and {} racks after {}ms", requests.size(), slaves.size(), racks.size(), System.currentTimeMillis() - start);
+  }
+
+  public synchronized void stopTracking() {
+    running = false;
+
+    for (TrackedChildren<?, ?> tracked : allTracked) {
+      tracked.close();
+    }
+
+    forgetActiveDeploys();
+  }
+
+  /**
+   * Re-reads every tracked tree from ZooKeeper, used once a full recompute has shown the counts have drifted.
+   */
+  public synchronized void rebuild() throws Exception {
+    if (!running) {
+      return;
+    }
+
+    for (TrackedChildren<?, ?> tracked : allTracked) {
+      tracked.rebuild();
+    }
+
+    forgetActiveDeploys();
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Incremented on every change to a tracked tree, so callers can tell whether anything moved since they last looked.
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  public int getNumRequests(RequestState state) {
+    return requests.count(state);
+  }
+
+  public List<SingularityRequestWithState> getRequests() {
+    return requests.values();
+  }
+
+  public int getNumPendingRequests() {
+    return pendingRequests.size();
+  }
+
+  public int getNumCleanupRequests() {
+    return cleanupRequests.size();
+  }
+
+  public int getNumSlaves(MachineState state) {
+    return slaves.count(state);
+  }
+
+  public int getNumRacks(MachineState state) {
+    return racks.count(state);
+  }
+
+  public List<SingularityPendingDeploy> getPendingDeploys() {
+    return pendingDeploys.values();
+  }
+
+  public int getNumLbCleanupTasks() {
+    return lbCleanupTasks.size();
+  }
+
+  public List<SingularityHostState> getHostStates() {
+    return hostStates.values();
+  }
+
+  /**
+   * Filters the given requests down to those with an active or pending deploy, reading deploy state only for requests whose active
+   * deploy isn't already known.
+   */
+  public List<String> getRequestIdsWithDeploy(List<String> requestIds) {
+    final List<String> withDeploy = new ArrayList<>(requestIds.size());
+    final List<String> unknown = new ArrayList<>();
+
+    for (String requestId : requestIds) {
+      final Boolean active = hasActiveDeploy.get(requestId);
+
+      if (pendingDeploys.contains(requestId) || Boolean.TRUE.equals(active)) {
+        withDeploy.add(requestId);
+      } else if (active == null) {
+        unknown.add(requestId);
+      }
+    }
+
+    if (unknown.isEmpty()) {
+      return withDeploy;
+    }
+
+    final long generation = getActiveDeployGeneration();
+    final Map<String, SingularityRequestDeployState> deployStates = deployManager.getRequestDeployStatesByRequestIds(unknown);
+
+    for (String requestId : unknown) {
+      final SingularityRequestDeployState deployState = deployStates.get(requestId);
+      final boolean active = deployState != null && deployState.getActiveDeploy().isPresent();
+
+      if (active || deployState != null && deployState.getPendingDeploy().isPresent()) {
+        withDeploy.add(requestId);
+      }
+
+      rememberActiveDeploy(requestId, active, generation);
+    }
+
+    return withDeploy;
+  }
+
+  private synchronized long getActiveDeployGeneration() {
+    return activeDeployGeneration;
+  }
+
+  private synchronized void rememberActiveDeploy(String requestId, boolean active, long generation) {
+    if (running && generation == activeDeployGeneration) {
+      hasActiveDeploy.put(requestId, active);
+    }
+  }
+
+  private synchronized void forgetActiveDeploy(String requestId) {
+    activeDeployGeneration++;
+    hasActiveDeploy.remove(requestId);
+  }
+
+  private synchronized void forgetActiveDeploys() {
+    activeDeployGeneration++;
+    hasActiveDeploy.clear();
+  }
+
+  private abstract class TrackedChildren<T, K> implements PathChildrenCacheListener {
+
+    private final String root;
+    private final boolean cacheData;
+    private final ConcurrentMap<String, T> children;
+    private final ConcurrentHashMultiset<K> counts;
+
+    private PathChildrenCache cache;
+
+    TrackedChildren(String root, boolean cacheData) {
+      this.root = root;
+      this.cacheData = cacheData;
+      this.children = new ConcurrentHashMap<>();
+      this.counts = ConcurrentHashMultiset.create();
+    }
+
+    abstract T read(byte[] data);
+
+    K getKey(T value) {
+      return null;
+    }
+
+    void removed(String child) {
+    }
+
+    void start() throws Exception {
+      cache = new PathChildrenCache(curator, root, cacheData, false, new ThreadFactoryBuilder().setNameFormat("SingularityStateTracker" + root.replace('/', '-') + "-%d").setDaemon(true).build());
+      cache.getListenable().addListener(this);
+      cache.start(StartMode.BUILD_INITIAL_CACHE);
+
+      reset();
+    }
+
+    void rebuild() throws Exception {
+      if (cache == null) {
+        return;
+      }
+
+      cache.rebuild();
+
+      reset();
+    }
+
+    private synchronized void reset() {
+      children.clear();
+      counts.clear();
+
+      for (ChildData data : cache.getCurrentData()) {
+        put(data);
+      }
+
+      version.incrementAndGet();
+    }
+
+    void close() {
+      if (cache == null) {
+        return;
+      }
+
+      try {
+        cache.close();
+      } catch (Throwable t) {
+        LOG.warn("While closing cache for {}", root, t);
+      }
+
+      cache = null;
+      children.clear();
+      counts.clear();
+    }
+
+    int size() {
+      return children.size();
+    }
+
+    boolean contains(String child) {
+      return children.containsKey(child);
+    }
+
+    int count(K key) {
+      return counts.count(key);
+    }
+
+    List<T> values() {
+      return ImmutableList.copyOf(children.values());
+    }
+
+    @Override
+    public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) throws Exception {
+      switch (event.getType()) {
+        case CHILD_ADDED:
+        case CHILD_UPDATED:
+          put(event.getData());
+          break;
+        case CHILD_REMOVED:
+          remove(event.getData());
+          break;
+        default:
+          LOG.debug("State tracker for {} received {}", root, event.getType());
+          return;
+      }
+
+      version.incrementAndGet();
+    }
+
+    private synchronized void put(ChildData data) {
+      final String child = ZKPaths.getNodeFromPath(data.getPath());
+
+      final T value;
+
+      try {
+        if (cacheData && (data.getData() == null || data.getData().length == 0)) {
+          return;
+        }
+
+        value = read(data.getData());
+      } catch (Throwable t) {
+        LOG.error("Couldn't read {} under {}", child, root, t);
+        return;
+      }
+
+      final T previous = children.put(child, value);
+
+      uncount(previous);
+
+      final K key = getKey(value);
+
+      if (key != null) {
+        counts.add(key);
+      }
+    }
+
+    private synchronized void remove(ChildData data) {
+      final String child = ZKPaths.getNodeFromPath(data.getPath());
+
+      uncount(children.remove(child));
+      removed(child);
+    }
+
+    private void uncount(T previous) {
+      if (previous == null) {
+        return;
+      }
+
+      final K key = getKey(previous);
+
+      if (key != null) {
+        counts.remove(key);
+      }
+    }
+
+  }
+
+  private class CountedChildren extends TrackedChildren<Boolean, Boolean> {
+
+    CountedChildren(String root) {
+      super(root, false);
+    }
+
+    @Override
+    Boolean read(byte[] data) {
+      return Boolean.TRUE;
+    }
+
+  }
+
+}
@@ -0,0 +1,477 @@
+package com.hubspot.singularity.data;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache.StartMode;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException.NoNodeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularityPendingTask;
+import com.hubspot.singularity.SingularityPendingTaskId;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.data.transcoders.IdTranscoder;
+import com.hubspot.singularity.data.transcoders.Transcoder;
+
+/**
+ * In-memory copy of the active, scheduled and cleanup task trees, kept current by ZooKeeper watches and by the writes
+ * TaskManager makes on this instance. Only started by the leader during scheduler startup - TaskManager reads straight from ZooKeeper otherwise.
+ */
+@Singleton
+public class SingularityTaskMirror implements Managed {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityTaskMirror.class);
+
+  private final CuratorFramework curator;
+
+  private final MirroredChildren<SingularityTaskId> activeTasks;
+  private final MirroredChildren<SingularityTaskId> cleanupTasks;
+  private final MirroredChildren<SingularityPendingTask> pendingTasks;
+
+  private final Counter driftCounter;
+  private final Histogram watchLagHistogram;
+
+  private volatile boolean running;
+  private volatile long lastVerifiedAt;
+
+  @Inject
+  public SingularityTaskMirror(CuratorFramework curator, MetricRegistry registry, final IdTranscoder<SingularityTaskId> taskIdTranscoder,
+      final Transcoder<SingularityPendingTask> pendingTaskTranscoder) {
+    this.curator = curator;
+
+    this.activeTasks = new MirroredChildren<SingularityTaskId>(TaskManager.ACTIVE_PATH_ROOT, false) {
+
+      @Override
+      SingularityTaskId fromChildData(String child, ChildData data) {
+        return taskIdTranscoder.fromString(child);
+      }
+
+    };
+
+    this.cleanupTasks = new MirroredChildren<SingularityTaskId>(TaskManager.CLEANUP_PATH_ROOT, false) {
+
+      @Override
+      SingularityTaskId fromChildData(String child, ChildData data) {
+        return taskIdTranscoder.fromString(child);
+      }
+
+    };
+
+    this.pendingTasks = new MirroredChildren<SingularityPendingTask>(TaskManager.PENDING_PATH_ROOT, true) {
+
+      @Override
+      SingularityPendingTask fromChildData(String child, ChildData data) {
+        if (data.getData() == null || data.getData().length == 0) {
+          return null;
+        }
+        return pendingTaskTranscoder.fromBytes(data.getData());
+      }
+
+    };
+
+    this.driftCounter = registry.counter(MetricRegistry.name(SingularityTaskMirror.class, "drift"));
+    this.watchLagHistogram = registry.histogram(MetricRegistry.name(SingularityTaskMirror.class, "watchLagMillis"));
+
+    registry.register(MetricRegistry.name(SingularityTaskMirror.class, "millisSinceLastVerification"), new Gauge<Long>() {
+
+      @Override
+      public Long getValue() {
+        return running ? System.currentTimeMillis() - lastVerifiedAt : 0L;
+      }
+
+    });
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    stopMirroring();
+  }
+
+  public synchronized void startMirroring() throws Exception {
+    if (running) {
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+
+    activeTasks.start();
+    cleanupTasks.start();
+    pendingTasks.start();
+
+    lastVerifiedAt = System.currentTimeMillis();
+    running = true;
+
+    LOG.info("Mirroring {} active, {} pending and {} cleaning tasks after {}ms", activeTasks.size(), pendingTasks.size(), cleanupTasks.size(), lastVerifiedAt - start);
+  }
+
+  public synchronized void stopMirroring() {
+    running = false;
+
+    activeTasks.close();
+    cleanupTasks.close();
+    pendingTasks.close();
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public long getLastVerifiedAt() {
+    return lastVerifiedAt;
+  }
+
+  public List<SingularityTaskId> getActiveTaskIds() {
+    return activeTasks.values();
+  }
+
+  public int getNumActiveTasks() {
+    return activeTasks.size();
+  }
+
+  public int getNumCleanupTasks() {
+    return cleanupTasks.size();
+  }
+
+  public int getNumPendingTasks() {
+    return pendingTasks.size();
+  }
+
+  public boolean isActiveTask(String taskId) {
+    return activeTasks.contains(taskId);
+  }
+
+  public List<SingularityTaskId> getCleanupTaskIds() {
+    return cleanupTasks.values();
+  }
+
+  public List<SingularityPendingTask> getPendingTasks() {
+    return pendingTasks.values();
+  }
+
+  public List<SingularityPendingTaskId> getPendingTaskIds() {
+    final List<SingularityPendingTask> tasks = pendingTasks.values();
+    final ImmutableList.Builder<SingularityPendingTaskId> ids = ImmutableList.builder();
+
+    for (SingularityPendingTask task : tasks) {
+      ids.add(task.getPendingTaskId());
+    }
+
+    return ids.build();
+  }
+
+  void activeTaskCreated(SingularityTaskId taskId) {
+    activeTasks.localPut(taskId.getId(), taskId);
+  }
+
+  void activeTaskDeleted(String taskId) {
+    activeTasks.localRemove(taskId);
+  }
+
+  void cleanupTaskSaved(SingularityTaskId taskId) {
+    cleanupTasks.localPut(taskId.getId(), taskId);
+  }
+
+  void cleanupTaskDeleted(String taskId) {
+    cleanupTasks.localRemove(taskId);
+  }
+
+  void pendingTaskSaved(SingularityPendingTask task) {
+    pendingTasks.localPut(task.getPendingTaskId().getId(), task);
+  }
+
+  void pendingTaskDeleted(SingularityPendingTaskId pendingTaskId) {
+    pendingTasks.localRemove(pendingTaskId.getId());
+  }
+
+  /**
+   * Compares the mirror against a fresh listing of each path and repairs any differences.
+   * @return the number of children which had drifted
+   */
+  public int verify() {
+    if (!running) {
+      return 0;
+    }
+
+    final long start = System.currentTimeMillis();
+
+    int drift = activeTasks.verify(start) + cleanupTasks.verify(start) + pendingTasks.verify(start);
+
+    driftCounter.inc(drift);
+    lastVerifiedAt = start;
+
+    if (drift > 0) {
+      LOG.warn("Task mirror had drifted by {} children, repaired in {}ms", drift, System.currentTimeMillis() - start);
+    } else {
+      LOG.debug("Verified task mirror in {}ms", System.currentTimeMillis() - start);
+    }
+
+    return drift;
+  }
+
+  private static class LocalWrite {
+
+    private final boolean present;
+    private final long timestamp;
+
+    LocalWrite(boolean present) {
+      this.present = present;
+      this.timestamp = System.currentTimeMillis();
+    }
+
+  }
+
+  private abstract class MirroredChildren<T> implements PathChildrenCacheListener {
+
+    private final String root;
+    private final boolean cacheData;
+    private final ConcurrentMap<String, T> children;
+    private final ConcurrentMap<String, LocalWrite> localWrites;
+
+    private PathChildrenCache cache;
+
+    MirroredChildren(String root, boolean cacheData) {
+      this.root = root;
+      this.cacheData = cacheData;
+      this.children = new ConcurrentHashMap<>();
+      this.localWrites = new ConcurrentHashMap<>();
+    }
+
+    abstract T fromChildData(String child, ChildData data);
+
+    void start() throws Exception {
+      children.clear();
+      localWrites.clear();
+
+      cache = new PathChildrenCache(curator, root, cacheData, false, new ThreadFactoryBuilder().setNameFormat("SingularityTaskMirror" + root.replace('/', '-') + "-%d").setDaemon(true).build());
+      cache.getListenable().addListener(this);
+      cache.start(StartMode.BUILD_INITIAL_CACHE);
+
+      for (ChildData data : cache.getCurrentData()) {
+        put(data);
+      }
+    }
+
+    void close() {
+      if (cache == null) {
+        return;
+      }
+
+      try {
+        cache.close();
+      } catch (Throwable t) {
+        LOG.warn("While closing cache for {}", root, t);
+      }
+
+      cache = null;
+      children.clear();
+      localWrites.clear();
+    }
+
+    int size() {
+      return children.size();
+    }
+
+    boolean contains(String child) {
+      return children.containsKey(child);
+    }
+
+    List<T> values() {
+      return ImmutableList.copyOf(children.values());
+    }
+
+    void localPut(String child, T value) {
+      if (!running) {
+        return;
+      }
+
+      localWrites.put(child, new LocalWrite(true));
+      children.put(child, value);
+    }
+
+    void localRemove(String child) {
+      if (!running) {
+        return;
+      }
+
+      localWrites.put(child, new LocalWrite(false));
+      children.remove(child);
+    }
+
+    @Override
+    public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) throws Exception {
+      switch (event.getType()) {
+        case CHILD_ADDED:
+        case CHILD_UPDATED:
+          onPresent(event.getData());
+          break;
+        case CHILD_REMOVED:
+          onRemoved(event.getData());
+          break;
+        default:
+          LOG.debug("Task mirror for {} received {}", root, event.getType());
+          break;
+      }
+    }
+
+    private String getChild(ChildData data) {
+      return ZKPaths.getNodeFromPath(data.getPath());
+    }
+
+    private void onPresent(ChildData data) {
+      final String child = getChild(data);
+      final LocalWrite localWrite = localWrites.get(child);
+
+      if (localWrite != null && !localWrite.present && !existsInZk(child)) {
+        LOG.trace("Ignoring stale add of {} under {}", child, root);
+        return;
+      }
+
+      put(data);
+      confirm(child, localWrite);
+    }
+
+    private void onRemoved(ChildData data) {
+      final String child = getChild(data);
+      final LocalWrite localWrite = localWrites.get(child);
+
+      if (localWrite != null && localWrite.present && existsInZk(child)) {
+        LOG.trace("Ignoring stale removal of {} under {}", child, root);
+        return;
+      }
+
+      children.remove(child);
+      confirm(child, localWrite);
+    }
+
+    private void confirm(String child, LocalWrite localWrite) {
+      if (localWrite != null && localWrites.remove(child, localWrite)) {
+        watchLagHistogram.update(System.currentTimeMillis() - localWrite.timestamp);
+      }
+    }
+
+    private void put(ChildData data) {
+      final String child = getChild(data);
+
+      try {
+        final T value = fromChildData(child, data);
+
+        if (value != null) {
+          children.put(child, value);
+        }
+      } catch (Throwable t) {
+        LOG.error("Couldn't read {} under {}", child, root, t);
+      }
+    }
+
+    private boolean existsInZk(String child) {
+      try {
+        return curator.checkExists().forPath(ZKPaths.makePath(root, child)) != null;
+      } catch (NoNodeException nne) {
+        return false;
+      } catch (Exception e) {
+        LOG.warn("Couldn't check {} under {}", child, root, e);
+        return false;
+      }
+    }
+
+    private Optional<T> readFromZk(String child) throws Exception {
+      final String path = ZKPaths.makePath(root, child);
+
+      try {
+        final byte[] bytes = cacheData ? curator.getData().forPath(path) : null;
+        return Optional.fromNullable(fromChildData(child, new ChildData(path, null, bytes)));
+      } catch (NoNodeException nne) {
+        return Optional.absent();
+      }
+    }
+
+    int verify(long now) {
+      final long localWriteExpiredAt = now - TimeUnit.MINUTES.toMillis(1);
+
+      for (Map.Entry<String, LocalWrite> localWrite : localWrites.entrySet()) {
+        if (localWrite.getValue().timestamp < localWriteExpiredAt) {
+          localWrites.remove(localWrite.getKey(), localWrite.getValue());
+        }
+      }
+
+      final Set<String> inZk;
+
+      try {
+        inZk = Sets.newHashSet(curator.getChildren().forPath(root));
+      } catch (NoNodeException nne) {
+        return repair(Sets.newHashSet(children.keySet()), ImmutableList.<String> of());
+      } catch (Exception e) {
+        LOG.warn("Couldn't list {} while verifying task mirror", root, e);
+        return 0;
+      }
+
+      final Set<String> inMirror = Sets.newHashSet(children.keySet());
+
+      return repair(Sets.difference(inMirror, inZk), Sets.difference(inZk, inMirror));
+    }
+
+    private int repair(Collection<String> extra, Collection<String> missing) {
+      int drift = 0;
+
+      // re-check each difference individually, since the listing may have raced a write
+      for (String child : extra) {
+        if (!existsInZk(child) && children.remove(child) != null) {
+          LOG.debug("Removed {} from task mirror for {}", child, root);
+          drift++;
+        }
+      }
+
+      for (String child : missing) {
+        final LocalWrite localWrite = localWrites.get(child);
+
+        if (localWrite != null && !localWrite.present) {
+          continue;
+        }
+
+        try {
+          final Optional<T> value = readFromZk(child);
+
+          if (value.isPresent() && children.putIfAbsent(child, value.get()) == null) {
+            LOG.debug("Added {} to task mirror for {}", child, root);
+            drift++;
+          }
+        } catch (Throwable t) {
+          LOG.warn("Couldn't read {} under {} while verifying task mirror", child, root, t);
+        }
+      }
+
+      return drift;
+    }
+
+  }
+
+}
@@ -0,0 +1,324 @@
+package com.hubspot.singularity.data;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.SingularityCreateResult;
+import com.hubspot.singularity.SingularityDeleteResult;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.SingularityTaskStatusHolder;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.transcoders.Transcoder;
+
+/**
+ * Leader-owned copy of the last active status of every task, loaded from ZooKeeper during scheduler startup so status updates
+ * and reconciliation don't have to read it back. Writes either go straight to ZooKeeper or, if deferLastActiveTaskStatusWrites
+ * is set, are queued and flushed in multi-op batches on an interval - keeping only the newest status (or a delete) per task.
+ * A deferred status lost with the leader is recovered by the next reconciliation.
+ */
+@Singleton
+public class SingularityTaskStatusStore extends CuratorAsyncManager implements Managed {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityTaskStatusStore.class);
+
+  private static final int MAX_WRITE_BATCH_BYTES = 512 * 1024;
+
+  private final Transcoder<SingularityTaskStatusHolder> taskStatusTranscoder;
+  private final boolean deferWrites;
+  private final long flushEveryMillis;
+
+  private final ConcurrentMap<SingularityTaskId, SingularityTaskStatusHolder> statuses;
+  // absent means the status should be deleted
+  private final ConcurrentMap<SingularityTaskId, Optional<SingularityTaskStatusHolder>> unflushed;
+
+  private final Meter coalescedMeter;
+  private final Histogram flushSizeHistogram;
+  private final Timer flushTimer;
+
+  private ScheduledExecutorService flushExecutor;
+
+  private volatile boolean running;
+
+  @Inject
+  public SingularityTaskStatusStore(CuratorFramework curator, SingularityConfiguration configuration, MetricRegistry metricRegistry, Transcoder<SingularityTaskStatusHolder> taskStatusTranscoder) {
+    super(curator, configuration, metricRegistry);
+
+    this.taskStatusTranscoder = taskStatusTranscoder;
+    this.deferWrites = configuration.isDeferLastActiveTaskStatusWrites();
+    this.flushEveryMillis = configuration.getFlushLastActiveTaskStatusesEveryMillis();
+
+    this.statuses = new ConcurrentHashMap<>();
+    this.unflushed = new ConcurrentHashMap<>();
+
+    this.coalescedMeter = metricRegistry.meter(MetricRegistry.name(SingularityTaskStatusStore.class, "coalesced"));
+    this.flushSizeHistogram = metricRegistry.histogram(MetricRegistry.name(SingularityTaskStatusStore.class, "flushSize"));
+    this.flushTimer = metricRegistry.timer(MetricRegistry.name(SingularityTaskStatusStore.class, "flush"));
+
+    metricRegistry.register(MetricRegistry.name(SingularityTaskStatusStore.class, "unflushed"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return unflushed.size();
+      }
+
+    });
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    stopStoring();
+  }
+
+  public synchronized void startStoring() {
+    if (running) {
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+
+    statuses.clear();
+    unflushed.clear();
+
+    for (SingularityTaskStatusHolder taskStatus : getAsyncChildren(TaskManager.LAST_ACTIVE_TASK_STATUSES_PATH_ROOT, taskStatusTranscoder)) {
+      statuses.put(taskStatus.getTaskId(), taskStatus);
+    }
+
+    if (deferWrites) {
+      flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("SingularityTaskStatusStore-%d").setDaemon(true).build());
+      flushExecutor.scheduleWithFixedDelay(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            flush();
+          } catch (Throwable t) {
+            LOG.error("While flushing {} task statuses", unflushed.size(), t);
+          }
+        }
+
+      }, flushEveryMillis, flushEveryMillis, TimeUnit.MILLISECONDS);
+    }
+
+    running = true;
+
+    LOG.info("Loaded {} last active task statuses ({} writes) in {}", statuses.size(), deferWrites ? "deferred" : "synchronous", JavaUtils.duration(start));
+  }
+
+  public synchronized void stopStoring() {
+    if (!running) {
+      return;
+    }
+
+    running = false;
+
+    if (flushExecutor != null) {
+      flushExecutor.shutdown();
+      flushExecutor = null;
+    }
+
+    try {
+      flush();
+    } catch (Throwable t) {
+      LOG.error("While flushing {} task statuses on stop", unflushed.size(), t);
+    }
+
+    statuses.clear();
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public boolean isDeferringWrites() {
+    return deferWrites;
+  }
+
+  public Optional<SingularityTaskStatusHolder> get(SingularityTaskId taskId) {
+    return Optional.fromNullable(statuses.get(taskId));
+  }
+
+  public List<SingularityTaskStatusHolder> getAll() {
+    return ImmutableList.copyOf(statuses.values());
+  }
+
+  public List<SingularityTaskStatusHolder> getFor(Collection<SingularityTaskId> taskIds) {
+    final List<SingularityTaskStatusHolder> found = Lists.newArrayListWithCapacity(taskIds.size());
+
+    for (SingularityTaskId taskId : taskIds) {
+      final SingularityTaskStatusHolder taskStatus = statuses.get(taskId);
+
+      if (taskStatus != null) {
+        found.add(taskStatus);
+      }
+    }
+
+    return found;
+  }
+
+  public void save(SingularityTaskStatusHolder taskStatus) {
+    statuses.put(taskStatus.getTaskId(), taskStatus);
+
+    if (deferWrites) {
+      queue(taskStatus.getTaskId(), Optional.of(taskStatus));
+    } else {
+      save(getPath(taskStatus.getTaskId()), taskStatus, taskStatusTranscoder);
+    }
+  }
+
+  /**
+   * Records a status which the caller has already written to ZooKeeper itself.
+   */
+  void saved(SingularityTaskStatusHolder taskStatus) {
+    statuses.put(taskStatus.getTaskId(), taskStatus);
+  }
+
+  public SingularityDeleteResult delete(SingularityTaskId taskId) {
+    final boolean existed = statuses.remove(taskId) != null;
+
+    if (deferWrites) {
+      queue(taskId, Optional.<SingularityTaskStatusHolder> absent());
+      return existed ? SingularityDeleteResult.DELETED : SingularityDeleteResult.DIDNT_EXIST;
+    }
+
+    return delete(getPath(taskId));
+  }
+
+  private void queue(SingularityTaskId taskId, Optional<SingularityTaskStatusHolder> taskStatus) {
+    if (unflushed.put(taskId, taskStatus) != null) {
+      coalescedMeter.mark();
+    }
+  }
+
+  private String getPath(SingularityTaskId taskId) {
+    return ZKPaths.makePath(TaskManager.LAST_ACTIVE_TASK_STATUSES_PATH_ROOT, taskId.getId());
+  }
+
+  /**
+   * Writes every queued status and delete, in as few multi-ops as fit under the ZooKeeper request size.
+   * @return the number of tasks written
+   */
+  public synchronized int flush() {
+    if (unflushed.isEmpty()) {
+      return 0;
+    }
+
+    final Timer.Context context = flushTimer.time();
+
+    final Map<SingularityTaskId, Optional<SingularityTaskStatusHolder>> flushing = Maps.newHashMap();
+
+    for (SingularityTaskId taskId : unflushed.keySet()) {
+      final Optional<SingularityTaskStatusHolder> taskStatus = unflushed.remove(taskId);
+
+      if (taskStatus != null) {
+        flushing.put(taskId, taskStatus);
+      }
+    }
+
+    final int numFlushing = flushing.size();
+
+    try {
+      ZkWriteBatch batch = new ZkWriteBatch();
+      List<SingularityTaskId> batchTaskIds = Lists.newArrayList();
+
+      // committed tasks are removed from flushing as we go, so whatever is left on failure can be queued again
+      for (Map.Entry<SingularityTaskId, Optional<SingularityTaskStatusHolder>> entry : ImmutableList.copyOf(flushing.entrySet())) {
+        final ZkWriteBatch operation = new ZkWriteBatch();
+
+        if (entry.getValue().isPresent()) {
+          operation.setData(getPath(entry.getKey()), taskStatusTranscoder.toBytes(entry.getValue().get()));
+        } else {
+          operation.delete(getPath(entry.getKey()));
+        }
+
+        if (!batch.isEmpty() && batch.getNumBytes() + operation.getNumBytes() > MAX_WRITE_BATCH_BYTES) {
+          commit(batch, batchTaskIds, flushing);
+
+          batch = new ZkWriteBatch();
+          batchTaskIds = Lists.newArrayList();
+        }
+
+        batch.addAll(operation);
+        batchTaskIds.add(entry.getKey());
+      }
+
+      if (!batch.isEmpty()) {
+        commit(batch, batchTaskIds, flushing);
+      }
+    } catch (RuntimeException e) {
+      // put back whatever wasn't written, unless a newer write has been queued since
+      for (Map.Entry<SingularityTaskId, Optional<SingularityTaskStatusHolder>> entry : flushing.entrySet()) {
+        unflushed.putIfAbsent(entry.getKey(), entry.getValue());
+      }
+      throw e;
+    } finally {
+      context.stop();
+    }
+
+    flushSizeHistogram.update(numFlushing);
+
+    return numFlushing;
+  }
+
+  private void commit(ZkWriteBatch batch, List<SingularityTaskId> taskIds, Map<SingularityTaskId, Optional<SingularityTaskStatusHolder>> flushing) {
+    try {
+      batch.commit(curator);
+    } catch (KeeperException ke) {
+      LOG.debug("Couldn't flush {} task statuses in one transaction ({}), writing them one at a time", taskIds.size(), ke.code());
+
+      for (SingularityTaskId taskId : taskIds) {
+        final Optional<SingularityTaskStatusHolder> taskStatus = flushing.get(taskId);
+
+        if (taskStatus.isPresent()) {
+          final SingularityCreateResult result = save(getPath(taskId), taskStatus.get(), taskStatusTranscoder);
+          LOG.trace("Saved status for {} ({})", taskId, result);
+        } else {
+          delete(getPath(taskId));
+        }
+
+        flushing.remove(taskId);
+      }
+
+      return;
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+
+    for (SingularityTaskId taskId : taskIds) {
+      flushing.remove(taskId);
+    }
+  }
+
+}
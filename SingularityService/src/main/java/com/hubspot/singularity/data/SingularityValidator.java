@@ -151,6 +151,10 @@ public class SingularityValidator {
       checkBadRequest(!request.getKillOldNonLongRunningTasksAfterMillis().isPresent(), "longRunning requests can not define a killOldNonLongRunningTasksAfterMillis value");
     }
 
+    if (request.getTaskPriorityLevel().isPresent()) {
+      checkBadRequest(request.getTaskPriorityLevel().get() > 0, "taskPriorityLevel must be greater than 0");
+    }
+
     if (request.isScheduled()) {
       checkBadRequest(request.getInstances().or(1) == 1, "Scheduler requests can not be ran on more than one instance");
     } else if (request.isOneOff()) {
@@ -2,6 +2,7 @@ package com.hubspot.singularity.data;
 
 import org.apache.curator.framework.CuratorFramework;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.hubspot.singularity.SingularityMachineStateHistoryUpdate;
@@ -12,11 +13,12 @@ import com.hubspot.singularity.data.transcoders.Transcoder;
 @Singleton
 public class SlaveManager extends AbstractMachineManager<SingularitySlave> {
 
-  private static final String SLAVE_ROOT = "/slaves";
+  static final String SLAVE_ROOT = "/slaves";
 
   @Inject
-  public SlaveManager(CuratorFramework curator, SingularityConfiguration configuration, Transcoder<SingularitySlave> slaveTranscoder, Transcoder<SingularityMachineStateHistoryUpdate> stateHistoryTranscoder) {
-    super(curator, configuration.getZookeeperAsyncTimeout(), slaveTranscoder, stateHistoryTranscoder);
+  public SlaveManager(CuratorFramework curator, SingularityConfiguration configuration, MetricRegistry metricRegistry, Transcoder<SingularitySlave> slaveTranscoder,
+      Transcoder<SingularityMachineStateHistoryUpdate> stateHistoryTranscoder) {
+    super(curator, configuration, metricRegistry, slaveTranscoder, stateHistoryTranscoder);
   }
 
   @Override
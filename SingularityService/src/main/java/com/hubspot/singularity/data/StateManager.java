@@ -3,6 +3,7 @@ package com.hubspot.singularity.data;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
 
@@ -14,12 +15,16 @@ import org.apache.zookeeper.KeeperException.NoNodeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.hubspot.mesos.CounterMap;
 import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.MachineState;
+import com.hubspot.singularity.RequestState;
 import com.hubspot.singularity.SingularityHostState;
 import com.hubspot.singularity.SingularityPendingDeploy;
 import com.hubspot.singularity.SingularityPendingTaskId;
@@ -38,8 +43,11 @@ public class StateManager extends CuratorManager {
 
   private static final Logger LOG = LoggerFactory.getLogger(StateManager.class);
 
-  private static final String ROOT_PATH = "/hosts";
-  private static final String STATE_PATH = "STATE";
+  static final String ROOT_PATH = "/hosts";
+  private static final String STATE_PATH = "/STATE";
+
+  // tracked state only moves with time (late tasks, deploy age) between tracker changes, so it is reused for at most this long
+  private static final long TRACKED_STATE_MAX_AGE_MILLIS = TimeUnit.SECONDS.toMillis(1);
 
   private final RequestManager requestManager;
   private final TaskManager taskManager;
@@ -49,10 +57,17 @@ public class StateManager extends CuratorManager {
   private final Transcoder<SingularityState> stateTranscoder;
   private final Transcoder<SingularityHostState> hostStateTranscoder;
   private final SingularityConfiguration singularityConfiguration;
+  private final SingularityStateTracker stateTracker;
+  private final SingularityTaskMirror taskMirror;
+
+  private final Counter driftCounter;
+
+  private volatile TrackedState lastTrackedState;
 
   @Inject
   public StateManager(CuratorFramework curatorFramework, RequestManager requestManager, TaskManager taskManager, DeployManager deployManager, SlaveManager slaveManager, RackManager rackManager,
-      Transcoder<SingularityState> stateTranscoder, Transcoder<SingularityHostState> hostStateTranscoder, SingularityConfiguration singularityConfiguration) {
+      Transcoder<SingularityState> stateTranscoder, Transcoder<SingularityHostState> hostStateTranscoder, SingularityConfiguration singularityConfiguration, SingularityStateTracker stateTracker,
+      SingularityTaskMirror taskMirror, MetricRegistry metricRegistry) {
     super(curatorFramework);
 
     this.requestManager = requestManager;
@@ -63,6 +78,22 @@ public class StateManager extends CuratorManager {
     this.rackManager = rackManager;
     this.deployManager = deployManager;
     this.singularityConfiguration = singularityConfiguration;
+    this.stateTracker = stateTracker;
+    this.taskMirror = taskMirror;
+
+    this.driftCounter = metricRegistry.counter(MetricRegistry.name(StateManager.class, "drift"));
+  }
+
+  private static class TrackedState {
+
+    private final SingularityState state;
+    private final long trackerVersion;
+
+    TrackedState(SingularityState state, long trackerVersion) {
+      this.state = state;
+      this.trackerVersion = trackerVersion;
+    }
+
   }
 
   public void save(SingularityHostState hostState) throws InterruptedException {
@@ -115,7 +146,15 @@ public class StateManager extends CuratorManager {
     return numTasks.toCountMap();
   }
 
+  private boolean isTracking() {
+    return stateTracker.isRunning() && taskMirror.isRunning();
+  }
+
   public SingularityState getState(boolean skipCache, boolean includeRequestIds) {
+    if (!skipCache && isTracking()) {
+      return getTrackedState(includeRequestIds);
+    }
+
     Optional<SingularityState> fromZk = Optional.absent();
 
     if (!skipCache) {
@@ -197,16 +236,7 @@ public class StateManager extends CuratorManager {
       }
     }
 
-    final List<String> underProvisionedRequestIds = new ArrayList<>(possiblyUnderProvisionedRequestIds.size());
-    if (!possiblyUnderProvisionedRequestIds.isEmpty()) {
-      Map<String, SingularityRequestDeployState> deployStates = deployManager.getRequestDeployStatesByRequestIds(possiblyUnderProvisionedRequestIds);
-
-      for (SingularityRequestDeployState deployState : deployStates.values()) {
-        if (deployState.getActiveDeploy().isPresent() || deployState.getPendingDeploy().isPresent()) {
-          underProvisionedRequestIds.add(deployState.getRequestId());
-        }
-      }
-    }
+    final List<String> underProvisionedRequestIds = getUnderProvisionedRequestIds(possiblyUnderProvisionedRequestIds);
 
     final int pendingRequests = requestManager.getSizeOfPendingQueue();
     final int cleaningRequests = requestManager.getSizeOfCleanupQueue();
@@ -283,4 +313,186 @@ public class StateManager extends CuratorManager {
             includeRequestIds ? underProvisionedRequestIds : null, overProvisionedRequestIds.size(), underProvisionedRequestIds.size(), numFinishedRequests, unknownRacks, unknownSlaves);
   }
 
+  private List<String> getUnderProvisionedRequestIds(List<String> possiblyUnderProvisionedRequestIds) {
+    final List<String> underProvisionedRequestIds = new ArrayList<>(possiblyUnderProvisionedRequestIds.size());
+    if (!possiblyUnderProvisionedRequestIds.isEmpty()) {
+      Map<String, SingularityRequestDeployState> deployStates = deployManager.getRequestDeployStatesByRequestIds(possiblyUnderProvisionedRequestIds);
+
+      for (SingularityRequestDeployState deployState : deployStates.values()) {
+        if (deployState.getActiveDeploy().isPresent() || deployState.getPendingDeploy().isPresent()) {
+          underProvisionedRequestIds.add(deployState.getRequestId());
+        }
+      }
+    }
+    return underProvisionedRequestIds;
+  }
+
+  private SingularityState getTrackedState(boolean includeRequestIds) {
+    final TrackedState last = lastTrackedState;
+    final long trackerVersion = stateTracker.getVersion();
+
+    SingularityState state;
+
+    if (last != null && last.trackerVersion == trackerVersion && System.currentTimeMillis() - last.state.getGeneratedAt() < TRACKED_STATE_MAX_AGE_MILLIS) {
+      state = last.state;
+    } else {
+      state = generateTrackedState();
+      lastTrackedState = new TrackedState(state, trackerVersion);
+    }
+
+    if (includeRequestIds) {
+      return state;
+    }
+
+    return new SingularityState(state.getActiveTasks(), state.getActiveRequests(), state.getCooldownRequests(), state.getPausedRequests(), state.getScheduledTasks(), state.getPendingRequests(),
+        state.getLbCleanupTasks(), state.getCleaningRequests(), state.getActiveSlaves(), state.getDeadSlaves(), state.getDecommissioningSlaves(), state.getActiveRacks(), state.getDeadRacks(),
+        state.getDecommissioningRacks(), state.getCleaningTasks(), state.getHostStates(), state.getOldestDeploy(), state.getNumDeploys(), state.getLateTasks(), state.getFutureTasks(),
+        state.getMaxTaskLag(), state.getGeneratedAt(), null, null, state.getOverProvisionedRequests(), state.getUnderProvisionedRequests(), state.getFinishedRequests(), state.getUnknownRacks(),
+        state.getUnknownSlaves());
+  }
+
+  /**
+   * Builds the state from the counts kept by the state tracker and the task mirror instead of listing every tree.
+   */
+  private SingularityState generateTrackedState() {
+    final SingularityScheduledTasksInfo scheduledTasksInfo = SingularityScheduledTasksInfo.getInfo(taskMirror.getPendingTasks(), singularityConfiguration.getDeltaAfterWhichTasksAreLateMillis());
+
+    final CounterMap<String> numInstances = new CounterMap<>();
+
+    for (SingularityTaskId taskId : taskMirror.getActiveTaskIds()) {
+      numInstances.incr(taskId.getRequestId());
+    }
+
+    for (SingularityPendingTaskId pendingTaskId : taskMirror.getPendingTaskIds()) {
+      numInstances.incr(pendingTaskId.getRequestId());
+    }
+
+    final List<String> overProvisionedRequestIds = new ArrayList<>();
+    final List<String> possiblyUnderProvisionedRequestIds = new ArrayList<>();
+
+    for (SingularityRequestWithState requestWithState : stateTracker.getRequests()) {
+      if (requestWithState.getState().isRunnable() && requestWithState.getRequest().isAlwaysRunning()) {
+        final int instances = requestWithState.getRequest().getInstancesSafe();
+        final long numActualInstances = numInstances.getCount(requestWithState.getRequest().getId());
+
+        if (numActualInstances < instances) {
+          possiblyUnderProvisionedRequestIds.add(requestWithState.getRequest().getId());
+        } else if (numActualInstances > instances) {
+          overProvisionedRequestIds.add(requestWithState.getRequest().getId());
+        }
+      }
+    }
+
+    final List<String> underProvisionedRequestIds = stateTracker.getRequestIdsWithDeploy(possiblyUnderProvisionedRequestIds);
+
+    int numDeploys = 0;
+    long oldestDeploy = 0;
+    final long now = System.currentTimeMillis();
+
+    for (SingularityPendingDeploy pendingDeploy : stateTracker.getPendingDeploys()) {
+      oldestDeploy = Math.max(oldestDeploy, now - pendingDeploy.getDeployMarker().getTimestamp());
+      numDeploys++;
+    }
+
+    return new SingularityState(taskMirror.getNumActiveTasks(), stateTracker.getNumRequests(RequestState.ACTIVE) + stateTracker.getNumRequests(RequestState.DEPLOYING_TO_UNPAUSE),
+        stateTracker.getNumRequests(RequestState.SYSTEM_COOLDOWN), stateTracker.getNumRequests(RequestState.PAUSED), taskMirror.getNumPendingTasks(), stateTracker.getNumPendingRequests(),
+        stateTracker.getNumLbCleanupTasks(), stateTracker.getNumCleanupRequests(), stateTracker.getNumSlaves(MachineState.ACTIVE), stateTracker.getNumSlaves(MachineState.DEAD),
+        getNumDecommissioning(stateTracker.getNumSlaves(MachineState.STARTING_DECOMMISSION), stateTracker.getNumSlaves(MachineState.DECOMMISSIONING), stateTracker.getNumSlaves(MachineState.DECOMMISSIONED)),
+        stateTracker.getNumRacks(MachineState.ACTIVE), stateTracker.getNumRacks(MachineState.DEAD),
+        getNumDecommissioning(stateTracker.getNumRacks(MachineState.STARTING_DECOMMISSION), stateTracker.getNumRacks(MachineState.DECOMMISSIONING), stateTracker.getNumRacks(MachineState.DECOMMISSIONED)),
+        taskMirror.getNumCleanupTasks(), stateTracker.getHostStates(), oldestDeploy, numDeploys, scheduledTasksInfo.getNumLateTasks(), scheduledTasksInfo.getNumFutureTasks(), scheduledTasksInfo.getMaxTaskLag(),
+        now, overProvisionedRequestIds, underProvisionedRequestIds, overProvisionedRequestIds.size(), underProvisionedRequestIds.size(), stateTracker.getNumRequests(RequestState.FINISHED),
+        stateTracker.getNumRacks(MachineState.MISSING_ON_STARTUP), stateTracker.getNumSlaves(MachineState.MISSING_ON_STARTUP));
+  }
+
+  private int getNumDecommissioning(int startingDecommission, int decommissioning, int decommissioned) {
+    return startingDecommission + decommissioning + decommissioned;
+  }
+
+  /**
+   * Saves the tracked state for other instances, which serve it for up to cacheStateForMillis before generating their own.
+   */
+  public void saveTrackedState() {
+    if (!isTracking()) {
+      return;
+    }
+
+    save(STATE_PATH, getTrackedState(true), stateTranscoder);
+  }
+
+  /**
+   * Recomputes the state from ZooKeeper and compares its counts with the tracked ones. If they disagree (twice, to rule out a change
+   * landing between the two reads) the tracker is rebuilt. The tracked state is then saved so other instances can serve it.
+   * @return the number of counts which had drifted
+   */
+  public int checkTrackedState() {
+    if (!isTracking()) {
+      return 0;
+    }
+
+    final long start = System.currentTimeMillis();
+
+    List<String> drifted = getDriftedCounts(generateState(false), generateTrackedState());
+
+    if (!drifted.isEmpty()) {
+      drifted = getDriftedCounts(generateState(false), generateTrackedState());
+    }
+
+    if (!drifted.isEmpty()) {
+      LOG.warn("Tracked state had drifted ({}), rebuilding", drifted);
+
+      driftCounter.inc(drifted.size());
+
+      try {
+        stateTracker.rebuild();
+      } catch (Exception e) {
+        throw Throwables.propagate(e);
+      }
+
+      lastTrackedState = null;
+    }
+
+    final SingularityState state = getTrackedState(true);
+
+    save(STATE_PATH, state, stateTranscoder);
+
+    LOG.debug("Checked tracked state in {}", JavaUtils.duration(start));
+
+    return drifted.size();
+  }
+
+  private List<String> getDriftedCounts(SingularityState full, SingularityState tracked) {
+    final List<String> drifted = new ArrayList<>();
+
+    addIfDrifted(drifted, "activeTasks", full.getActiveTasks(), tracked.getActiveTasks());
+    addIfDrifted(drifted, "scheduledTasks", full.getScheduledTasks(), tracked.getScheduledTasks());
+    addIfDrifted(drifted, "cleaningTasks", full.getCleaningTasks(), tracked.getCleaningTasks());
+    addIfDrifted(drifted, "lbCleanupTasks", full.getLbCleanupTasks(), tracked.getLbCleanupTasks());
+    addIfDrifted(drifted, "activeRequests", full.getActiveRequests(), tracked.getActiveRequests());
+    addIfDrifted(drifted, "pausedRequests", full.getPausedRequests(), tracked.getPausedRequests());
+    addIfDrifted(drifted, "cooldownRequests", full.getCooldownRequests(), tracked.getCooldownRequests());
+    addIfDrifted(drifted, "finishedRequests", full.getFinishedRequests(), tracked.getFinishedRequests());
+    addIfDrifted(drifted, "pendingRequests", full.getPendingRequests(), tracked.getPendingRequests());
+    addIfDrifted(drifted, "cleaningRequests", full.getCleaningRequests(), tracked.getCleaningRequests());
+    addIfDrifted(drifted, "activeSlaves", full.getActiveSlaves(), tracked.getActiveSlaves());
+    addIfDrifted(drifted, "deadSlaves", full.getDeadSlaves(), tracked.getDeadSlaves());
+    addIfDrifted(drifted, "decommissioningSlaves", full.getDecommissioningSlaves(), tracked.getDecommissioningSlaves());
+    addIfDrifted(drifted, "unknownSlaves", full.getUnknownSlaves(), tracked.getUnknownSlaves());
+    addIfDrifted(drifted, "activeRacks", full.getActiveRacks(), tracked.getActiveRacks());
+    addIfDrifted(drifted, "deadRacks", full.getDeadRacks(), tracked.getDeadRacks());
+    addIfDrifted(drifted, "decommissioningRacks", full.getDecommissioningRacks(), tracked.getDecommissioningRacks());
+    addIfDrifted(drifted, "unknownRacks", full.getUnknownRacks(), tracked.getUnknownRacks());
+    addIfDrifted(drifted, "numDeploys", full.getNumDeploys(), tracked.getNumDeploys());
+    addIfDrifted(drifted, "overProvisionedRequests", full.getOverProvisionedRequests(), tracked.getOverProvisionedRequests());
+    addIfDrifted(drifted, "underProvisionedRequests", full.getUnderProvisionedRequests(), tracked.getUnderProvisionedRequests());
+
+    return drifted;
+  }
+
+  private void addIfDrifted(List<String> drifted, String name, int full, int tracked) {
+    if (full != tracked) {
+      drifted.add(String.format("%s: %s tracked, %s actual", name, tracked, full));
+    }
+  }
+
 }
@@ -1,15 +1,21 @@
 package com.hubspot.singularity.data;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
+import com.hubspot.mesos.JavaUtils;
 import com.hubspot.singularity.ExtendedTaskState;
 import com.hubspot.singularity.LoadBalancerRequestType;
 import com.hubspot.singularity.SingularityCreateResult;
@@ -29,7 +35,9 @@ import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.SingularityTaskIdHolder;
 import com.hubspot.singularity.SingularityTaskStatusHolder;
 import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.history.SingularityHealthcheckHistoryPersister;
 import com.hubspot.singularity.data.transcoders.IdTranscoder;
+import com.hubspot.singularity.data.transcoders.ListTranscoder;
 import com.hubspot.singularity.data.transcoders.StringTranscoder;
 import com.hubspot.singularity.data.transcoders.Transcoder;
 import com.hubspot.singularity.event.SingularityEventListener;
@@ -38,13 +46,18 @@ import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.mesos.Protos.TaskStatus;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.OpResult.ErrorResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -55,26 +68,33 @@ public class TaskManager extends CuratorAsyncManager {
 
   private static final String TASKS_ROOT = "/tasks";
 
-  private static final String ACTIVE_PATH_ROOT = TASKS_ROOT + "/active";
-  private static final String LAST_ACTIVE_TASK_STATUSES_PATH_ROOT = TASKS_ROOT + "/statuses";
-  private static final String PENDING_PATH_ROOT = TASKS_ROOT + "/scheduled";
-  private static final String CLEANUP_PATH_ROOT = TASKS_ROOT + "/cleanup";
-  private static final String LB_CLEANUP_PATH_ROOT = TASKS_ROOT + "/lbcleanup";
+  static final String ACTIVE_PATH_ROOT = TASKS_ROOT + "/active";
+  static final String LAST_ACTIVE_TASK_STATUSES_PATH_ROOT = TASKS_ROOT + "/statuses";
+  static final String PENDING_PATH_ROOT = TASKS_ROOT + "/scheduled";
+  static final String CLEANUP_PATH_ROOT = TASKS_ROOT + "/cleanup";
+  static final String LB_CLEANUP_PATH_ROOT = TASKS_ROOT + "/lbcleanup";
   private static final String DRIVER_KILLED_PATH_ROOT = TASKS_ROOT + "/killed";
 
   private static final String HISTORY_PATH_ROOT = TASKS_ROOT + "/history";
 
   private static final String LAST_HEALTHCHECK_KEY = "LAST_HEALTHCHECK";
+  private static final String HEALTHCHECK_RESULTS_KEY = "HEALTHCHECK_RESULTS";
   private static final String DIRECTORY_KEY = "DIRECTORY";
   private static final String TASK_KEY = "TASK";
   private static final String NOTIFIED_OVERDUE_TO_FINISH_KEY = "NOTIFIED_OVERDUE_TO_FINISH";
 
   private static final String LOAD_BALANCER_PRE_KEY = "LOAD_BALANCER_";
 
+  private static final int MAX_WRITE_BATCH_BYTES = 512 * 1024;
+
+  // how many results a task keeps in ZooKeeper while they can't be persisted, so that its node stays well under the ZooKeeper limit
+  private static final int MAX_UNPERSISTED_HEALTHCHECK_RESULTS = 200;
+
   private static final String HEALTHCHECKS_PATH = "/healthchecks";
   private static final String UPDATES_PATH = "/updates";
 
   private final Transcoder<SingularityTaskHealthcheckResult> healthcheckResultTranscoder;
+  private final Transcoder<List<SingularityTaskHealthcheckResult>> healthcheckResultsTranscoder;
   private final Transcoder<SingularityTaskCleanup> taskCleanupTranscoder;
   private final Transcoder<SingularityTask> taskTranscoder;
   private final Transcoder<SingularityTaskStatusHolder> taskStatusTranscoder;
@@ -87,17 +107,31 @@ public class TaskManager extends CuratorAsyncManager {
   private final IdTranscoder<SingularityTaskId> taskIdTranscoder;
 
   private final SingularityEventListener singularityEventListener;
+  private final SingularityTaskMirror taskMirror;
+  private final SingularityTaskStatusStore taskStatusStore;
+  private final Provider<SingularityHealthcheckHistoryPersister> healthcheckHistoryPersister;
+  private final SingularityConfiguration configuration;
   private final String serverId;
 
+  // the recent healthcheck results of tasks which this instance (as the leader) has saved results for, so saving doesn't read them back
+  private final ConcurrentMap<String, List<SingularityTaskHealthcheckResult>> recentHealthcheckResults;
+  private final Object healthcheckResultsLock;
+
+  // requests whose task history parent this instance has created or seen, so batched task creates don't need a round trip for it
+  private final Set<String> requestsWithHistoryPath;
+  private volatile boolean requiredParentsCreated;
+
   @Inject
-  public TaskManager(SingularityConfiguration configuration, CuratorFramework curator, SingularityEventListener singularityEventListener, IdTranscoder<SingularityPendingTaskId> pendingTaskIdTranscoder,
+  public TaskManager(SingularityConfiguration configuration, CuratorFramework curator, MetricRegistry metricRegistry, SingularityEventListener singularityEventListener, IdTranscoder<SingularityPendingTaskId> pendingTaskIdTranscoder,
       IdTranscoder<SingularityTaskId> taskIdTranscoder, Transcoder<SingularityLoadBalancerUpdate> taskLoadBalancerHistoryUpdateTranscoder,
       Transcoder<SingularityTaskStatusHolder> taskStatusTranscoder, Transcoder<SingularityTaskHealthcheckResult> healthcheckResultTranscoder, Transcoder<SingularityTask> taskTranscoder,
       Transcoder<SingularityTaskCleanup> taskCleanupTranscoder, Transcoder<SingularityTaskHistoryUpdate> taskHistoryUpdateTranscoder, Transcoder<SingularityPendingTask> pendingTaskTranscoder,
-      Transcoder<SingularityKilledTaskIdRecord> killedTaskIdRecordTranscoder, @Named(SingularityMainModule.SERVER_ID_PROPERTY) String serverId) {
-    super(curator, configuration.getZookeeperAsyncTimeout());
+      Transcoder<SingularityKilledTaskIdRecord> killedTaskIdRecordTranscoder, SingularityTaskMirror taskMirror, SingularityTaskStatusStore taskStatusStore,
+      Provider<SingularityHealthcheckHistoryPersister> healthcheckHistoryPersister, @Named(SingularityMainModule.SERVER_ID_PROPERTY) String serverId) {
+    super(curator, configuration, metricRegistry);
 
     this.healthcheckResultTranscoder = healthcheckResultTranscoder;
+    this.healthcheckResultsTranscoder = new ListTranscoder<>(healthcheckResultTranscoder);
     this.taskTranscoder = taskTranscoder;
     this.taskStatusTranscoder = taskStatusTranscoder;
     this.killedTaskIdRecordTranscoder = killedTaskIdRecordTranscoder;
@@ -108,20 +142,34 @@ public class TaskManager extends CuratorAsyncManager {
     this.pendingTaskIdTranscoder = pendingTaskIdTranscoder;
     this.taskLoadBalancerUpdateTranscoder = taskLoadBalancerHistoryUpdateTranscoder;
     this.singularityEventListener = singularityEventListener;
+    this.taskMirror = taskMirror;
+    this.taskStatusStore = taskStatusStore;
+    this.healthcheckHistoryPersister = healthcheckHistoryPersister;
 
+    this.configuration = configuration;
     this.serverId = serverId;
+
+    this.recentHealthcheckResults = Maps.newConcurrentMap();
+    this.healthcheckResultsLock = new Object();
+    this.requestsWithHistoryPath = Sets.newConcurrentHashSet();
   }
 
   // since we can't use creatingParentsIfNeeded in transactions
   public void createRequiredParents() {
     create(HISTORY_PATH_ROOT);
     create(ACTIVE_PATH_ROOT);
+    create(LAST_ACTIVE_TASK_STATUSES_PATH_ROOT);
   }
 
   private String getLastHealthcheckPath(SingularityTaskId taskId) {
     return ZKPaths.makePath(getHistoryPath(taskId), LAST_HEALTHCHECK_KEY);
   }
 
+  private String getHealthcheckResultsPath(SingularityTaskId taskId) {
+    return ZKPaths.makePath(getHistoryPath(taskId), HEALTHCHECK_RESULTS_KEY);
+  }
+
+  // results were saved one node per healthcheck here before they were kept together under HEALTHCHECK_RESULTS
   private String getHealthcheckParentPath(SingularityTaskId taskId) {
     return ZKPaths.makePath(getHistoryPath(taskId), HEALTHCHECKS_PATH);
   }
@@ -130,10 +178,6 @@ public class TaskManager extends CuratorAsyncManager {
     return ZKPaths.makePath(LAST_ACTIVE_TASK_STATUSES_PATH_ROOT, taskId.getId());
   }
 
-  private String getHealthcheckPath(SingularityTaskHealthcheckResult healthcheck) {
-    return ZKPaths.makePath(getHealthcheckParentPath(healthcheck.getTaskId()), Long.toString(healthcheck.getTimestamp()));
-  }
-
   private String getTaskPath(SingularityTaskId taskId) {
     return ZKPaths.makePath(getHistoryPath(taskId), TASK_KEY);
   }
@@ -205,6 +249,11 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public void saveLastActiveTaskStatus(SingularityTaskStatusHolder taskStatus) {
+    if (taskStatusStore.isRunning()) {
+      taskStatusStore.save(taskStatus);
+      return;
+    }
+
     save(getLastActiveTaskStatusPath(taskStatus.getTaskId()), taskStatus, taskStatusTranscoder);
   }
 
@@ -213,16 +262,184 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public void saveHealthcheckResult(SingularityTaskHealthcheckResult healthcheckResult) {
-    final Optional<byte[]> bytes = Optional.of(healthcheckResultTranscoder.toBytes(healthcheckResult));
+    saveHealthcheckResults(Collections.singletonList(healthcheckResult));
+  }
+
+  /**
+   * Adds each task's results to the last maxHealthcheckResultsPerTask it has in ZooKeeper - kept together in one node - and saves
+   * them, along with the task's last healthcheck, in as few multi-ops as fit under the ZooKeeper request size. Tasks which don't have
+   * results saved yet are saved one at a time, since their parent nodes have to be created.
+   *
+   * With a database, results beyond maxHealthcheckResultsPerTask are handed to the healthcheck history persister once saved, and are
+   * only trimmed after it has inserted them. Until then they stay in ZooKeeper, up to MAX_UNPERSISTED_HEALTHCHECK_RESULTS per task.
+   */
+  public void saveHealthcheckResults(Collection<SingularityTaskHealthcheckResult> healthcheckResults) {
+    final long start = System.currentTimeMillis();
+
+    final ListMultimap<SingularityTaskId, SingularityTaskHealthcheckResult> newResults = Multimaps.index(healthcheckResults, SingularityTaskIdHolder.getTaskIdFunction());
+
+    final SingularityHealthcheckHistoryPersister persister = healthcheckHistoryPersister.get();
+    final List<SingularityTaskHealthcheckResult> resultsToPersist = Lists.newArrayList();
+
+    synchronized (healthcheckResultsLock) {
+      final Map<SingularityTaskId, List<SingularityTaskHealthcheckResult>> savedResults = getRecentHealthcheckResults(newResults.keySet());
+
+      final int maxResults = Math.max(configuration.getMaxHealthcheckResultsPerTask(), 1);
+
+      ZkWriteBatch batch = new ZkWriteBatch();
+      Map<SingularityTaskId, List<SingularityTaskHealthcheckResult>> batchResults = Maps.newHashMap();
+
+      for (SingularityTaskId taskId : newResults.keySet()) {
+        final List<SingularityTaskHealthcheckResult> taskResults = trimHealthcheckResults(taskId, mergeHealthcheckResults(savedResults.get(taskId), newResults.get(taskId)), maxResults, persister);
+
+        resultsToPersist.addAll(taskResults.subList(0, Math.max(taskResults.size() - maxResults, 0)));
+
+        if (!savedResults.containsKey(taskId)) {
+          saveHealthcheckResults(taskId, taskResults);
+          continue;
+        }
+
+        final ZkWriteBatch operation = new ZkWriteBatch()
+            .setData(getHealthcheckResultsPath(taskId), healthcheckResultsTranscoder.toBytes(taskResults))
+            .setData(getLastHealthcheckPath(taskId), healthcheckResultTranscoder.toBytes(taskResults.get(taskResults.size() - 1)));
+
+        if (!batch.isEmpty() && batch.getNumBytes() + operation.getNumBytes() > MAX_WRITE_BATCH_BYTES) {
+          commitHealthcheckResults(batchResults, batch);
+
+          batch = new ZkWriteBatch();
+          batchResults = Maps.newHashMap();
+        }
+
+        batch.addAll(operation);
+        batchResults.put(taskId, taskResults);
+      }
+
+      if (!batch.isEmpty()) {
+        commitHealthcheckResults(batchResults, batch);
+      }
+    }
+
+    persister.persistAsync(resultsToPersist);
+
+    LOG.trace("Saved {} healthcheck results for {} tasks in {}", healthcheckResults.size(), newResults.keySet().size(), JavaUtils.duration(start));
+  }
+
+  private List<SingularityTaskHealthcheckResult> mergeHealthcheckResults(List<SingularityTaskHealthcheckResult> savedResults, List<SingularityTaskHealthcheckResult> newResults) {
+    final List<SingularityTaskHealthcheckResult> results = Lists.newArrayListWithCapacity((savedResults == null ? 0 : savedResults.size()) + newResults.size());
+
+    if (savedResults != null) {
+      results.addAll(savedResults);
+    }
+
+    results.addAll(newResults);
+
+    Collections.sort(results);
+
+    return results;
+  }
+
+  // drops the results before the most recent maxResults which were persisted (or all of them, without a database)
+  private List<SingularityTaskHealthcheckResult> trimHealthcheckResults(SingularityTaskId taskId, List<SingularityTaskHealthcheckResult> results, int maxResults,
+      SingularityHealthcheckHistoryPersister persister) {
+    if (results.size() <= maxResults) {
+      return results;
+    }
+
+    final List<SingularityTaskHealthcheckResult> trimmed = Lists.newArrayListWithCapacity(maxResults);
+
+    for (SingularityTaskHealthcheckResult result : results.subList(0, results.size() - maxResults)) {
+      if (!persister.isPersisted(result)) {
+        trimmed.add(result);
+      }
+    }
+
+    trimmed.addAll(results.subList(results.size() - maxResults, results.size()));
+
+    final int maxUnpersistedResults = Math.max(maxResults, MAX_UNPERSISTED_HEALTHCHECK_RESULTS);
+
+    if (trimmed.size() > maxUnpersistedResults) {
+      LOG.warn("Dropping {} unpersisted healthcheck results of {}", trimmed.size() - maxUnpersistedResults, taskId);
+
+      return Lists.newArrayList(trimmed.subList(trimmed.size() - maxUnpersistedResults, trimmed.size()));
+    }
 
-    save(getHealthcheckPath(healthcheckResult), bytes);
-    save(getLastHealthcheckPath(healthcheckResult.getTaskId()), bytes);
+    return trimmed;
+  }
+
+  private Map<SingularityTaskId, List<SingularityTaskHealthcheckResult>> getRecentHealthcheckResults(Collection<SingularityTaskId> taskIds) {
+    final Map<SingularityTaskId, List<SingularityTaskHealthcheckResult>> results = Maps.newHashMapWithExpectedSize(taskIds.size());
+    final List<String> pathsToRead = Lists.newArrayList();
+
+    for (SingularityTaskId taskId : taskIds) {
+      final List<SingularityTaskHealthcheckResult> taskResults = recentHealthcheckResults.get(taskId.getId());
+
+      if (taskResults != null) {
+        results.put(taskId, taskResults);
+      } else {
+        pathsToRead.add(getHealthcheckResultsPath(taskId));
+      }
+    }
+
+    for (List<SingularityTaskHealthcheckResult> taskResults : getAsync("healthcheck_results_by_ids", pathsToRead, healthcheckResultsTranscoder)) {
+      if (!taskResults.isEmpty()) {
+        results.put(taskResults.get(0).getTaskId(), taskResults);
+      }
+    }
+
+    return results;
+  }
+
+  private void saveHealthcheckResults(SingularityTaskId taskId, List<SingularityTaskHealthcheckResult> taskResults) {
+    save(getHealthcheckResultsPath(taskId), Optional.of(healthcheckResultsTranscoder.toBytes(taskResults)));
+    save(getLastHealthcheckPath(taskId), Optional.of(healthcheckResultTranscoder.toBytes(taskResults.get(taskResults.size() - 1))));
+
+    holdHealthcheckResults(taskId, taskResults);
+  }
+
+  // only held for active tasks, so that results arriving after a task was removed don't leave entries behind
+  private void holdHealthcheckResults(SingularityTaskId taskId, List<SingularityTaskHealthcheckResult> taskResults) {
+    if (isActiveTask(taskId.getId())) {
+      recentHealthcheckResults.put(taskId.getId(), taskResults);
+    } else {
+      recentHealthcheckResults.remove(taskId.getId());
+    }
+  }
+
+  /**
+   * Forgets the healthcheck results held since this instance last became leader, as another leader may have saved newer ones since.
+   */
+  public void clearRecentHealthcheckResults() {
+    synchronized (healthcheckResultsLock) {
+      recentHealthcheckResults.clear();
+    }
+
+    healthcheckHistoryPersister.get().forgetAll();
+  }
+
+  private void commitHealthcheckResults(Map<SingularityTaskId, List<SingularityTaskHealthcheckResult>> batchResults, ZkWriteBatch batch) {
+    try {
+      batch.commit(curator);
+
+      for (Map.Entry<SingularityTaskId, List<SingularityTaskHealthcheckResult>> taskResults : batchResults.entrySet()) {
+        holdHealthcheckResults(taskResults.getKey(), taskResults.getValue());
+      }
+    } catch (KeeperException ke) {
+      LOG.debug("Couldn't save healthcheck results for {} tasks in one transaction ({}), saving them one at a time", batchResults.size(), ke.code());
+
+      for (Map.Entry<SingularityTaskId, List<SingularityTaskHealthcheckResult>> taskResults : batchResults.entrySet()) {
+        saveHealthcheckResults(taskResults.getKey(), taskResults.getValue());
+      }
+    } catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
   }
 
   public SingularityCreateResult savePendingTask(SingularityPendingTask task) {
     final String pendingPath = getPendingPath(task.getPendingTaskId());
 
-    return save(pendingPath, task, pendingTaskTranscoder);
+    final SingularityCreateResult result = save(pendingPath, task, pendingTaskTranscoder);
+    taskMirror.pendingTaskSaved(task);
+    return result;
   }
 
   public List<SingularityTaskId> getAllTaskIds() {
@@ -241,10 +458,18 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public List<SingularityTaskId> getActiveTaskIds() {
+    if (taskMirror.isRunning()) {
+      return taskMirror.getActiveTaskIds();
+    }
+
     return getTaskIds(ACTIVE_PATH_ROOT);
   }
 
   public List<SingularityTaskId> getCleanupTaskIds() {
+    if (taskMirror.isRunning()) {
+      return taskMirror.getCleanupTaskIds();
+    }
+
     return getTaskIds(CLEANUP_PATH_ROOT);
   }
 
@@ -270,14 +495,26 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public List<SingularityTaskStatusHolder> getLastActiveTaskStatuses() {
+    if (taskStatusStore.isRunning()) {
+      return taskStatusStore.getAll();
+    }
+
     return getAsyncChildren(LAST_ACTIVE_TASK_STATUSES_PATH_ROOT, taskStatusTranscoder);
   }
 
   public Optional<SingularityTaskStatusHolder> getLastActiveTaskStatus(SingularityTaskId taskId) {
+    if (taskStatusStore.isRunning()) {
+      return taskStatusStore.get(taskId);
+    }
+
     return getData(getLastActiveTaskStatusPath(taskId), taskStatusTranscoder);
   }
 
   public List<SingularityTaskStatusHolder> getLastActiveTaskStatusesFor(Collection<SingularityTaskId> activeTaskIds) {
+    if (taskStatusStore.isRunning()) {
+      return taskStatusStore.getFor(activeTaskIds);
+    }
+
     List<String> paths = Lists.newArrayListWithExpectedSize(activeTaskIds.size());
     for (SingularityTaskId taskId : activeTaskIds) {
       paths.add(getLastActiveTaskStatusPath(taskId));
@@ -317,7 +554,9 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public List<SingularityTaskHealthcheckResult> getHealthcheckResults(SingularityTaskId taskId) {
-    List<SingularityTaskHealthcheckResult> healthcheckResults = getAsyncChildren(getHealthcheckParentPath(taskId), healthcheckResultTranscoder);
+    List<SingularityTaskHealthcheckResult> healthcheckResults = Lists.newArrayList(getData(getHealthcheckResultsPath(taskId), healthcheckResultsTranscoder)
+        .or(Collections.<SingularityTaskHealthcheckResult> emptyList()));
+    healthcheckResults.addAll(getAsyncChildren(getHealthcheckParentPath(taskId), healthcheckResultTranscoder));
     Collections.sort(healthcheckResults);
     return healthcheckResults;
   }
@@ -347,7 +586,46 @@ public class TaskManager extends CuratorAsyncManager {
     return create(getUpdatePath(taskHistoryUpdate.getTaskId(), taskHistoryUpdate.getTaskState()), taskHistoryUpdate, taskHistoryUpdateTranscoder);
   }
 
+  /**
+   * Saves a history update and the task's new last active status in a single round trip, falling back to separate writes if the
+   * update already existed or the status was never written.
+   */
+  public SingularityCreateResult saveTaskHistoryUpdateAndLastActiveTaskStatus(SingularityTaskHistoryUpdate taskHistoryUpdate, SingularityTaskStatusHolder taskStatus) {
+    if (taskStatusStore.isRunning() && taskStatusStore.isDeferringWrites()) {
+      taskStatusStore.save(taskStatus);
+      return saveTaskHistoryUpdate(taskHistoryUpdate);
+    }
+
+    final ZkWriteBatch batch = new ZkWriteBatch()
+        .create(getUpdatePath(taskHistoryUpdate.getTaskId(), taskHistoryUpdate.getTaskState()), taskHistoryUpdateTranscoder.toBytes(taskHistoryUpdate))
+        .setData(getLastActiveTaskStatusPath(taskStatus.getTaskId()), taskStatusTranscoder.toBytes(taskStatus));
+
+    try {
+      batch.commit(curator);
+    } catch (KeeperException ke) {
+      LOG.debug("Couldn't save {} and status for {} together ({}), saving separately", taskHistoryUpdate.getTaskState(), taskHistoryUpdate.getTaskId(), ke.code());
+
+      final SingularityCreateResult result = saveTaskHistoryUpdate(taskHistoryUpdate);
+      saveLastActiveTaskStatus(taskStatus);
+      return result;
+    } catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
+
+    if (taskStatusStore.isRunning()) {
+      taskStatusStore.saved(taskStatus);
+    }
+
+    singularityEventListener.taskHistoryUpdateEvent(taskHistoryUpdate);
+
+    return SingularityCreateResult.CREATED;
+  }
+
   public boolean isActiveTask(String taskId) {
+    if (taskMirror.isRunning()) {
+      return taskMirror.isActiveTask(taskId);
+    }
+
     return exists(getActivePath(taskId));
   }
 
@@ -411,6 +689,68 @@ public class TaskManager extends CuratorAsyncManager {
     return Optional.of(new SingularityTaskHistory(taskUpdates, directory, healthchecks, task.get(), loadBalancerUpdates));
   }
 
+  /**
+   * Loads the history of each task with a round of background requests per node type rather than a few synchronous reads per
+   * task. Tasks which are missing their TASK node are left out, as getTaskHistory would.
+   */
+  public Map<SingularityTaskId, SingularityTaskHistory> getTaskHistories(Collection<SingularityTaskId> taskIds) {
+    final Map<SingularityTaskId, SingularityTask> tasks = getTasks(taskIds);
+    final Collection<SingularityTaskId> presentTaskIds = tasks.keySet();
+
+    final List<String> directoryPaths = Lists.newArrayListWithCapacity(presentTaskIds.size());
+    final List<String> loadBalancerPaths = Lists.newArrayListWithCapacity(presentTaskIds.size() * 2);
+    final List<String> healthcheckResultsPaths = Lists.newArrayListWithCapacity(presentTaskIds.size());
+    final List<String> healthcheckParentPaths = Lists.newArrayListWithCapacity(presentTaskIds.size());
+    final List<String> updatesPaths = Lists.newArrayListWithCapacity(presentTaskIds.size());
+
+    for (SingularityTaskId taskId : presentTaskIds) {
+      directoryPaths.add(getDirectoryPath(taskId));
+      loadBalancerPaths.add(getLoadBalancerStatePath(taskId, LoadBalancerRequestType.ADD));
+      loadBalancerPaths.add(getLoadBalancerStatePath(taskId, LoadBalancerRequestType.REMOVE));
+      healthcheckResultsPaths.add(getHealthcheckResultsPath(taskId));
+      healthcheckParentPaths.add(getHealthcheckParentPath(taskId));
+      updatesPaths.add(getUpdatesPath(taskId));
+    }
+
+    final Map<String, String> directories = getAsyncByPath("directories_by_ids", directoryPaths, StringTranscoder.INSTANCE);
+    final Map<String, SingularityLoadBalancerUpdate> loadBalancerUpdates = getAsyncByPath("load_balancer_states_by_ids", loadBalancerPaths, taskLoadBalancerUpdateTranscoder);
+    final Map<String, List<SingularityTaskHealthcheckResult>> healthcheckResults = getAsyncByPath("healthcheck_results_by_ids", healthcheckResultsPaths, healthcheckResultsTranscoder);
+    final Map<String, List<SingularityTaskHealthcheckResult>> legacyHealthcheckResults = getAsyncChildrenByParent("healthchecks_by_ids", healthcheckParentPaths, healthcheckResultTranscoder);
+    final Map<String, List<SingularityTaskHistoryUpdate>> updates = getAsyncChildrenByParent("task_updates_by_ids", updatesPaths, taskHistoryUpdateTranscoder);
+
+    final Map<SingularityTaskId, SingularityTaskHistory> histories = Maps.newHashMapWithExpectedSize(presentTaskIds.size());
+
+    for (SingularityTaskId taskId : presentTaskIds) {
+      final List<SingularityTaskHistoryUpdate> taskUpdates = Lists.newArrayList(getOrEmpty(updates, getUpdatesPath(taskId)));
+      Collections.sort(taskUpdates);
+
+      final List<SingularityTaskHealthcheckResult> taskHealthcheckResults = Lists.newArrayList(getOrEmpty(healthcheckResults, getHealthcheckResultsPath(taskId)));
+      taskHealthcheckResults.addAll(getOrEmpty(legacyHealthcheckResults, getHealthcheckParentPath(taskId)));
+      Collections.sort(taskHealthcheckResults);
+
+      final List<SingularityLoadBalancerUpdate> taskLoadBalancerUpdates = Lists.newArrayListWithCapacity(2);
+
+      for (LoadBalancerRequestType lbRequestType : Arrays.asList(LoadBalancerRequestType.ADD, LoadBalancerRequestType.REMOVE)) {
+        final SingularityLoadBalancerUpdate loadBalancerUpdate = loadBalancerUpdates.get(getLoadBalancerStatePath(taskId, lbRequestType));
+
+        if (loadBalancerUpdate != null) {
+          taskLoadBalancerUpdates.add(loadBalancerUpdate);
+        }
+      }
+
+      histories.put(taskId, new SingularityTaskHistory(taskUpdates, Optional.fromNullable(directories.get(getDirectoryPath(taskId))), taskHealthcheckResults, tasks.get(taskId),
+          taskLoadBalancerUpdates));
+    }
+
+    return histories;
+  }
+
+  private <T> List<T> getOrEmpty(Map<String, List<T>> listsByPath, String path) {
+    final List<T> list = listsByPath.get(path);
+
+    return list == null ? Collections.<T> emptyList() : list;
+  }
+
   private void checkLoadBalancerHistory(List<SingularityLoadBalancerUpdate> loadBalancerUpdates, SingularityTaskId taskId, LoadBalancerRequestType lbRequestType) {
     Optional<SingularityLoadBalancerUpdate> lbHistory = getLoadBalancerState(taskId, lbRequestType);
 
@@ -442,19 +782,184 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public List<SingularityPendingTaskId> getPendingTaskIds() {
+    if (taskMirror.isRunning()) {
+      return taskMirror.getPendingTaskIds();
+    }
+
     return getChildrenAsIds(PENDING_PATH_ROOT, pendingTaskIdTranscoder);
   }
 
   public List<SingularityPendingTask> getPendingTasks() {
+    if (taskMirror.isRunning()) {
+      return taskMirror.getPendingTasks();
+    }
+
     return getAsyncChildren(PENDING_PATH_ROOT, pendingTaskTranscoder);
   }
 
   public void createTaskAndDeletePendingTask(SingularityTask task) {
+    createTasksAndDeletePendingTasks(Collections.singletonList(task));
+  }
+
+  /**
+   * Writes every task launched from an offer cycle using as few multi() round trips as fit under ZooKeeper's request size limit.
+   * If one task's operations fail (for example its pending task had already been removed), only that task is written on its own
+   * and the rest of its batch is retried without it.
+   */
+  public void createTasksAndDeletePendingTasks(List<SingularityTask> tasks) {
+    final long now = System.currentTimeMillis();
+    final List<SingularityTask> batchTasks = Lists.newArrayList();
+    final List<ZkWriteBatch> batchTaskWrites = Lists.newArrayList();
+    int batchBytes = 0;
+
+    createParents(tasks);
+
+    for (SingularityTask task : tasks) {
+      final ZkWriteBatch taskWrites = getCreateTaskAndDeletePendingTaskBatch(task, now);
+
+      if (!batchTasks.isEmpty() && batchBytes + taskWrites.getNumBytes() > MAX_WRITE_BATCH_BYTES) {
+        commitCreateTasks(batchTasks, batchTaskWrites, now);
+
+        batchTasks.clear();
+        batchTaskWrites.clear();
+        batchBytes = 0;
+      }
+
+      batchTasks.add(task);
+      batchTaskWrites.add(taskWrites);
+      batchBytes += taskWrites.getNumBytes();
+    }
+
+    if (!batchTasks.isEmpty()) {
+      commitCreateTasks(batchTasks, batchTaskWrites, now);
+    }
+  }
+
+  // parents can't be created as needed inside a transaction, and a missing one would fail the whole batch
+  private void createParents(List<SingularityTask> tasks) {
+    if (!requiredParentsCreated) {
+      createRequiredParents();
+      requiredParentsCreated = true;
+    }
+
+    for (SingularityTask task : tasks) {
+      final String requestId = task.getTaskId().getRequestId();
+
+      if (!requestsWithHistoryPath.contains(requestId)) {
+        create(getRequestPath(requestId));
+        requestsWithHistoryPath.add(requestId);
+      }
+    }
+  }
+
+  private ZkWriteBatch getCreateTaskAndDeletePendingTaskBatch(SingularityTask task, long now) {
+    final SingularityTaskId taskId = task.getTaskId();
+
+    final SingularityTaskHistoryUpdate launched = new SingularityTaskHistoryUpdate(taskId, now, ExtendedTaskState.TASK_LAUNCHED, Optional.<String>absent());
+    final SingularityTaskStatusHolder taskStatus = getLaunchedTaskStatus(task, now);
+
+    return new ZkWriteBatch()
+        .create(getHistoryPath(taskId))
+        .create(getTaskPath(taskId), taskTranscoder.toBytes(task))
+        .create(getUpdatesPath(taskId))
+        .create(getUpdatePath(taskId, ExtendedTaskState.TASK_LAUNCHED), taskHistoryUpdateTranscoder.toBytes(launched))
+        .create(getLastActiveTaskStatusPath(taskId), taskStatusTranscoder.toBytes(taskStatus))
+        .create(getActivePath(taskId.getId()))
+        .delete(getPendingPath(task.getTaskRequest().getPendingTask().getPendingTaskId()));
+  }
+
+  private SingularityTaskStatusHolder getLaunchedTaskStatus(SingularityTask task, long now) {
+    return new SingularityTaskStatusHolder(task.getTaskId(), Optional.<TaskStatus>absent(), now, serverId, Optional.of(task.getOffer().getSlaveId().getValue()));
+  }
+
+  private void commitCreateTasks(List<SingularityTask> tasks, List<ZkWriteBatch> taskWrites, long now) {
+    final long start = System.currentTimeMillis();
+    final ZkWriteBatch batch = new ZkWriteBatch();
+
+    for (ZkWriteBatch writes : taskWrites) {
+      batch.addAll(writes);
+    }
+
     try {
-      createTaskAndDeletePendingTaskPrivate(task);
+      batch.commit(curator);
+    } catch (KeeperException ke) {
+      retryCreateTasks(tasks, taskWrites, now, ke);
+      return;
     } catch (Throwable t) {
       throw Throwables.propagate(t);
     }
+
+    for (SingularityTask task : tasks) {
+      singularityEventListener.taskHistoryUpdateEvent(new SingularityTaskHistoryUpdate(task.getTaskId(), now, ExtendedTaskState.TASK_LAUNCHED, Optional.<String>absent()));
+
+      if (taskStatusStore.isRunning()) {
+        taskStatusStore.saved(getLaunchedTaskStatus(task, now));
+      }
+
+      taskMirror.pendingTaskDeleted(task.getTaskRequest().getPendingTask().getPendingTaskId());
+      taskMirror.activeTaskCreated(task.getTaskId());
+    }
+
+    LOG.trace("Created {} task(s) with {} operations in {}", tasks.size(), batch.size(), JavaUtils.duration(start));
+  }
+
+  private void retryCreateTasks(List<SingularityTask> tasks, List<ZkWriteBatch> taskWrites, long now, KeeperException ke) {
+    final Optional<Integer> failedTask = getFailedTask(taskWrites, ke.getResults());
+
+    if (!failedTask.isPresent()) {
+      LOG.debug("Couldn't create {} task(s) in one transaction ({}), creating them one at a time", tasks.size(), ke.code());
+
+      for (SingularityTask task : tasks) {
+        createTaskAndDeletePendingTaskPrivate(task);
+      }
+
+      return;
+    }
+
+    final SingularityTask task = tasks.get(failedTask.get());
+
+    LOG.debug("Couldn't create {} in a transaction with {} other task(s) ({}), creating it on its own", task.getTaskId(), tasks.size() - 1, ke.code());
+
+    createTaskAndDeletePendingTaskPrivate(task);
+
+    final List<SingularityTask> remainingTasks = Lists.newArrayList(tasks);
+    final List<ZkWriteBatch> remainingTaskWrites = Lists.newArrayList(taskWrites);
+
+    remainingTasks.remove(failedTask.get().intValue());
+    remainingTaskWrites.remove(failedTask.get().intValue());
+
+    if (!remainingTasks.isEmpty()) {
+      commitCreateTasks(remainingTasks, remainingTaskWrites, now);
+    }
+  }
+
+  /**
+   * @return the index of the task whose operation failed the transaction, from the per-operation results of a failed multi()
+   */
+  private Optional<Integer> getFailedTask(List<ZkWriteBatch> taskWrites, List<OpResult> results) {
+    if (results == null) {
+      return Optional.absent();
+    }
+
+    int firstOperation = 0;
+
+    for (int i = 0; i < taskWrites.size(); i++) {
+      final int lastOperation = Math.min(firstOperation + taskWrites.get(i).size(), results.size());
+
+      for (int operation = firstOperation; operation < lastOperation; operation++) {
+        final OpResult result = results.get(operation);
+
+        // operations after the failing one report a runtime inconsistency rather than their own error
+        if (result instanceof ErrorResult && ((ErrorResult) result).getErr() != KeeperException.Code.OK.intValue()
+            && ((ErrorResult) result).getErr() != KeeperException.Code.RUNTIMEINCONSISTENCY.intValue()) {
+          return Optional.of(i);
+        }
+      }
+
+      firstOperation = lastOperation;
+    }
+
+    return Optional.absent();
   }
 
   public Map<SingularityTaskId, SingularityTask> getTasks(Iterable<SingularityTaskId> taskIds) {
@@ -467,20 +972,27 @@ public class TaskManager extends CuratorAsyncManager {
     return Maps.uniqueIndex(getAsync("tasks_by_ids", paths, taskTranscoder), SingularityTaskIdHolder.getTaskIdFunction());
   }
 
-  private void createTaskAndDeletePendingTaskPrivate(SingularityTask task) throws Exception {
-    delete(getPendingPath(task.getTaskRequest().getPendingTask().getPendingTaskId()));
+  private void createTaskAndDeletePendingTaskPrivate(SingularityTask task) {
+    // in case the history parent is why the transaction failed
+    requestsWithHistoryPath.remove(task.getTaskId().getRequestId());
+
+    deletePendingTask(task.getTaskRequest().getPendingTask().getPendingTaskId());
 
     final long now = System.currentTimeMillis();
 
     saveTaskHistoryUpdate(new SingularityTaskHistoryUpdate(task.getTaskId(), now, ExtendedTaskState.TASK_LAUNCHED, Optional.<String>absent()));
-    saveLastActiveTaskStatus(new SingularityTaskStatusHolder(task.getTaskId(), Optional.<TaskStatus>absent(), now, serverId, Optional.of(task.getOffer().getSlaveId().getValue())));
+    saveLastActiveTaskStatus(getLaunchedTaskStatus(task, now));
 
     try {
       CuratorTransactionFinal transaction = curator.inTransaction().create().forPath(getTaskPath(task.getTaskId()), taskTranscoder.toBytes(task)).and();
 
       transaction.create().forPath(getActivePath(task.getTaskId().getId())).and().commit();
+
+      taskMirror.activeTaskCreated(task.getTaskId());
     } catch (KeeperException.NodeExistsException nee) {
       LOG.error("Task or active path already existed for {}", task.getTaskId());
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
     }
   }
 
@@ -517,13 +1029,19 @@ public class TaskManager extends CuratorAsyncManager {
   }
 
   public SingularityDeleteResult deleteLastActiveTaskStatus(SingularityTaskId taskId) {
+    if (taskStatusStore.isRunning()) {
+      return taskStatusStore.delete(taskId);
+    }
+
     return delete(getLastActiveTaskStatusPath(taskId));
   }
 
   public SingularityCreateResult saveTaskCleanup(SingularityTaskCleanup cleanup) {
     saveTaskHistoryUpdate(cleanup);
 
-    return save(getCleanupPath(cleanup.getTaskId().getId()), cleanup, taskCleanupTranscoder);
+    final SingularityCreateResult result = save(getCleanupPath(cleanup.getTaskId().getId()), cleanup, taskCleanupTranscoder);
+    taskMirror.cleanupTaskSaved(cleanup.getTaskId());
+    return result;
   }
 
   private void saveTaskHistoryUpdate(SingularityTaskCleanup cleanup) {
@@ -546,6 +1064,7 @@ public class TaskManager extends CuratorAsyncManager {
     final SingularityCreateResult result = create(getCleanupPath(cleanup.getTaskId().getId()), cleanup, taskCleanupTranscoder);
 
     if (result == SingularityCreateResult.CREATED) {
+      taskMirror.cleanupTaskSaved(cleanup.getTaskId());
       saveTaskHistoryUpdate(cleanup);
     }
 
@@ -554,18 +1073,40 @@ public class TaskManager extends CuratorAsyncManager {
 
   public void deleteActiveTask(String taskId) {
     delete(getActivePath(taskId));
+    taskMirror.activeTaskDeleted(taskId);
+    recentHealthcheckResults.remove(taskId);
+    healthcheckHistoryPersister.get().forget(taskId);
   }
 
   public void deletePendingTask(SingularityPendingTaskId pendingTaskId) {
     delete(getPendingPath(pendingTaskId));
+    taskMirror.pendingTaskDeleted(pendingTaskId);
   }
 
   public void deleteCleanupTask(String taskId) {
     delete(getCleanupPath(taskId));
+    taskMirror.cleanupTaskDeleted(taskId);
   }
 
   public SingularityDeleteResult deleteTaskHistory(SingularityTaskId taskId) {
+    recentHealthcheckResults.remove(taskId.getId());
+    healthcheckHistoryPersister.get().forget(taskId.getId());
     return delete(getHistoryPath(taskId));
   }
 
+  /**
+   * @return the number of tasks whose history was deleted
+   */
+  public int deleteTaskHistories(Collection<SingularityTaskId> taskIds) {
+    final List<String> paths = Lists.newArrayListWithCapacity(taskIds.size());
+
+    for (SingularityTaskId taskId : taskIds) {
+      recentHealthcheckResults.remove(taskId.getId());
+      healthcheckHistoryPersister.get().forget(taskId.getId());
+      paths.add(getHistoryPath(taskId));
+    }
+
+    return deleteRecursively("task_histories", paths);
+  }
+
 }
@@ -0,0 +1,111 @@
+package com.hubspot.singularity.data;
+
+import java.util.List;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Collects create/set/delete operations and commits them to ZooKeeper as a single multi() - either every operation is applied
+ * or none are. Unlike CuratorManager.create, parents are not created, so they must already exist or be created earlier in the batch.
+ */
+class ZkWriteBatch {
+
+  private static final byte[] EMPTY_BYTES = new byte[0];
+
+  private enum OperationType {
+    CREATE, SET_DATA, DELETE;
+  }
+
+  private static class Operation {
+
+    private final OperationType type;
+    private final String path;
+    private final Optional<byte[]> data;
+
+    Operation(OperationType type, String path, Optional<byte[]> data) {
+      this.type = type;
+      this.path = path;
+      this.data = data;
+    }
+
+  }
+
+  private final List<Operation> operations;
+  private int numBytes;
+
+  ZkWriteBatch() {
+    this.operations = Lists.newArrayList();
+  }
+
+  ZkWriteBatch create(String path) {
+    return add(OperationType.CREATE, path, Optional.<byte[]> absent());
+  }
+
+  ZkWriteBatch create(String path, byte[] data) {
+    return add(OperationType.CREATE, path, Optional.of(data));
+  }
+
+  ZkWriteBatch setData(String path, byte[] data) {
+    return add(OperationType.SET_DATA, path, Optional.of(data));
+  }
+
+  ZkWriteBatch delete(String path) {
+    return add(OperationType.DELETE, path, Optional.<byte[]> absent());
+  }
+
+  ZkWriteBatch addAll(ZkWriteBatch other) {
+    operations.addAll(other.operations);
+    numBytes += other.numBytes;
+    return this;
+  }
+
+  private ZkWriteBatch add(OperationType type, String path, Optional<byte[]> data) {
+    operations.add(new Operation(type, path, data));
+    numBytes += path.length() + (data.isPresent() ? data.get().length : 0);
+    return this;
+  }
+
+  boolean isEmpty() {
+    return operations.isEmpty();
+  }
+
+  int size() {
+    return operations.size();
+  }
+
+  /**
+   * Approximate size of the request sent to ZooKeeper, which must stay under its jute.maxbuffer.
+   */
+  int getNumBytes() {
+    return numBytes;
+  }
+
+  void commit(CuratorFramework curator) throws Exception {
+    Preconditions.checkState(!operations.isEmpty(), "Nothing to commit");
+
+    CuratorTransaction transaction = curator.inTransaction();
+
+    for (Operation operation : operations) {
+      switch (operation.type) {
+        case CREATE:
+          transaction = transaction.create().forPath(operation.path, operation.data.or(EMPTY_BYTES)).and();
+          break;
+        case SET_DATA:
+          transaction = transaction.setData().forPath(operation.path, operation.data.get()).and();
+          break;
+        case DELETE:
+          transaction = transaction.delete().forPath(operation.path).and();
+          break;
+      }
+    }
+
+    ((CuratorTransactionFinal) transaction).commit();
+  }
+
+}
@@ -1,15 +1,136 @@
 package com.hubspot.singularity.data.history;
 
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.collect.Sets;
+import com.hubspot.singularity.config.SingularityConfiguration;
 
+/**
+ * Pages of blended history are cached per request (up to blendedHistoryCacheMaxPagesPerRequest recent pages for each of
+ * blendedHistoryCacheMaxRequests requests) for blendedHistoryCacheExpireMillis, or until a change to the request is seen through
+ * invalidate(). Only changes made through this instance are seen, so other instances may serve a page for up to
+ * blendedHistoryCacheExpireMillis after it changed.
+ */
 public abstract class BlendedHistoryHelper<T> {
 
   protected abstract List<T> getFromZk(String id);
   protected abstract List<T> getFromHistory(String id, int historyStart, int numFromHistory);
+  protected abstract List<T> getFromHistory(String id, HistoryCursor cursor, int numFromHistory);
 
-  public List<T> getBlendedHistory(String id, Integer limitStart, Integer limitCount) {
+  protected abstract long getCursorTimestamp(T item);
+  protected abstract String getCursorId(T item);
+
+  /**
+   * @return what identifies item in both ZooKeeper and the database. It can't include a timestamp at more than second precision, since
+   * the database only keeps whole seconds.
+   */
+  protected abstract String getEntityId(T item);
+
+  private final Comparator<T> cursorOrder = new Comparator<T>() {
+
+    @Override
+    public int compare(T first, T second) {
+      return ComparisonChain.start()
+          .compare(getCursorTimestamp(second), getCursorTimestamp(first))
+          .compare(getCursorId(second), getCursorId(first))
+          .result();
+    }
+
+  };
+
+  private final Optional<Cache<String, Cache<PageKey, List<T>>>> pageCache;
+  private final int maxPagesPerRequest;
+  private final long expireMillis;
+
+  protected BlendedHistoryHelper(SingularityConfiguration configuration) {
+    this.maxPagesPerRequest = configuration.getBlendedHistoryCacheMaxPagesPerRequest();
+    this.expireMillis = configuration.getBlendedHistoryCacheExpireMillis();
+
+    if (configuration.getBlendedHistoryCacheMaxRequests() > 0 && maxPagesPerRequest > 0 && expireMillis > 0) {
+      this.pageCache = Optional.<Cache<String, Cache<PageKey, List<T>>>> of(CacheBuilder.newBuilder()
+          .maximumSize(configuration.getBlendedHistoryCacheMaxRequests())
+          .expireAfterAccess(expireMillis, TimeUnit.MILLISECONDS)
+          .<String, Cache<PageKey, List<T>>> build());
+    } else {
+      this.pageCache = Optional.absent();
+    }
+  }
+
+  public void invalidate(String id) {
+    if (pageCache.isPresent()) {
+      pageCache.get().invalidate(id);
+    }
+  }
+
+  public List<T> getBlendedHistory(final String id, final Integer limitStart, final Integer limitCount) {
+    return getPage(id, new PageKey(Optional.<HistoryCursor> absent(), limitStart, limitCount), new Callable<List<T>>() {
+
+      @Override
+      public List<T> call() {
+        return getBlendedHistoryFromSources(id, limitStart, limitCount);
+      }
+
+    });
+  }
+
+  /**
+   * Unlike the offset version, items in ZooKeeper and in the database are merged in cursor order, and only the items after the
+   * cursor are read from the database - so a page deep in the history costs no more than the first one.
+   */
+  public List<T> getBlendedHistory(final String id, final HistoryCursor cursor, final Integer limitCount) {
+    return getPage(id, new PageKey(Optional.of(cursor), 0, limitCount), new Callable<List<T>>() {
+
+      @Override
+      public List<T> call() {
+        return Lists.newArrayList(Iterators.limit(getBlendedHistoryIterator(id, cursor, limitCount), limitCount));
+      }
+
+    });
+  }
+
+  /**
+   * Streams the items after the cursor, newest first: the items in ZooKeeper are read up front and merged with the items in the
+   * database, which are read pageSize at a time as the iterator reaches them. Items which are in both (while being persisted) are
+   * only returned once, from ZooKeeper - by entity rather than by cursor position, as their timestamps differ in precision.
+   */
+  public Iterator<T> getBlendedHistoryIterator(String id, HistoryCursor cursor, int pageSize) {
+    final List<T> allFromZk = getFromZk(id);
+    final List<T> fromZk = Lists.newArrayList();
+    final Set<String> zkEntityIds = Sets.newHashSetWithExpectedSize(allFromZk.size());
+
+    for (T item : allFromZk) {
+      // even items before the cursor, whose copy in the database may be after it
+      zkEntityIds.add(getEntityId(item));
+
+      if (cursor.includes(getCursorTimestamp(item), getCursorId(item))) {
+        fromZk.add(item);
+      }
+    }
+
+    Collections.sort(fromZk, cursorOrder);
+
+    return new MergingIterator(Iterators.peekingIterator(fromZk.iterator()), Iterators.peekingIterator(new HistoryPagesIterator(id, cursor, Math.max(pageSize, 1))), zkEntityIds);
+  }
+
+  private List<T> getBlendedHistoryFromSources(String id, Integer limitStart, Integer limitCount) {
     final List<T> fromZk = getFromZk(id);
 
     final int numFromZk = Math.max(0, Math.min(limitCount, fromZk.size() - limitStart));
@@ -30,4 +151,154 @@ public abstract class BlendedHistoryHelper<T> {
     return returned;
   }
 
+  private List<T> getPage(String id, PageKey pageKey, Callable<List<T>> loader) {
+    if (!pageCache.isPresent()) {
+      return call(loader);
+    }
+
+    // a page loaded while the request is invalidated lands in the discarded cache rather than the new one
+    final Cache<PageKey, List<T>> requestPages = getRequestPages(id);
+    final List<T> cached = requestPages.getIfPresent(pageKey);
+
+    if (cached != null) {
+      return cached;
+    }
+
+    final List<T> page = ImmutableList.copyOf(call(loader));
+
+    requestPages.put(pageKey, page);
+
+    return page;
+  }
+
+  private Cache<PageKey, List<T>> getRequestPages(String id) {
+    try {
+      return pageCache.get().get(id, new Callable<Cache<PageKey, List<T>>>() {
+
+        @Override
+        public Cache<PageKey, List<T>> call() {
+          return CacheBuilder.newBuilder()
+              .maximumSize(maxPagesPerRequest)
+              .expireAfterWrite(expireMillis, TimeUnit.MILLISECONDS)
+              .build();
+        }
+
+      });
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private List<T> call(Callable<List<T>> loader) {
+    try {
+      return loader.call();
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private class HistoryPagesIterator extends AbstractIterator<T> {
+
+    private final String id;
+    private final int pageSize;
+
+    private HistoryCursor cursor;
+    private Iterator<T> page;
+    private boolean lastPage;
+
+    HistoryPagesIterator(String id, HistoryCursor cursor, int pageSize) {
+      this.id = id;
+      this.cursor = cursor;
+      this.pageSize = pageSize;
+      this.page = Collections.emptyIterator();
+    }
+
+    @Override
+    protected T computeNext() {
+      if (!page.hasNext()) {
+        if (lastPage) {
+          return endOfData();
+        }
+
+        final List<T> items = getFromHistory(id, cursor, pageSize);
+
+        lastPage = items.size() < pageSize;
+
+        if (items.isEmpty()) {
+          return endOfData();
+        }
+
+        final T last = items.get(items.size() - 1);
+
+        cursor = new HistoryCursor(Optional.of(getCursorTimestamp(last)), Optional.of(getCursorId(last)), cursor.getStartTimestamp(), cursor.getEndTimestamp());
+        page = items.iterator();
+      }
+
+      return page.next();
+    }
+
+  }
+
+  private class MergingIterator extends AbstractIterator<T> {
+
+    private final PeekingIterator<T> fromZk;
+    private final PeekingIterator<T> fromHistory;
+    private final Set<String> zkEntityIds;
+
+    MergingIterator(PeekingIterator<T> fromZk, PeekingIterator<T> fromHistory, Set<String> zkEntityIds) {
+      this.fromZk = fromZk;
+      this.fromHistory = fromHistory;
+      this.zkEntityIds = zkEntityIds;
+    }
+
+    @Override
+    protected T computeNext() {
+      while (fromHistory.hasNext() && zkEntityIds.contains(getEntityId(fromHistory.peek()))) {
+        fromHistory.next();
+      }
+
+      if (!fromZk.hasNext()) {
+        return fromHistory.hasNext() ? fromHistory.next() : endOfData();
+      }
+
+      if (!fromHistory.hasNext()) {
+        return fromZk.next();
+      }
+
+      return cursorOrder.compare(fromZk.peek(), fromHistory.peek()) <= 0 ? fromZk.next() : fromHistory.next();
+    }
+
+  }
+
+  private static final class PageKey {
+
+    private final Optional<HistoryCursor> cursor;
+    private final int limitStart;
+    private final int limitCount;
+
+    PageKey(Optional<HistoryCursor> cursor, int limitStart, int limitCount) {
+      this.cursor = cursor;
+      this.limitStart = limitStart;
+      this.limitCount = limitCount;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(cursor, limitStart, limitCount);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      PageKey other = (PageKey) obj;
+      return Objects.equal(cursor, other.cursor) && limitStart == other.limitStart && limitCount == other.limitCount;
+    }
+
+  }
+
 }
@@ -0,0 +1,44 @@
+package com.hubspot.singularity.data.history;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.hubspot.singularity.SingularityDeployUpdate;
+import com.hubspot.singularity.SingularityRequestHistory;
+import com.hubspot.singularity.SingularityTaskHistoryUpdate;
+import com.hubspot.singularity.event.SingularityEventListener;
+
+/**
+ * Drops the cached history pages of a request when this instance sees it change. The helpers are provided lazily since the managers
+ * they use are themselves given the event listeners.
+ */
+@Singleton
+public class BlendedHistoryInvalidator implements SingularityEventListener {
+
+  private final Provider<RequestHistoryHelper> requestHistoryHelper;
+  private final Provider<TaskHistoryHelper> taskHistoryHelper;
+  private final Provider<DeployHistoryHelper> deployHistoryHelper;
+
+  @Inject
+  public BlendedHistoryInvalidator(Provider<RequestHistoryHelper> requestHistoryHelper, Provider<TaskHistoryHelper> taskHistoryHelper, Provider<DeployHistoryHelper> deployHistoryHelper) {
+    this.requestHistoryHelper = requestHistoryHelper;
+    this.taskHistoryHelper = taskHistoryHelper;
+    this.deployHistoryHelper = deployHistoryHelper;
+  }
+
+  @Override
+  public void requestHistoryEvent(SingularityRequestHistory singularityRequestHistory) {
+    requestHistoryHelper.get().invalidate(singularityRequestHistory.getRequest().getId());
+  }
+
+  @Override
+  public void taskHistoryUpdateEvent(SingularityTaskHistoryUpdate singularityTaskHistoryUpdate) {
+    taskHistoryHelper.get().invalidate(singularityTaskHistoryUpdate.getTaskId().getRequestId());
+  }
+
+  @Override
+  public void deployHistoryEvent(SingularityDeployUpdate singularityDeployUpdate) {
+    deployHistoryHelper.get().invalidate(singularityDeployUpdate.getDeployMarker().getRequestId());
+  }
+
+}
@@ -10,6 +10,7 @@ import com.google.inject.Singleton;
 import com.hubspot.singularity.SingularityDeploy;
 import com.hubspot.singularity.SingularityDeployHistory;
 import com.hubspot.singularity.SingularityDeployKey;
+import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.DeployManager;
 
 @Singleton
@@ -19,7 +20,9 @@ public class DeployHistoryHelper extends BlendedHistoryHelper<SingularityDeployH
   private final HistoryManager historyManager;
 
   @Inject
-  public DeployHistoryHelper(DeployManager deployManager, HistoryManager historyManager) {
+  public DeployHistoryHelper(DeployManager deployManager, HistoryManager historyManager, SingularityConfiguration configuration) {
+    super(configuration);
+
     this.deployManager = deployManager;
     this.historyManager = historyManager;
   }
@@ -46,6 +49,26 @@ public class DeployHistoryHelper extends BlendedHistoryHelper<SingularityDeployH
     return historyManager.getDeployHistoryForRequest(requestId, historyStart, numFromHistory);
   }
 
+  @Override
+  protected List<SingularityDeployHistory> getFromHistory(String requestId, HistoryCursor cursor, int numFromHistory) {
+    return historyManager.getDeployHistoryForRequest(requestId, cursor, numFromHistory);
+  }
+
+  @Override
+  protected long getCursorTimestamp(SingularityDeployHistory deployHistory) {
+    return deployHistory.getDeployMarker().getTimestamp();
+  }
+
+  @Override
+  protected String getCursorId(SingularityDeployHistory deployHistory) {
+    return deployHistory.getDeployMarker().getDeployId();
+  }
+
+  @Override
+  protected String getEntityId(SingularityDeployHistory deployHistory) {
+    return deployHistory.getDeployMarker().getRequestId() + "-" + deployHistory.getDeployMarker().getDeployId();
+  }
+
   public boolean isDeployIdAvailable(String requestId, String deployId) {
     Optional<SingularityDeploy> deploy = deployManager.getDeploy(requestId, deployId);
 
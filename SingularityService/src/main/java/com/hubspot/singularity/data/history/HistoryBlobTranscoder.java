@@ -0,0 +1,123 @@
+package com.hubspot.singularity.data.history;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.hubspot.singularity.data.transcoders.HistoryBlobCodec;
+import com.hubspot.singularity.data.transcoders.SingularityTranscoderException;
+import com.hubspot.singularity.data.transcoders.Transcoder;
+
+/**
+ * Writes history blobs as JSON compressed by the configured historyBlobCodec, or with the object's usual transcoder if there is
+ * none. Blobs are read by whichever codec wrote them, so rows written before a codec was configured (or with another one) stay
+ * readable.
+ */
+class HistoryBlobTranscoder<T> implements Transcoder<T> {
+
+  private final Optional<HistoryBlobCodec> codec;
+  private final ObjectMapper objectMapper;
+  private final Class<T> clazz;
+  private final Transcoder<T> uncodedTranscoder;
+  private final MetricRegistry metricRegistry;
+
+  HistoryBlobTranscoder(Optional<HistoryBlobCodec> codec, ObjectMapper objectMapper, Class<T> clazz, Transcoder<T> uncodedTranscoder, MetricRegistry metricRegistry) {
+    this.codec = checkNotNull(codec, "codec is null");
+    this.objectMapper = checkNotNull(objectMapper, "objectMapper is null");
+    this.clazz = checkNotNull(clazz, "clazz is null");
+    this.uncodedTranscoder = checkNotNull(uncodedTranscoder, "uncodedTranscoder is null");
+    this.metricRegistry = checkNotNull(metricRegistry, "metricRegistry is null");
+  }
+
+  @Override
+  public T fromBytes(@Nullable byte[] data) throws SingularityTranscoderException {
+    final Optional<HistoryBlobCodec> blobCodec = HistoryBlobCodec.forBlob(data);
+
+    if (!blobCodec.isPresent()) {
+      return uncodedTranscoder.fromBytes(data);
+    }
+
+    final byte[] json;
+
+    try (Timer.Context context = getTimer(blobCodec.get(), "decode").time()) {
+      json = blobCodec.get().decode(data);
+    }
+
+    try {
+      return objectMapper.readValue(json, clazz);
+    } catch (IOException e) {
+      throw new SingularityTranscoderException(e);
+    }
+  }
+
+  @Override
+  public byte[] toBytes(@Nullable T object) throws SingularityTranscoderException {
+    if (!codec.isPresent() || object == null) {
+      return uncodedTranscoder.toBytes(object);
+    }
+
+    final byte[] json;
+
+    try {
+      json = objectMapper.writeValueAsBytes(object);
+    } catch (IOException e) {
+      throw new SingularityTranscoderException(e);
+    }
+
+    final byte[] blob;
+
+    try (Timer.Context context = getTimer(codec.get(), "encode").time()) {
+      blob = codec.get().encode(json);
+    }
+
+    getCompressedPercentHistogram(codec.get()).update(json.length == 0 ? 100 : blob.length * 100L / json.length);
+
+    return blob;
+  }
+
+  /**
+   * Blobs written without a codec are already Snappy compressed when compressLargeDataObjects is on, so rewriting them with SNAPPY
+   * would only add the header.
+   *
+   * @return whether the blob was written without the configured codec, and rewriting it with the codec would shrink it
+   */
+  boolean isRecodable(byte[] data) {
+    if (!codec.isPresent() || codec.get().isEncodedBy(data)) {
+      return false;
+    }
+
+    return codec.get() != HistoryBlobCodec.SNAPPY || !isRawSnappy(data);
+  }
+
+  // JSON objects start with '{', while Snappy starts with the uncompressed length as a varint
+  private static boolean isRawSnappy(byte[] data) {
+    if (data == null || data.length == 0 || data[0] == '{' || HistoryBlobCodec.forBlob(data).isPresent()) {
+      return false;
+    }
+
+    try {
+      return Snappy.getUncompressedLength(data, 0) > 0;
+    } catch (CorruptionException ce) {
+      return false;
+    }
+  }
+
+  private Timer getTimer(HistoryBlobCodec blobCodec, String operation) {
+    return metricRegistry.timer(MetricRegistry.name(HistoryBlobCodec.class, blobCodec.name(), operation));
+  }
+
+  private Histogram getCompressedPercentHistogram(HistoryBlobCodec blobCodec) {
+    return metricRegistry.histogram(MetricRegistry.name(HistoryBlobCodec.class, blobCodec.name(), "compressedPercent"));
+  }
+
+}
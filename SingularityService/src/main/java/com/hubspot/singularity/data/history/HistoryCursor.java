@@ -0,0 +1,88 @@
+package com.hubspot.singularity.data.history;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+
+/**
+ * Selects a page of history items by key rather than by offset. Items are ordered newest first (by timestamp, then by id
+ * descending) and a page holds the items after the last item of the previous page, optionally limited to a time range.
+ *
+ * Without a lastId, only items strictly older than lastTimestamp are after the cursor - for request history, whose items
+ * are unique by timestamp.
+ */
+public class HistoryCursor {
+
+  private final Optional<Long> lastTimestamp;
+  private final Optional<String> lastId;
+  private final Optional<Long> startTimestamp;
+  private final Optional<Long> endTimestamp;
+
+  public HistoryCursor(Optional<Long> lastTimestamp, Optional<String> lastId, Optional<Long> startTimestamp, Optional<Long> endTimestamp) {
+    this.lastTimestamp = lastTimestamp;
+    this.lastId = lastId;
+    this.startTimestamp = startTimestamp;
+    this.endTimestamp = endTimestamp;
+  }
+
+  public Optional<Long> getLastTimestamp() {
+    return lastTimestamp;
+  }
+
+  public Optional<String> getLastId() {
+    return lastId;
+  }
+
+  /**
+   * Inclusive
+   */
+  public Optional<Long> getStartTimestamp() {
+    return startTimestamp;
+  }
+
+  /**
+   * Exclusive
+   */
+  public Optional<Long> getEndTimestamp() {
+    return endTimestamp;
+  }
+
+  public boolean includes(long timestamp, String id) {
+    if (startTimestamp.isPresent() && timestamp < startTimestamp.get()) {
+      return false;
+    }
+
+    if (endTimestamp.isPresent() && timestamp >= endTimestamp.get()) {
+      return false;
+    }
+
+    if (!lastTimestamp.isPresent() || timestamp < lastTimestamp.get()) {
+      return true;
+    }
+
+    return timestamp == lastTimestamp.get() && lastId.isPresent() && id.compareTo(lastId.get()) < 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(lastTimestamp, lastId, startTimestamp, endTimestamp);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    HistoryCursor other = (HistoryCursor) obj;
+    return Objects.equal(lastTimestamp, other.lastTimestamp) && Objects.equal(lastId, other.lastId) && Objects.equal(startTimestamp, other.startTimestamp)
+        && Objects.equal(endTimestamp, other.endTimestamp);
+  }
+
+  @Override
+  public String toString() {
+    return "HistoryCursor [lastTimestamp=" + lastTimestamp + ", lastId=" + lastId + ", startTimestamp=" + startTimestamp + ", endTimestamp=" + endTimestamp + "]";
+  }
+
+}
@@ -4,6 +4,7 @@ import java.util.Date;
 import java.util.List;
 
 import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.customizers.Define;
@@ -25,6 +26,22 @@ public interface HistoryJDBI {
   @SqlUpdate("INSERT INTO taskHistory (requestId, taskId, bytes, updatedAt, lastTaskStatus) VALUES (:requestId, :taskId, :bytes, :updatedAt, :lastTaskStatus)")
   void insertTaskHistory(@Bind("requestId") String requestId, @Bind("taskId") String taskId, @Bind("bytes") byte[] bytes, @Bind("updatedAt") Date updatedAt, @Bind("lastTaskStatus") String lastTaskStatus);
 
+  // the batch inserts ignore rows which are already there, so a batch which is retried after a partial failure doesn't fail again
+  @SqlBatch("INSERT IGNORE INTO requestHistory (requestId, request, createdAt, requestState, user) VALUES (:requestId, :request, :createdAt, :requestState, :user)")
+  void insertRequestHistories(@Bind("requestId") List<String> requestIds, @Bind("request") List<byte[]> requests, @Bind("createdAt") List<Date> createdAts, @Bind("requestState") List<String> requestStates, @Bind("user") List<String> users);
+
+  @SqlBatch("INSERT IGNORE INTO deployHistory (requestId, deployId, createdAt, user, deployStateAt, deployState, bytes) VALUES (:requestId, :deployId, :createdAt, :user, :deployStateAt, :deployState, :bytes)")
+  void insertDeployHistories(@Bind("requestId") List<String> requestIds, @Bind("deployId") List<String> deployIds, @Bind("createdAt") List<Date> createdAts, @Bind("user") List<String> users, @Bind("deployStateAt") List<Date> deployStateAts, @Bind("deployState") List<String> deployStates, @Bind("bytes") List<byte[]> bytes);
+
+  @SqlBatch("INSERT IGNORE INTO taskHistory (requestId, taskId, bytes, updatedAt, lastTaskStatus) VALUES (:requestId, :taskId, :bytes, :updatedAt, :lastTaskStatus)")
+  void insertTaskHistories(@Bind("requestId") List<String> requestIds, @Bind("taskId") List<String> taskIds, @Bind("bytes") List<byte[]> bytes, @Bind("updatedAt") List<Date> updatedAts, @Bind("lastTaskStatus") List<String> lastTaskStatuses);
+
+  @SqlBatch("INSERT IGNORE INTO taskHealthchecks (taskId, timestamp, bytes) VALUES (:taskId, :timestamp, :bytes)")
+  void insertTaskHealthchecks(@Bind("taskId") List<String> taskIds, @Bind("timestamp") List<Long> timestamps, @Bind("bytes") List<byte[]> bytes);
+
+  @SqlQuery("SELECT bytes FROM taskHealthchecks WHERE taskId = :taskId ORDER BY timestamp ASC")
+  List<byte[]> getTaskHealthchecksForTask(@Bind("taskId") String taskId);
+
   @SqlQuery("SELECT bytes FROM taskHistory WHERE taskId = :taskId")
   byte[] getTaskHistoryForTask(@Bind("taskId") String taskId);
 
@@ -40,8 +57,43 @@ public interface HistoryJDBI {
   @SqlQuery("SELECT request, createdAt, requestState, user FROM requestHistory WHERE requestId = :requestId ORDER BY createdAt <orderDirection> LIMIT :limitStart, :limitCount")
   List<SingularityRequestHistory> getRequestHistory(@Bind("requestId") String requestId, @Define("orderDirection") String orderDirection, @Bind("limitStart") Integer limitStart, @Bind("limitCount") Integer limitCount);
 
+  // keyset pages: each condition is only added when its bound value is present. Comparisons are written with > since < starts a template expression
+  @SqlQuery("SELECT requestId, deployId, createdAt, user, deployStateAt, deployState FROM deployHistory WHERE requestId = :requestId"
+      + "<if(lastCreatedAt)> AND :lastCreatedAt >= createdAt AND (:lastCreatedAt > createdAt OR :lastDeployId > deployId)<endif>"
+      + "<if(createdAfter)> AND createdAt >= :createdAfter<endif>"
+      + "<if(createdBefore)> AND :createdBefore > createdAt<endif>"
+      + " ORDER BY createdAt DESC, deployId DESC LIMIT :limitCount")
+  List<SingularityDeployHistory> getDeployHistoryForRequestAfter(@Bind("requestId") String requestId, @Define("lastCreatedAt") @Bind("lastCreatedAt") Date lastCreatedAt,
+      @Bind("lastDeployId") String lastDeployId, @Define("createdAfter") @Bind("createdAfter") Date createdAfter, @Define("createdBefore") @Bind("createdBefore") Date createdBefore,
+      @Bind("limitCount") Integer limitCount);
+
+  @SqlQuery("SELECT taskId, requestId, updatedAt, lastTaskStatus FROM taskHistory WHERE requestId = :requestId"
+      + "<if(lastUpdatedAt)> AND :lastUpdatedAt >= updatedAt AND (:lastUpdatedAt > updatedAt OR :lastTaskId > taskId)<endif>"
+      + "<if(updatedAfter)> AND updatedAt >= :updatedAfter<endif>"
+      + "<if(updatedBefore)> AND :updatedBefore > updatedAt<endif>"
+      + " ORDER BY updatedAt DESC, taskId DESC LIMIT :limitCount")
+  List<SingularityTaskIdHistory> getTaskHistoryForRequestAfter(@Bind("requestId") String requestId, @Define("lastUpdatedAt") @Bind("lastUpdatedAt") Date lastUpdatedAt,
+      @Bind("lastTaskId") String lastTaskId, @Define("updatedAfter") @Bind("updatedAfter") Date updatedAfter, @Define("updatedBefore") @Bind("updatedBefore") Date updatedBefore,
+      @Bind("limitCount") Integer limitCount);
+
+  @SqlQuery("SELECT request, createdAt, requestState, user FROM requestHistory WHERE requestId = :requestId"
+      + "<if(lastCreatedAt)> AND :lastCreatedAt > createdAt<endif>"
+      + "<if(createdAfter)> AND createdAt >= :createdAfter<endif>"
+      + "<if(createdBefore)> AND :createdBefore > createdAt<endif>"
+      + " ORDER BY createdAt DESC LIMIT :limitCount")
+  List<SingularityRequestHistory> getRequestHistoryAfter(@Bind("requestId") String requestId, @Define("lastCreatedAt") @Bind("lastCreatedAt") Date lastCreatedAt,
+      @Define("createdAfter") @Bind("createdAfter") Date createdAfter, @Define("createdBefore") @Bind("createdBefore") Date createdBefore, @Bind("limitCount") Integer limitCount);
+
   @SqlQuery("SELECT DISTINCT requestId FROM requestHistory WHERE requestId LIKE CONCAT(:requestIdLike, '%') LIMIT :limitStart, :limitCount")
   List<String> getRequestHistoryLike(@Bind("requestIdLike") String requestIdLike, @Bind("limitStart") Integer limitStart, @Bind("limitCount") Integer limitCount);
 
+  // SUBSTRING is 1-indexed
+  @SqlQuery("SELECT taskId, requestId, updatedAt, lastTaskStatus FROM taskHistory WHERE SUBSTRING(bytes, 1, 2) != :header<if(lastTaskId)> AND taskId > :lastTaskId<endif>"
+      + " ORDER BY taskId ASC LIMIT :limitCount")
+  List<SingularityTaskIdHistory> getTaskHistoryWithoutHeader(@Bind("header") byte[] header, @Define("lastTaskId") @Bind("lastTaskId") String lastTaskId, @Bind("limitCount") Integer limitCount);
+
+  @SqlBatch("UPDATE taskHistory SET bytes = :bytes WHERE taskId = :taskId")
+  void updateTaskHistoryBytes(@Bind("taskId") List<String> taskIds, @Bind("bytes") List<byte[]> bytes);
+
   void close();
 }
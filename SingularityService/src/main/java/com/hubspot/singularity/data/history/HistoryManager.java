@@ -5,6 +5,7 @@ import java.util.List;
 import com.google.common.base.Optional;
 import com.hubspot.singularity.SingularityDeployHistory;
 import com.hubspot.singularity.SingularityRequestHistory;
+import com.hubspot.singularity.SingularityTaskHealthcheckResult;
 import com.hubspot.singularity.SingularityTaskHistory;
 import com.hubspot.singularity.SingularityTaskIdHistory;
 
@@ -20,16 +21,45 @@ public interface HistoryManager {
 
   void saveDeployHistory(SingularityDeployHistory deployHistory);
 
+  void saveRequestHistoryUpdates(List<SingularityRequestHistory> requestHistories);
+
+  void saveTaskHistories(List<SingularityTaskHistory> taskHistories);
+
+  void saveDeployHistories(List<SingularityDeployHistory> deployHistories);
+
+  void saveHealthcheckResults(List<SingularityTaskHealthcheckResult> healthcheckResults);
+
   Optional<SingularityDeployHistory> getDeployHistory(String requestId, String deployId);
 
   List<SingularityDeployHistory> getDeployHistoryForRequest(String requestId, Integer limitStart, Integer limitCount);
 
   List<SingularityTaskIdHistory> getTaskHistoryForRequest(String requestId, Integer limitStart, Integer limitCount);
 
+  List<SingularityDeployHistory> getDeployHistoryForRequest(String requestId, HistoryCursor cursor, Integer limitCount);
+
+  List<SingularityTaskIdHistory> getTaskHistoryForRequest(String requestId, HistoryCursor cursor, Integer limitCount);
+
+  List<SingularityRequestHistory> getRequestHistory(String requestId, HistoryCursor cursor, Integer limitCount);
+
   Optional<SingularityTaskHistory> getTaskHistory(String taskId);
 
+  /**
+   * @return the healthcheck results of taskId which were trimmed from ZooKeeper and saved separately, oldest first
+   */
+  List<SingularityTaskHealthcheckResult> getHealthcheckResults(String taskId);
+
   List<SingularityRequestHistory> getRequestHistory(String requestId, Optional<OrderDirection> orderDirection, Integer limitStart, Integer limitCount);
 
   List<String> getRequestHistoryLike(String requestIdLike, Integer limitStart, Integer limitCount);
 
+  /**
+   * @return ids of task histories after afterTaskId (in task id order) which weren't written with the configured historyBlobCodec
+   */
+  List<String> getTaskIdsToRecompress(Optional<String> afterTaskId, Integer limitCount);
+
+  /**
+   * @return the number of task histories which were rewritten with the configured historyBlobCodec
+   */
+  int recompressTaskHistories(List<String> taskIds);
+
 }
@@ -1,33 +1,51 @@
 package com.hubspot.singularity.data.history;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.hubspot.singularity.DeployState;
 import com.hubspot.singularity.SingularityDeployHistory;
 import com.hubspot.singularity.SingularityRequest;
 import com.hubspot.singularity.SingularityRequestHistory;
+import com.hubspot.singularity.SingularityTaskHealthcheckResult;
 import com.hubspot.singularity.SingularityTaskHistory;
 import com.hubspot.singularity.SingularityTaskIdHistory;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.transcoders.HistoryBlobCodec;
+import com.hubspot.singularity.data.transcoders.SingularityTranscoderException;
 import com.hubspot.singularity.data.transcoders.Transcoder;
 
 public class JDBIHistoryManager implements HistoryManager {
 
+  private static final Logger LOG = LoggerFactory.getLogger(JDBIHistoryManager.class);
+
   private final HistoryJDBI history;
-  private final Transcoder<SingularityTaskHistory> taskHistoryTranscoder;
-  private final Transcoder<SingularityDeployHistory> deployHistoryTranscoder;
+  private final Optional<HistoryBlobCodec> historyBlobCodec;
+  private final HistoryBlobTranscoder<SingularityTaskHistory> taskHistoryTranscoder;
+  private final HistoryBlobTranscoder<SingularityDeployHistory> deployHistoryTranscoder;
   private final Transcoder<SingularityRequest> singularityRequestTranscoder;
+  private final Transcoder<SingularityTaskHealthcheckResult> healthcheckResultTranscoder;
 
   // TODO jdbi timeouts / exceptions
 
   @Inject
-  public JDBIHistoryManager(HistoryJDBI history, Transcoder<SingularityTaskHistory> taskHistoryTranscoder, Transcoder<SingularityDeployHistory> deployHistoryTranscoder,
-      Transcoder<SingularityRequest> singularityRequestTranscoder) {
-    this.taskHistoryTranscoder = taskHistoryTranscoder;
-    this.deployHistoryTranscoder = deployHistoryTranscoder;
+  public JDBIHistoryManager(HistoryJDBI history, SingularityConfiguration configuration, ObjectMapper objectMapper, MetricRegistry metricRegistry,
+      Transcoder<SingularityTaskHistory> taskHistoryTranscoder, Transcoder<SingularityDeployHistory> deployHistoryTranscoder, Transcoder<SingularityRequest> singularityRequestTranscoder,
+      Transcoder<SingularityTaskHealthcheckResult> healthcheckResultTranscoder) {
+    this.historyBlobCodec = configuration.getHistoryBlobCodec();
+    this.taskHistoryTranscoder = new HistoryBlobTranscoder<>(historyBlobCodec, objectMapper, SingularityTaskHistory.class, taskHistoryTranscoder, metricRegistry);
+    this.deployHistoryTranscoder = new HistoryBlobTranscoder<>(historyBlobCodec, objectMapper, SingularityDeployHistory.class, deployHistoryTranscoder, metricRegistry);
     this.singularityRequestTranscoder = singularityRequestTranscoder;
+    this.healthcheckResultTranscoder = healthcheckResultTranscoder;
     this.history = history;
   }
 
@@ -53,6 +71,63 @@ public class JDBIHistoryManager implements HistoryManager {
                 deployHistoryTranscoder.toBytes(deployHistory));
   }
 
+  @Override
+  public void saveRequestHistoryUpdates(List<SingularityRequestHistory> requestHistories) {
+    final List<String> requestIds = Lists.newArrayListWithCapacity(requestHistories.size());
+    final List<byte[]> requests = Lists.newArrayListWithCapacity(requestHistories.size());
+    final List<Date> createdAts = Lists.newArrayListWithCapacity(requestHistories.size());
+    final List<String> requestStates = Lists.newArrayListWithCapacity(requestHistories.size());
+    final List<String> users = Lists.newArrayListWithCapacity(requestHistories.size());
+
+    for (SingularityRequestHistory requestHistory : requestHistories) {
+      requestIds.add(requestHistory.getRequest().getId());
+      requests.add(singularityRequestTranscoder.toBytes(requestHistory.getRequest()));
+      createdAts.add(new Date(requestHistory.getCreatedAt()));
+      requestStates.add(requestHistory.getEventType().name());
+      users.add(requestHistory.getUser().orNull());
+    }
+
+    history.insertRequestHistories(requestIds, requests, createdAts, requestStates, users);
+  }
+
+  @Override
+  public void saveDeployHistories(List<SingularityDeployHistory> deployHistories) {
+    final List<String> requestIds = Lists.newArrayListWithCapacity(deployHistories.size());
+    final List<String> deployIds = Lists.newArrayListWithCapacity(deployHistories.size());
+    final List<Date> createdAts = Lists.newArrayListWithCapacity(deployHistories.size());
+    final List<String> users = Lists.newArrayListWithCapacity(deployHistories.size());
+    final List<Date> deployStateAts = Lists.newArrayListWithCapacity(deployHistories.size());
+    final List<String> deployStates = Lists.newArrayListWithCapacity(deployHistories.size());
+    final List<byte[]> bytes = Lists.newArrayListWithCapacity(deployHistories.size());
+
+    for (SingularityDeployHistory deployHistory : deployHistories) {
+      requestIds.add(deployHistory.getDeployMarker().getRequestId());
+      deployIds.add(deployHistory.getDeployMarker().getDeployId());
+      createdAts.add(new Date(deployHistory.getDeployMarker().getTimestamp()));
+      users.add(deployHistory.getDeployMarker().getUser().orNull());
+      deployStateAts.add(deployHistory.getDeployResult().isPresent() ? new Date(deployHistory.getDeployResult().get().getTimestamp()) : new Date(deployHistory.getDeployMarker().getTimestamp()));
+      deployStates.add(deployHistory.getDeployResult().isPresent() ? deployHistory.getDeployResult().get().getDeployState().name() : DeployState.CANCELED.name());
+      bytes.add(deployHistoryTranscoder.toBytes(deployHistory));
+    }
+
+    history.insertDeployHistories(requestIds, deployIds, createdAts, users, deployStateAts, deployStates, bytes);
+  }
+
+  @Override
+  public void saveHealthcheckResults(List<SingularityTaskHealthcheckResult> healthcheckResults) {
+    final List<String> taskIds = Lists.newArrayListWithCapacity(healthcheckResults.size());
+    final List<Long> timestamps = Lists.newArrayListWithCapacity(healthcheckResults.size());
+    final List<byte[]> bytes = Lists.newArrayListWithCapacity(healthcheckResults.size());
+
+    for (SingularityTaskHealthcheckResult healthcheckResult : healthcheckResults) {
+      taskIds.add(healthcheckResult.getTaskId().getId());
+      timestamps.add(healthcheckResult.getTimestamp());
+      bytes.add(healthcheckResultTranscoder.toBytes(healthcheckResult));
+    }
+
+    history.insertTaskHealthchecks(taskIds, timestamps, bytes);
+  }
+
   @Override
   public Optional<SingularityDeployHistory> getDeployHistory(String requestId, String deployId) {
     byte[] historyBytes = history.getDeployHistoryForDeploy(requestId, deployId);
@@ -78,6 +153,27 @@ public class JDBIHistoryManager implements HistoryManager {
     return history.getRequestHistory(requestId, getOrderDirection(orderDirection), limitStart, limitCount);
   }
 
+  private Date getDate(Optional<Long> timestamp) {
+    return timestamp.isPresent() ? new Date(timestamp.get()) : null;
+  }
+
+  @Override
+  public List<SingularityDeployHistory> getDeployHistoryForRequest(String requestId, HistoryCursor cursor, Integer limitCount) {
+    return history.getDeployHistoryForRequestAfter(requestId, getDate(cursor.getLastTimestamp()), cursor.getLastId().orNull(), getDate(cursor.getStartTimestamp()),
+        getDate(cursor.getEndTimestamp()), limitCount);
+  }
+
+  @Override
+  public List<SingularityTaskIdHistory> getTaskHistoryForRequest(String requestId, HistoryCursor cursor, Integer limitCount) {
+    return history.getTaskHistoryForRequestAfter(requestId, getDate(cursor.getLastTimestamp()), cursor.getLastId().orNull(), getDate(cursor.getStartTimestamp()),
+        getDate(cursor.getEndTimestamp()), limitCount);
+  }
+
+  @Override
+  public List<SingularityRequestHistory> getRequestHistory(String requestId, HistoryCursor cursor, Integer limitCount) {
+    return history.getRequestHistoryAfter(requestId, getDate(cursor.getLastTimestamp()), getDate(cursor.getStartTimestamp()), getDate(cursor.getEndTimestamp()), limitCount);
+  }
+
   @Override
   public List<String> getRequestHistoryLike(String requestIdLike, Integer limitStart, Integer limitCount) {
     return history.getRequestHistoryLike(requestIdLike, limitStart, limitCount);
@@ -100,6 +196,27 @@ public class JDBIHistoryManager implements HistoryManager {
         lastTaskStatus);
   }
 
+  @Override
+  public void saveTaskHistories(List<SingularityTaskHistory> taskHistories) {
+    final List<String> requestIds = Lists.newArrayListWithCapacity(taskHistories.size());
+    final List<String> taskIds = Lists.newArrayListWithCapacity(taskHistories.size());
+    final List<byte[]> bytes = Lists.newArrayListWithCapacity(taskHistories.size());
+    final List<Date> updatedAts = Lists.newArrayListWithCapacity(taskHistories.size());
+    final List<String> lastTaskStatuses = Lists.newArrayListWithCapacity(taskHistories.size());
+
+    for (SingularityTaskHistory taskHistory : taskHistories) {
+      SingularityTaskIdHistory taskIdHistory = SingularityTaskIdHistory.fromTaskIdAndUpdates(taskHistory.getTask().getTaskId(), taskHistory.getTaskUpdates());
+
+      requestIds.add(taskIdHistory.getTaskId().getRequestId());
+      taskIds.add(taskIdHistory.getTaskId().getId());
+      bytes.add(taskHistoryTranscoder.toBytes(taskHistory));
+      updatedAts.add(new Date(taskIdHistory.getUpdatedAt()));
+      lastTaskStatuses.add(taskIdHistory.getLastTaskState().isPresent() ? taskIdHistory.getLastTaskState().get().name() : null);
+    }
+
+    history.insertTaskHistories(requestIds, taskIds, bytes, updatedAts, lastTaskStatuses);
+  }
+
   @Override
   public Optional<SingularityTaskHistory> getTaskHistory(String taskId) {
     byte[] historyBytes = history.getTaskHistoryForTask(taskId);
@@ -108,7 +225,61 @@ public class JDBIHistoryManager implements HistoryManager {
       return Optional.absent();
     }
 
-    return Optional.of(taskHistoryTranscoder.fromBytes(historyBytes));
+    return Optional.of(TaskHistoryHelper.withHealthcheckResults(taskHistoryTranscoder.fromBytes(historyBytes), getHealthcheckResults(taskId)));
+  }
+
+  @Override
+  public List<SingularityTaskHealthcheckResult> getHealthcheckResults(String taskId) {
+    final List<byte[]> healthcheckBytes = history.getTaskHealthchecksForTask(taskId);
+    final List<SingularityTaskHealthcheckResult> healthcheckResults = Lists.newArrayListWithCapacity(healthcheckBytes.size());
+
+    for (byte[] bytes : healthcheckBytes) {
+      healthcheckResults.add(healthcheckResultTranscoder.fromBytes(bytes));
+    }
+
+    return healthcheckResults;
+  }
+
+  @Override
+  public List<String> getTaskIdsToRecompress(Optional<String> afterTaskId, Integer limitCount) {
+    if (!historyBlobCodec.isPresent()) {
+      return Collections.emptyList();
+    }
+
+    final List<String> taskIds = Lists.newArrayList();
+
+    for (SingularityTaskIdHistory taskIdHistory : history.getTaskHistoryWithoutHeader(historyBlobCodec.get().getHeader(), afterTaskId.orNull(), limitCount)) {
+      taskIds.add(taskIdHistory.getTaskId().getId());
+    }
+
+    return taskIds;
+  }
+
+  @Override
+  public int recompressTaskHistories(List<String> taskIds) {
+    final List<String> recompressedTaskIds = Lists.newArrayListWithCapacity(taskIds.size());
+    final List<byte[]> recompressedBytes = Lists.newArrayListWithCapacity(taskIds.size());
+
+    for (String taskId : taskIds) {
+      final byte[] historyBytes = history.getTaskHistoryForTask(taskId);
+
+      if (historyBytes == null || historyBytes.length == 0 || !taskHistoryTranscoder.isRecodable(historyBytes)) {
+        continue;
+      }
+
+      try {
+        recompressedBytes.add(taskHistoryTranscoder.toBytes(taskHistoryTranscoder.fromBytes(historyBytes)));
+        recompressedTaskIds.add(taskId);
+      } catch (SingularityTranscoderException ste) {
+        LOG.warn("Couldn't recompress task history for {}", taskId, ste);
+      }
+    }
+
+    if (!recompressedTaskIds.isEmpty()) {
+      history.updateTaskHistoryBytes(recompressedTaskIds, recompressedBytes);
+    }
+
+    return recompressedTaskIds.size();
   }
 
 }
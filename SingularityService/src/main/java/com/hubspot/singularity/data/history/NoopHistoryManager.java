@@ -8,6 +8,7 @@ import javax.inject.Inject;
 import com.google.common.base.Optional;
 import com.hubspot.singularity.SingularityDeployHistory;
 import com.hubspot.singularity.SingularityRequestHistory;
+import com.hubspot.singularity.SingularityTaskHealthcheckResult;
 import com.hubspot.singularity.SingularityTaskHistory;
 import com.hubspot.singularity.SingularityTaskIdHistory;
 
@@ -32,6 +33,26 @@ public class NoopHistoryManager implements HistoryManager {
     throw new UnsupportedOperationException("NoopHistoryManager can not save");
   }
 
+  @Override
+  public void saveRequestHistoryUpdates(List<SingularityRequestHistory> requestHistories) {
+    throw new UnsupportedOperationException("NoopHistoryManager can not save");
+  }
+
+  @Override
+  public void saveTaskHistories(List<SingularityTaskHistory> taskHistories) {
+    throw new UnsupportedOperationException("NoopHistoryManager can not save");
+  }
+
+  @Override
+  public void saveDeployHistories(List<SingularityDeployHistory> deployHistories) {
+    throw new UnsupportedOperationException("NoopHistoryManager can not save");
+  }
+
+  @Override
+  public void saveHealthcheckResults(List<SingularityTaskHealthcheckResult> healthcheckResults) {
+    throw new UnsupportedOperationException("NoopHistoryManager can not save");
+  }
+
   @Override
   public Optional<SingularityDeployHistory> getDeployHistory(String requestId, String deployId) {
     return Optional.absent();
@@ -47,11 +68,31 @@ public class NoopHistoryManager implements HistoryManager {
     return Collections.emptyList();
   }
 
+  @Override
+  public List<SingularityDeployHistory> getDeployHistoryForRequest(String requestId, HistoryCursor cursor, Integer limitCount) {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public List<SingularityTaskIdHistory> getTaskHistoryForRequest(String requestId, HistoryCursor cursor, Integer limitCount) {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public List<SingularityRequestHistory> getRequestHistory(String requestId, HistoryCursor cursor, Integer limitCount) {
+    return Collections.emptyList();
+  }
+
   @Override
   public Optional<SingularityTaskHistory> getTaskHistory(String taskId) {
     return Optional.absent();
   }
 
+  @Override
+  public List<SingularityTaskHealthcheckResult> getHealthcheckResults(String taskId) {
+    return Collections.emptyList();
+  }
+
   @Override
   public List<SingularityRequestHistory> getRequestHistory(String requestId, Optional<OrderDirection> orderDirection, Integer limitStart, Integer limitCount) {
     return Collections.emptyList();
@@ -62,4 +103,14 @@ public class NoopHistoryManager implements HistoryManager {
     return Collections.emptyList();
   }
 
+  @Override
+  public List<String> getTaskIdsToRecompress(Optional<String> afterTaskId, Integer limitCount) {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public int recompressTaskHistories(List<String> taskIds) {
+    throw new UnsupportedOperationException("NoopHistoryManager can not save");
+  }
+
 }
@@ -2,12 +2,14 @@ package com.hubspot.singularity.data.history;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Optional;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.hubspot.mesos.JavaUtils;
 import com.hubspot.singularity.SingularityRequestHistory;
+import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.RequestManager;
 import com.hubspot.singularity.data.history.HistoryManager.OrderDirection;
 
@@ -18,7 +20,9 @@ public class RequestHistoryHelper extends BlendedHistoryHelper<SingularityReques
   private final HistoryManager historyManager;
 
   @Inject
-  public RequestHistoryHelper(RequestManager requestManager, HistoryManager historyManager) {
+  public RequestHistoryHelper(RequestManager requestManager, HistoryManager historyManager, SingularityConfiguration configuration) {
+    super(configuration);
+
     this.requestManager = requestManager;
     this.historyManager = historyManager;
   }
@@ -37,6 +41,27 @@ public class RequestHistoryHelper extends BlendedHistoryHelper<SingularityReques
     return historyManager.getRequestHistory(requestId, Optional.of(OrderDirection.DESC), historyStart, numFromHistory);
   }
 
+  @Override
+  protected List<SingularityRequestHistory> getFromHistory(String requestId, HistoryCursor cursor, int numFromHistory) {
+    return historyManager.getRequestHistory(requestId, cursor, numFromHistory);
+  }
+
+  @Override
+  protected long getCursorTimestamp(SingularityRequestHistory requestHistory) {
+    return requestHistory.getCreatedAt();
+  }
+
+  // updates to a request are unique by createdAt, so its cursors have no id
+  @Override
+  protected String getCursorId(SingularityRequestHistory requestHistory) {
+    return requestHistory.getRequest().getId();
+  }
+
+  @Override
+  protected String getEntityId(SingularityRequestHistory requestHistory) {
+    return String.format("%s-%s-%s", requestHistory.getRequest().getId(), requestHistory.getEventType(), TimeUnit.MILLISECONDS.toSeconds(requestHistory.getCreatedAt()));
+  }
+
   public Optional<SingularityRequestHistory> getFirstHistory(String requestId) {
     Optional<SingularityRequestHistory> firstHistory = JavaUtils.getFirst(historyManager.getRequestHistory(requestId, Optional.of(OrderDirection.ASC), 0, 1));
 
@@ -9,10 +9,10 @@ import javax.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Optional;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.hubspot.mesos.JavaUtils;
-import com.hubspot.singularity.SingularityDeleteResult;
 import com.hubspot.singularity.SingularityDeployHistory;
 import com.hubspot.singularity.SingularityDeployKey;
 import com.hubspot.singularity.SingularityRequestDeployState;
@@ -28,8 +28,8 @@ public class SingularityDeployHistoryPersister extends SingularityHistoryPersist
   private final HistoryManager historyManager;
 
   @Inject
-  public SingularityDeployHistoryPersister(SingularityConfiguration configuration, DeployManager deployManager, HistoryManager historyManager) {
-    super(configuration);
+  public SingularityDeployHistoryPersister(SingularityConfiguration configuration, MetricRegistry metricRegistry, DeployManager deployManager, HistoryManager historyManager) {
+    super(configuration, metricRegistry);
 
     this.deployManager = deployManager;
     this.historyManager = historyManager;
@@ -44,28 +44,32 @@ public class SingularityDeployHistoryPersister extends SingularityHistoryPersist
     final List<SingularityDeployKey> allDeployIds = deployManager.getAllDeployIds();
     final Map<String, SingularityRequestDeployState> byRequestId = deployManager.getAllRequestDeployStatesByRequestId();
 
-    int numTotal = 0;
-    int numTransferred = 0;
+    final List<SingularityDeployKey> deployKeysToTransfer = Lists.newArrayList();
 
     for (SingularityDeployKey deployKey : allDeployIds) {
       SingularityRequestDeployState deployState = byRequestId.get(deployKey.getRequestId());
 
-      if (!shouldTransferDeploy(deployState, deployKey)) {
-        continue;
+      if (shouldTransferDeploy(deployState, deployKey)) {
+        deployKeysToTransfer.add(deployKey);
       }
+    }
 
-      Optional<SingularityDeployHistory> deployHistory = deployManager.getDeployHistory(deployKey.getRequestId(), deployKey.getDeployId(), true);
+    int numTotal = 0;
+    int numTransferred = 0;
 
-      if (!deployHistory.isPresent()) {
-        LOG.info("Deploy history for key {} not found", deployKey);
-        continue;
-      }
+    for (List<SingularityDeployKey> batch : Lists.partition(deployKeysToTransfer, getBatchSize())) {
+      final Map<SingularityDeployKey, SingularityDeployHistory> deployHistories = deployManager.getDeployHistories(batch);
 
-      if (moveToHistoryOrCheckForPurge(deployHistory.get())) {
-        numTransferred++;
+      if (deployHistories.size() < batch.size()) {
+        for (SingularityDeployKey deployKey : batch) {
+          if (!deployHistories.containsKey(deployKey)) {
+            LOG.info("Deploy history for key {} not found", deployKey);
+          }
+        }
       }
 
-      numTotal++;
+      numTransferred += moveToHistoryOrCheckForPurge(Lists.newArrayList(deployHistories.values()));
+      numTotal += deployHistories.size();
     }
 
     LOG.info("Transferred {} out of {} deploys in {}", numTransferred, numTotal, JavaUtils.duration(start));
@@ -94,20 +98,19 @@ public class SingularityDeployHistoryPersister extends SingularityHistoryPersist
   }
 
   @Override
-  protected boolean moveToHistory(SingularityDeployHistory deployHistory) {
-    try {
-      historyManager.saveDeployHistory(deployHistory);
-    } catch (Throwable t) {
-      LOG.warn("Failed to persist deploy {} history ({})", SingularityDeployKey.fromDeployMarker(deployHistory.getDeployMarker()), deployHistory, t);
-      return false;
-    }
-
-    return true;
+  protected void moveToHistory(List<SingularityDeployHistory> deployHistories) {
+    historyManager.saveDeployHistories(deployHistories);
   }
 
   @Override
-  protected SingularityDeleteResult purgeFromZk(SingularityDeployHistory deployHistory) {
-    return deployManager.deleteDeployHistory(SingularityDeployKey.fromDeployMarker(deployHistory.getDeployMarker()));
+  protected int purgeFromZk(List<SingularityDeployHistory> deployHistories) {
+    final List<SingularityDeployKey> deployKeys = Lists.newArrayListWithCapacity(deployHistories.size());
+
+    for (SingularityDeployHistory deployHistory : deployHistories) {
+      deployKeys.add(SingularityDeployKey.fromDeployMarker(deployHistory.getDeployMarker()));
+    }
+
+    return deployManager.deleteDeployHistories(deployKeys);
   }
 
 }
@@ -0,0 +1,164 @@
+package com.hubspot.singularity.data.history;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.SingularityManagedScheduledExecutorServiceFactory;
+import com.hubspot.singularity.SingularityTaskHealthcheckResult;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+/**
+ * Only the most recent healthcheck results of a task are kept in ZooKeeper. When there is a database, the older results are handed
+ * here and inserted in the background, off the healthcheck save path. A result is only trimmed from ZooKeeper once this persister
+ * has inserted it, so no result is lost when the leader fails over or MySQL is briefly unavailable.
+ */
+@Singleton
+public class SingularityHealthcheckHistoryPersister {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityHealthcheckHistoryPersister.class);
+
+  private static final int MAX_RESULTS_PER_BATCH = 1000;
+
+  private final SingularityConfiguration configuration;
+  private final HistoryManager historyManager;
+  private final ExecutorService executorService;
+
+  // the timestamp of the latest result of each task which was inserted, and which was handed to the executor to be inserted
+  private final ConcurrentMap<String, Long> persistedThrough;
+  private final ConcurrentMap<String, Long> queuedThrough;
+
+  private final Meter persistedMeter;
+  private final Meter failedMeter;
+
+  @Inject
+  public SingularityHealthcheckHistoryPersister(SingularityConfiguration configuration, HistoryManager historyManager, SingularityManagedScheduledExecutorServiceFactory executorServiceFactory,
+      MetricRegistry metricRegistry) {
+    this.configuration = configuration;
+    this.historyManager = historyManager;
+    this.executorService = executorServiceFactory.get("healthcheck-history-persister");
+
+    this.persistedThrough = Maps.newConcurrentMap();
+    this.queuedThrough = Maps.newConcurrentMap();
+
+    this.persistedMeter = metricRegistry.meter(MetricRegistry.name(SingularityHealthcheckHistoryPersister.class, "persisted"));
+    this.failedMeter = metricRegistry.meter(MetricRegistry.name(SingularityHealthcheckHistoryPersister.class, "failed"));
+  }
+
+  public boolean isEnabled() {
+    return configuration.getDatabaseConfiguration().isPresent();
+  }
+
+  /**
+   * @return whether healthcheckResult may be trimmed from ZooKeeper - it was persisted, or there is no database to persist it to
+   */
+  public boolean isPersisted(SingularityTaskHealthcheckResult healthcheckResult) {
+    if (!isEnabled()) {
+      return true;
+    }
+
+    final Long taskPersistedThrough = persistedThrough.get(healthcheckResult.getTaskId().getId());
+
+    return taskPersistedThrough != null && healthcheckResult.getTimestamp() <= taskPersistedThrough;
+  }
+
+  /**
+   * Inserts healthcheckResults in the background. Results which are already being inserted are skipped, and results which fail to
+   * insert are inserted again the next time they are handed here.
+   */
+  public void persistAsync(Collection<SingularityTaskHealthcheckResult> healthcheckResults) {
+    if (!isEnabled() || healthcheckResults.isEmpty()) {
+      return;
+    }
+
+    final List<SingularityTaskHealthcheckResult> toPersist = Lists.newArrayListWithCapacity(healthcheckResults.size());
+    final Map<String, Long> batchThrough = Maps.newHashMap();
+
+    for (SingularityTaskHealthcheckResult healthcheckResult : healthcheckResults) {
+      final String taskId = healthcheckResult.getTaskId().getId();
+      final Long taskQueuedThrough = queuedThrough.get(taskId);
+
+      if (taskQueuedThrough != null && healthcheckResult.getTimestamp() <= taskQueuedThrough) {
+        continue;
+      }
+
+      toPersist.add(healthcheckResult);
+
+      final Long taskBatchThrough = batchThrough.get(taskId);
+
+      if (taskBatchThrough == null || healthcheckResult.getTimestamp() > taskBatchThrough) {
+        batchThrough.put(taskId, healthcheckResult.getTimestamp());
+      }
+    }
+
+    if (toPersist.isEmpty()) {
+      return;
+    }
+
+    queuedThrough.putAll(batchThrough);
+
+    executorService.submit(new Runnable() {
+
+      @Override
+      public void run() {
+        persist(toPersist, batchThrough);
+      }
+
+    });
+  }
+
+  private void persist(List<SingularityTaskHealthcheckResult> healthcheckResults, Map<String, Long> batchThrough) {
+    final long start = System.currentTimeMillis();
+
+    try {
+      for (List<SingularityTaskHealthcheckResult> batch : Lists.partition(healthcheckResults, MAX_RESULTS_PER_BATCH)) {
+        historyManager.saveHealthcheckResults(batch);
+      }
+    } catch (Throwable t) {
+      LOG.warn("Failed to persist {} healthcheck results, keeping them in ZooKeeper", healthcheckResults.size(), t);
+      failedMeter.mark(healthcheckResults.size());
+
+      for (String taskId : batchThrough.keySet()) {
+        queuedThrough.remove(taskId);
+      }
+
+      return;
+    }
+
+    for (Map.Entry<String, Long> taskBatchThrough : batchThrough.entrySet()) {
+      final Long taskPersistedThrough = persistedThrough.get(taskBatchThrough.getKey());
+
+      if (taskPersistedThrough == null || taskBatchThrough.getValue() > taskPersistedThrough) {
+        persistedThrough.put(taskBatchThrough.getKey(), taskBatchThrough.getValue());
+      }
+    }
+
+    persistedMeter.mark(healthcheckResults.size());
+
+    LOG.debug("Persisted {} healthcheck results in {}", healthcheckResults.size(), JavaUtils.duration(start));
+  }
+
+  public void forget(String taskId) {
+    persistedThrough.remove(taskId);
+    queuedThrough.remove(taskId);
+  }
+
+  public void forgetAll() {
+    persistedThrough.clear();
+    queuedThrough.clear();
+  }
+
+}
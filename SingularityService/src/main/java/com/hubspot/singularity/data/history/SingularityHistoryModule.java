@@ -56,6 +56,8 @@ public class SingularityHistoryModule extends AbstractModule {
     bind(SingularityRequestHistoryPersister.class).in(Scopes.SINGLETON);
     bind(SingularityDeployHistoryPersister.class).in(Scopes.SINGLETON);
     bind(SingularityTaskHistoryPersister.class).in(Scopes.SINGLETON);
+    bind(SingularityHealthcheckHistoryPersister.class).in(Scopes.SINGLETON);
+    bind(SingularityHistoryRecompressor.class).in(Scopes.SINGLETON);
 
     if (configuration.isPresent()) {
       bind(DBI.class).toProvider(DBIProvider.class).in(Scopes.SINGLETON);
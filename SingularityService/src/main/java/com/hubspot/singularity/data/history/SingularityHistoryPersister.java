@@ -1,26 +1,45 @@
 package com.hubspot.singularity.data.history;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
 import com.hubspot.mesos.JavaUtils;
-import com.hubspot.singularity.SingularityDeleteResult;
 import com.hubspot.singularity.SingularityHistoryItem;
 import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.scheduler.SingularityLeaderOnlyPoller;
 
+/**
+ * Moves items out of ZooKeeper in batches of historyPersisterBatchSize: each batch is inserted into the database together (or,
+ * without a database, checked for age) and then deleted from ZooKeeper together.
+ */
 public abstract class SingularityHistoryPersister<T extends SingularityHistoryItem> extends SingularityLeaderOnlyPoller {
 
   private static final Logger LOG = LoggerFactory.getLogger(SingularityHistoryPersister.class);
 
   protected final SingularityConfiguration configuration;
 
-  public SingularityHistoryPersister(SingularityConfiguration configuration) {
+  private final Meter persistedMeter;
+  private final Meter purgedMeter;
+  private final Meter failedMeter;
+  private final Timer batchTimer;
+
+  public SingularityHistoryPersister(SingularityConfiguration configuration, MetricRegistry metricRegistry) {
     super(configuration.getPersistHistoryEverySeconds(), TimeUnit.SECONDS);
 
     this.configuration = configuration;
+
+    this.persistedMeter = metricRegistry.meter(MetricRegistry.name(getClass(), "persisted"));
+    this.purgedMeter = metricRegistry.meter(MetricRegistry.name(getClass(), "purged"));
+    this.failedMeter = metricRegistry.meter(MetricRegistry.name(getClass(), "failed"));
+    this.batchTimer = metricRegistry.timer(MetricRegistry.name(getClass(), "batches"));
   }
 
   @Override
@@ -37,37 +56,91 @@ public abstract class SingularityHistoryPersister<T extends SingularityHistoryIt
     return persistsHistoryInsteadOfPurging() || getMaxAgeInMillisOfItem() > 0;
   }
 
-  protected abstract long getMaxAgeInMillisOfItem();
+  protected int getBatchSize() {
+    return Math.max(configuration.getHistoryPersisterBatchSize(), 1);
+  }
 
-  protected abstract boolean moveToHistory(T object);
+  protected abstract long getMaxAgeInMillisOfItem();
 
-  protected abstract SingularityDeleteResult purgeFromZk(T object);
+  /**
+   * Saves every object to the database, throwing if any of them couldn't be saved.
+   */
+  protected abstract void moveToHistory(List<T> objects);
+
+  /**
+   * @return the number of objects which were deleted
+   */
+  protected abstract int purgeFromZk(List<T> objects);
+
+  /**
+   * @return the number of objects which were moved to history (or purged) and deleted from ZooKeeper
+   */
+  protected int moveToHistoryOrCheckForPurge(List<T> objects) {
+    if (objects.isEmpty()) {
+      return 0;
+    }
 
-  protected boolean moveToHistoryOrCheckForPurge(T object) {
     final long start = System.currentTimeMillis();
 
-    if (moveToHistoryOrCheckForPurgeAndShouldDelete(object)) {
-      SingularityDeleteResult deleteResult = purgeFromZk(object);
-      LOG.debug("{} {} (deleted: {}) in {}", persistsHistoryInsteadOfPurging() ? "Persisted" : "Purged", object, deleteResult, JavaUtils.duration(start));
-      return true;
+    final List<T> toDelete = persistsHistoryInsteadOfPurging() ? moveToHistoryAndGetMoved(objects) : getObjectsToPurge(objects);
+
+    if (toDelete.isEmpty()) {
+      return 0;
     }
 
-    return false;
+    final int numDeleted = purgeFromZk(toDelete);
+
+    (persistsHistoryInsteadOfPurging() ? persistedMeter : purgedMeter).mark(toDelete.size());
+    batchTimer.update(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
+
+    LOG.debug("{} {} of {} (deleted: {}) in {}", persistsHistoryInsteadOfPurging() ? "Persisted" : "Purged", toDelete.size(), objects.size(), numDeleted, JavaUtils.duration(start));
+
+    return toDelete.size();
   }
 
-  private boolean moveToHistoryOrCheckForPurgeAndShouldDelete(T object) {
-    if (persistsHistoryInsteadOfPurging()) {
-      return moveToHistory(object);
+  private List<T> moveToHistoryAndGetMoved(List<T> objects) {
+    try {
+      moveToHistory(objects);
+      return objects;
+    } catch (Throwable t) {
+      if (objects.size() == 1) {
+        LOG.warn("Failed to persist {} into history", objects.get(0), t);
+        failedMeter.mark();
+        return Collections.emptyList();
+      }
+
+      LOG.warn("Failed to persist a batch of {} into history, retrying them one at a time", objects.size(), t);
     }
 
-    final long age = System.currentTimeMillis() - object.getCreateTimestampForCalculatingHistoryAge();
+    final List<T> moved = Lists.newArrayListWithCapacity(objects.size());
 
-    if (age > getMaxAgeInMillisOfItem()) {
-      LOG.trace("Deleting {} because it is {} old (max : {})", object, JavaUtils.durationFromMillis(age), JavaUtils.durationFromMillis(getMaxAgeInMillisOfItem()));
-      return true;
+    for (T object : objects) {
+      try {
+        moveToHistory(Collections.singletonList(object));
+        moved.add(object);
+      } catch (Throwable t) {
+        LOG.warn("Failed to persist {} into history", object, t);
+        failedMeter.mark();
+      }
     }
 
-    return false;
+    return moved;
+  }
+
+  private List<T> getObjectsToPurge(List<T> objects) {
+    final long now = System.currentTimeMillis();
+    final List<T> toPurge = Lists.newArrayList();
+
+    for (T object : objects) {
+      final long age = now - object.getCreateTimestampForCalculatingHistoryAge();
+
+      if (age > getMaxAgeInMillisOfItem()) {
+        LOG.trace("Deleting {} because it is {} old (max : {})", object, JavaUtils.durationFromMillis(age), JavaUtils.durationFromMillis(getMaxAgeInMillisOfItem()));
+        toPurge.add(object);
+      }
+    }
+
+    return toPurge;
   }
 
 }
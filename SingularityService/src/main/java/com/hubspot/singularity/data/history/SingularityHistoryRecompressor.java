@@ -0,0 +1,106 @@
+package com.hubspot.singularity.data.history;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.Iterables;
+import com.google.inject.Inject;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.MetadataManager;
+import com.hubspot.singularity.scheduler.SingularityLeaderOnlyPoller;
+
+/**
+ * Rewrites task histories saved before historyBlobCodec was configured (or with another codec), walking taskHistory in task id
+ * order one batch per poll. The last task id checked is saved in ZooKeeper after each batch, so a new leader carries on from
+ * there rather than starting over, and rows it left as they were (already Snappy compressed when the codec is SNAPPY) aren't
+ * selected again. New rows are already written with the codec, so once a full pass is done there is nothing left to do.
+ *
+ * Deploy histories aren't rewritten: there is one per deploy rather than one per task, so they are a small part of the database,
+ * and new ones are written with the codec.
+ */
+@Singleton
+public class SingularityHistoryRecompressor extends SingularityLeaderOnlyPoller {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityHistoryRecompressor.class);
+
+  private final SingularityConfiguration configuration;
+  private final HistoryManager historyManager;
+  private final MetadataManager metadataManager;
+
+  private final Meter recompressedMeter;
+  private final Meter skippedMeter;
+
+  private Optional<String> lastTaskId;
+  private boolean loaded;
+  private boolean finished;
+
+  @Inject
+  public SingularityHistoryRecompressor(SingularityConfiguration configuration, HistoryManager historyManager, MetadataManager metadataManager, MetricRegistry metricRegistry) {
+    super(configuration.getRecompressHistoryEverySeconds(), TimeUnit.SECONDS);
+
+    this.configuration = configuration;
+    this.historyManager = historyManager;
+    this.metadataManager = metadataManager;
+
+    this.recompressedMeter = metricRegistry.meter(MetricRegistry.name(SingularityHistoryRecompressor.class, "recompressed"));
+    this.skippedMeter = metricRegistry.meter(MetricRegistry.name(SingularityHistoryRecompressor.class, "skipped"));
+
+    this.lastTaskId = Optional.absent();
+  }
+
+  @Override
+  protected boolean isEnabled() {
+    return configuration.getDatabaseConfiguration().isPresent() && configuration.getHistoryBlobCodec().isPresent() && configuration.getHistoryRecompressionBatchSize() > 0;
+  }
+
+  @Override
+  protected boolean abortsOnError() {
+    return false;
+  }
+
+  @Override
+  public void runActionOnPoll() {
+    if (finished) {
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+    final String codec = configuration.getHistoryBlobCodec().get().name();
+
+    if (!loaded) {
+      lastTaskId = metadataManager.getLastRecompressedTaskId(codec);
+      loaded = true;
+
+      LOG.info("Recompressing task history with {} after {}", codec, lastTaskId.or("the first task"));
+    }
+
+    final List<String> taskIds = historyManager.getTaskIdsToRecompress(lastTaskId, configuration.getHistoryRecompressionBatchSize());
+
+    if (taskIds.isEmpty()) {
+      LOG.info("Finished recompressing task history with {}", configuration.getHistoryBlobCodec().get());
+      finished = true;
+      return;
+    }
+
+    final int numRecompressed = historyManager.recompressTaskHistories(taskIds);
+
+    lastTaskId = Optional.of(Iterables.getLast(taskIds));
+
+    metadataManager.setLastRecompressedTaskId(codec, lastTaskId.get());
+
+    recompressedMeter.mark(numRecompressed);
+    skippedMeter.mark(taskIds.size() - numRecompressed);
+
+    LOG.debug("Recompressed {} of {} task histories up to {} in {}", numRecompressed, taskIds.size(), lastTaskId.get(), JavaUtils.duration(start));
+  }
+
+}
@@ -1,6 +1,8 @@
 package com.hubspot.singularity.data.history;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -9,10 +11,11 @@ import javax.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.hubspot.mesos.JavaUtils;
-import com.hubspot.singularity.SingularityDeleteResult;
 import com.hubspot.singularity.SingularityHistoryItem;
 import com.hubspot.singularity.SingularityRequestHistory;
 import com.hubspot.singularity.config.SingularityConfiguration;
@@ -28,8 +31,8 @@ public class SingularityRequestHistoryPersister extends SingularityHistoryPersis
   private final HistoryManager historyManager;
 
   @Inject
-  public SingularityRequestHistoryPersister(SingularityConfiguration configuration, RequestManager requestManager, HistoryManager historyManager) {
-    super(configuration);
+  public SingularityRequestHistoryPersister(SingularityConfiguration configuration, MetricRegistry metricRegistry, RequestManager requestManager, HistoryManager historyManager) {
+    super(configuration, metricRegistry);
 
     this.requestManager = requestManager;
     this.historyManager = historyManager;
@@ -72,25 +75,30 @@ public class SingularityRequestHistoryPersister extends SingularityHistoryPersis
     final List<String> requestIdsWithHistory = requestManager.getRequestIdsWithHistory();
     final Set<String> requestIds = Sets.newHashSet(requestManager.getAllRequestIds());
 
-    int numHistoryTransferred = 0;
-    int numRequests = 0;
+    final List<String> requestIdsToCheck = Lists.newArrayList();
 
     for (String requestId : requestIdsWithHistory) {
-      if (!requestIds.contains(requestId)) {
-        continue;
+      if (requestIds.contains(requestId)) {
+        requestIdsToCheck.add(requestId);
       }
+    }
+
+    int numRequestsTransferred = 0;
 
-      numRequests++;
+    for (List<String> batch : Lists.partition(requestIdsToCheck, getBatchSize())) {
+      final Map<String, List<SingularityRequestHistory>> historiesByRequestId = requestManager.getRequestHistories(batch);
+      final List<SingularityRequestHistoryParent> requestHistoryParents = Lists.newArrayListWithCapacity(batch.size());
 
-      List<SingularityRequestHistory> historyForRequestId = requestManager.getRequestHistory(requestId);
-      SingularityRequestHistoryParent requestHistoryParent = new SingularityRequestHistoryParent(historyForRequestId, requestId);
+      for (String requestId : batch) {
+        final List<SingularityRequestHistory> historyForRequestId = historiesByRequestId.get(requestId);
 
-      if (moveToHistoryOrCheckForPurge(requestHistoryParent)) {
-        numHistoryTransferred += requestHistoryParent.history.size();
+        requestHistoryParents.add(new SingularityRequestHistoryParent(historyForRequestId == null ? Collections.<SingularityRequestHistory> emptyList() : historyForRequestId, requestId));
       }
+
+      numRequestsTransferred += moveToHistoryOrCheckForPurge(requestHistoryParents);
     }
 
-    LOG.info("Transferred {} history updates for {} requests in {}", numHistoryTransferred, numRequests, JavaUtils.duration(start));
+    LOG.info("Transferred history for {} out of {} requests in {}", numRequestsTransferred, requestIdsToCheck.size(), JavaUtils.duration(start));
   }
 
   @Override
@@ -99,24 +107,27 @@ public class SingularityRequestHistoryPersister extends SingularityHistoryPersis
   }
 
   @Override
-  protected boolean moveToHistory(SingularityRequestHistoryParent object) {
-    for (SingularityRequestHistory requestHistory : object.history) {
-      try {
-        historyManager.saveRequestHistoryUpdate(requestHistory);
-      } catch (Throwable t) {
-        LOG.warn("Failed to persist {} into History", requestHistory, t);
-        return false;
-      }
+  protected void moveToHistory(List<SingularityRequestHistoryParent> requestHistoryParents) {
+    final List<SingularityRequestHistory> requestHistories = Lists.newArrayList();
 
-      requestManager.deleteHistoryItem(requestHistory);
+    for (SingularityRequestHistoryParent requestHistoryParent : requestHistoryParents) {
+      requestHistories.addAll(requestHistoryParent.history);
     }
 
-    return true;
+    if (!requestHistories.isEmpty()) {
+      historyManager.saveRequestHistoryUpdates(requestHistories);
+    }
   }
 
   @Override
-  protected SingularityDeleteResult purgeFromZk(SingularityRequestHistoryParent object) {
-    return requestManager.deleteHistoryParent(object.requestId);
+  protected int purgeFromZk(List<SingularityRequestHistoryParent> requestHistoryParents) {
+    final List<String> requestIds = Lists.newArrayListWithCapacity(requestHistoryParents.size());
+
+    for (SingularityRequestHistoryParent requestHistoryParent : requestHistoryParents) {
+      requestIds.add(requestHistoryParent.requestId);
+    }
+
+    return requestManager.deleteHistoryParents(requestIds);
   }
 
 }
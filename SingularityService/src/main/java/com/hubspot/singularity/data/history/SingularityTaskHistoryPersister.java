@@ -1,6 +1,7 @@
 package com.hubspot.singularity.data.history;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Singleton;
@@ -8,12 +9,13 @@ import javax.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Optional;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.hubspot.mesos.JavaUtils;
-import com.hubspot.singularity.SingularityDeleteResult;
-import com.hubspot.singularity.SingularityPendingDeploy;
+import com.hubspot.singularity.SingularityDeployKey;
 import com.hubspot.singularity.SingularityTaskHistory;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.config.SingularityConfiguration;
@@ -30,8 +32,8 @@ public class SingularityTaskHistoryPersister extends SingularityHistoryPersister
   private final HistoryManager historyManager;
 
   @Inject
-  public SingularityTaskHistoryPersister(SingularityConfiguration configuration, TaskManager taskManager, DeployManager deployManager, HistoryManager historyManager) {
-    super(configuration);
+  public SingularityTaskHistoryPersister(SingularityConfiguration configuration, MetricRegistry metricRegistry, TaskManager taskManager, DeployManager deployManager, HistoryManager historyManager) {
+    super(configuration, metricRegistry);
 
     this.taskManager = taskManager;
     this.historyManager = historyManager;
@@ -48,32 +50,25 @@ public class SingularityTaskHistoryPersister extends SingularityHistoryPersister
 
     final Set<SingularityTaskId> activeTaskIds = Sets.newHashSet(taskManager.getActiveTaskIds());
     final Set<SingularityTaskId> lbCleaningTaskIds = Sets.newHashSet(taskManager.getLBCleanupTasks());
-    final List<SingularityPendingDeploy> pendingDeploys = deployManager.getPendingDeploys();
+    final Set<SingularityDeployKey> pendingDeployKeys = Sets.newHashSet(Iterables.transform(deployManager.getPendingDeploys(), SingularityDeployKey.FROM_PENDING_TO_DEPLOY_KEY));
 
-    int numTotal = 0;
-    int numTransferred = 0;
+    final List<SingularityTaskId> inactiveTaskIds = Lists.newArrayList();
 
     for (SingularityTaskId taskId : allTaskIds) {
-      if (activeTaskIds.contains(taskId) || lbCleaningTaskIds.contains(taskId) || isPartofPendingDeploy(pendingDeploys, taskId)) {
+      if (activeTaskIds.contains(taskId) || lbCleaningTaskIds.contains(taskId) || pendingDeployKeys.contains(new SingularityDeployKey(taskId.getRequestId(), taskId.getDeployId()))) {
         continue;
       }
-      if (moveToHistoryOrCheckForPurge(taskId)) {
-        numTransferred++;
-      }
-      numTotal++;
+
+      inactiveTaskIds.add(taskId);
     }
 
-    LOG.info("Transferred {} out of {} inactive task ids (total {}) in {}", numTransferred, numTotal, allTaskIds.size(), JavaUtils.duration(start));
-  }
+    int numTransferred = 0;
 
-  private boolean isPartofPendingDeploy(List<SingularityPendingDeploy> pendingDeploys, SingularityTaskId taskId) {
-    for (SingularityPendingDeploy pendingDeploy : pendingDeploys) {
-      if (pendingDeploy.getDeployMarker().getDeployId().equals(taskId.getDeployId()) && pendingDeploy.getDeployMarker().getRequestId().equals(taskId.getRequestId())) {
-        return true;
-      }
+    for (List<SingularityTaskId> batch : Lists.partition(inactiveTaskIds, getBatchSize())) {
+      numTransferred += moveToHistoryOrCheckForPurge(batch);
     }
 
-    return false;
+    LOG.info("Transferred {} out of {} inactive task ids (total {}) in {}", numTransferred, inactiveTaskIds.size(), allTaskIds.size(), JavaUtils.duration(start));
   }
 
   @Override
@@ -82,27 +77,23 @@ public class SingularityTaskHistoryPersister extends SingularityHistoryPersister
   }
 
   @Override
-  protected boolean moveToHistory(SingularityTaskId object) {
-    final Optional<SingularityTaskHistory> taskHistory = taskManager.getTaskHistory(object);
-
-    if (taskHistory.isPresent()) {
-      LOG.debug("Moving {} to history", object);
-      try {
-        historyManager.saveTaskHistory(taskHistory.get());
-      } catch (Throwable t) {
-        LOG.warn("Failed to persist task into History for task {}", object, t);
-        return false;
-      }
-    } else {
-      LOG.warn("Inactive task {} did not have a task to persist", object);
+  protected void moveToHistory(List<SingularityTaskId> taskIds) {
+    final Map<SingularityTaskId, SingularityTaskHistory> taskHistories = taskManager.getTaskHistories(taskIds);
+
+    if (taskHistories.size() < taskIds.size()) {
+      LOG.warn("{} of {} inactive tasks did not have a task to persist", taskIds.size() - taskHistories.size(), taskIds.size());
     }
 
-    return true;
+    if (!taskHistories.isEmpty()) {
+      LOG.debug("Moving {} tasks to history", taskHistories.size());
+
+      historyManager.saveTaskHistories(Lists.newArrayList(taskHistories.values()));
+    }
   }
 
   @Override
-  protected SingularityDeleteResult purgeFromZk(SingularityTaskId object) {
-    return taskManager.deleteTaskHistory(object);
+  protected int purgeFromZk(List<SingularityTaskId> taskIds) {
+    return taskManager.deleteTaskHistories(taskIds);
   }
 
 }
@@ -4,16 +4,20 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHealthcheckResult;
 import com.hubspot.singularity.SingularityTaskHistory;
 import com.hubspot.singularity.SingularityTaskHistoryUpdate;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.SingularityTaskIdHistory;
+import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.TaskManager;
 
 @Singleton
@@ -23,11 +27,30 @@ public class TaskHistoryHelper extends BlendedHistoryHelper<SingularityTaskIdHis
   private final HistoryManager historyManager;
 
   @Inject
-  public TaskHistoryHelper(TaskManager taskManager, HistoryManager historyManager) {
+  public TaskHistoryHelper(TaskManager taskManager, HistoryManager historyManager, SingularityConfiguration configuration) {
+    super(configuration);
+
     this.taskManager = taskManager;
     this.historyManager = historyManager;
   }
 
+  /**
+   * Only the most recent healthchecks are kept with a task, older ones are saved separately as they are trimmed from ZooKeeper.
+   *
+   * @return taskHistory with healthcheckResults merged into its own
+   */
+  public static SingularityTaskHistory withHealthcheckResults(SingularityTaskHistory taskHistory, List<SingularityTaskHealthcheckResult> healthcheckResults) {
+    if (healthcheckResults.isEmpty()) {
+      return taskHistory;
+    }
+
+    final SortedSet<SingularityTaskHealthcheckResult> mergedResults = Sets.newTreeSet(taskHistory.getHealthcheckResults());
+    mergedResults.addAll(healthcheckResults);
+
+    return new SingularityTaskHistory(taskHistory.getTaskUpdates(), taskHistory.getDirectory(), Lists.newArrayList(mergedResults), taskHistory.getTask(),
+        taskHistory.getLoadBalancerUpdates());
+  }
+
   public List<SingularityTaskIdHistory> getHistoriesFor(Collection<SingularityTaskId> taskIds) {
     Map<SingularityTaskId, List<SingularityTaskHistoryUpdate>> map = taskManager.getTaskHistoryUpdates(taskIds);
 
@@ -56,6 +79,26 @@ public class TaskHistoryHelper extends BlendedHistoryHelper<SingularityTaskIdHis
     return historyManager.getTaskHistoryForRequest(requestId, historyStart, numFromHistory);
   }
 
+  @Override
+  protected List<SingularityTaskIdHistory> getFromHistory(String requestId, HistoryCursor cursor, int numFromHistory) {
+    return historyManager.getTaskHistoryForRequest(requestId, cursor, numFromHistory);
+  }
+
+  @Override
+  protected long getCursorTimestamp(SingularityTaskIdHistory taskIdHistory) {
+    return taskIdHistory.getUpdatedAt();
+  }
+
+  @Override
+  protected String getCursorId(SingularityTaskIdHistory taskIdHistory) {
+    return taskIdHistory.getTaskId().getId();
+  }
+
+  @Override
+  protected String getEntityId(SingularityTaskIdHistory taskIdHistory) {
+    return taskIdHistory.getTaskId().getId();
+  }
+
   public Optional<SingularityTask> getTask(SingularityTaskId taskId) {
     Optional<SingularityTask> maybeTask = taskManager.getTask(taskId);
 
@@ -0,0 +1,151 @@
+package com.hubspot.singularity.data.transcoders;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+import com.google.common.base.Optional;
+
+/**
+ * Compression for blobs stored in the history database. Compressed blobs start with the same two byte header as SmileTranscoder
+ * (a zero marker followed by a format byte), using format bytes which SmileTranscoder doesn't, so a blob can always be told apart
+ * from one written without a codec.
+ */
+public enum HistoryBlobCodec {
+
+  SNAPPY((byte) 16) {
+
+    @Override
+    protected byte[] compress(byte[] data) {
+      final byte[] compressed = new byte[HEADER_LENGTH + Snappy.maxCompressedLength(data.length)];
+      final int compressedLength = Snappy.compress(data, 0, data.length, compressed, HEADER_LENGTH);
+
+      return Arrays.copyOf(compressed, HEADER_LENGTH + compressedLength);
+    }
+
+    @Override
+    protected byte[] uncompress(byte[] blob) {
+      try {
+        return Snappy.uncompress(blob, HEADER_LENGTH, blob.length - HEADER_LENGTH);
+      } catch (CorruptionException ce) {
+        throw new SingularityTranscoderException(ce);
+      }
+    }
+
+  },
+
+  DEFLATE((byte) 17) {
+
+    @Override
+    protected byte[] compress(byte[] data) {
+      final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_LENGTH + data.length / 4);
+      final byte[] buffer = new byte[BUFFER_SIZE];
+
+      out.write(0);
+      out.write(0);
+
+      try {
+        deflater.setInput(data);
+        deflater.finish();
+
+        while (!deflater.finished()) {
+          out.write(buffer, 0, deflater.deflate(buffer));
+        }
+      } finally {
+        deflater.end();
+      }
+
+      return out.toByteArray();
+    }
+
+    @Override
+    protected byte[] uncompress(byte[] blob) {
+      final Inflater inflater = new Inflater();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(blob.length * 4);
+      final byte[] buffer = new byte[BUFFER_SIZE];
+
+      try {
+        inflater.setInput(blob, HEADER_LENGTH, blob.length - HEADER_LENGTH);
+
+        while (!inflater.finished()) {
+          final int inflated = inflater.inflate(buffer);
+
+          if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            throw new SingularityTranscoderException("Truncated %s blob", name());
+          }
+
+          out.write(buffer, 0, inflated);
+        }
+      } catch (DataFormatException dfe) {
+        throw new SingularityTranscoderException(dfe);
+      } finally {
+        inflater.end();
+      }
+
+      return out.toByteArray();
+    }
+
+  };
+
+  private static final byte MARKER = 0;
+  private static final int HEADER_LENGTH = 2;
+  private static final int BUFFER_SIZE = 8192;
+
+  private final byte format;
+
+  private HistoryBlobCodec(byte format) {
+    this.format = format;
+  }
+
+  protected abstract byte[] compress(byte[] data);
+
+  protected abstract byte[] uncompress(byte[] blob);
+
+  /**
+   * @return the compressed data, behind this codec's header
+   */
+  public byte[] encode(byte[] data) {
+    final byte[] blob = compress(data);
+
+    blob[0] = MARKER;
+    blob[1] = format;
+
+    return blob;
+  }
+
+  public byte[] decode(byte[] blob) {
+    if (!isEncodedBy(blob)) {
+      throw new SingularityTranscoderException("Blob was not written by %s", name());
+    }
+
+    return uncompress(blob);
+  }
+
+  public byte[] getHeader() {
+    return new byte[] { MARKER, format };
+  }
+
+  public boolean isEncodedBy(byte[] blob) {
+    return blob != null && blob.length >= HEADER_LENGTH && blob[0] == MARKER && blob[1] == format;
+  }
+
+  /**
+   * @return the codec which wrote blob, or absent if it was written without one
+   */
+  public static Optional<HistoryBlobCodec> forBlob(byte[] blob) {
+    for (HistoryBlobCodec codec : values()) {
+      if (codec.isEncodedBy(blob)) {
+        return Optional.of(codec);
+      }
+    }
+
+    return Optional.absent();
+  }
+
+}
@@ -0,0 +1,71 @@
+package com.hubspot.singularity.data.transcoders;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Stores a list in a single node as a count followed by each element length-prefixed, in the bytes of the element transcoder.
+ */
+public class ListTranscoder<T> implements Transcoder<List<T>> {
+  private static final byte[] EMPTY_BYTES = new byte[0];
+
+  private final Transcoder<T> elementTranscoder;
+
+  public ListTranscoder(final Transcoder<T> elementTranscoder) {
+    this.elementTranscoder = checkNotNull(elementTranscoder, "elementTranscoder is null");
+  }
+
+  @Override
+  public List<T> fromBytes(@Nullable byte[] data) throws SingularityTranscoderException {
+    if (data == null || data.length == 0) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+      final int size = in.readInt();
+      final List<T> elements = new ArrayList<>(size);
+
+      for (int i = 0; i < size; i++) {
+        final byte[] element = new byte[in.readInt()];
+        in.readFully(element);
+        elements.add(elementTranscoder.fromBytes(element));
+      }
+
+      return elements;
+    } catch (IOException e) {
+      throw new SingularityTranscoderException(e);
+    }
+  }
+
+  @Override
+  public byte[] toBytes(@Nullable List<T> elements) throws SingularityTranscoderException {
+    if (elements == null) {
+      return EMPTY_BYTES;
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(elements.size());
+
+      for (T element : elements) {
+        final byte[] elementBytes = elementTranscoder.toBytes(element);
+        out.writeInt(elementBytes.length);
+        out.write(elementBytes);
+      }
+    } catch (IOException e) {
+      throw new SingularityTranscoderException(e);
+    }
+
+    return bytes.toByteArray();
+  }
+}
@@ -41,6 +41,20 @@ public final class SingularityJsonTranscoderBinder {
     binder.bind(key).toProvider(new CompressingJsonTranscoderProvider<T>(clazz)).in(Scopes.SINGLETON);
   }
 
+  public <T> void asBinary(Class<T> clazz) {
+    TypeToken<Transcoder<T>> typeToken = new TypeToken<Transcoder<T>>() {}.where(new TypeParameter<T>() {}, clazz);
+    @SuppressWarnings("unchecked")
+    Key<Transcoder<T>> key = (Key<Transcoder<T>>) Key.get(typeToken.getType());
+    binder.bind(key).toProvider(new SmileTranscoderProvider<T>(clazz, false)).in(Scopes.SINGLETON);
+  }
+
+  public <T> void asCompressedBinary(Class<T> clazz) {
+    TypeToken<Transcoder<T>> typeToken = new TypeToken<Transcoder<T>>() {}.where(new TypeParameter<T>() {}, clazz);
+    @SuppressWarnings("unchecked")
+    Key<Transcoder<T>> key = (Key<Transcoder<T>>) Key.get(typeToken.getType());
+    binder.bind(key).toProvider(new SmileTranscoderProvider<T>(clazz, true)).in(Scopes.SINGLETON);
+  }
+
   public <T extends SingularityId> void asSingularityId(Class<T> clazz) {
     TypeToken<IdTranscoder<T>> typeToken = new TypeToken<IdTranscoder<T>>() {}.where(new TypeParameter<T>() {}, clazz);
     @SuppressWarnings("unchecked")
@@ -93,4 +107,30 @@ public final class SingularityJsonTranscoderBinder {
     }
   }
 
+  static class SmileTranscoderProvider<T> implements Provider<SmileTranscoder<T>> {
+    private final Class<T> clazz;
+    private final boolean compressible;
+    private ObjectMapper objectMapper;
+    private SingularityConfiguration singularityConfiguration;
+
+    SmileTranscoderProvider(Class<T> clazz, boolean compressible) {
+      this.clazz = clazz;
+      this.compressible = compressible;
+    }
+
+    @Inject
+    void inject(ObjectMapper objectMapper, SingularityConfiguration singularityConfiguration) {
+      this.objectMapper = checkNotNull(objectMapper, "objectMapper is null");
+      this.singularityConfiguration = checkNotNull(singularityConfiguration, "singularityConfiguration is null");
+    }
+
+    @Override
+    public SmileTranscoder<T> get() {
+      checkState(objectMapper != null, "objectMapper was never injected!");
+      checkState(singularityConfiguration != null, "singularityConfiguration was never injected!");
+
+      return new SmileTranscoder<T>(singularityConfiguration, objectMapper, clazz, compressible);
+    }
+  }
+
 }
@@ -50,7 +50,6 @@ public class SingularityTranscoderModule implements Module {
     bindTranscoder(binder).asJson(SingularityKilledTaskIdRecord.class);
     bindTranscoder(binder).asJson(SingularityLoadBalancerUpdate.class);
     bindTranscoder(binder).asJson(SingularityPendingDeploy.class);
-    bindTranscoder(binder).asJson(SingularityPendingTask.class);
     bindTranscoder(binder).asJson(SingularityPendingRequest.class);
     bindTranscoder(binder).asJson(SingularityHostState.class);
     bindTranscoder(binder).asJson(SingularityRack.class);
@@ -59,8 +58,6 @@ public class SingularityTranscoderModule implements Module {
     bindTranscoder(binder).asJson(SingularityRequestDeployState.class);
     bindTranscoder(binder).asJson(SingularityRequestWithState.class);
     bindTranscoder(binder).asJson(SingularitySlave.class);
-    bindTranscoder(binder).asJson(SingularityTaskCleanup.class);
-    bindTranscoder(binder).asJson(SingularityTaskHistoryUpdate.class);
     bindTranscoder(binder).asJson(SingularityWebhook.class);
     bindTranscoder(binder).asJson(SingularityMachineStateHistoryUpdate.class);
 
@@ -69,9 +66,14 @@ public class SingularityTranscoderModule implements Module {
     bindTranscoder(binder).asCompressedJson(SingularityDeployUpdate.class);
     bindTranscoder(binder).asCompressedJson(SingularityRequestHistory.class);
     bindTranscoder(binder).asCompressedJson(SingularityState.class);
-    bindTranscoder(binder).asCompressedJson(SingularityTaskHealthcheckResult.class);
     bindTranscoder(binder).asCompressedJson(SingularityTaskHistory.class);
-    bindTranscoder(binder).asCompressedJson(SingularityTaskStatusHolder.class);
-    bindTranscoder(binder).asCompressedJson(SingularityTask.class);
+
+    bindTranscoder(binder).asBinary(SingularityPendingTask.class);
+    bindTranscoder(binder).asBinary(SingularityTaskCleanup.class);
+    bindTranscoder(binder).asBinary(SingularityTaskHistoryUpdate.class);
+
+    bindTranscoder(binder).asCompressedBinary(SingularityTask.class);
+    bindTranscoder(binder).asCompressedBinary(SingularityTaskHealthcheckResult.class);
+    bindTranscoder(binder).asCompressedBinary(SingularityTaskStatusHolder.class);
   }
 }
@@ -0,0 +1,134 @@
+package com.hubspot.singularity.data.transcoders;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+/**
+ * Writes objects as Smile (Jackson's binary JSON), Snappy compressed if the object is compressible, behind a two byte header:
+ * a zero marker - which neither JSON text nor the Snappy frame of a non-empty object starts with - and a format byte.
+ * Anything without the marker is read the way JsonTranscoder or CompressingJsonTranscoder wrote it, so objects can move
+ * between formats gradually. Until writeBinaryDataObjects is set, objects are still written in that older format so instances
+ * which can't read Smile yet keep working during a rolling deploy.
+ */
+public class SmileTranscoder<T> implements Transcoder<T> {
+  private static final byte[] EMPTY_BYTES = new byte[0];
+
+  static final byte MARKER = 0;
+  static final byte FORMAT_SMILE = 1;
+  static final byte FORMAT_SMILE_SNAPPY = 2;
+
+  private static final int HEADER_LENGTH = 2;
+
+  private static final SmileFactory SMILE_FACTORY = new SmileFactory();
+
+  private final ObjectMapper objectMapper;
+  private final Class<T> clazz;
+  private final boolean compress;
+  private final boolean writeBinary;
+
+  SmileTranscoder(final SingularityConfiguration configuration, final ObjectMapper objectMapper, final Class<T> clazz, final boolean compressible) {
+    checkNotNull(configuration, "configuration is null");
+    this.objectMapper = checkNotNull(objectMapper, "objectMapper is null");
+    this.clazz = checkNotNull(clazz, "clazz is null");
+    this.compress = compressible && configuration.isCompressLargeDataObjects();
+    this.writeBinary = configuration.isWriteBinaryDataObjects();
+  }
+
+  @Override
+  public T fromBytes(@Nullable byte[] data) throws SingularityTranscoderException {
+    if (data == null || data.length == 0) {
+      return null;
+    }
+
+    try {
+      if (data[0] != MARKER) {
+        return objectMapper.readValue(compress ? uncompress(data, 0) : data, clazz);
+      }
+
+      if (data.length < HEADER_LENGTH) {
+        throw new SingularityTranscoderException("Missing format byte for %s", clazz.getSimpleName());
+      }
+
+      switch (data[1]) {
+        case FORMAT_SMILE:
+          return readSmile(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+        case FORMAT_SMILE_SNAPPY:
+          final byte[] uncompressed = uncompress(data, HEADER_LENGTH);
+          return readSmile(uncompressed, 0, uncompressed.length);
+        default:
+          throw new SingularityTranscoderException("Unknown format %s for %s", data[1], clazz.getSimpleName());
+      }
+    } catch (IOException e) {
+      throw new SingularityTranscoderException(e);
+    }
+  }
+
+  @Override
+  public byte[] toBytes(@Nullable T object) throws SingularityTranscoderException {
+    if (object == null) {
+      return EMPTY_BYTES;
+    }
+
+    try {
+      if (!writeBinary) {
+        final byte[] json = objectMapper.writeValueAsBytes(object);
+        return compress ? Snappy.compress(json) : json;
+      }
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+      if (!compress) {
+        out.write(MARKER);
+        out.write(FORMAT_SMILE);
+      }
+
+      try (JsonGenerator generator = SMILE_FACTORY.createGenerator(out)) {
+        objectMapper.writeValue(generator, object);
+      }
+
+      if (!compress) {
+        return out.toByteArray();
+      }
+
+      final byte[] smile = out.toByteArray();
+      final byte[] compressed = new byte[HEADER_LENGTH + Snappy.maxCompressedLength(smile.length)];
+
+      compressed[0] = MARKER;
+      compressed[1] = FORMAT_SMILE_SNAPPY;
+
+      final int compressedLength = Snappy.compress(smile, 0, smile.length, compressed, HEADER_LENGTH);
+
+      return Arrays.copyOf(compressed, HEADER_LENGTH + compressedLength);
+    } catch (IOException e) {
+      throw new SingularityTranscoderException(e);
+    }
+  }
+
+  private T readSmile(byte[] data, int offset, int length) throws IOException {
+    try (JsonParser parser = SMILE_FACTORY.createParser(data, offset, length)) {
+      return objectMapper.readValue(parser, clazz);
+    }
+  }
+
+  private byte[] uncompress(byte[] data, int offset) {
+    try {
+      return Snappy.uncompress(data, offset, data.length - offset);
+    } catch (CorruptionException ce) {
+      throw new SingularityTranscoderException(ce);
+    }
+  }
+}
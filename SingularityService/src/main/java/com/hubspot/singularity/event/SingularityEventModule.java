@@ -13,6 +13,7 @@ import com.google.inject.name.Names;
 import com.hubspot.singularity.SingularityManagedScheduledExecutorServiceProvider;
 import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.WebhookManager;
+import com.hubspot.singularity.data.history.BlendedHistoryInvalidator;
 
 public class SingularityEventModule implements Module {
   public static final String LISTENER_THREADPOOL_NAME = "_listener_threadpool";
@@ -28,6 +29,7 @@ public class SingularityEventModule implements Module {
   public void configure(final Binder binder) {
     Multibinder<SingularityEventListener> eventListeners = Multibinder.newSetBinder(binder, SingularityEventListener.class);
     eventListeners.addBinding().to(WebhookManager.class).in(Scopes.SINGLETON);
+    eventListeners.addBinding().to(BlendedHistoryInvalidator.class).in(Scopes.SINGLETON);
 
     binder.bind(SingularityEventListener.class).to(SingularityEventController.class).in(Scopes.SINGLETON);
 
@@ -19,6 +19,7 @@ import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheck;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
@@ -102,6 +103,7 @@ public class GuiceBundle<T extends Configuration> implements ConfiguredBundle<T>
               @Override
               public void configure(final Binder binder) {
                 binder.bind(Environment.class).toInstance(environment);
+                binder.bind(MetricRegistry.class).toInstance(environment.metrics());
                 binder.bind(configClass).toInstance(configuration);
 
                 binder.bind(GuiceContainer.class).to(DropwizardGuiceContainer.class).in(Scopes.SINGLETON);
@@ -1,19 +1,31 @@
 package com.hubspot.singularity.hooks;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.hubspot.singularity.LoadBalancerRequestType.LoadBalancerRequestId;
 import com.hubspot.singularity.SingularityDeploy;
 import com.hubspot.singularity.SingularityLoadBalancerUpdate;
 import com.hubspot.singularity.SingularityRequest;
 import com.hubspot.singularity.SingularityTask;
 
+/**
+ * Futures returned by a LoadBalancerClient never fail - a request which errors or times out completes with an update in a
+ * failed or unknown state, as if the load balancer had answered with it.
+ */
 public interface LoadBalancerClient {
 
-  SingularityLoadBalancerUpdate enqueue(LoadBalancerRequestId loadBalancerRequestId, SingularityRequest request, SingularityDeploy deploy, List<SingularityTask> add, List<SingularityTask> remove);
+  ListenableFuture<SingularityLoadBalancerUpdate> enqueue(LoadBalancerRequestId loadBalancerRequestId, SingularityRequest request, SingularityDeploy deploy, List<SingularityTask> add, List<SingularityTask> remove);
 
-  SingularityLoadBalancerUpdate getState(LoadBalancerRequestId loadBalancerRequestId);
+  ListenableFuture<SingularityLoadBalancerUpdate> getState(LoadBalancerRequestId loadBalancerRequestId);
 
-  SingularityLoadBalancerUpdate cancel(LoadBalancerRequestId loadBalancerRequestId);
+  /**
+   * Checks the state of several load balancer requests at once, keyed by the given ids.
+   */
+  ListenableFuture<Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate>> getStates(Collection<LoadBalancerRequestId> loadBalancerRequestIds);
+
+  ListenableFuture<SingularityLoadBalancerUpdate> cancel(LoadBalancerRequestId loadBalancerRequestId);
 
 }
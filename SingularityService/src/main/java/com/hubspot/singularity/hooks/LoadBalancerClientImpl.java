@@ -1,19 +1,28 @@
 package com.hubspot.singularity.hooks;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.Inject;
 import com.hubspot.baragon.models.BaragonRequest;
 import com.hubspot.baragon.models.BaragonRequestState;
@@ -28,9 +37,10 @@ import com.hubspot.singularity.SingularityLoadBalancerUpdate.LoadBalancerMethod;
 import com.hubspot.singularity.SingularityRequest;
 import com.hubspot.singularity.SingularityTask;
 import com.hubspot.singularity.config.SingularityConfiguration;
+import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
-import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.PerRequestConfig;
 import com.ning.http.client.Request;
 import com.ning.http.client.Response;
 
@@ -41,22 +51,37 @@ public class LoadBalancerClientImpl implements LoadBalancerClient {
   private static final String CONTENT_TYPE_JSON = "application/json";
   private static final String HEADER_CONTENT_TYPE = "Content-Type";
 
+  private static final TypeReference<List<BaragonResponse>> BARAGON_RESPONSE_LIST_REFERENCE = new TypeReference<List<BaragonResponse>>() {};
+
   private final String loadBalancerUri;
+  private final Optional<String> loadBalancerBatchStateUri;
   private final Optional<Map<String, String>> loadBalancerQueryParams;
   private final long loadBalancerTimeoutMillis;
 
   private final AsyncHttpClient httpClient;
   private final ObjectMapper objectMapper;
 
+  private final Map<LoadBalancerMethod, Histogram> latencyHistograms;
+  private final Histogram batchCheckStateLatencyHistogram;
+
   private static final String OPERATION_URI = "%s/%s";
 
   @Inject
-  public LoadBalancerClientImpl(SingularityConfiguration configuration, ObjectMapper objectMapper, AsyncHttpClient httpClient) {
+  public LoadBalancerClientImpl(SingularityConfiguration configuration, ObjectMapper objectMapper, AsyncHttpClient httpClient, MetricRegistry metricRegistry) {
     this.httpClient = httpClient;
     this.objectMapper = objectMapper;
     this.loadBalancerUri = configuration.getLoadBalancerUri();
+    this.loadBalancerBatchStateUri = configuration.getLoadBalancerBatchStateUri();
     this.loadBalancerTimeoutMillis = configuration.getLoadBalancerRequestTimeoutMillis();
     this.loadBalancerQueryParams = configuration.getLoadBalancerQueryParams();
+
+    this.latencyHistograms = new EnumMap<>(LoadBalancerMethod.class);
+
+    for (LoadBalancerMethod method : LoadBalancerMethod.values()) {
+      latencyHistograms.put(method, metricRegistry.histogram(MetricRegistry.name(LoadBalancerClient.class, method.name(), "latencyMillis")));
+    }
+
+    this.batchCheckStateLatencyHistogram = metricRegistry.histogram(MetricRegistry.name(LoadBalancerClient.class, "BATCH_CHECK_STATE", "latencyMillis"));
   }
 
   private String getLoadBalancerUri(LoadBalancerRequestId loadBalancerRequestId) {
@@ -69,17 +94,154 @@ public class LoadBalancerClientImpl implements LoadBalancerClient {
     }
   }
 
+  private BoundRequestBuilder withQueryParamsAndTimeout(BoundRequestBuilder requestBuilder) {
+    if (loadBalancerQueryParams.isPresent()) {
+      addAllQueryParams(requestBuilder, loadBalancerQueryParams.get());
+    }
+
+    return requestBuilder.setPerRequestConfig(new PerRequestConfig(null, (int) loadBalancerTimeoutMillis));
+  }
+
   @Override
-  public SingularityLoadBalancerUpdate getState(LoadBalancerRequestId loadBalancerRequestId) {
+  public ListenableFuture<SingularityLoadBalancerUpdate> getState(LoadBalancerRequestId loadBalancerRequestId) {
     final String uri = getLoadBalancerUri(loadBalancerRequestId);
 
-    final BoundRequestBuilder requestBuilder = httpClient.prepareGet(uri);
+    final BoundRequestBuilder requestBuilder = withQueryParamsAndTimeout(httpClient.prepareGet(uri));
 
-    if (loadBalancerQueryParams.isPresent()) {
-      addAllQueryParams(requestBuilder, loadBalancerQueryParams.get());
+    return sendRequestWrapper(loadBalancerRequestId, LoadBalancerMethod.CHECK_STATE, requestBuilder.build(), BaragonRequestState.UNKNOWN);
+  }
+
+  @Override
+  public ListenableFuture<Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate>> getStates(final Collection<LoadBalancerRequestId> loadBalancerRequestIds) {
+    if (loadBalancerRequestIds.isEmpty()) {
+      return Futures.immediateFuture(Collections.<LoadBalancerRequestId, SingularityLoadBalancerUpdate> emptyMap());
     }
 
-    return sendRequestWrapper(loadBalancerRequestId, LoadBalancerMethod.CHECK_STATE, requestBuilder.build(), BaragonRequestState.UNKNOWN);
+    if (loadBalancerBatchStateUri.isPresent()) {
+      return getStatesInBatch(loadBalancerRequestIds);
+    }
+
+    final List<ListenableFuture<SingularityLoadBalancerUpdate>> futures = Lists.newArrayListWithCapacity(loadBalancerRequestIds.size());
+
+    for (LoadBalancerRequestId loadBalancerRequestId : loadBalancerRequestIds) {
+      futures.add(getState(loadBalancerRequestId));
+    }
+
+    return Futures.transform(Futures.allAsList(futures), new Function<List<SingularityLoadBalancerUpdate>, Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate>>() {
+
+      @Override
+      public Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate> apply(List<SingularityLoadBalancerUpdate> updates) {
+        final Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate> updatesByRequestId = Maps.newHashMapWithExpectedSize(updates.size());
+
+        int i = 0;
+        for (LoadBalancerRequestId loadBalancerRequestId : loadBalancerRequestIds) {
+          updatesByRequestId.put(loadBalancerRequestId, updates.get(i++));
+        }
+
+        return updatesByRequestId;
+      }
+
+    });
+  }
+
+  private ListenableFuture<Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate>> getStatesInBatch(final Collection<LoadBalancerRequestId> loadBalancerRequestIds) {
+    final long start = System.currentTimeMillis();
+    final SettableFuture<Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate>> future = SettableFuture.create();
+
+    final List<String> requestIds = Lists.newArrayListWithCapacity(loadBalancerRequestIds.size());
+
+    for (LoadBalancerRequestId loadBalancerRequestId : loadBalancerRequestIds) {
+      requestIds.add(loadBalancerRequestId.toString());
+    }
+
+    final Request request;
+
+    try {
+      request = withQueryParamsAndTimeout(httpClient.preparePost(loadBalancerBatchStateUri.get())
+          .addHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON)
+          .setBody(objectMapper.writeValueAsBytes(requestIds)))
+          .build();
+    } catch (IOException e) {
+      LOG.error("Couldn't serialize LB batch state request for {} requests", requestIds.size(), e);
+
+      final Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate> updates = Maps.newHashMapWithExpectedSize(loadBalancerRequestIds.size());
+
+      for (LoadBalancerRequestId loadBalancerRequestId : loadBalancerRequestIds) {
+        updates.put(loadBalancerRequestId, new SingularityLoadBalancerUpdate(BaragonRequestState.UNKNOWN, loadBalancerRequestId, Optional.of(e.getMessage()), start, LoadBalancerMethod.CHECK_STATE,
+            loadBalancerBatchStateUri));
+      }
+
+      return Futures.immediateFuture(updates);
+    }
+
+    LOG.trace("Sending LB batch state request for {} requests to {}", requestIds.size(), request.getUrl());
+
+    final AsyncCompletionHandler<Void> handler = new AsyncCompletionHandler<Void>() {
+
+      @Override
+      public Void onCompleted(Response response) {
+        try {
+          if (!JavaUtils.isHttpSuccess(response.getStatusCode())) {
+            completeBatch(Optional.<List<BaragonResponse>> absent(), Optional.of(String.format("Response status code %s", response.getStatusCode())));
+          } else {
+            completeBatch(Optional.of(objectMapper.<List<BaragonResponse>> readValue(response.getResponseBodyAsBytes(), BARAGON_RESPONSE_LIST_REFERENCE)), Optional.<String> absent());
+          }
+        } catch (Throwable t) {
+          onThrowable(t);
+        }
+
+        return null;
+      }
+
+      @Override
+      public void onThrowable(Throwable t) {
+        completeBatch(Optional.<List<BaragonResponse>> absent(), Optional.of(getFailureHolder(request, String.format("batch of %s", requestIds.size()), t).message.get()));
+      }
+
+      private void completeBatch(Optional<List<BaragonResponse>> responses, Optional<String> failureMessage) {
+        final long duration = System.currentTimeMillis() - start;
+        batchCheckStateLatencyHistogram.update(duration);
+
+        final Map<String, BaragonResponse> responsesByRequestId = Maps.newHashMap();
+
+        if (responses.isPresent()) {
+          for (BaragonResponse lbResponse : responses.get()) {
+            responsesByRequestId.put(lbResponse.getLoadBalancerRequestId(), lbResponse);
+          }
+        }
+
+        final Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate> updates = Maps.newHashMapWithExpectedSize(loadBalancerRequestIds.size());
+
+        for (LoadBalancerRequestId loadBalancerRequestId : loadBalancerRequestIds) {
+          final BaragonResponse lbResponse = responsesByRequestId.get(loadBalancerRequestId.toString());
+
+          final LoadBalancerUpdateHolder result;
+
+          if (lbResponse != null) {
+            result = new LoadBalancerUpdateHolder(lbResponse.getLoadBalancerState(), lbResponse.getMessage());
+          } else if (failureMessage.isPresent()) {
+            result = new LoadBalancerUpdateHolder(BaragonRequestState.UNKNOWN, failureMessage);
+          } else {
+            result = new LoadBalancerUpdateHolder(BaragonRequestState.UNKNOWN, Optional.of("Missing from batch state response"));
+          }
+
+          updates.put(loadBalancerRequestId, new SingularityLoadBalancerUpdate(result.state, loadBalancerRequestId, result.message, start, LoadBalancerMethod.CHECK_STATE, Optional.of(request.getUrl())));
+        }
+
+        LOG.debug("LB batch state request for {} requests ({} answered) finished after {}", requestIds.size(), responsesByRequestId.size(), JavaUtils.durationFromMillis(duration));
+
+        future.set(updates);
+      }
+
+    };
+
+    try {
+      httpClient.executeRequest(request, handler);
+    } catch (Throwable t) {
+      handler.onThrowable(t);
+    }
+
+    return future;
   }
 
   private BaragonResponse readResponse(Response response) {
@@ -90,11 +252,65 @@ public class LoadBalancerClientImpl implements LoadBalancerClient {
     }
   }
 
-  private SingularityLoadBalancerUpdate sendRequestWrapper(LoadBalancerRequestId loadBalancerRequestId, LoadBalancerMethod method, Request request, BaragonRequestState onFailure) {
+  private ListenableFuture<SingularityLoadBalancerUpdate> sendRequestWrapper(final LoadBalancerRequestId loadBalancerRequestId, final LoadBalancerMethod method, final Request request, final BaragonRequestState onFailure) {
     final long start = System.currentTimeMillis();
-    final LoadBalancerUpdateHolder result = sendRequest(loadBalancerRequestId, request, onFailure);
-    LOG.debug("LB {} request {} had result {} after {}", request.getMethod(), loadBalancerRequestId, result, JavaUtils.duration(start));
-    return new SingularityLoadBalancerUpdate(result.state, loadBalancerRequestId, result.message, start, method, Optional.of(request.getUrl()));
+    final SettableFuture<SingularityLoadBalancerUpdate> future = SettableFuture.create();
+
+    LOG.trace("Sending LB {} request for {} to {}", request.getMethod(), loadBalancerRequestId, request.getUrl());
+
+    final AsyncCompletionHandler<Void> handler = new AsyncCompletionHandler<Void>() {
+
+      @Override
+      public Void onCompleted(Response response) {
+        try {
+          LOG.trace("LB {} request {} returned with code {}", request.getMethod(), loadBalancerRequestId, response.getStatusCode());
+
+          if (!JavaUtils.isHttpSuccess(response.getStatusCode())) {
+            complete(new LoadBalancerUpdateHolder(onFailure, Optional.of(String.format("Response status code %s", response.getStatusCode()))));
+          } else {
+            final BaragonResponse lbResponse = readResponse(response);
+
+            complete(new LoadBalancerUpdateHolder(lbResponse.getLoadBalancerState(), lbResponse.getMessage()));
+          }
+        } catch (Throwable t) {
+          onThrowable(t);
+        }
+
+        return null;
+      }
+
+      @Override
+      public void onThrowable(Throwable t) {
+        complete(getFailureHolder(request, loadBalancerRequestId, t));
+      }
+
+      private void complete(LoadBalancerUpdateHolder result) {
+        latencyHistograms.get(method).update(System.currentTimeMillis() - start);
+
+        LOG.debug("LB {} request {} had result {} after {}", request.getMethod(), loadBalancerRequestId, result, JavaUtils.duration(start));
+
+        future.set(new SingularityLoadBalancerUpdate(result.state, loadBalancerRequestId, result.message, start, method, Optional.of(request.getUrl())));
+      }
+
+    };
+
+    try {
+      httpClient.executeRequest(request, handler);
+    } catch (Throwable t) {
+      handler.onThrowable(t);
+    }
+
+    return future;
+  }
+
+  private LoadBalancerUpdateHolder getFailureHolder(Request request, Object loadBalancerRequestId, Throwable t) {
+    if (t instanceof TimeoutException) {
+      LOG.trace("LB {} request {} timed out after waiting {}", request.getMethod(), loadBalancerRequestId, JavaUtils.durationFromMillis(loadBalancerTimeoutMillis));
+      return new LoadBalancerUpdateHolder(BaragonRequestState.UNKNOWN, Optional.of(String.format("Timed out after %s", JavaUtils.durationFromMillis(loadBalancerTimeoutMillis))));
+    }
+
+    LOG.error("LB {} request {} to {} threw error", request.getMethod(), loadBalancerRequestId, request.getUrl(), t);
+    return new LoadBalancerUpdateHolder(BaragonRequestState.UNKNOWN, Optional.of(String.format("Exception %s - %s", t.getClass().getSimpleName(), t.getMessage())));
   }
 
   private static class LoadBalancerUpdateHolder {
@@ -114,34 +330,8 @@ public class LoadBalancerClientImpl implements LoadBalancerClient {
 
   }
 
-  private LoadBalancerUpdateHolder sendRequest(LoadBalancerRequestId loadBalancerRequestId, Request request, BaragonRequestState onFailure) {
-    try {
-      LOG.trace("Sending LB {} request for {} to {}", request.getMethod(), loadBalancerRequestId, request.getUrl());
-
-      ListenableFuture<Response> future = httpClient.executeRequest(request);
-
-      Response response = future.get(loadBalancerTimeoutMillis, TimeUnit.MILLISECONDS);
-
-      LOG.trace("LB {} request {} returned with code {}", request.getMethod(), loadBalancerRequestId, response.getStatusCode());
-
-      if (!JavaUtils.isHttpSuccess(response.getStatusCode())) {
-        return new LoadBalancerUpdateHolder(onFailure, Optional.of(String.format("Response status code %s", response.getStatusCode())));
-      }
-
-      BaragonResponse lbResponse = readResponse(response);
-
-      return new LoadBalancerUpdateHolder(lbResponse.getLoadBalancerState(), lbResponse.getMessage());
-    } catch (TimeoutException te) {
-      LOG.trace("LB {} request {} timed out after waiting {}", request.getMethod(), loadBalancerRequestId, JavaUtils.durationFromMillis(loadBalancerTimeoutMillis));
-      return new LoadBalancerUpdateHolder(BaragonRequestState.UNKNOWN, Optional.of(String.format("Timed out after %s", JavaUtils.durationFromMillis(loadBalancerTimeoutMillis))));
-    } catch (Throwable t) {
-      LOG.error("LB {} request {} to {} threw error", request.getMethod(), loadBalancerRequestId, request.getUrl(), t);
-      return new LoadBalancerUpdateHolder(BaragonRequestState.UNKNOWN, Optional.of(String.format("Exception %s - %s", t.getClass().getSimpleName(), t.getMessage())));
-    }
-  }
-
   @Override
-  public SingularityLoadBalancerUpdate enqueue(LoadBalancerRequestId loadBalancerRequestId, SingularityRequest request, SingularityDeploy deploy, List<SingularityTask> add,
+  public ListenableFuture<SingularityLoadBalancerUpdate> enqueue(LoadBalancerRequestId loadBalancerRequestId, SingularityRequest request, SingularityDeploy deploy, List<SingularityTask> add,
       List<SingularityTask> remove) {
     final List<String> serviceOwners = request.getOwners().or(Collections.<String> emptyList());
     final List<String> loadBalancerGroups = deploy.getLoadBalancerGroups().or(Collections.<String> emptyList());
@@ -155,17 +345,13 @@ public class LoadBalancerClientImpl implements LoadBalancerClient {
     try {
       LOG.trace("Deploy {} is preparing to send {}", deploy.getId(), loadBalancerRequest);
 
-      final BoundRequestBuilder requestBuilder = httpClient.preparePost(loadBalancerUri)
+      final BoundRequestBuilder requestBuilder = withQueryParamsAndTimeout(httpClient.preparePost(loadBalancerUri)
           .addHeader(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON)
-          .setBody(objectMapper.writeValueAsBytes(loadBalancerRequest));
-
-      if (loadBalancerQueryParams.isPresent()) {
-        addAllQueryParams(requestBuilder, loadBalancerQueryParams.get());
-      }
+          .setBody(objectMapper.writeValueAsBytes(loadBalancerRequest)));
 
       return sendRequestWrapper(loadBalancerRequestId, LoadBalancerMethod.ENQUEUE, requestBuilder.build(), BaragonRequestState.FAILED);
     } catch (IOException e) {
-      return new SingularityLoadBalancerUpdate(BaragonRequestState.UNKNOWN, loadBalancerRequestId, Optional.of(e.getMessage()), System.currentTimeMillis(), LoadBalancerMethod.ENQUEUE, Optional.of(loadBalancerUri));
+      return Futures.immediateFuture(new SingularityLoadBalancerUpdate(BaragonRequestState.UNKNOWN, loadBalancerRequestId, Optional.of(e.getMessage()), System.currentTimeMillis(), LoadBalancerMethod.ENQUEUE, Optional.of(loadBalancerUri)));
     }
   }
 
@@ -189,14 +375,10 @@ public class LoadBalancerClientImpl implements LoadBalancerClient {
   }
 
   @Override
-  public SingularityLoadBalancerUpdate cancel(LoadBalancerRequestId loadBalancerRequestId) {
+  public ListenableFuture<SingularityLoadBalancerUpdate> cancel(LoadBalancerRequestId loadBalancerRequestId) {
     final String uri = getLoadBalancerUri(loadBalancerRequestId);
 
-    final BoundRequestBuilder requestBuilder = httpClient.prepareDelete(uri);
-
-    if (loadBalancerQueryParams.isPresent()) {
-      addAllQueryParams(requestBuilder, loadBalancerQueryParams.get());
-    }
+    final BoundRequestBuilder requestBuilder = withQueryParamsAndTimeout(httpClient.prepareDelete(uri));
 
     return sendRequestWrapper(loadBalancerRequestId, LoadBalancerMethod.CANCEL, requestBuilder.build(), BaragonRequestState.UNKNOWN);
   }
@@ -0,0 +1,184 @@
+package com.hubspot.singularity.hooks;
+
+import static com.hubspot.singularity.SingularityArtifactPrefetch.PREFETCH_TOKEN_HEADER;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Singleton;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.hubspot.deploy.S3Artifact;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.SingularityDeploy;
+import com.hubspot.singularity.SingularityDeployMarker;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.TaskManager;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
+import com.ning.http.client.Response;
+
+/**
+ * Asks the SingularityS3Downloader on the slaves running a request's current tasks - the slaves its new deploy's tasks are most
+ * likely to land on - to download the deploy's S3 artifacts into their caches before the first of those tasks starts. Each
+ * pending deploy is hinted once; the hints are fire and forget, a slave which misses one just downloads at launch as before.
+ *
+ * Slaves only accept prefetches carrying their shared token, and only of artifacts with an md5sum, so others aren't sent.
+ */
+@Singleton
+public class SingularityArtifactPrefetcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityArtifactPrefetcher.class);
+
+  private static final String PREFETCH_URI_FORMAT = "http://%s:%s%s";
+
+  private final SingularityConfiguration configuration;
+  private final AsyncHttpClient http;
+  private final ObjectMapper objectMapper;
+  private final TaskManager taskManager;
+
+  private final Set<SingularityDeployMarker> prefetchedDeploys;
+
+  @Inject
+  public SingularityArtifactPrefetcher(SingularityConfiguration configuration, AsyncHttpClient http, ObjectMapper objectMapper, TaskManager taskManager) {
+    this.configuration = configuration;
+    this.http = http;
+    this.objectMapper = objectMapper;
+    this.taskManager = taskManager;
+
+    this.prefetchedDeploys = Sets.newConcurrentHashSet();
+  }
+
+  public void prefetchOnce(SingularityDeployMarker deployMarker, SingularityDeploy deploy, List<SingularityTaskId> activeTasks) {
+    if (configuration.getArtifactPrefetchPort() < 1 || !configuration.getArtifactPrefetchToken().isPresent() || !deploy.getExecutorData().isPresent()) {
+      return;
+    }
+
+    final List<S3Artifact> s3Artifacts = getVerifiableArtifacts(deploy.getExecutorData().get().getS3Artifacts());
+
+    if (s3Artifacts.isEmpty() || prefetchedDeploys.contains(deployMarker)) {
+      return;
+    }
+
+    // no hints are sent until the request has tasks running, so the deploy is checked again on the next pass
+    final Set<String> hosts = getLikelyHosts(activeTasks);
+
+    if (hosts.isEmpty()) {
+      return;
+    }
+
+    final byte[] body;
+
+    try {
+      body = objectMapper.writeValueAsBytes(s3Artifacts);
+    } catch (JsonProcessingException e) {
+      LOG.warn("Couldn't serialize artifacts of {} to prefetch", deployMarker, e);
+      return;
+    }
+
+    LOG.info("Asking {} slaves to prefetch {} artifacts for {}", hosts.size(), s3Artifacts.size(), deployMarker);
+
+    for (String host : hosts) {
+      prefetch(host, body, deployMarker);
+    }
+
+    prefetchedDeploys.add(deployMarker);
+  }
+
+  /**
+   * Forgets deploys which are no longer pending, so that their markers don't pile up.
+   */
+  public void retainPendingDeploys(Collection<SingularityDeployMarker> pendingDeployMarkers) {
+    prefetchedDeploys.retainAll(pendingDeployMarkers);
+  }
+
+  private List<S3Artifact> getVerifiableArtifacts(List<S3Artifact> s3Artifacts) {
+    final List<S3Artifact> verifiable = Lists.newArrayList();
+
+    if (s3Artifacts == null) {
+      return verifiable;
+    }
+
+    for (S3Artifact s3Artifact : s3Artifacts) {
+      if (s3Artifact.getMd5sum().isPresent()) {
+        verifiable.add(s3Artifact);
+      }
+    }
+
+    return verifiable;
+  }
+
+  private Set<String> getLikelyHosts(List<SingularityTaskId> activeTasks) {
+    final Map<String, SingularityTaskId> taskIdPerHost = Maps.newLinkedHashMap();
+
+    for (SingularityTaskId taskId : activeTasks) {
+      if (taskIdPerHost.size() >= configuration.getArtifactPrefetchMaxSlaves()) {
+        break;
+      }
+
+      if (!taskIdPerHost.containsKey(taskId.getHost())) {
+        taskIdPerHost.put(taskId.getHost(), taskId);
+      }
+    }
+
+    final Set<String> hosts = Sets.newLinkedHashSet();
+
+    // task ids carry a sanitized host, so the slave's own hostname comes from the offer the task was launched with
+    for (SingularityTask task : taskManager.getTasks(taskIdPerHost.values()).values()) {
+      hosts.add(task.getOffer().getHostname());
+    }
+
+    return hosts;
+  }
+
+  private void prefetch(final String host, byte[] body, final SingularityDeployMarker deployMarker) {
+    final String uri = String.format(PREFETCH_URI_FORMAT, host, configuration.getArtifactPrefetchPort(), configuration.getArtifactPrefetchPath());
+    final long start = System.currentTimeMillis();
+
+    final BoundRequestBuilder postRequest = http.preparePost(uri);
+
+    postRequest.setHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+    postRequest.setHeader(PREFETCH_TOKEN_HEADER, configuration.getArtifactPrefetchToken().get());
+    postRequest.setBody(body);
+
+    try {
+      postRequest.execute(new AsyncCompletionHandler<Response>() {
+
+        @Override
+        public Response onCompleted(Response response) throws Exception {
+          if (JavaUtils.isHttpSuccess(response.getStatusCode())) {
+            LOG.trace("{} accepted prefetch of {} after {}", host, deployMarker, JavaUtils.duration(start));
+          } else {
+            LOG.warn("{} refused prefetch of {} with {}", host, deployMarker, response.getStatusCode());
+          }
+
+          return response;
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+          LOG.debug("Prefetch of {} on {} failed after {}", deployMarker, host, JavaUtils.duration(start), t);
+        }
+
+      });
+    } catch (IOException e) {
+      LOG.warn("Couldn't ask {} to prefetch {}", host, deployMarker, e);
+    }
+  }
+
+}
@@ -20,7 +20,9 @@ public class SingularityMesosModule extends AbstractModule {
     bind(SingularityMesosScheduler.class).in(Scopes.SINGLETON);
     bind(SingularityMesosSchedulerDelegator.class).in(Scopes.SINGLETON);
     bind(SingularityMesosTaskBuilder.class).in(Scopes.SINGLETON);
+    bind(SingularityOfferMatcher.class).in(Scopes.SINGLETON);
     bind(SingularitySlaveAndRackManager.class).in(Scopes.SINGLETON);
+    bind(SingularityStatusUpdateQueue.class).in(Scopes.SINGLETON);
     bind(SingularityStartup.class).in(Scopes.SINGLETON);
     bind(SchedulerDriverSupplier.class).in(Scopes.SINGLETON);
   }
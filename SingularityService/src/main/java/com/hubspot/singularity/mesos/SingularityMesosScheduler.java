@@ -2,10 +2,9 @@ package com.hubspot.singularity.mesos;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import javax.inject.Singleton;
 
@@ -24,7 +23,6 @@ import com.google.inject.Provider;
 import com.google.inject.name.Named;
 import com.hubspot.mesos.JavaUtils;
 import com.hubspot.mesos.MesosUtils;
-import com.hubspot.mesos.Resources;
 import com.hubspot.singularity.ExtendedTaskState;
 import com.hubspot.singularity.SingularityCreateResult;
 import com.hubspot.singularity.SingularityMainModule;
@@ -34,12 +32,9 @@ import com.hubspot.singularity.SingularityTaskHistoryUpdate;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.SingularityTaskRequest;
 import com.hubspot.singularity.SingularityTaskStatusHolder;
-import com.hubspot.singularity.config.CustomExecutorConfiguration;
-import com.hubspot.singularity.config.MesosConfiguration;
 import com.hubspot.singularity.data.DeployManager;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.data.transcoders.IdTranscoder;
-import com.hubspot.singularity.mesos.SingularitySlaveAndRackManager.SlaveMatchState;
 import com.hubspot.singularity.scheduler.SingularityHealthchecker;
 import com.hubspot.singularity.scheduler.SingularityNewTaskChecker;
 import com.hubspot.singularity.scheduler.SingularityScheduler;
@@ -51,12 +46,10 @@ public class SingularityMesosScheduler implements Scheduler {
 
   private static final Logger LOG = LoggerFactory.getLogger(SingularityMesosScheduler.class);
 
-  private final Resources defaultResources;
-  private final Resources defaultCustomExecutorResources;
   private final TaskManager taskManager;
   private final DeployManager deployManager;
   private final SingularityScheduler scheduler;
-  private final SingularityMesosTaskBuilder mesosTaskBuilder;
+  private final SingularityOfferMatcher offerMatcher;
   private final SingularityHealthchecker healthchecker;
   private final SingularityNewTaskChecker newTaskChecker;
   private final SingularitySlaveAndRackManager slaveAndRackManager;
@@ -66,29 +59,30 @@ public class SingularityMesosScheduler implements Scheduler {
   private final Provider<SingularitySchedulerStateCache> stateCacheProvider;
   private final String serverId;
   private final SchedulerDriverSupplier schedulerDriverSupplier;
+  private final Lock lock;
 
   private final IdTranscoder<SingularityTaskId> taskIdTranscoder;
 
   @Inject
-  SingularityMesosScheduler(MesosConfiguration mesosConfiguration, TaskManager taskManager, SingularityScheduler scheduler, SingularitySlaveAndRackManager slaveAndRackManager,
-      SingularitySchedulerPriority schedulerPriority, SingularityNewTaskChecker newTaskChecker, SingularityMesosTaskBuilder mesosTaskBuilder, SingularityLogSupport logSupport,
+  SingularityMesosScheduler(TaskManager taskManager, SingularityScheduler scheduler, SingularitySlaveAndRackManager slaveAndRackManager,
+      SingularitySchedulerPriority schedulerPriority, SingularityNewTaskChecker newTaskChecker, SingularityOfferMatcher offerMatcher, SingularityLogSupport logSupport,
       Provider<SingularitySchedulerStateCache> stateCacheProvider, SingularityHealthchecker healthchecker, DeployManager deployManager,
-      @Named(SingularityMainModule.SERVER_ID_PROPERTY) String serverId, SchedulerDriverSupplier schedulerDriverSupplier, final IdTranscoder<SingularityTaskId> taskIdTranscoder, CustomExecutorConfiguration customExecutorConfiguration) {
-    this.defaultResources = new Resources(mesosConfiguration.getDefaultCpus(), mesosConfiguration.getDefaultMemory(), 0);
-    this.defaultCustomExecutorResources = new Resources(customExecutorConfiguration.getNumCpus(), customExecutorConfiguration.getMemoryMb(), 0);
+      @Named(SingularityMainModule.SERVER_ID_PROPERTY) String serverId, SchedulerDriverSupplier schedulerDriverSupplier, final IdTranscoder<SingularityTaskId> taskIdTranscoder,
+      @Named(SingularityMesosModule.SCHEDULER_LOCK_NAME) Lock lock) {
     this.taskManager = taskManager;
     this.deployManager = deployManager;
     this.schedulerPriority = schedulerPriority;
     this.newTaskChecker = newTaskChecker;
     this.slaveAndRackManager = slaveAndRackManager;
     this.scheduler = scheduler;
-    this.mesosTaskBuilder = mesosTaskBuilder;
+    this.offerMatcher = offerMatcher;
     this.logSupport = logSupport;
     this.stateCacheProvider = stateCacheProvider;
     this.healthchecker = healthchecker;
     this.serverId = serverId;
     this.schedulerDriverSupplier = schedulerDriverSupplier;
     this.taskIdTranscoder = taskIdTranscoder;
+    this.lock = lock;
   }
 
   @Override
@@ -143,25 +137,10 @@ public class SingularityMesosScheduler implements Scheduler {
         offerHolders.add(new SingularityOfferHolder(offer, numDueTasks));
       }
 
-      boolean addedTaskInLastLoop = true;
+      final List<SingularityTask> acceptedTasks = offerMatcher.matchOffers(offerHolders, taskRequests, stateCache);
 
-      while (!taskRequests.isEmpty() && addedTaskInLastLoop) {
-        addedTaskInLastLoop = false;
-        Collections.shuffle(offerHolders);
-
-        for (SingularityOfferHolder offerHolder : offerHolders) {
-          Optional<SingularityTask> accepted = match(taskRequests, stateCache, offerHolder);
-          if (accepted.isPresent()) {
-            offerHolder.addMatchedTask(accepted.get());
-            addedTaskInLastLoop = true;
-            taskRequests.remove(accepted.get().getTaskRequest());
-          }
-
-          if (taskRequests.isEmpty()) {
-            break;
-          }
-        }
-      }
+      // persist every task from this offer cycle together, before any of them are handed to mesos
+      taskManager.createTasksAndDeletePendingTasks(acceptedTasks);
 
       for (SingularityOfferHolder offerHolder : offerHolders) {
         if (!offerHolder.getAcceptedTasks().isEmpty()) {
@@ -191,45 +170,6 @@ public class SingularityMesosScheduler implements Scheduler {
         offers.size() - acceptedOffers.size(), numDueTasks - acceptedOffers.size());
   }
 
-  private Optional<SingularityTask> match(Collection<SingularityTaskRequest> taskRequests, SingularitySchedulerStateCache stateCache, SingularityOfferHolder offerHolder) {
-
-    for (SingularityTaskRequest taskRequest : taskRequests) {
-      final Resources taskResources = taskRequest.getDeploy().getResources().or(defaultResources);
-
-      // only factor in executor resources if we're running a custom executor
-      final Resources executorResources = taskRequest.getDeploy().getCustomExecutorCmd().isPresent() ? taskRequest.getDeploy().getCustomExecutorResources().or(defaultCustomExecutorResources) : Resources.EMPTY_RESOURCES;
-
-      final Resources totalResources = Resources.add(taskResources, executorResources);
-
-      LOG.trace("Attempting to match task {} resources {} ({} for task + {} for executor) with remaining offer resources {}", taskRequest.getPendingTask().getPendingTaskId(), totalResources, taskResources, executorResources, offerHolder.getCurrentResources());
-
-      final boolean matchesResources = MesosUtils.doesOfferMatchResources(totalResources, offerHolder.getCurrentResources());
-      final SlaveMatchState slaveMatchState = slaveAndRackManager.doesOfferMatch(offerHolder.getOffer(), taskRequest, stateCache);
-
-      if (matchesResources && slaveMatchState.isMatchAllowed()) {
-        final SingularityTask task = mesosTaskBuilder.buildTask(offerHolder.getOffer(), offerHolder.getCurrentResources(), taskRequest, taskResources, executorResources);
-
-        LOG.trace("Accepted and built task {}", task);
-
-        LOG.info("Launching task {} slot on slave {} ({})", task.getTaskId(), offerHolder.getOffer().getSlaveId().getValue(), offerHolder.getOffer().getHostname());
-
-        taskManager.createTaskAndDeletePendingTask(task);
-
-        schedulerPriority.notifyTaskLaunched(task.getTaskId());
-
-        stateCache.getActiveTaskIds().add(task.getTaskId());
-        stateCache.getScheduledTasks().remove(taskRequest.getPendingTask());
-
-        return Optional.of(task);
-      } else {
-        LOG.trace("Ignoring offer {} on {} for task {}; matched resources: {}, slave match state: {}", offerHolder.getOffer().getId(), offerHolder.getOffer().getHostname(), taskRequest
-            .getPendingTask().getPendingTaskId(), matchesResources, slaveMatchState);
-      }
-    }
-
-    return Optional.absent();
-  }
-
   @Override
   public void offerRescinded(SchedulerDriver driver, Protos.OfferID offerId) {
     LOG.info("Offer {} rescinded", offerId);
@@ -304,21 +244,35 @@ public class SingularityMesosScheduler implements Scheduler {
 
     final SingularityTaskHistoryUpdate taskUpdate =
         new SingularityTaskHistoryUpdate(taskIdObj, timestamp, taskState, status.hasMessage() ? Optional.of(status.getMessage()) : Optional.<String>absent());
+
+    if (!taskState.isDone()) {
+      // the history update and new status are written together, since nothing else needs to happen in between for an unfinished task
+      taskManager.saveTaskHistoryUpdateAndLastActiveTaskStatus(taskUpdate, newTaskStatusHolder);
+
+      logSupport.checkDirectory(taskIdObj);
+      return;
+    }
+
     final SingularityCreateResult taskHistoryUpdateCreateResult = taskManager.saveTaskHistoryUpdate(taskUpdate);
 
     logSupport.checkDirectory(taskIdObj);
 
-    if (taskState.isDone()) {
-      healthchecker.cancelHealthcheck(taskId);
-      newTaskChecker.cancelNewTaskCheck(taskId);
+    healthchecker.cancelHealthcheck(taskId);
+    newTaskChecker.cancelNewTaskCheck(taskId);
+
+    taskManager.deleteKilledRecord(taskIdObj);
 
-      taskManager.deleteKilledRecord(taskIdObj);
+    // status updates are processed off the driver thread, only this part changes what resourceOffers sees
+    lock.lock();
 
+    try {
       SingularitySchedulerStateCache stateCache = stateCacheProvider.get();
 
       slaveAndRackManager.checkStateAfterFinishedTask(taskIdObj, status.getSlaveId().getValue(), stateCache);
 
       scheduler.handleCompletedTask(task, taskIdObj, isActiveTask, timestamp, taskState, taskHistoryUpdateCreateResult, stateCache);
+    } finally {
+      lock.unlock();
     }
 
     saveNewTaskStatusHolder(taskIdObj, newTaskStatusHolder, taskState);
@@ -40,6 +40,7 @@ public class SingularityMesosSchedulerDelegator implements Scheduler {
   private final SingularityMesosScheduler scheduler;
   private final SingularityStartup startup;
   private final SingularityAbort abort;
+  private final SingularityStatusUpdateQueue statusUpdateQueue;
 
   private final Lock stateLock;
 
@@ -58,12 +59,13 @@ public class SingularityMesosSchedulerDelegator implements Scheduler {
 
   @Inject
   SingularityMesosSchedulerDelegator(@Named(SingularityMesosModule.SCHEDULER_LOCK_NAME) final Lock lock, SingularityExceptionNotifier exceptionNotifier, SingularityMesosScheduler scheduler,
-      SingularityStartup startup, SingularityAbort abort) {
+      SingularityStartup startup, SingularityAbort abort, SingularityStatusUpdateQueue statusUpdateQueue) {
     this.exceptionNotifier = exceptionNotifier;
 
     this.scheduler = scheduler;
     this.startup = startup;
     this.abort = abort;
+    this.statusUpdateQueue = statusUpdateQueue;
 
     this.queuedUpdates = Lists.newArrayList();
 
@@ -110,10 +112,12 @@ public class SingularityMesosSchedulerDelegator implements Scheduler {
     try {
       state = SchedulerState.RUNNING; // calls to resource offers will now block, since we are already scheduler locked.
 
+      // processing needs the scheduler lock held here, so terminal updates can't be waited for
       for (Protos.TaskStatus status : queuedUpdates) {
-        scheduler.statusUpdate(driver, status);
+        statusUpdateQueue.enqueueWithoutWaiting(driver, status);
       }
 
+      queuedUpdates.clear();
     } finally {
       stateLock.unlock();
     }
@@ -212,15 +216,7 @@ public class SingularityMesosSchedulerDelegator implements Scheduler {
       stateLock.unlock();
     }
 
-    lock.lock();
-
-    try {
-      scheduler.statusUpdate(driver, status);
-    } catch (Throwable t) {
-      handleUncaughtSchedulerException(t);
-    } finally {
-      lock.unlock();
-    }
+    statusUpdateQueue.enqueue(driver, status);
   }
 
   @Override
@@ -62,7 +62,7 @@ class SingularityMesosTaskBuilder {
     this.configuration = configuration;
   }
 
-  public SingularityTask buildTask(Protos.Offer offer, List<Resource> availableResources, SingularityTaskRequest taskRequest, Resources desiredTaskResources, Resources desiredExecutorResources) {
+  public SingularityTask buildTask(Protos.Offer offer, SingularityOfferResources availableResources, SingularityTaskRequest taskRequest, Resources desiredTaskResources, Resources desiredExecutorResources) {
     final String rackId = slaveAndRackManager.getRackId(offer);
     final String host = slaveAndRackManager.getSlaveHost(offer);
 
@@ -75,8 +75,8 @@ class SingularityMesosTaskBuilder {
     Optional<Resource> portsResource = Optional.absent();
 
     if (desiredTaskResources.getNumPorts() > 0) {
-      portsResource = Optional.of(MesosUtils.getPortsResource(desiredTaskResources.getNumPorts(), availableResources));
-      ports = Optional.of(MesosUtils.getPorts(portsResource.get(), desiredTaskResources.getNumPorts()));
+      ports = Optional.of(availableResources.choosePorts(desiredTaskResources.getNumPorts()));
+      portsResource = Optional.of(SingularityOfferResources.getPortsResource(ports.get()));
     }
 
     final Optional<SingularityContainerInfo> containerInfo = taskRequest.getDeploy().getContainerInfo();
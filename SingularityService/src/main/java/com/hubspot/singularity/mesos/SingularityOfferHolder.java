@@ -3,7 +3,6 @@ package com.hubspot.singularity.mesos;
 import java.util.List;
 
 import org.apache.mesos.Protos;
-import org.apache.mesos.Protos.Resource;
 import org.apache.mesos.Protos.Status;
 import org.apache.mesos.Protos.TaskInfo;
 import org.apache.mesos.SchedulerDriver;
@@ -12,7 +11,6 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.hubspot.mesos.MesosUtils;
 import com.hubspot.singularity.SingularityTask;
 import com.hubspot.singularity.SingularityTaskId;
 
@@ -22,23 +20,23 @@ public class SingularityOfferHolder {
 
   private final Protos.Offer offer;
   private final List<SingularityTask> acceptedTasks;
-  private List<Resource> currentResources;
+  private final SingularityOfferResources currentResources;
 
   public SingularityOfferHolder(Protos.Offer offer, int taskSizeHint) {
     this.offer = offer;
     this.acceptedTasks = Lists.newArrayListWithCapacity(taskSizeHint);
-    this.currentResources = offer.getResourcesList();
+    this.currentResources = new SingularityOfferResources(offer.getResourcesList());
   }
 
   public void addMatchedTask(SingularityTask task) {
     acceptedTasks.add(task);
 
     // subtract task resources from offer
-    currentResources = MesosUtils.subtractResources(currentResources, task.getMesosTask().getResourcesList());
+    currentResources.subtract(task.getMesosTask().getResourcesList());
 
     // subtract executor resources from offer, if any are defined
     if (task.getMesosTask().hasExecutor() && task.getMesosTask().getExecutor().getResourcesCount() > 0) {
-      currentResources = MesosUtils.subtractResources(currentResources, task.getMesosTask().getExecutor().getResourcesList());
+      currentResources.subtract(task.getMesosTask().getExecutor().getResourcesList());
     }
   }
 
@@ -61,7 +59,7 @@ public class SingularityOfferHolder {
     return acceptedTasks;
   }
 
-  public List<Resource> getCurrentResources() {
+  public SingularityOfferResources getCurrentResources() {
     return currentResources;
   }
 
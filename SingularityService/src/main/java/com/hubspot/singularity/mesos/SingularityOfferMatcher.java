@@ -0,0 +1,325 @@
+package com.hubspot.singularity.mesos;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
+import com.google.inject.Inject;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.mesos.Resources;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskRequest;
+import com.hubspot.singularity.config.CustomExecutorConfiguration;
+import com.hubspot.singularity.config.MesosConfiguration;
+import com.hubspot.singularity.config.MesosConfiguration.OfferMatchStrategy;
+import com.hubspot.singularity.mesos.SingularitySlaveAndRackManager.SlaveMatchState;
+import com.hubspot.singularity.scheduler.SingularitySchedulerPriority;
+import com.hubspot.singularity.scheduler.SingularitySchedulerStateCache;
+
+/**
+ * Assigns due tasks, in priority order, to offers. Offers are kept sorted by the configured strategy so each task takes the first
+ * offer it is allowed on. Tasks for the same request, deploy and resources are grouped: an offer which rejects one of them rejects
+ * the rest for the remainder of the cycle (offers only shrink and placement limits only tighten), and once no offer accepts one
+ * of them the rest of the group is skipped without being checked again.
+ */
+@Singleton
+class SingularityOfferMatcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityOfferMatcher.class);
+
+  private final Resources defaultResources;
+  private final Resources defaultCustomExecutorResources;
+  private final OfferMatchStrategy strategy;
+
+  private final SingularityMesosTaskBuilder mesosTaskBuilder;
+  private final SingularitySlaveAndRackManager slaveAndRackManager;
+  private final SingularitySchedulerPriority schedulerPriority;
+
+  private final Timer matchTimer;
+  private final Histogram offersChecked;
+
+  @Inject
+  SingularityOfferMatcher(MesosConfiguration mesosConfiguration, CustomExecutorConfiguration customExecutorConfiguration, SingularityMesosTaskBuilder mesosTaskBuilder,
+      SingularitySlaveAndRackManager slaveAndRackManager, SingularitySchedulerPriority schedulerPriority, MetricRegistry metricRegistry) {
+    this.defaultResources = new Resources(mesosConfiguration.getDefaultCpus(), mesosConfiguration.getDefaultMemory(), 0);
+    this.defaultCustomExecutorResources = new Resources(customExecutorConfiguration.getNumCpus(), customExecutorConfiguration.getMemoryMb(), 0);
+    this.strategy = mesosConfiguration.getOfferMatchStrategy();
+
+    this.mesosTaskBuilder = mesosTaskBuilder;
+    this.slaveAndRackManager = slaveAndRackManager;
+    this.schedulerPriority = schedulerPriority;
+
+    this.matchTimer = metricRegistry.timer(MetricRegistry.name(SingularityOfferMatcher.class, "match"));
+    this.offersChecked = metricRegistry.histogram(MetricRegistry.name(SingularityOfferMatcher.class, "offersChecked"));
+  }
+
+  private static class OfferSlot {
+
+    private final SingularityOfferHolder offerHolder;
+    private final int sequence;
+
+    private double cpus;
+    private double memory;
+    private int numAcceptedTasks;
+
+    OfferSlot(SingularityOfferHolder offerHolder, int sequence) {
+      this.offerHolder = offerHolder;
+      this.sequence = sequence;
+
+      refresh();
+    }
+
+    // only used to find where offers with at least this much cpu start
+    OfferSlot(double cpus) {
+      this.offerHolder = null;
+      this.sequence = Integer.MIN_VALUE;
+      this.cpus = cpus;
+      this.memory = Double.NEGATIVE_INFINITY;
+    }
+
+    void refresh() {
+      cpus = offerHolder.getCurrentResources().getCpus();
+      memory = offerHolder.getCurrentResources().getMemory();
+      numAcceptedTasks = offerHolder.getAcceptedTasks().size();
+    }
+
+  }
+
+  private static Comparator<OfferSlot> getComparator(OfferMatchStrategy strategy) {
+    switch (strategy) {
+      case FIRST_FIT:
+        return new Comparator<OfferSlot>() {
+
+          @Override
+          public int compare(OfferSlot o1, OfferSlot o2) {
+            return Ints.compare(o1.sequence, o2.sequence);
+          }
+
+        };
+      case BEST_FIT:
+        return new Comparator<OfferSlot>() {
+
+          @Override
+          public int compare(OfferSlot o1, OfferSlot o2) {
+            int result = Doubles.compare(o1.cpus, o2.cpus);
+            if (result == 0) {
+              result = Doubles.compare(o1.memory, o2.memory);
+            }
+            if (result == 0) {
+              result = Ints.compare(o1.sequence, o2.sequence);
+            }
+            return result;
+          }
+
+        };
+      case SPREAD:
+      default:
+        return new Comparator<OfferSlot>() {
+
+          @Override
+          public int compare(OfferSlot o1, OfferSlot o2) {
+            int result = Ints.compare(o1.numAcceptedTasks, o2.numAcceptedTasks);
+            if (result == 0) {
+              result = Doubles.compare(o2.cpus, o1.cpus);
+            }
+            if (result == 0) {
+              result = Ints.compare(o1.sequence, o2.sequence);
+            }
+            return result;
+          }
+
+        };
+    }
+  }
+
+  private static class TaskGroup {
+
+    private final String requestId;
+    private final String deployId;
+    private final Resources resources;
+
+    TaskGroup(String requestId, String deployId, Resources resources) {
+      this.requestId = requestId;
+      this.deployId = deployId;
+      this.resources = resources;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(requestId, deployId, resources);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      TaskGroup other = (TaskGroup) obj;
+      return Objects.equal(requestId, other.requestId) && Objects.equal(deployId, other.deployId) && Objects.equal(resources, other.resources);
+    }
+
+  }
+
+  private static class TaskGroupState {
+
+    private final BitSet rejectedOffers;
+    private boolean exhausted;
+
+    TaskGroupState(int numOffers) {
+      this.rejectedOffers = new BitSet(numOffers);
+    }
+
+  }
+
+  /**
+   * Matches the task requests (which must already be in priority order) against the offers, adding each accepted task to the
+   * holder of the offer it was matched with.
+   */
+  public List<SingularityTask> matchOffers(List<SingularityOfferHolder> offerHolders, List<SingularityTaskRequest> taskRequests, SingularitySchedulerStateCache stateCache) {
+    final long start = System.currentTimeMillis();
+
+    final List<SingularityOfferHolder> ordered = Lists.newArrayList(offerHolders);
+
+    if (strategy != OfferMatchStrategy.FIRST_FIT) {
+      // ties between equally good offers go to a random one
+      Collections.shuffle(ordered);
+    }
+
+    final TreeSet<OfferSlot> offerIndex = new TreeSet<>(getComparator(strategy));
+
+    for (int i = 0; i < ordered.size(); i++) {
+      offerIndex.add(new OfferSlot(ordered.get(i), i));
+    }
+
+    final Map<TaskGroup, TaskGroupState> groups = Maps.newHashMap();
+    final List<SingularityTask> acceptedTasks = Lists.newArrayList();
+
+    for (SingularityTaskRequest taskRequest : taskRequests) {
+      final Resources taskResources = taskRequest.getDeploy().getResources().or(defaultResources);
+
+      // only factor in executor resources if we're running a custom executor
+      final Resources executorResources = taskRequest.getDeploy().getCustomExecutorCmd().isPresent() ? taskRequest.getDeploy().getCustomExecutorResources().or(defaultCustomExecutorResources) : Resources.EMPTY_RESOURCES;
+
+      final Resources totalResources = Resources.add(taskResources, executorResources);
+
+      final TaskGroup group = new TaskGroup(taskRequest.getRequest().getId(), taskRequest.getDeploy().getId(), totalResources);
+
+      TaskGroupState groupState = groups.get(group);
+
+      if (groupState == null) {
+        groupState = new TaskGroupState(ordered.size());
+        groups.put(group, groupState);
+      } else if (groupState.exhausted) {
+        LOG.trace("Skipping task {}, no offer fits another task for {} with {}", taskRequest.getPendingTask().getPendingTaskId(), group.requestId, totalResources);
+        continue;
+      }
+
+      final Timer.Context context = matchTimer.time();
+
+      try {
+        final Optional<OfferSlot> matched = findOffer(offerIndex, taskRequest, totalResources, groupState, stateCache);
+
+        if (!matched.isPresent()) {
+          groupState.exhausted = true;
+          continue;
+        }
+
+        final OfferSlot slot = matched.get();
+
+        offerIndex.remove(slot);
+
+        final SingularityTask task = buildTask(slot.offerHolder, taskRequest, taskResources, executorResources, stateCache);
+
+        slot.offerHolder.addMatchedTask(task);
+        slot.refresh();
+
+        offerIndex.add(slot);
+
+        acceptedTasks.add(task);
+      } finally {
+        context.stop();
+      }
+    }
+
+    LOG.debug("Matched {} of {} due task(s) ({} groups) against {} offer(s) using {} in {}", acceptedTasks.size(), taskRequests.size(), groups.size(), offerHolders.size(), strategy,
+        JavaUtils.duration(start));
+
+    return acceptedTasks;
+  }
+
+  private Optional<OfferSlot> findOffer(TreeSet<OfferSlot> offerIndex, SingularityTaskRequest taskRequest, Resources totalResources, TaskGroupState groupState,
+      SingularitySchedulerStateCache stateCache) {
+    // best fit is ordered by remaining cpu, so anything before the first offer with enough cpu can be skipped entirely
+    final NavigableSet<OfferSlot> candidates = strategy == OfferMatchStrategy.BEST_FIT ? offerIndex.tailSet(new OfferSlot(totalResources.getCpus()), true) : offerIndex;
+
+    int numChecked = 0;
+
+    try {
+      for (OfferSlot slot : candidates) {
+        if (groupState.rejectedOffers.get(slot.sequence)) {
+          continue;
+        }
+
+        numChecked++;
+
+        final SingularityOfferHolder offerHolder = slot.offerHolder;
+
+        LOG.trace("Attempting to match task {} resources {} with remaining offer resources {}", taskRequest.getPendingTask().getPendingTaskId(), totalResources, offerHolder.getCurrentResources());
+
+        final boolean matchesResources = offerHolder.getCurrentResources().hasResources(totalResources);
+        final SlaveMatchState slaveMatchState = matchesResources ? slaveAndRackManager.doesOfferMatch(offerHolder.getOffer(), taskRequest, stateCache) : null;
+
+        if (matchesResources && slaveMatchState.isMatchAllowed()) {
+          return Optional.of(slot);
+        }
+
+        LOG.trace("Ignoring offer {} on {} for task {}; matched resources: {}, slave match state: {}", offerHolder.getOffer().getId(), offerHolder.getOffer().getHostname(), taskRequest
+            .getPendingTask().getPendingTaskId(), matchesResources, slaveMatchState);
+
+        groupState.rejectedOffers.set(slot.sequence);
+      }
+    } finally {
+      offersChecked.update(numChecked);
+    }
+
+    return Optional.absent();
+  }
+
+  private SingularityTask buildTask(SingularityOfferHolder offerHolder, SingularityTaskRequest taskRequest, Resources taskResources, Resources executorResources,
+      SingularitySchedulerStateCache stateCache) {
+    final SingularityTask task = mesosTaskBuilder.buildTask(offerHolder.getOffer(), offerHolder.getCurrentResources(), taskRequest, taskResources, executorResources);
+
+    LOG.trace("Accepted and built task {}", task);
+
+    LOG.info("Launching task {} slot on slave {} ({})", task.getTaskId(), offerHolder.getOffer().getSlaveId().getValue(), offerHolder.getOffer().getHostname());
+
+    schedulerPriority.notifyTaskLaunched(task.getTaskId());
+
+    stateCache.addActiveTaskId(task.getTaskId());
+    stateCache.getScheduledTasks().remove(taskRequest.getPendingTask());
+
+    return task;
+  }
+
+}
@@ -0,0 +1,183 @@
+package com.hubspot.singularity.mesos;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.Value.Range;
+import org.apache.mesos.Protos.Value.Ranges;
+import org.apache.mesos.Protos.Value.Type;
+
+import com.google.common.base.Preconditions;
+import com.hubspot.mesos.MesosUtils;
+import com.hubspot.mesos.Resources;
+
+/**
+ * Remaining cpu, memory and ports of an offer, read from its protobuf resources once and then updated in place as tasks are
+ * matched to it. Ports are kept as a bitmap over the span between the lowest and highest offered port. Like MesosUtils, only the
+ * first cpus, mem and ports resource of the offer is considered.
+ */
+public class SingularityOfferResources {
+
+  private double cpus;
+  private double memory;
+  private int numPorts;
+
+  private final long firstPort;
+  private final BitSet ports;
+
+  public SingularityOfferResources(List<Resource> resources) {
+    boolean foundCpus = false;
+    boolean foundMemory = false;
+    Ranges portRanges = null;
+
+    for (Resource resource : resources) {
+      if (!resource.hasName()) {
+        continue;
+      }
+
+      if (!foundCpus && resource.getName().equals(MesosUtils.CPUS) && resource.hasScalar()) {
+        cpus = resource.getScalar().getValue();
+        foundCpus = true;
+      } else if (!foundMemory && resource.getName().equals(MesosUtils.MEMORY) && resource.hasScalar()) {
+        memory = resource.getScalar().getValue();
+        foundMemory = true;
+      } else if (portRanges == null && resource.getName().equals(MesosUtils.PORTS) && resource.hasRanges()) {
+        portRanges = resource.getRanges();
+      }
+    }
+
+    long lowest = Long.MAX_VALUE;
+    long highest = Long.MIN_VALUE;
+
+    if (portRanges != null) {
+      for (Range range : portRanges.getRangeList()) {
+        if (range.getEnd() >= range.getBegin()) {
+          lowest = Math.min(lowest, range.getBegin());
+          highest = Math.max(highest, range.getEnd());
+        }
+      }
+    }
+
+    if (lowest > highest) {
+      this.firstPort = 0;
+      this.ports = new BitSet(0);
+      return;
+    }
+
+    this.firstPort = lowest;
+    this.ports = new BitSet((int) (highest - lowest + 1));
+
+    for (Range range : portRanges.getRangeList()) {
+      if (range.getEnd() >= range.getBegin()) {
+        ports.set((int) (range.getBegin() - firstPort), (int) (range.getEnd() - firstPort + 1));
+      }
+    }
+
+    this.numPorts = ports.cardinality();
+  }
+
+  public double getCpus() {
+    return cpus;
+  }
+
+  public double getMemory() {
+    return memory;
+  }
+
+  public int getNumPorts() {
+    return numPorts;
+  }
+
+  public boolean hasResources(Resources resources) {
+    return cpus >= resources.getCpus() && memory >= resources.getMemoryMb() && numPorts >= resources.getNumPorts();
+  }
+
+  /**
+   * Picks numPorts available ports, starting from a random point so tasks sharing an offer don't all take the lowest ports.
+   * The ports are not removed until the task using them is subtracted.
+   */
+  public long[] choosePorts(int numPorts) {
+    Preconditions.checkState(numPorts <= this.numPorts, "Asked for %s ports but only %s are available", numPorts, this.numPorts);
+
+    final long[] chosen = new long[numPorts];
+
+    if (numPorts == 0) {
+      return chosen;
+    }
+
+    final int span = ports.length();
+
+    int idx = 0;
+    int bit = ports.nextSetBit(ThreadLocalRandom.current().nextInt(span));
+
+    while (idx < numPorts) {
+      if (bit < 0) {
+        bit = ports.nextSetBit(0);
+      }
+
+      chosen[idx++] = firstPort + bit;
+
+      bit = ports.nextSetBit(bit + 1);
+    }
+
+    Arrays.sort(chosen);
+
+    return chosen;
+  }
+
+  public void subtract(List<Resource> resources) {
+    for (Resource resource : resources) {
+      if (!resource.hasName()) {
+        continue;
+      }
+
+      if (resource.getName().equals(MesosUtils.CPUS) && resource.hasScalar()) {
+        cpus -= resource.getScalar().getValue();
+      } else if (resource.getName().equals(MesosUtils.MEMORY) && resource.hasScalar()) {
+        memory -= resource.getScalar().getValue();
+      } else if (resource.getName().equals(MesosUtils.PORTS) && resource.hasRanges()) {
+        for (Range range : resource.getRanges().getRangeList()) {
+          for (long port = range.getBegin(); port <= range.getEnd(); port++) {
+            final long bit = port - firstPort;
+
+            if (bit >= 0 && bit < Integer.MAX_VALUE && ports.get((int) bit)) {
+              ports.clear((int) bit);
+              numPorts--;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds the ports resource for a task from sorted ports, collapsing consecutive ports into one range.
+   */
+  public static Resource getPortsResource(long[] chosenPorts) {
+    final Ranges.Builder ranges = Ranges.newBuilder();
+
+    int start = 0;
+
+    for (int i = 1; i <= chosenPorts.length; i++) {
+      if (i == chosenPorts.length || chosenPorts[i] != chosenPorts[i - 1] + 1) {
+        ranges.addRange(Range.newBuilder().setBegin(chosenPorts[start]).setEnd(chosenPorts[i - 1]));
+        start = i;
+      }
+    }
+
+    return Resource.newBuilder()
+        .setType(Type.RANGES)
+        .setName(MesosUtils.PORTS)
+        .setRanges(ranges)
+        .build();
+  }
+
+  @Override
+  public String toString() {
+    return "SingularityOfferResources [cpus=" + cpus + ", memory=" + memory + ", numPorts=" + numPorts + "]";
+  }
+
+}
@@ -127,18 +127,9 @@ class SingularitySlaveAndRackManager {
     }
 
     final int numDesiredInstances = taskRequest.getRequest().getInstancesSafe();
-    double numOnRack = 0;
-    double numOnSlave = 0;
-
-    for (SingularityTaskId taskId : SingularityTaskId.matchingAndNotIn(stateCache.getActiveTaskIds(), taskRequest.getRequest().getId(), taskRequest.getDeploy().getId(), stateCache.getCleaningTasks())) {
-      // TODO consider using executorIds
-      if (taskId.getHost().equals(host)) {
-        numOnSlave++;
-      }
-      if (taskId.getRackId().equals(rackId)) {
-        numOnRack++;
-      }
-    }
+    // TODO consider using executorIds
+    final double numOnRack = stateCache.getNumActiveTasksOnRack(taskRequest.getRequest().getId(), taskRequest.getDeploy().getId(), rackId);
+    final double numOnSlave = stateCache.getNumActiveTasksOnHost(taskRequest.getRequest().getId(), taskRequest.getDeploy().getId(), host);
 
     if (taskRequest.getRequest().isRackSensitive()) {
       final double numPerRack = numDesiredInstances / (double) stateCache.getNumActiveRacks();
@@ -33,10 +33,14 @@ import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.SingularityTaskIdHolder;
 import com.hubspot.singularity.data.DeployManager;
 import com.hubspot.singularity.data.RequestManager;
+import com.hubspot.singularity.data.SingularityStateTracker;
+import com.hubspot.singularity.data.SingularityTaskMirror;
+import com.hubspot.singularity.data.SingularityTaskStatusStore;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.data.zkmigrations.ZkDataMigrationRunner;
 import com.hubspot.singularity.scheduler.SingularityHealthchecker;
 import com.hubspot.singularity.scheduler.SingularityNewTaskChecker;
+import com.hubspot.singularity.scheduler.SingularitySchedulerPriority;
 import com.hubspot.singularity.scheduler.SingularityTaskReconciliation;
 
 @Singleton
@@ -53,11 +57,16 @@ class SingularityStartup {
   private final SingularityNewTaskChecker newTaskChecker;
   private final SingularityTaskReconciliation taskReconciliation;
   private final ZkDataMigrationRunner zkDataMigrationRunner;
+  private final SingularityTaskMirror taskMirror;
+  private final SingularityStateTracker stateTracker;
+  private final SingularityTaskStatusStore taskStatusStore;
+  private final SingularitySchedulerPriority schedulerPriority;
 
   @Inject
   SingularityStartup(MesosClient mesosClient, SingularityHealthchecker healthchecker, SingularityNewTaskChecker newTaskChecker,
       SingularitySlaveAndRackManager slaveAndRackManager, TaskManager taskManager, RequestManager requestManager, DeployManager deployManager, SingularityTaskReconciliation taskReconciliation,
-      ZkDataMigrationRunner zkDataMigrationRunner) {
+      ZkDataMigrationRunner zkDataMigrationRunner, SingularityTaskMirror taskMirror, SingularityStateTracker stateTracker,
+      SingularityTaskStatusStore taskStatusStore, SingularitySchedulerPriority schedulerPriority) {
     this.mesosClient = mesosClient;
     this.zkDataMigrationRunner = zkDataMigrationRunner;
     this.slaveAndRackManager = slaveAndRackManager;
@@ -67,6 +76,10 @@ class SingularityStartup {
     this.taskManager = taskManager;
     this.healthchecker = healthchecker;
     this.taskReconciliation = taskReconciliation;
+    this.taskMirror = taskMirror;
+    this.stateTracker = stateTracker;
+    this.taskStatusStore = taskStatusStore;
+    this.schedulerPriority = schedulerPriority;
   }
 
   public void startup(MasterInfo masterInfo, SchedulerDriver driver) throws Exception {
@@ -78,6 +91,12 @@ class SingularityStartup {
 
     zkDataMigrationRunner.checkMigrations();
 
+    taskMirror.startMirroring();
+    stateTracker.startTracking();
+    taskStatusStore.startStoring();
+    schedulerPriority.seed();
+    taskManager.clearRecentHealthcheckResults();
+
     MesosMasterStateObject state = mesosClient.getMasterState(uri);
 
     slaveAndRackManager.loadSlavesAndRacksFromMaster(state);
@@ -0,0 +1,257 @@
+package com.hubspot.singularity.mesos;
+
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import javax.inject.Singleton;
+
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.SchedulerDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.hubspot.mesos.JavaUtils;
+import com.hubspot.mesos.MesosUtils;
+import com.hubspot.singularity.SingularityAbort;
+import com.hubspot.singularity.SingularityAbort.AbortReason;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
+
+/**
+ * Processes status updates off the mesos driver thread. Updates are hashed by task id onto single threaded lanes, so updates for
+ * one task are always handled in the order they arrived while updates for different tasks proceed in parallel. The scheduler lock
+ * is only taken by SingularityMesosScheduler for the part of an update which changes scheduling state.
+ *
+ * The mesos driver acknowledges an update as soon as the callback which hands it to this queue returns, so mesos won't resend an
+ * update which is still queued when Singularity stops. Terminal updates, whose loss reconciliation could only report as TASK_LOST,
+ * are therefore waited for - still on their task's lane, so they stay in order - before the callback returns. On shutdown the
+ * queue keeps processing for up to statusUpdateQueueDrainTimeoutMillis, and any other update dropped after that is recovered by
+ * the task reconciliation the next leader runs on startup.
+ */
+@Singleton
+public class SingularityStatusUpdateQueue implements Managed {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityStatusUpdateQueue.class);
+
+  // the lane the current thread belongs to, so that stopping from inside a lane (on abort) doesn't wait for that lane to finish
+  private static final ThreadLocal<ExecutorService> CURRENT_LANE = new ThreadLocal<>();
+
+  private final SingularityConfiguration configuration;
+  private final SingularityMesosScheduler scheduler;
+  private final SingularityExceptionNotifier exceptionNotifier;
+  private final SingularityAbort abort;
+  private final Lock lock;
+
+  private final List<ExecutorService> lanes;
+  private final Set<String> queuedUpdates;
+  private final AtomicInteger queueDepth;
+
+  private final Histogram lagMillis;
+  private final Histogram processingMillis;
+  private final Meter coalesced;
+
+  @Inject
+  public SingularityStatusUpdateQueue(SingularityConfiguration configuration, SingularityMesosScheduler scheduler, SingularityExceptionNotifier exceptionNotifier, SingularityAbort abort,
+      @Named(SingularityMesosModule.SCHEDULER_LOCK_NAME) Lock lock, MetricRegistry metricRegistry) {
+    this.configuration = configuration;
+    this.scheduler = scheduler;
+    this.exceptionNotifier = exceptionNotifier;
+    this.abort = abort;
+    this.lock = lock;
+
+    final ImmutableList.Builder<ExecutorService> lanes = ImmutableList.builder();
+
+    for (int i = 0; i < configuration.getStatusUpdateLanes(); i++) {
+      lanes.add(Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("SingularityStatusUpdate-" + i).setDaemon(true).build()));
+    }
+
+    this.lanes = lanes.build();
+    this.queuedUpdates = Sets.newConcurrentHashSet();
+    this.queueDepth = new AtomicInteger();
+
+    this.lagMillis = metricRegistry.histogram(MetricRegistry.name(SingularityStatusUpdateQueue.class, "lagMillis"));
+    this.processingMillis = metricRegistry.histogram(MetricRegistry.name(SingularityStatusUpdateQueue.class, "processingMillis"));
+    this.coalesced = metricRegistry.meter(MetricRegistry.name(SingularityStatusUpdateQueue.class, "coalesced"));
+
+    metricRegistry.register(MetricRegistry.name(SingularityStatusUpdateQueue.class, "queueDepth"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return queueDepth.get();
+      }
+
+    });
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void stop() {
+    for (ExecutorService lane : lanes) {
+      lane.shutdown();
+    }
+
+    final long deadline = System.currentTimeMillis() + configuration.getStatusUpdateQueueDrainTimeoutMillis();
+
+    int dropped = 0;
+
+    for (ExecutorService lane : lanes) {
+      if (lane == CURRENT_LANE.get()) {
+        continue;
+      }
+
+      try {
+        if (lane.awaitTermination(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS)) {
+          continue;
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+
+      for (Runnable droppedUpdate : lane.shutdownNow()) {
+        // so that a driver callback waiting on a terminal update is released
+        ((Future<?>) droppedUpdate).cancel(false);
+        dropped++;
+      }
+    }
+
+    if (dropped > 0) {
+      LOG.warn("Dropped {} queued status updates after waiting {} for the queue to drain, they will be recovered by task reconciliation", dropped,
+          JavaUtils.durationFromMillis(configuration.getStatusUpdateQueueDrainTimeoutMillis()));
+    }
+  }
+
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * Queues an update from the driver, waiting for it to be processed if it is terminal.
+   */
+  public void enqueue(SchedulerDriver driver, TaskStatus status) {
+    final Optional<Future<?>> processed = submit(driver, status);
+
+    if (processed.isPresent() && MesosUtils.isTaskDone(status.getState())) {
+      awaitTerminalUpdate(processed.get(), status);
+    }
+  }
+
+  /**
+   * Queues an update without waiting for it, for callers which hold the scheduler lock the update needs to be processed.
+   */
+  public void enqueueWithoutWaiting(SchedulerDriver driver, TaskStatus status) {
+    submit(driver, status);
+  }
+
+  private Optional<Future<?>> submit(final SchedulerDriver driver, final TaskStatus status) {
+    if (lanes.isEmpty()) {
+      lock.lock();
+
+      try {
+        process(driver, status, System.currentTimeMillis());
+      } finally {
+        lock.unlock();
+      }
+
+      return Optional.absent();
+    }
+
+    final String taskId = status.getTaskId().getValue();
+    final String key = taskId + ":" + status.getState();
+
+    // mesos resends updates until they are acknowledged, so after a master failover the same state for a task is often queued more than once
+    if (!queuedUpdates.add(key)) {
+      LOG.trace("Coalescing duplicate status update {} for {}", status.getState(), taskId);
+      coalesced.mark();
+      return Optional.absent();
+    }
+
+    final long enqueuedAt = System.currentTimeMillis();
+    final ExecutorService lane = getLane(taskId);
+
+    queueDepth.incrementAndGet();
+
+    try {
+      return Optional.<Future<?>> of(lane.submit(new Runnable() {
+
+        @Override
+        public void run() {
+          CURRENT_LANE.set(lane);
+
+          queuedUpdates.remove(key);
+          queueDepth.decrementAndGet();
+
+          process(driver, status, enqueuedAt);
+        }
+
+      }));
+    } catch (RejectedExecutionException ree) {
+      queuedUpdates.remove(key);
+      queueDepth.decrementAndGet();
+
+      LOG.warn("Dropping status update {} for {} because the queue is shutting down", status.getState(), taskId);
+      return Optional.absent();
+    }
+  }
+
+  private void awaitTerminalUpdate(Future<?> processed, TaskStatus status) {
+    final String taskId = status.getTaskId().getValue();
+
+    try {
+      Uninterruptibles.getUninterruptibly(processed);
+    } catch (CancellationException ce) {
+      LOG.warn("Status update {} for {} was dropped because the queue stopped before it was processed", status.getState(), taskId);
+    } catch (ExecutionException ee) {
+      // process() handles everything the scheduler throws, so this is unexpected
+      LOG.error("While processing status update {} for {}", status.getState(), taskId, ee);
+    }
+  }
+
+  private ExecutorService getLane(String taskId) {
+    return lanes.get((taskId.hashCode() & Integer.MAX_VALUE) % lanes.size());
+  }
+
+  private void process(SchedulerDriver driver, TaskStatus status, long enqueuedAt) {
+    final long start = System.currentTimeMillis();
+
+    lagMillis.update(start - enqueuedAt);
+
+    try {
+      scheduler.statusUpdate(driver, status);
+    } catch (Throwable t) {
+      LOG.error("Scheduler threw an uncaught exception processing status update - exiting", t);
+
+      exceptionNotifier.notify(t, Collections.<String, String>emptyMap());
+
+      abort.abort(AbortReason.UNRECOVERABLE_ERROR, Optional.of(t));
+    } finally {
+      processingMillis.update(System.currentTimeMillis() - start);
+    }
+  }
+
+}
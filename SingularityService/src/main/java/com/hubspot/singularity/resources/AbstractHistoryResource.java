@@ -11,6 +11,7 @@ import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.data.DeployManager;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.data.history.HistoryManager;
+import com.hubspot.singularity.data.history.TaskHistoryHelper;
 
 public abstract class AbstractHistoryResource {
 
@@ -35,10 +36,12 @@ public abstract class AbstractHistoryResource {
   protected SingularityTaskHistory getTaskHistory(SingularityTaskId taskId) {
     Optional<SingularityTaskHistory> history = taskManager.getTaskHistory(taskId);
 
-    if (!history.isPresent()) {
-      history = historyManager.getTaskHistory(taskId.getId());
+    if (history.isPresent()) {
+      return TaskHistoryHelper.withHealthcheckResults(history.get(), historyManager.getHealthcheckResults(taskId.getId()));
     }
 
+    history = historyManager.getTaskHistory(taskId.getId());
+
     checkNotFound(history.isPresent(), "No history for task %s", taskId);
 
     return history.get();
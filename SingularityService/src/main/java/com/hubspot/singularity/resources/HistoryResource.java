@@ -11,6 +11,7 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response.Status;
 
+import com.google.common.base.Optional;
 import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityDeployHistory;
 import com.hubspot.singularity.SingularityRequestHistory;
@@ -21,6 +22,7 @@ import com.hubspot.singularity.SingularityTaskIdHistory;
 import com.hubspot.singularity.data.DeployManager;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.data.history.DeployHistoryHelper;
+import com.hubspot.singularity.data.history.HistoryCursor;
 import com.hubspot.singularity.data.history.HistoryManager;
 import com.hubspot.singularity.data.history.RequestHistoryHelper;
 import com.hubspot.singularity.data.history.TaskHistoryHelper;
@@ -89,6 +91,18 @@ public class HistoryResource extends AbstractHistoryResource {
     return limitCount * (pageParam - 1);
   }
 
+  private Optional<HistoryCursor> getCursor(Integer pageParam, Long lastTimestamp, String lastId, Long startTimestamp, Long endTimestamp) {
+    if (lastTimestamp == null && lastId == null && startTimestamp == null && endTimestamp == null) {
+      return Optional.absent();
+    }
+
+    if (pageParam != null || lastTimestamp == null && lastId != null) {
+      throw new WebApplicationException(Status.BAD_REQUEST);
+    }
+
+    return Optional.of(new HistoryCursor(Optional.fromNullable(lastTimestamp), Optional.fromNullable(lastId), Optional.fromNullable(startTimestamp), Optional.fromNullable(endTimestamp)));
+  }
+
   @GET
   @Path("/request/{requestId}/tasks/active")
   @ApiOperation("Retrieve the history for all active tasks of a specific request.")
@@ -111,8 +125,18 @@ public class HistoryResource extends AbstractHistoryResource {
   @ApiOperation("Retrieve the history for all tasks of a specific request.")
   public List<SingularityTaskIdHistory> getTaskHistoryForRequest(@ApiParam("Request ID to look up") @PathParam("requestId") String requestId,
       @ApiParam("Maximum number of items to return") @QueryParam("count") Integer count,
-      @ApiParam("Which page of items to view") @QueryParam("page") Integer page) {
+      @ApiParam("Which page of items to view") @QueryParam("page") Integer page,
+      @ApiParam("updatedAt of the last task of the previous page, to view the tasks after it instead of a numbered page") @QueryParam("lastUpdatedAt") Long lastUpdatedAt,
+      @ApiParam("Task ID of the last task of the previous page") @QueryParam("lastTaskId") String lastTaskId,
+      @ApiParam("Only tasks updated at or after this timestamp") @QueryParam("updatedAfter") Long updatedAfter,
+      @ApiParam("Only tasks updated before this timestamp") @QueryParam("updatedBefore") Long updatedBefore) {
     final Integer limitCount = getLimitCount(count);
+    final Optional<HistoryCursor> cursor = getCursor(page, lastUpdatedAt, lastTaskId, updatedAfter, updatedBefore);
+
+    if (cursor.isPresent()) {
+      return taskHistoryHelper.getBlendedHistory(requestId, cursor.get(), limitCount);
+    }
+
     final Integer limitStart = getLimitStart(limitCount, page);
 
     return taskHistoryHelper.getBlendedHistory(requestId, limitStart, limitCount);
@@ -123,8 +147,18 @@ public class HistoryResource extends AbstractHistoryResource {
   @ApiOperation("")
   public List<SingularityDeployHistory> getDeploys(@ApiParam("Request ID to look up") @PathParam("requestId") String requestId,
       @ApiParam("Maximum number of items to return") @QueryParam("count") Integer count,
-      @ApiParam("Which page of items to view") @QueryParam("page") Integer page) {
+      @ApiParam("Which page of items to view") @QueryParam("page") Integer page,
+      @ApiParam("Creation timestamp of the last deploy of the previous page, to view the deploys after it instead of a numbered page") @QueryParam("lastCreatedAt") Long lastCreatedAt,
+      @ApiParam("Deploy ID of the last deploy of the previous page") @QueryParam("lastDeployId") String lastDeployId,
+      @ApiParam("Only deploys created at or after this timestamp") @QueryParam("createdAfter") Long createdAfter,
+      @ApiParam("Only deploys created before this timestamp") @QueryParam("createdBefore") Long createdBefore) {
     final Integer limitCount = getLimitCount(count);
+    final Optional<HistoryCursor> cursor = getCursor(page, lastCreatedAt, lastDeployId, createdAfter, createdBefore);
+
+    if (cursor.isPresent()) {
+      return deployHistoryHelper.getBlendedHistory(requestId, cursor.get(), limitCount);
+    }
+
     final Integer limitStart = getLimitStart(limitCount, page);
 
     return deployHistoryHelper.getBlendedHistory(requestId, limitStart, limitCount);
@@ -135,8 +169,17 @@ public class HistoryResource extends AbstractHistoryResource {
   @ApiOperation("")
   public List<SingularityRequestHistory> getRequestHistoryForRequest(@ApiParam("Request ID to look up") @PathParam("requestId") String requestId,
       @ApiParam("Naximum number of items to return") @QueryParam("count") Integer count,
-      @ApiParam("Which page of items to view") @QueryParam("page") Integer page) {
+      @ApiParam("Which page of items to view") @QueryParam("page") Integer page,
+      @ApiParam("Creation timestamp of the last update of the previous page, to view the updates after it instead of a numbered page") @QueryParam("lastCreatedAt") Long lastCreatedAt,
+      @ApiParam("Only updates created at or after this timestamp") @QueryParam("createdAfter") Long createdAfter,
+      @ApiParam("Only updates created before this timestamp") @QueryParam("createdBefore") Long createdBefore) {
     final Integer limitCount = getLimitCount(count);
+    final Optional<HistoryCursor> cursor = getCursor(page, lastCreatedAt, null, createdAfter, createdBefore);
+
+    if (cursor.isPresent()) {
+      return requestHistoryHelper.getBlendedHistory(requestId, cursor.get(), limitCount);
+    }
+
     final Integer limitStart = getLimitStart(limitCount, page);
 
     return requestHistoryHelper.getBlendedHistory(requestId, limitStart, limitCount);
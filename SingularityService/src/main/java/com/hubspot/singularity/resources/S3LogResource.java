@@ -4,13 +4,8 @@ import static com.hubspot.singularity.WebExceptions.checkNotFound;
 import static com.hubspot.singularity.WebExceptions.timeout;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -18,23 +13,19 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
 
 import org.jets3t.service.S3Service;
-import org.jets3t.service.model.S3Object;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
-import com.google.common.primitives.Longs;
-import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.hubspot.mesos.JavaUtils;
 import com.hubspot.singularity.SingularityDeployHistory;
@@ -49,6 +40,7 @@ import com.hubspot.singularity.SingularityTaskHistoryUpdate.SimplifiedTaskState;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.config.S3Configuration;
 import com.hubspot.singularity.data.DeployManager;
+import com.hubspot.singularity.data.S3LogManager;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.data.history.HistoryManager;
 import com.hubspot.singularity.data.history.RequestHistoryHelper;
@@ -68,21 +60,14 @@ public class S3LogResource extends AbstractHistoryResource {
   private final Optional<S3Configuration> configuration;
   private final DeployManager deployManager;
   private final RequestHistoryHelper requestHistoryHelper;
-
-  private static final Comparator<SingularityS3Log> LOG_COMPARATOR = new Comparator<SingularityS3Log>() {
-
-    @Override
-    public int compare(SingularityS3Log o1, SingularityS3Log o2) {
-      return Longs.compare(o2.getLastModified(), o1.getLastModified());
-    }
-
-  };
+  private final S3LogManager s3LogManager;
 
   @Inject
   public S3LogResource(HistoryManager historyManager, RequestHistoryHelper requestHistoryHelper, TaskManager taskManager, DeployManager deployManager, Optional<S3Service> s3,
-      Optional<S3Configuration> configuration) {
+      Optional<S3Configuration> configuration, S3LogManager s3LogManager) {
     super(historyManager, taskManager, deployManager);
     this.s3 = s3;
+    this.s3LogManager = s3LogManager;
     this.deployManager = deployManager;
     this.configuration = configuration;
     this.requestHistoryHelper = requestHistoryHelper;
@@ -158,62 +143,20 @@ public class S3LogResource extends AbstractHistoryResource {
     return prefixes;
   }
 
-  private List<SingularityS3Log> getS3LogsWithExecutorService(ListeningExecutorService executorService, Collection<String> prefixes) throws InterruptedException, ExecutionException, TimeoutException {
-    List<ListenableFuture<S3Object[]>> futures = Lists.newArrayListWithCapacity(prefixes.size());
-
-    for (final String s3Prefix : prefixes) {
-      futures.add(executorService.submit(new Callable<S3Object[]>() {
-
-        @Override
-        public S3Object[] call() throws Exception {
-          return s3.get().listObjects(configuration.get().getS3Bucket(), s3Prefix, null);
-        }
-      }));
-    }
-
+  private List<SingularityS3Log> getS3Logs(Collection<String> prefixes, Integer count, String lastKey) throws InterruptedException, ExecutionException, TimeoutException {
     final long start = System.currentTimeMillis();
-    List<S3Object[]> results = Futures.allAsList(futures).get(configuration.get().getWaitForS3ListSeconds(), TimeUnit.SECONDS);
-
-    List<S3Object> objects = Lists.newArrayListWithExpectedSize(results.size() * 2);
 
-    for (S3Object[] s3Objects : results) {
-      for (final S3Object s3Object : s3Objects) {
-        objects.add(s3Object);
-      }
+    if (count != null && count < 1) {
+      throw new WebApplicationException(Status.BAD_REQUEST);
     }
 
-    LOG.trace("Got {} objects from S3 after {}", objects.size(), JavaUtils.duration(start));
+    final ListenableFuture<List<SingularityS3Log>> logsFuture = count == null ? s3LogManager.getLogs(prefixes) : s3LogManager.getLogsPage(prefixes, count, Optional.fromNullable(lastKey));
 
-    List<ListenableFuture<SingularityS3Log>> logFutures = Lists.newArrayListWithCapacity(objects.size());
-    final Date expireAt = new Date(System.currentTimeMillis() + configuration.get().getExpireS3LinksAfterMillis());
+    List<SingularityS3Log> logs = logsFuture.get(configuration.get().getWaitForS3ListSeconds() + configuration.get().getWaitForS3LinksSeconds(), TimeUnit.SECONDS);
 
-    for (final S3Object s3Object : objects) {
-      logFutures.add(executorService.submit(new Callable<SingularityS3Log>() {
+    LOG.trace("Got {} logs from S3 for {} prefixes after {}", logs.size(), prefixes.size(), JavaUtils.duration(start));
 
-        @Override
-        public SingularityS3Log call() throws Exception {
-          String getUrl = s3.get().createSignedGetUrl(configuration.get().getS3Bucket(), s3Object.getKey(), expireAt);
-
-          return new SingularityS3Log(getUrl, s3Object.getKey(), s3Object.getLastModifiedDate().getTime(), s3Object.getContentLength());
-        }
-
-      }));
-    }
-
-    return Futures.allAsList(logFutures).get(configuration.get().getWaitForS3LinksSeconds(), TimeUnit.SECONDS);
-  }
-
-  private List<SingularityS3Log> getS3Logs(Collection<String> prefixes) throws InterruptedException, ExecutionException, TimeoutException {
-    ListeningExecutorService executorService = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(Math.min(prefixes.size(), configuration.get().getMaxS3Threads()),
-        new ThreadFactoryBuilder().setNameFormat("S3LogFetcher-%d").build()));
-
-    try {
-      List<SingularityS3Log> logs = Lists.newArrayList(getS3LogsWithExecutorService(executorService, prefixes));
-      Collections.sort(logs, LOG_COMPARATOR);
-      return logs;
-    } finally {
-      executorService.shutdownNow();
-    }
+    return logs;
   }
 
   private void checkS3() {
@@ -223,13 +166,15 @@ public class S3LogResource extends AbstractHistoryResource {
   @GET
   @Path("/task/{taskId}")
   @ApiOperation("Retrieve the list of logs stored in S3 for a specific task.")
-  public List<SingularityS3Log> getS3LogsForTask(@ApiParam("The task ID to search for") @PathParam("taskId") String taskId) throws Exception {
+  public List<SingularityS3Log> getS3LogsForTask(@ApiParam("The task ID to search for") @PathParam("taskId") String taskId,
+      @ApiParam("Maximum number of logs to return in key order, all of them (most recently modified first) if absent") @QueryParam("count") Integer count,
+      @ApiParam("Only return logs whose keys come after this one, the key of the last log of the previous page") @QueryParam("lastKey") String lastKey) throws Exception {
     checkS3();
 
     SingularityTaskId taskIdObject = getTaskIdObject(taskId);
 
     try {
-      return getS3Logs(getS3PrefixesForTask(taskIdObject));
+      return getS3Logs(getS3PrefixesForTask(taskIdObject), count, lastKey);
     } catch (TimeoutException te) {
       throw timeout("Timed out waiting for response from S3 for %s", taskId);
     } catch (Throwable t) {
@@ -240,11 +185,13 @@ public class S3LogResource extends AbstractHistoryResource {
   @GET
   @Path("/request/{requestId}")
   @ApiOperation("Retrieve the list of logs stored in S3 for a specific request.")
-  public List<SingularityS3Log> getS3LogsForRequest(@ApiParam("The request ID to search for") @PathParam("requestId") String requestId) throws Exception {
+  public List<SingularityS3Log> getS3LogsForRequest(@ApiParam("The request ID to search for") @PathParam("requestId") String requestId,
+      @ApiParam("Maximum number of logs to return in key order, all of them (most recently modified first) if absent") @QueryParam("count") Integer count,
+      @ApiParam("Only return logs whose keys come after this one, the key of the last log of the previous page") @QueryParam("lastKey") String lastKey) throws Exception {
     checkS3();
 
     try {
-      return getS3Logs(getS3PrefixesForRequest(requestId));
+      return getS3Logs(getS3PrefixesForRequest(requestId), count, lastKey);
     } catch (TimeoutException te) {
       throw timeout("Timed out waiting for response from S3 for %s", requestId);
     } catch (Throwable t) {
@@ -256,11 +203,13 @@ public class S3LogResource extends AbstractHistoryResource {
   @Path("/request/{requestId}/deploy/{deployId}")
   @ApiOperation("Retrieve the list of logs stored in S3 for a specific deploy.")
   public List<SingularityS3Log> getS3LogsForDeploy(@ApiParam("The request ID to search for") @PathParam("requestId") String requestId,
-      @ApiParam("The deploy ID to search for") @PathParam("deployId") String deployId) throws Exception {
+      @ApiParam("The deploy ID to search for") @PathParam("deployId") String deployId,
+      @ApiParam("Maximum number of logs to return in key order, all of them (most recently modified first) if absent") @QueryParam("count") Integer count,
+      @ApiParam("Only return logs whose keys come after this one, the key of the last log of the previous page") @QueryParam("lastKey") String lastKey) throws Exception {
     checkS3();
 
     try {
-      return getS3Logs(getS3PrefixesForDeploy(requestId, deployId));
+      return getS3Logs(getS3PrefixesForDeploy(requestId, deployId), count, lastKey);
     } catch (TimeoutException te) {
       throw timeout("Timed out waiting for response from S3 for %s-%s", requestId, deployId);
     } catch (Throwable t) {
@@ -0,0 +1,197 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A hashed wheel timer for per-task checks. Each scheduled check goes into one of a fixed ring of buckets by the tick it is due
+ * on, and a single thread moves to the next bucket every tick and hands every check which has come due to the handler as one
+ * batch - so scheduling, rescheduling and cancelling a check are constant time and never create a timer task of their own.
+ *
+ * Checks are keyed by task id; scheduling a check for a task replaces any check it already had.
+ */
+public class SingularityCheckWheel<T> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingularityCheckWheel.class);
+
+  private static final int TICKS_PER_WHEEL = 512;
+
+  public interface DueChecksHandler<T> {
+
+    void handle(List<T> dueChecks);
+
+  }
+
+  private static class Check<T> {
+
+    private final String key;
+    private final T value;
+    private final long dueAt;
+    private volatile boolean cancelled;
+
+    Check(String key, T value, long dueAt) {
+      this.key = key;
+      this.value = value;
+      this.dueAt = dueAt;
+    }
+
+  }
+
+  private final String name;
+  private final long tickMillis;
+  private final long startedAt;
+  private final DueChecksHandler<T> handler;
+  private final Histogram lagHistogram;
+
+  private final ConcurrentMap<String, Check<T>> scheduled;
+  private final Queue<Check<T>> newChecks;
+  // only touched while advancing
+  private final List<Deque<Check<T>>> buckets;
+  private long nextTick;
+
+  public SingularityCheckWheel(String name, long tickMillis, MetricRegistry metricRegistry, DueChecksHandler<T> handler) {
+    this.name = name;
+    this.tickMillis = Math.max(tickMillis, 1);
+    this.startedAt = System.currentTimeMillis();
+    this.handler = handler;
+
+    this.scheduled = Maps.newConcurrentMap();
+    this.newChecks = new ConcurrentLinkedQueue<>();
+    this.buckets = Lists.newArrayListWithCapacity(TICKS_PER_WHEEL);
+
+    for (int i = 0; i < TICKS_PER_WHEEL; i++) {
+      buckets.add(new ArrayDeque<Check<T>>());
+    }
+
+    this.lagHistogram = metricRegistry.histogram(MetricRegistry.name(SingularityCheckWheel.class, name, "lagMillis"));
+
+    metricRegistry.register(MetricRegistry.name(SingularityCheckWheel.class, name, "scheduled"), new Gauge<Integer>() {
+
+      @Override
+      public Integer getValue() {
+        return scheduled.size();
+      }
+
+    });
+  }
+
+  public void start(ScheduledExecutorService tickExecutor) {
+    tickExecutor.scheduleAtFixedRate(new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          advance(System.currentTimeMillis());
+        } catch (Throwable t) {
+          LOG.error("Uncaught throwable while running {} checks", name, t);
+        }
+      }
+
+    }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return true if this replaced a check which was already scheduled for the key
+   */
+  public boolean schedule(String key, T value, long delayMillis) {
+    final Check<T> check = new Check<>(key, value, System.currentTimeMillis() + delayMillis);
+    final Check<T> existing = scheduled.put(key, check);
+
+    if (existing != null) {
+      existing.cancelled = true;
+    }
+
+    newChecks.add(check);
+
+    return existing != null;
+  }
+
+  /**
+   * @return true if a check was scheduled for the key and hadn't come due yet
+   */
+  public boolean cancel(String key) {
+    final Check<T> check = scheduled.remove(key);
+
+    if (check == null) {
+      return false;
+    }
+
+    check.cancelled = true;
+
+    return true;
+  }
+
+  public boolean isScheduled(String key) {
+    return scheduled.containsKey(key);
+  }
+
+  synchronized void advance(long now) {
+    final long currentTick = (now - startedAt) / tickMillis;
+
+    Check<T> newCheck;
+
+    while ((newCheck = newChecks.poll()) != null) {
+      if (!newCheck.cancelled) {
+        buckets.get(getBucket(Math.max(getTick(newCheck.dueAt), nextTick))).add(newCheck);
+      }
+    }
+
+    final List<T> dueChecks = Lists.newArrayList();
+
+    // catches up on every tick since the last advance, but never goes around the wheel more than once
+    final long firstTick = Math.max(nextTick, currentTick - TICKS_PER_WHEEL + 1);
+
+    for (long tick = firstTick; tick <= currentTick; tick++) {
+      final Iterator<Check<T>> bucket = buckets.get(getBucket(tick)).iterator();
+
+      while (bucket.hasNext()) {
+        final Check<T> check = bucket.next();
+
+        if (check.cancelled) {
+          bucket.remove();
+        } else if (getTick(check.dueAt) <= currentTick) {
+          bucket.remove();
+
+          if (scheduled.remove(check.key, check)) {
+            lagHistogram.update(Math.max(now - check.dueAt, 0));
+            dueChecks.add(check.value);
+          }
+        }
+      }
+    }
+
+    nextTick = Math.max(nextTick, currentTick + 1);
+
+    if (!dueChecks.isEmpty()) {
+      LOG.trace("{} {} checks came due", dueChecks.size(), name);
+
+      handler.handle(dueChecks);
+    }
+  }
+
+  private long getTick(long timestamp) {
+    // rounds up, so a check never runs before it is due
+    return (timestamp - startedAt + tickMillis - 1) / tickMillis;
+  }
+
+  private int getBucket(long tick) {
+    return (int) (tick % TICKS_PER_WHEEL);
+  }
+
+}
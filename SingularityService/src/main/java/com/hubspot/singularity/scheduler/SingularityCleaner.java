@@ -1,18 +1,29 @@
 package com.hubspot.singularity.scheduler;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.inject.Singleton;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Inject;
 import com.hubspot.baragon.models.BaragonRequestState;
 import com.hubspot.mesos.JavaUtils;
@@ -24,6 +35,7 @@ import com.hubspot.singularity.SingularityDeploy;
 import com.hubspot.singularity.SingularityDriverManager;
 import com.hubspot.singularity.SingularityKilledTaskIdRecord;
 import com.hubspot.singularity.SingularityLoadBalancerUpdate;
+import com.hubspot.singularity.SingularityLoadBalancerUpdate.LoadBalancerMethod;
 import com.hubspot.singularity.SingularityPendingRequest;
 import com.hubspot.singularity.SingularityPendingRequest.PendingType;
 import com.hubspot.singularity.SingularityPendingTask;
@@ -55,13 +67,31 @@ public class SingularityCleaner {
   private final SingularityDeployHealthHelper deployHealthHelper;
   private final LoadBalancerClient lbClient;
   private final SingularityExceptionNotifier exceptionNotifier;
+  private final SingularitySchedulerPriority schedulerPriority;
 
   private final SingularityConfiguration configuration;
   private final long killNonLongRunningTasksInCleanupAfterMillis;
 
+  private final Timer passTimer;
+  private final Timer requestCleanupTimer;
+  private final Timer taskCleanupTimer;
+  private final Timer lbCleanupTimer;
+  private final Timer killedTaskIdRecordsTimer;
+
+  private final Counter requestCleanupTasksKilled;
+  private final Counter requestCleanupScheduledTasksRemoved;
+  private final Counter taskCleanupKilled;
+  private final Counter taskCleanupWaiting;
+  private final Counter taskCleanupWaitingOnLoadBalancer;
+  private final Counter taskCleanupObsolete;
+  private final Counter lbCleanupCleaned;
+  private final Counter lbCleanupIgnored;
+  private final Counter killedTaskIdRecordsRekilled;
+
   @Inject
   public SingularityCleaner(TaskManager taskManager, SingularityDeployHealthHelper deployHealthHelper, DeployManager deployManager, RequestManager requestManager,
-      SingularityDriverManager driverManager, SingularityConfiguration configuration, LoadBalancerClient lbClient, SingularityExceptionNotifier exceptionNotifier) {
+      SingularityDriverManager driverManager, SingularityConfiguration configuration, LoadBalancerClient lbClient, SingularityExceptionNotifier exceptionNotifier,
+      SingularitySchedulerPriority schedulerPriority, MetricRegistry metricRegistry) {
     this.taskManager = taskManager;
     this.lbClient = lbClient;
     this.deployHealthHelper = deployHealthHelper;
@@ -69,14 +99,31 @@ public class SingularityCleaner {
     this.requestManager = requestManager;
     this.driverManager = driverManager;
     this.exceptionNotifier = exceptionNotifier;
+    this.schedulerPriority = schedulerPriority;
 
     this.configuration = configuration;
 
     this.killNonLongRunningTasksInCleanupAfterMillis = TimeUnit.SECONDS.toMillis(configuration.getKillNonLongRunningTasksInCleanupAfterSeconds());
+
+    this.passTimer = metricRegistry.timer(MetricRegistry.name(SingularityCleaner.class, "pass"));
+    this.requestCleanupTimer = metricRegistry.timer(MetricRegistry.name(SingularityCleaner.class, "requestCleanup"));
+    this.taskCleanupTimer = metricRegistry.timer(MetricRegistry.name(SingularityCleaner.class, "taskCleanup"));
+    this.lbCleanupTimer = metricRegistry.timer(MetricRegistry.name(SingularityCleaner.class, "lbCleanup"));
+    this.killedTaskIdRecordsTimer = metricRegistry.timer(MetricRegistry.name(SingularityCleaner.class, "killedTaskIdRecords"));
+
+    this.requestCleanupTasksKilled = metricRegistry.counter(MetricRegistry.name(SingularityCleaner.class, "requestCleanup", "tasksKilled"));
+    this.requestCleanupScheduledTasksRemoved = metricRegistry.counter(MetricRegistry.name(SingularityCleaner.class, "requestCleanup", "scheduledTasksRemoved"));
+    this.taskCleanupKilled = metricRegistry.counter(MetricRegistry.name(SingularityCleaner.class, "taskCleanup", "killed"));
+    this.taskCleanupWaiting = metricRegistry.counter(MetricRegistry.name(SingularityCleaner.class, "taskCleanup", "waiting"));
+    this.taskCleanupWaitingOnLoadBalancer = metricRegistry.counter(MetricRegistry.name(SingularityCleaner.class, "taskCleanup", "waitingOnLoadBalancer"));
+    this.taskCleanupObsolete = metricRegistry.counter(MetricRegistry.name(SingularityCleaner.class, "taskCleanup", "obsolete"));
+    this.lbCleanupCleaned = metricRegistry.counter(MetricRegistry.name(SingularityCleaner.class, "lbCleanup", "cleaned"));
+    this.lbCleanupIgnored = metricRegistry.counter(MetricRegistry.name(SingularityCleaner.class, "lbCleanup", "ignored"));
+    this.killedTaskIdRecordsRekilled = metricRegistry.counter(MetricRegistry.name(SingularityCleaner.class, "killedTaskIdRecords", "rekilled"));
   }
 
-  private boolean shouldKillTask(SingularityTaskCleanup taskCleanup, List<SingularityTaskId> activeTaskIds, List<SingularityTaskId> cleaningTasks) {
-    final Optional<SingularityRequestWithState> requestWithState = requestManager.getRequest(taskCleanup.getTaskId().getRequestId());
+  private boolean shouldKillTask(SingularityTaskCleanup taskCleanup, SingularityCleanerPassContext passContext) {
+    final Optional<SingularityRequestWithState> requestWithState = passContext.getRequest(taskCleanup.getTaskId().getRequestId());
 
     if (!requestWithState.isPresent()) {
       LOG.debug("Killing a task {} immediately because the request was missing", taskCleanup);
@@ -111,7 +158,7 @@ public class SingularityCleaner {
 
     final String requestId = request.getId();
 
-    final Optional<SingularityRequestDeployState> deployState = deployManager.getRequestDeployState(requestId);
+    final Optional<SingularityRequestDeployState> deployState = passContext.getRequestDeployState(requestId);
 
     if (!deployState.isPresent() || !deployState.get().getActiveDeploy().isPresent()) {
       LOG.debug("Killing a task {} immediately because there is no active deploy state {}", taskCleanup, deployState);
@@ -126,14 +173,14 @@ public class SingularityCleaner {
     }
 
     // check to see if there are enough active tasks out there that have been active for long enough that we can safely shut this task down.
-    final List<SingularityTaskId> matchingTasks = SingularityTaskId.matchingAndNotIn(activeTaskIds, taskCleanup.getTaskId().getRequestId(), taskCleanup.getTaskId().getDeployId(), cleaningTasks);
+    final List<SingularityTaskId> matchingTasks = passContext.getReplacementTaskIds(requestId, activeDeployId);
 
     if (matchingTasks.size() < request.getInstancesSafe()) {
       LOG.trace("Not killing a task {} yet, only {} matching out of a required {}", taskCleanup, matchingTasks.size(), request.getInstancesSafe());
       return false;
     }
 
-    final Optional<SingularityDeploy> deploy = deployManager.getDeploy(requestId, activeDeployId);
+    final Optional<SingularityDeploy> deploy = passContext.getActiveDeploy(requestId, activeDeployId);
 
     final DeployHealth deployHealth = deployHealthHelper.getDeployHealth(deploy, matchingTasks, false);
 
@@ -204,6 +251,7 @@ public class SingularityCleaner {
             LOG.info("Ignoring {}, because {} still existed", requestCleanup, requestCleanup.getRequestId());
           } else {
             cleanupDeployState(requestCleanup);
+            schedulerPriority.notifyRequestDeleted(requestId);
           }
           break;
         case BOUNCE:
@@ -236,6 +284,9 @@ public class SingularityCleaner {
       requestManager.deleteCleanRequest(requestId, requestCleanup.getCleanupType());
     }
 
+    requestCleanupTasksKilled.inc(numTasksKilled);
+    requestCleanupScheduledTasksRemoved.inc(numScheduledTasksRemoved);
+
     LOG.info("Killed {} tasks (removed {} scheduled) in {}", numTasksKilled, numScheduledTasksRemoved, JavaUtils.duration(start));
   }
 
@@ -262,14 +313,25 @@ public class SingularityCleaner {
   }
 
   public void drainCleanupQueue() {
+    final Timer.Context passContext = passTimer.time();
+
+    Timer.Context phaseContext = requestCleanupTimer.time();
     drainRequestCleanupQueue();
+    phaseContext.stop();
+
+    phaseContext = taskCleanupTimer.time();
     drainTaskCleanupQueue();
+    phaseContext.stop();
+
+    phaseContext = lbCleanupTimer.time();
     drainLBCleanupQueue();
+    phaseContext.stop();
+
+    phaseContext = killedTaskIdRecordsTimer.time();
     checkKilledTaskIdRecords();
-  }
+    phaseContext.stop();
 
-  private boolean isValidTask(SingularityTaskCleanup cleanupTask) {
-    return taskManager.isActiveTask(cleanupTask.getTaskId().getId());
+    LOG.debug("Cleaner pass finished in {}", JavaUtils.durationFromMillis(TimeUnit.NANOSECONDS.toMillis(passContext.stop())));
   }
 
   private void checkKilledTaskIdRecords() {
@@ -306,6 +368,7 @@ public class SingularityCleaner {
             killedTaskIdRecord.getTaskCleanupType(), Optional.of(killedTaskIdRecord.getOriginalTimestamp()), Optional.of(killedTaskIdRecord.getRetries()));
 
         rekilled++;
+        killedTaskIdRecordsRekilled.inc();
       } else {
         LOG.trace("Ignoring {}, because duration {} is less than configured (askDriverToKillTasksAgainAfterMillis) {}", killedTaskIdRecord, JavaUtils.durationFromMillis(duration),
             JavaUtils.durationFromMillis(configuration.getAskDriverToKillTasksAgainAfterMillis()));
@@ -327,40 +390,60 @@ public class SingularityCleaner {
       return;
     }
 
-    final List<SingularityTaskId> cleaningTasks = Lists.newArrayListWithCapacity(cleanupTasks.size());
-    for (SingularityTaskCleanup cleanupTask : cleanupTasks) {
-      cleaningTasks.add(cleanupTask.getTaskId());
-    }
-
     LOG.info("Cleaning up {} tasks", cleanupTasks.size());
 
-    final List<SingularityTaskId> activeTaskIds = taskManager.getActiveTaskIds();
+    final SingularityCleanerPassContext passContext = SingularityCleanerPassContext.load(cleanupTasks, taskManager, requestManager, deployManager);
+
+    LOG.debug("Loaded cleanup context for {} tasks in {}", cleanupTasks.size(), JavaUtils.duration(start));
 
     int killedTasks = 0;
+    int waitingTasks = 0;
+    int waitingOnLoadBalancerTasks = 0;
+    int obsoleteTasks = 0;
+
+    final Map<SingularityTaskId, SingularityTaskCleanup> tasksToKill = Maps.newLinkedHashMap();
 
     for (SingularityTaskCleanup cleanupTask : cleanupTasks) {
-      if (!isValidTask(cleanupTask)) {
+      if (!passContext.isActiveTask(cleanupTask.getTaskId())) {
         LOG.info("Couldn't find a matching active task for cleanup task {}, deleting..", cleanupTask);
         taskManager.deleteCleanupTask(cleanupTask.getTaskId().getId());
-      } else if (shouldKillTask(cleanupTask, activeTaskIds, cleaningTasks) && checkLBStateAndShouldKillTask(cleanupTask)) {
-        driverManager.killAndRecord(cleanupTask.getTaskId(), cleanupTask.getCleanupType());
-
-        taskManager.deleteCleanupTask(cleanupTask.getTaskId().getId());
 
-        killedTasks++;
+        obsoleteTasks++;
+      } else if (shouldKillTask(cleanupTask, passContext)) {
+        tasksToKill.put(cleanupTask.getTaskId(), cleanupTask);
+      } else {
+        waitingTasks++;
       }
     }
 
-    LOG.info("Killed {} tasks in {}", killedTasks, JavaUtils.duration(start));
-  }
+    final Map<SingularityTaskId, CheckLBState> lbStates = checkLbStates(tasksToKill.keySet());
 
-  private boolean checkLBStateAndShouldKillTask(SingularityTaskCleanup cleanupTask) {
-    final long start = System.currentTimeMillis();
+    for (SingularityTaskCleanup cleanupTask : tasksToKill.values()) {
+      final CheckLBState checkLbState = lbStates.get(cleanupTask.getTaskId());
+
+      LOG.debug("TaskCleanup {} had LB state {}", cleanupTask, checkLbState);
 
-    CheckLBState checkLbState = checkLbState(cleanupTask.getTaskId());
+      if (!canKillTask(checkLbState)) {
+        waitingOnLoadBalancerTasks++;
+        continue;
+      }
 
-    LOG.debug("TaskCleanup {} had LB state {} after {}", cleanupTask, checkLbState, JavaUtils.duration(start));
+      driverManager.killAndRecord(cleanupTask.getTaskId(), cleanupTask.getCleanupType());
 
+      taskManager.deleteCleanupTask(cleanupTask.getTaskId().getId());
+
+      killedTasks++;
+    }
+
+    taskCleanupKilled.inc(killedTasks);
+    taskCleanupWaiting.inc(waitingTasks);
+    taskCleanupWaitingOnLoadBalancer.inc(waitingOnLoadBalancerTasks);
+    taskCleanupObsolete.inc(obsoleteTasks);
+
+    LOG.info("Killed {} tasks ({} waiting on replacements, {} waiting on load balancer, {} obsolete) in {}", killedTasks, waitingTasks, waitingOnLoadBalancerTasks, obsoleteTasks, JavaUtils.duration(start));
+  }
+
+  private boolean canKillTask(CheckLBState checkLbState) {
     switch (checkLbState) {
       case DONE:
       case NOT_LOAD_BALANCED:
@@ -425,50 +508,127 @@ public class SingularityCleaner {
     return false;
   }
 
-  private CheckLBState checkLbState(SingularityTaskId taskId) {
-    Optional<SingularityLoadBalancerUpdate> lbAddUpdate = taskManager.getLoadBalancerState(taskId, LoadBalancerRequestType.ADD);
+  private static class LbRemoveCheck {
 
-    if (!lbAddUpdate.isPresent()) {
-      return CheckLBState.NOT_LOAD_BALANCED;
-    }
+    private final SingularityTaskId taskId;
+    private final SingularityLoadBalancerUpdate lbAddUpdate;
+    private final LoadBalancerRequestId loadBalancerRequestId;
+    private final Optional<ListenableFuture<SingularityLoadBalancerUpdate>> enqueueFuture;
 
-    if (!shouldRemoveLbState(taskId, lbAddUpdate.get())) {
-      return CheckLBState.LOAD_BALANCE_FAILED;
+    LbRemoveCheck(SingularityTaskId taskId, SingularityLoadBalancerUpdate lbAddUpdate, LoadBalancerRequestId loadBalancerRequestId, Optional<ListenableFuture<SingularityLoadBalancerUpdate>> enqueueFuture) {
+      this.taskId = taskId;
+      this.lbAddUpdate = lbAddUpdate;
+      this.loadBalancerRequestId = loadBalancerRequestId;
+      this.enqueueFuture = enqueueFuture;
     }
 
-    Optional<SingularityLoadBalancerUpdate> maybeLbRemoveUpdate = taskManager.getLoadBalancerState(taskId, LoadBalancerRequestType.REMOVE);
-    SingularityLoadBalancerUpdate lbRemoveUpdate = null;
+  }
+
+  /**
+   * Sends the load balancer requests for up to loadBalancerMaxConcurrentRequests tasks at a time, checking on requests already
+   * in flight with one getStates call per batch, and waits for each batch to finish before starting the next.
+   */
+  private Map<SingularityTaskId, CheckLBState> checkLbStates(Collection<SingularityTaskId> taskIds) {
+    final Map<SingularityTaskId, CheckLBState> checkLbStates = Maps.newHashMapWithExpectedSize(taskIds.size());
 
-    final LoadBalancerRequestId loadBalancerRequestId = getLoadBalancerRequestId(taskId, maybeLbRemoveUpdate);
+    for (List<SingularityTaskId> batch : Lists.partition(ImmutableList.copyOf(taskIds), Math.max(configuration.getLoadBalancerMaxConcurrentRequests(), 1))) {
+      final List<LbRemoveCheck> lbRemoveChecks = Lists.newArrayListWithCapacity(batch.size());
+      final List<LoadBalancerRequestId> stateRequestIds = Lists.newArrayList();
 
-    if (shouldEnqueueLbRequest(maybeLbRemoveUpdate)) {
-      final Optional<SingularityTask> task = taskManager.getTask(taskId);
+      for (SingularityTaskId taskId : batch) {
+        final Optional<SingularityLoadBalancerUpdate> lbAddUpdate = taskManager.getLoadBalancerState(taskId, LoadBalancerRequestType.ADD);
 
-      if (!task.isPresent()) {
-        LOG.error("Missing task {}", taskId);
-        return CheckLBState.MISSING_TASK;
+        if (!lbAddUpdate.isPresent()) {
+          checkLbStates.put(taskId, CheckLBState.NOT_LOAD_BALANCED);
+          continue;
+        }
+
+        if (!shouldRemoveLbState(taskId, lbAddUpdate.get())) {
+          checkLbStates.put(taskId, CheckLBState.LOAD_BALANCE_FAILED);
+          continue;
+        }
+
+        final Optional<SingularityLoadBalancerUpdate> maybeLbRemoveUpdate = taskManager.getLoadBalancerState(taskId, LoadBalancerRequestType.REMOVE);
+        final LoadBalancerRequestId loadBalancerRequestId = getLoadBalancerRequestId(taskId, maybeLbRemoveUpdate);
+
+        if (shouldEnqueueLbRequest(maybeLbRemoveUpdate)) {
+          final Optional<SingularityTask> task = taskManager.getTask(taskId);
+
+          if (!task.isPresent()) {
+            LOG.error("Missing task {}", taskId);
+            checkLbStates.put(taskId, CheckLBState.MISSING_TASK);
+            continue;
+          }
+
+          lbRemoveChecks.add(new LbRemoveCheck(taskId, lbAddUpdate.get(), loadBalancerRequestId, Optional.of(lbClient.enqueue(loadBalancerRequestId, task.get().getTaskRequest().getRequest(),
+              task.get().getTaskRequest().getDeploy(), Collections.<SingularityTask> emptyList(), Collections.singletonList(task.get())))));
+        } else if (maybeLbRemoveUpdate.get().getLoadBalancerState() == BaragonRequestState.WAITING || maybeLbRemoveUpdate.get().getLoadBalancerState() == BaragonRequestState.CANCELING) {
+          lbRemoveChecks.add(new LbRemoveCheck(taskId, lbAddUpdate.get(), loadBalancerRequestId, Optional.<ListenableFuture<SingularityLoadBalancerUpdate>> absent()));
+          stateRequestIds.add(loadBalancerRequestId);
+        } else {
+          checkLbStates.put(taskId, getCheckLbState(lbAddUpdate.get(), loadBalancerRequestId, maybeLbRemoveUpdate.get()));
+        }
       }
 
-      lbRemoveUpdate = lbClient.enqueue(loadBalancerRequestId, task.get().getTaskRequest().getRequest(), task.get().getTaskRequest().getDeploy(), Collections.<SingularityTask> emptyList(), Collections.singletonList(task.get()));
+      if (lbRemoveChecks.isEmpty()) {
+        continue;
+      }
+
+      final long deadline = System.currentTimeMillis() + (configuration.getLoadBalancerRequestTimeoutMillis() * 2);
+
+      final Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate> lbStateUpdates = awaitLbResponse(lbClient.getStates(stateRequestIds), deadline)
+          .or(Collections.<LoadBalancerRequestId, SingularityLoadBalancerUpdate> emptyMap());
 
-      taskManager.saveLoadBalancerState(taskId, LoadBalancerRequestType.REMOVE, lbRemoveUpdate);
-    } else if (maybeLbRemoveUpdate.get().getLoadBalancerState() == BaragonRequestState.WAITING || maybeLbRemoveUpdate.get().getLoadBalancerState() == BaragonRequestState.CANCELING) {
-      lbRemoveUpdate = lbClient.getState(loadBalancerRequestId);
+      for (LbRemoveCheck lbRemoveCheck : lbRemoveChecks) {
+        final Optional<SingularityLoadBalancerUpdate> lbRemoveUpdate = lbRemoveCheck.enqueueFuture.isPresent() ? awaitLbResponse(lbRemoveCheck.enqueueFuture.get(), deadline)
+            : Optional.fromNullable(lbStateUpdates.get(lbRemoveCheck.loadBalancerRequestId));
 
-      taskManager.saveLoadBalancerState(taskId, LoadBalancerRequestType.REMOVE, lbRemoveUpdate);
-    } else {
-      lbRemoveUpdate = maybeLbRemoveUpdate.get();
+        if (!lbRemoveUpdate.isPresent()) {
+          if (lbRemoveCheck.enqueueFuture.isPresent() && !lbRemoveCheck.enqueueFuture.get().isDone()) {
+            // the request may still reach the load balancer, so check on its state next pass instead of sending it again
+            taskManager.saveLoadBalancerState(lbRemoveCheck.taskId, LoadBalancerRequestType.REMOVE, new SingularityLoadBalancerUpdate(BaragonRequestState.WAITING,
+                lbRemoveCheck.loadBalancerRequestId, Optional.of("Timed out waiting for the load balancer to accept the request"), System.currentTimeMillis(), LoadBalancerMethod.ENQUEUE,
+                Optional.<String> absent()));
+          }
+
+          checkLbStates.put(lbRemoveCheck.taskId, CheckLBState.WAITING);
+          continue;
+        }
+
+        taskManager.saveLoadBalancerState(lbRemoveCheck.taskId, LoadBalancerRequestType.REMOVE, lbRemoveUpdate.get());
+
+        checkLbStates.put(lbRemoveCheck.taskId, getCheckLbState(lbRemoveCheck.lbAddUpdate, lbRemoveCheck.loadBalancerRequestId, lbRemoveUpdate.get()));
+      }
     }
 
+    return checkLbStates;
+  }
+
+  private <T> Optional<T> awaitLbResponse(ListenableFuture<T> future, long deadline) {
+    try {
+      return Optional.of(future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS));
+    } catch (TimeoutException te) {
+      LOG.warn("Load balancer client didn't respond in time, will check again on the next pass");
+      return Optional.absent();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(ie);
+    } catch (ExecutionException ee) {
+      LOG.error("Load balancer client request failed, will try again on the next pass", ee.getCause());
+      return Optional.absent();
+    }
+  }
+
+  private CheckLBState getCheckLbState(SingularityLoadBalancerUpdate lbAddUpdate, LoadBalancerRequestId loadBalancerRequestId, SingularityLoadBalancerUpdate lbRemoveUpdate) {
     switch (lbRemoveUpdate.getLoadBalancerState()) {
       case SUCCESS:
       case INVALID_REQUEST_NOOP:
         return CheckLBState.DONE;
       case FAILED:
       case CANCELED:
-        LOG.error("LB removal request {} ({}) got unexpected response {}", lbAddUpdate.get(), loadBalancerRequestId, lbRemoveUpdate.getLoadBalancerState());
-        exceptionNotifier.notify(String.format("LB removal failed for %s", lbAddUpdate.get().getLoadBalancerRequestId().toString()),
-            ImmutableMap.of("state", lbRemoveUpdate.getLoadBalancerState().name(), "loadBalancerRequestId", loadBalancerRequestId.toString(), "addUpdate", lbAddUpdate.get().toString()));
+        LOG.error("LB removal request {} ({}) got unexpected response {}", lbAddUpdate, loadBalancerRequestId, lbRemoveUpdate.getLoadBalancerState());
+        exceptionNotifier.notify(String.format("LB removal failed for %s", lbAddUpdate.getLoadBalancerRequestId().toString()),
+            ImmutableMap.of("state", lbRemoveUpdate.getLoadBalancerState().name(), "loadBalancerRequestId", loadBalancerRequestId.toString(), "addUpdate", lbAddUpdate.toString()));
         return CheckLBState.RETRY;
       case UNKNOWN:
       case CANCELING:
@@ -494,12 +654,12 @@ public class SingularityCleaner {
     int cleanedTasks = 0;
     int ignoredTasks = 0;
 
-    for (SingularityTaskId taskId : lbCleanupTasks) {
-      final long checkStart = System.currentTimeMillis();
+    final Map<SingularityTaskId, CheckLBState> checkLbStates = checkLbStates(lbCleanupTasks);
 
-      final CheckLBState checkLbState = checkLbState(taskId);
+    for (SingularityTaskId taskId : lbCleanupTasks) {
+      final CheckLBState checkLbState = checkLbStates.get(taskId);
 
-      LOG.debug("LB cleanup for task {} had state {} after {}", taskId, checkLbState, JavaUtils.duration(checkStart));
+      LOG.debug("LB cleanup for task {} had state {}", taskId, checkLbState);
 
       switch (checkLbState) {
         case WAITING:
@@ -517,6 +677,9 @@ public class SingularityCleaner {
       taskManager.deleteLBCleanupTask(taskId);
     }
 
+    lbCleanupCleaned.inc(cleanedTasks);
+    lbCleanupIgnored.inc(ignoredTasks);
+
     LOG.info("LB cleaned {} tasks ({} left, {} obsolete) in {}", cleanedTasks, lbCleanupTasks.size() - (ignoredTasks + cleanedTasks), ignoredTasks, JavaUtils.duration(start));
   }
 
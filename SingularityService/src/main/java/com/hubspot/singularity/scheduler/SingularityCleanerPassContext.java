@@ -0,0 +1,109 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.hubspot.singularity.SingularityDeploy;
+import com.hubspot.singularity.SingularityDeployKey;
+import com.hubspot.singularity.SingularityRequestDeployState;
+import com.hubspot.singularity.SingularityRequestWithState;
+import com.hubspot.singularity.SingularityTaskCleanup;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.data.DeployManager;
+import com.hubspot.singularity.data.RequestManager;
+import com.hubspot.singularity.data.TaskManager;
+
+/**
+ * What a task cleanup pass needs to decide which tasks to kill, read from ZooKeeper in bulk once per pass rather than once per
+ * task cleanup. Active tasks which are not themselves being cleaned are indexed by request and deploy.
+ */
+class SingularityCleanerPassContext {
+
+  private final Set<SingularityTaskId> activeTaskIds;
+  private final ListMultimap<SingularityDeployKey, SingularityTaskId> replacementTaskIds;
+  private final Map<String, SingularityRequestWithState> requests;
+  private final Map<String, SingularityRequestDeployState> requestDeployStates;
+  private final Map<SingularityDeployKey, SingularityDeploy> activeDeploys;
+
+  private SingularityCleanerPassContext(Set<SingularityTaskId> activeTaskIds, ListMultimap<SingularityDeployKey, SingularityTaskId> replacementTaskIds,
+      Map<String, SingularityRequestWithState> requests, Map<String, SingularityRequestDeployState> requestDeployStates, Map<SingularityDeployKey, SingularityDeploy> activeDeploys) {
+    this.activeTaskIds = activeTaskIds;
+    this.replacementTaskIds = replacementTaskIds;
+    this.requests = requests;
+    this.requestDeployStates = requestDeployStates;
+    this.activeDeploys = activeDeploys;
+  }
+
+  static SingularityCleanerPassContext load(Collection<SingularityTaskCleanup> cleanupTasks, TaskManager taskManager, RequestManager requestManager, DeployManager deployManager) {
+    final Set<SingularityTaskId> cleaningTaskIds = Sets.newHashSetWithExpectedSize(cleanupTasks.size());
+    final Set<String> requestIds = Sets.newHashSet();
+
+    for (SingularityTaskCleanup cleanupTask : cleanupTasks) {
+      cleaningTaskIds.add(cleanupTask.getTaskId());
+      requestIds.add(cleanupTask.getTaskId().getRequestId());
+    }
+
+    final Set<SingularityTaskId> activeTaskIds = Sets.newHashSet(taskManager.getActiveTaskIds());
+    final ListMultimap<SingularityDeployKey, SingularityTaskId> replacementTaskIds = ArrayListMultimap.create();
+
+    for (SingularityTaskId activeTaskId : activeTaskIds) {
+      if (requestIds.contains(activeTaskId.getRequestId()) && !cleaningTaskIds.contains(activeTaskId)) {
+        replacementTaskIds.put(new SingularityDeployKey(activeTaskId.getRequestId(), activeTaskId.getDeployId()), activeTaskId);
+      }
+    }
+
+    final Map<String, SingularityRequestWithState> requests = Maps.newHashMapWithExpectedSize(requestIds.size());
+
+    for (SingularityRequestWithState requestWithState : requestManager.getRequests(requestIds)) {
+      requests.put(requestWithState.getRequest().getId(), requestWithState);
+    }
+
+    final Map<String, SingularityRequestDeployState> requestDeployStates = deployManager.getRequestDeployStatesByRequestIds(requestIds);
+    final Set<SingularityDeployKey> activeDeployKeys = Sets.newHashSet();
+
+    for (SingularityTaskCleanup cleanupTask : cleanupTasks) {
+      final SingularityRequestDeployState requestDeployState = requestDeployStates.get(cleanupTask.getTaskId().getRequestId());
+
+      if (requestDeployState != null && requestDeployState.getActiveDeploy().isPresent()
+          && requestDeployState.getActiveDeploy().get().getDeployId().equals(cleanupTask.getTaskId().getDeployId())) {
+        activeDeployKeys.add(new SingularityDeployKey(cleanupTask.getTaskId().getRequestId(), cleanupTask.getTaskId().getDeployId()));
+      }
+    }
+
+    final Map<SingularityDeployKey, SingularityDeploy> activeDeploys = activeDeployKeys.isEmpty() ? Collections.<SingularityDeployKey, SingularityDeploy> emptyMap() : deployManager.getDeploysForKeys(activeDeployKeys);
+
+    return new SingularityCleanerPassContext(activeTaskIds, replacementTaskIds, requests, requestDeployStates, activeDeploys);
+  }
+
+  boolean isActiveTask(SingularityTaskId taskId) {
+    return activeTaskIds.contains(taskId);
+  }
+
+  Optional<SingularityRequestWithState> getRequest(String requestId) {
+    return Optional.fromNullable(requests.get(requestId));
+  }
+
+  Optional<SingularityRequestDeployState> getRequestDeployState(String requestId) {
+    return Optional.fromNullable(requestDeployStates.get(requestId));
+  }
+
+  Optional<SingularityDeploy> getActiveDeploy(String requestId, String deployId) {
+    return Optional.fromNullable(activeDeploys.get(new SingularityDeployKey(requestId, deployId)));
+  }
+
+  /**
+   * Active tasks of this request and deploy which are not in the cleanup queue.
+   */
+  List<SingularityTaskId> getReplacementTaskIds(String requestId, String deployId) {
+    return replacementTaskIds.get(new SingularityDeployKey(requestId, deployId));
+  }
+
+}
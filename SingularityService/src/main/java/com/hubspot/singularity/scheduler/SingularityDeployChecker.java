@@ -15,6 +15,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
 import com.google.inject.Inject;
 import com.hubspot.baragon.models.BaragonRequestState;
 import com.hubspot.mesos.JavaUtils;
@@ -45,6 +46,7 @@ import com.hubspot.singularity.data.DeployManager;
 import com.hubspot.singularity.data.RequestManager;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.hooks.LoadBalancerClient;
+import com.hubspot.singularity.hooks.SingularityArtifactPrefetcher;
 import com.hubspot.singularity.scheduler.SingularityDeployHealthHelper.DeployHealth;
 
 @Singleton
@@ -58,10 +60,13 @@ public class SingularityDeployChecker {
   private final RequestManager requestManager;
   private final SingularityConfiguration configuration;
   private final LoadBalancerClient lbClient;
+  private final SingularityArtifactPrefetcher artifactPrefetcher;
 
   @Inject
-  public SingularityDeployChecker(DeployManager deployManager, SingularityDeployHealthHelper deployHealthHelper, LoadBalancerClient lbClient, RequestManager requestManager, TaskManager taskManager, SingularityConfiguration configuration) {
+  public SingularityDeployChecker(DeployManager deployManager, SingularityDeployHealthHelper deployHealthHelper, LoadBalancerClient lbClient, RequestManager requestManager, TaskManager taskManager, SingularityConfiguration configuration,
+      SingularityArtifactPrefetcher artifactPrefetcher) {
     this.configuration = configuration;
+    this.artifactPrefetcher = artifactPrefetcher;
     this.lbClient = lbClient;
     this.deployHealthHelper = deployHealthHelper;
     this.requestManager = requestManager;
@@ -73,6 +78,14 @@ public class SingularityDeployChecker {
     final List<SingularityPendingDeploy> pendingDeploys = deployManager.getPendingDeploys();
     final List<SingularityDeployMarker> cancelDeploys = deployManager.getCancelDeploys();
 
+    final List<SingularityDeployMarker> pendingDeployMarkers = Lists.newArrayListWithCapacity(pendingDeploys.size());
+
+    for (SingularityPendingDeploy pendingDeploy : pendingDeploys) {
+      pendingDeployMarkers.add(pendingDeploy.getDeployMarker());
+    }
+
+    artifactPrefetcher.retainPendingDeploys(pendingDeployMarkers);
+
     if (pendingDeploys.isEmpty() && cancelDeploys.isEmpty()) {
       return 0;
     }
@@ -122,6 +135,10 @@ public class SingularityDeployChecker {
     final List<SingularityTaskId> requestTasks = taskManager.getTaskIdsForRequest(request.getId());
     final List<SingularityTaskId> activeTasks = taskManager.filterActiveTaskIds(requestTasks);
 
+    if (deploy.isPresent() && !cancelRequest.isPresent()) {
+      artifactPrefetcher.prefetchOnce(pendingDeployMarker, deploy.get(), activeTasks);
+    }
+
     final List<SingularityTaskId> inactiveDeployMatchingTasks = SingularityTaskId.matchingAndNotIn(requestTasks, pendingDeployMarker.getRequestId(), pendingDeployMarker.getDeployId(), activeTasks);
     final List<SingularityTaskId> deployMatchingTasks = Lists.newArrayList(Iterables.filter(activeTasks, SingularityTaskId.matchingDeploy(pendingDeployMarker.getDeployId())));
     final List<SingularityTaskId> allOtherMatchingTasks = Lists.newArrayList(Iterables.filter(activeTasks, Predicates.not(SingularityTaskId.matchingDeploy(pendingDeployMarker.getDeployId()))));
@@ -285,7 +302,7 @@ public class SingularityDeployChecker {
 
     updateLoadBalancerStateForTasks(deployTasks, LoadBalancerRequestType.ADD, new SingularityLoadBalancerUpdate(BaragonRequestState.UNKNOWN, lbRequestId, Optional.<String> absent(), System.currentTimeMillis(), LoadBalancerMethod.PRE_ENQUEUE, Optional.<String> absent()));
 
-    SingularityLoadBalancerUpdate enqueueResult = lbClient.enqueue(lbRequestId, request, deploy, getTasks(deployTasks, tasks), getTasks(allOtherTasks, tasks));
+    SingularityLoadBalancerUpdate enqueueResult = Futures.getUnchecked(lbClient.enqueue(lbRequestId, request, deploy, getTasks(deployTasks, tasks), getTasks(allOtherTasks, tasks)));
 
     DeployState deployState = interpretLoadBalancerState(enqueueResult, DeployState.WAITING);
 
@@ -320,7 +337,7 @@ public class SingularityDeployChecker {
   }
 
   private SingularityLoadBalancerUpdate sendCancelToLoadBalancer(SingularityPendingDeploy pendingDeploy) {
-    return lbClient.cancel(getLoadBalancerRequestId(pendingDeploy.getDeployMarker()));
+    return Futures.getUnchecked(lbClient.cancel(getLoadBalancerRequestId(pendingDeploy.getDeployMarker())));
   }
 
   private SingularityDeployResult cancelLoadBalancer(SingularityPendingDeploy pendingDeploy) {
@@ -367,7 +384,7 @@ public class SingularityDeployChecker {
     }
 
     if (shouldCheckLbState(pendingDeploy)) {
-      final SingularityLoadBalancerUpdate lbUpdate = lbClient.getState(getLoadBalancerRequestId(pendingDeploy.getDeployMarker()));
+      final SingularityLoadBalancerUpdate lbUpdate = Futures.getUnchecked(lbClient.getState(getLoadBalancerRequestId(pendingDeploy.getDeployMarker())));
 
       DeployState deployState = interpretLoadBalancerState(lbUpdate, pendingDeploy.getCurrentDeployState());
 
@@ -1,16 +1,15 @@
 package com.hubspot.singularity.scheduler;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
-import com.hubspot.singularity.SingularityAbort;
-import com.hubspot.singularity.SingularityAbort.AbortReason;
 import com.hubspot.singularity.SingularityTask;
 import com.hubspot.singularity.SingularityTaskHealthcheckResult;
 import com.hubspot.singularity.config.SingularityConfiguration;
-import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.Response;
@@ -22,20 +21,16 @@ public class SingularityHealthcheckAsyncHandler extends AsyncCompletionHandler<R
   private final long startTime;
   private final SingularityExceptionNotifier exceptionNotifier;
   private final SingularityHealthchecker healthchecker;
-  private final SingularityNewTaskChecker newTaskChecker;
   private final SingularityTask task;
-  private final TaskManager taskManager;
-  private final SingularityAbort abort;
   private final int maxHealthcheckResponseBodyBytes;
+  private final AtomicBoolean completed;
 
-  public SingularityHealthcheckAsyncHandler(SingularityExceptionNotifier exceptionNotifier, SingularityConfiguration configuration, SingularityHealthchecker healthchecker, SingularityNewTaskChecker newTaskChecker, TaskManager taskManager, SingularityAbort abort, SingularityTask task) {
+  public SingularityHealthcheckAsyncHandler(SingularityExceptionNotifier exceptionNotifier, SingularityConfiguration configuration, SingularityHealthchecker healthchecker, SingularityTask task) {
     this.exceptionNotifier = exceptionNotifier;
-    this.taskManager = taskManager;
-    this.newTaskChecker = newTaskChecker;
     this.healthchecker = healthchecker;
-    this.abort = abort;
     this.task = task;
     this.maxHealthcheckResponseBodyBytes = configuration.getMaxHealthcheckResponseBodyBytes();
+    this.completed = new AtomicBoolean();
 
     startTime = System.currentTimeMillis();
   }
@@ -61,24 +56,18 @@ public class SingularityHealthcheckAsyncHandler extends AsyncCompletionHandler<R
   }
 
   public void saveResult(Optional<Integer> statusCode, Optional<String> responseBody, Optional<String> errorMessage) {
+    if (!completed.compareAndSet(false, true)) {
+      LOG.trace("Already saved a healthcheck result for task {}", task.getTaskId());
+      return;
+    }
+
     try {
       SingularityTaskHealthcheckResult result = new SingularityTaskHealthcheckResult(statusCode, Optional.of(System.currentTimeMillis() - startTime), startTime, responseBody,
           errorMessage, task.getTaskId());
 
       LOG.trace("Saving healthcheck result {}", result);
 
-      taskManager.saveHealthcheckResult(result);
-
-      if (result.isFailed()) {
-        if (!taskManager.isActiveTask(task.getTaskId().getId())) {
-          LOG.trace("Task {} is not active, not re-enqueueing healthcheck", task.getTaskId());
-          return;
-        }
-
-        healthchecker.enqueueHealthcheck(task);
-      } else {
-        newTaskChecker.runNewTaskCheckImmediately(task);
-      }
+      healthchecker.onHealthcheckCompleted(task, result);
     } catch (Throwable t) {
       LOG.error("Caught throwable while saving health check result for {}, will re-enqueue", task.getTaskId(), t);
       exceptionNotifier.notify(t, ImmutableMap.of("taskId", task.getTaskId().toString()));
@@ -87,5 +76,4 @@ public class SingularityHealthcheckAsyncHandler extends AsyncCompletionHandler<R
     }
   }
 
-
 }
@@ -1,28 +1,36 @@
 package com.hubspot.singularity.scheduler;
 
-import java.util.Map;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Singleton;
 
-import com.hubspot.singularity.SingularityTaskHealthcheckResult;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.hubspot.singularity.SingularityAbort;
 import com.hubspot.singularity.SingularityMainModule;
+import com.hubspot.singularity.SingularityManagedScheduledExecutorServiceFactory;
 import com.hubspot.singularity.SingularityPendingDeploy;
 import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHealthcheckResult;
 import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.TaskManager;
+import com.hubspot.singularity.scheduler.SingularityCheckWheel.DueChecksHandler;
 import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.PerRequestConfig;
@@ -40,16 +48,23 @@ public class SingularityHealthchecker {
   private final SingularityAbort abort;
   private final SingularityNewTaskChecker newTaskChecker;
 
-  private final Map<String, ScheduledFuture<?>> taskIdToHealthcheck;
+  private final SingularityCheckWheel<SingularityTask> healthchecks;
+  private final Semaphore requestPermits;
+
+  private final Queue<CompletedHealthcheck> completedHealthchecks;
+  private final AtomicBoolean flushScheduled;
 
   private final ScheduledExecutorService executorService;
 
   private final SingularityExceptionNotifier exceptionNotifier;
 
+  private final Meter deferredMeter;
+  private final Histogram resultsPerFlushHistogram;
+
   @Inject
   public SingularityHealthchecker(@Named(SingularityMainModule.HEALTHCHECK_THREADPOOL_NAME) ScheduledExecutorService executorService,
-      AsyncHttpClient http, SingularityConfiguration configuration, SingularityNewTaskChecker newTaskChecker,
-      TaskManager taskManager, SingularityAbort abort, SingularityExceptionNotifier exceptionNotifier) {
+      SingularityManagedScheduledExecutorServiceFactory executorServiceFactory, AsyncHttpClient http, SingularityConfiguration configuration,
+      SingularityNewTaskChecker newTaskChecker, TaskManager taskManager, SingularityAbort abort, SingularityExceptionNotifier exceptionNotifier, MetricRegistry metricRegistry) {
     this.http = http;
     this.configuration = configuration;
     this.newTaskChecker = newTaskChecker;
@@ -57,20 +72,29 @@ public class SingularityHealthchecker {
     this.abort = abort;
     this.exceptionNotifier = exceptionNotifier;
 
-    this.taskIdToHealthcheck = Maps.newConcurrentMap();
+    this.requestPermits = new Semaphore(Math.max(configuration.getHealthcheckMaxConcurrentRequests(), 1));
+    this.completedHealthchecks = new ConcurrentLinkedQueue<>();
+    this.flushScheduled = new AtomicBoolean();
 
     this.executorService = executorService;
-  }
 
-  public void enqueueHealthcheck(SingularityTask task) {
-    ScheduledFuture<?> future = enqueueHealthcheckWithDelay(task, task.getTaskRequest().getDeploy().getHealthcheckIntervalSeconds().or(configuration.getHealthcheckIntervalSeconds()));
+    this.deferredMeter = metricRegistry.meter(MetricRegistry.name(SingularityHealthchecker.class, "deferred"));
+    this.resultsPerFlushHistogram = metricRegistry.histogram(MetricRegistry.name(SingularityHealthchecker.class, "resultsPerFlush"));
 
-    ScheduledFuture<?> existing = taskIdToHealthcheck.put(task.getTaskId().getId(), future);
+    this.healthchecks = new SingularityCheckWheel<>("healthchecks", configuration.getCheckWheelTickMillis(), metricRegistry, new DueChecksHandler<SingularityTask>() {
 
-    if (existing != null) {
-      boolean canceledExisting = existing.cancel(false);
-      LOG.warn("Found existing overlapping healthcheck for task {} - cancel success: {}", task.getTaskId(), canceledExisting);
-    }
+      @Override
+      public void handle(List<SingularityTask> dueTasks) {
+        submitHealthchecks(dueTasks);
+      }
+
+    });
+
+    this.healthchecks.start(executorServiceFactory.get("healthcheck-wheel"));
+  }
+
+  public void enqueueHealthcheck(SingularityTask task) {
+    enqueueHealthcheckWithDelay(task, TimeUnit.SECONDS.toMillis(task.getTaskRequest().getDeploy().getHealthcheckIntervalSeconds().or(configuration.getHealthcheckIntervalSeconds())));
   }
 
   public boolean enqueueHealthcheck(SingularityTask task, Optional<SingularityPendingDeploy> pendingDeploy) {
@@ -84,37 +108,120 @@ public class SingularityHealthchecker {
   }
 
   public void cancelHealthcheck(String taskId) {
-    ScheduledFuture<?> future = taskIdToHealthcheck.remove(taskId);
-
-    if (future == null) {
-      return;
-    }
-
-    boolean canceled = future.cancel(false);
+    boolean canceled = healthchecks.cancel(taskId);
 
     LOG.trace("Canceling healthcheck ({}) for task {}", canceled, taskId);
   }
 
-  private ScheduledFuture<?> enqueueHealthcheckWithDelay(final SingularityTask task, long delaySeconds) {
-    LOG.trace("En-queuing a healthcheck for task {} with delay {}", task.getTaskId(), DurationFormatUtils.formatDurationHMS(TimeUnit.SECONDS.toMillis(delaySeconds)));
+  private void enqueueHealthcheckWithDelay(SingularityTask task, long delayMillis) {
+    LOG.trace("En-queuing a healthcheck for task {} with delay {}", task.getTaskId(), DurationFormatUtils.formatDurationHMS(delayMillis));
+
+    if (healthchecks.schedule(task.getTaskId().getId(), task, delayMillis)) {
+      LOG.warn("Found existing overlapping healthcheck for task {} - replaced it", task.getTaskId());
+    }
+  }
 
-    return executorService.schedule(new Runnable() {
+  private void submitHealthchecks(final List<SingularityTask> dueTasks) {
+    executorService.submit(new Runnable() {
 
       @Override
       public void run() {
-        taskIdToHealthcheck.remove(task.getTaskId().getId());
+        for (SingularityTask task : dueTasks) {
+          if (!requestPermits.tryAcquire()) {
+            LOG.trace("Already waiting on {} healthchecks, deferring healthcheck for task {}", configuration.getHealthcheckMaxConcurrentRequests(), task.getTaskId());
+            deferredMeter.mark();
+            enqueueHealthcheckWithDelay(task, configuration.getCheckWheelTickMillis());
+            continue;
+          }
+
+          try {
+            asyncHealthcheck(task);
+          } catch (Throwable t) {
+            requestPermits.release();
+
+            LOG.error("Uncaught throwable in async healthcheck", t);
+            exceptionNotifier.notify(t, ImmutableMap.of("taskId", task.getTaskId().toString()));
+
+            reEnqueueOrAbort(task);
+          }
+        }
+      }
+
+    });
+  }
+
+  /**
+   * Called once for every healthcheck which was started. Results are saved in batches, so whichever thread completes a healthcheck
+   * while no save is scheduled schedules one on the healthcheck executor and every result which comes in until it runs goes with it.
+   */
+  void onHealthcheckCompleted(SingularityTask task, SingularityTaskHealthcheckResult result) {
+    requestPermits.release();
+
+    completedHealthchecks.add(new CompletedHealthcheck(task, result));
+
+    if (flushScheduled.compareAndSet(false, true)) {
+      executorService.submit(new Runnable() {
 
-        try {
-          asyncHealthcheck(task);
-        } catch (Throwable t) {
-          LOG.error("Uncaught throwable in async healthcheck", t);
-          exceptionNotifier.notify(t, ImmutableMap.of("taskId", task.getTaskId().toString()));
+        @Override
+        public void run() {
+          flushScheduled.set(false);
 
-          reEnqueueOrAbort(task);
+          saveHealthcheckResults();
         }
+
+      });
+    }
+  }
+
+  private void saveHealthcheckResults() {
+    final List<CompletedHealthcheck> completed = Lists.newArrayList();
+    final List<SingularityTaskHealthcheckResult> results = Lists.newArrayList();
+
+    CompletedHealthcheck healthcheck;
+
+    while ((healthcheck = completedHealthchecks.poll()) != null) {
+      completed.add(healthcheck);
+      results.add(healthcheck.result);
+    }
+
+    if (completed.isEmpty()) {
+      return;
+    }
+
+    resultsPerFlushHistogram.update(completed.size());
+
+    try {
+      taskManager.saveHealthcheckResults(results);
+    } catch (Throwable t) {
+      LOG.error("Caught throwable while saving {} health check results, will re-enqueue", completed.size(), t);
+      exceptionNotifier.notify(t, ImmutableMap.of("healthchecks", Integer.toString(completed.size())));
+
+      for (CompletedHealthcheck failedToSave : completed) {
+        reEnqueueOrAbort(failedToSave.task);
       }
 
-    }, delaySeconds, TimeUnit.SECONDS);
+      return;
+    }
+
+    for (CompletedHealthcheck saved : completed) {
+      try {
+        if (saved.result.isFailed()) {
+          if (!taskManager.isActiveTask(saved.task.getTaskId().getId())) {
+            LOG.trace("Task {} is not active, not re-enqueueing healthcheck", saved.task.getTaskId());
+            continue;
+          }
+
+          enqueueHealthcheck(saved.task);
+        } else {
+          newTaskChecker.runNewTaskCheckImmediately(saved.task);
+        }
+      } catch (Throwable t) {
+        LOG.error("Caught throwable while handling health check result for {}, will re-enqueue", saved.task.getTaskId(), t);
+        exceptionNotifier.notify(t, ImmutableMap.of("taskId", saved.task.getTaskId().toString()));
+
+        reEnqueueOrAbort(saved.task);
+      }
+    }
   }
 
   public void reEnqueueOrAbort(SingularityTask task) {
@@ -175,7 +282,7 @@ public class SingularityHealthchecker {
   }
 
   private void asyncHealthcheck(final SingularityTask task) {
-    final SingularityHealthcheckAsyncHandler handler = new SingularityHealthcheckAsyncHandler(exceptionNotifier, configuration, this, newTaskChecker, taskManager, abort, task);
+    final SingularityHealthcheckAsyncHandler handler = new SingularityHealthcheckAsyncHandler(exceptionNotifier, configuration, this, task);
     final Optional<String> uri = getHealthcheckUri(task);
 
     if (!uri.isPresent()) {
@@ -204,4 +311,16 @@ public class SingularityHealthchecker {
     }
   }
 
+  private static class CompletedHealthcheck {
+
+    private final SingularityTask task;
+    private final SingularityTaskHealthcheckResult result;
+
+    CompletedHealthcheck(SingularityTask task, SingularityTaskHealthcheckResult result) {
+      this.task = task;
+      this.result = result;
+    }
+
+  }
+
 }
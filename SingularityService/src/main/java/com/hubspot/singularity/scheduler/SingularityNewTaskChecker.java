@@ -1,10 +1,9 @@
 package com.hubspot.singularity.scheduler;
 
 import java.util.Collections;
-import java.util.Map;
-import java.util.concurrent.Future;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
@@ -13,9 +12,14 @@ import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.hubspot.baragon.models.BaragonRequestState;
@@ -27,6 +31,7 @@ import com.hubspot.singularity.SingularityAbort.AbortReason;
 import com.hubspot.singularity.SingularityLoadBalancerUpdate;
 import com.hubspot.singularity.SingularityLoadBalancerUpdate.LoadBalancerMethod;
 import com.hubspot.singularity.SingularityMainModule;
+import com.hubspot.singularity.SingularityManagedScheduledExecutorServiceFactory;
 import com.hubspot.singularity.SingularityTask;
 import com.hubspot.singularity.SingularityTaskCleanup;
 import com.hubspot.singularity.SingularityTaskCleanup.TaskCleanupType;
@@ -36,6 +41,7 @@ import com.hubspot.singularity.SingularityTaskHistoryUpdate.SimplifiedTaskState;
 import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.TaskManager;
 import com.hubspot.singularity.hooks.LoadBalancerClient;
+import com.hubspot.singularity.scheduler.SingularityCheckWheel.DueChecksHandler;
 import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
 
 /**
@@ -53,7 +59,8 @@ public class SingularityNewTaskChecker {
   private final LoadBalancerClient lbClient;
   private final long killAfterUnhealthyMillis;
 
-  private final Map<String, Future<?>> taskIdToCheck;
+  private final SingularityCheckWheel<SingularityTask> newTaskChecks;
+  private final Semaphore lbRequestPermits;
 
   private final ScheduledExecutorService executorService;
 
@@ -62,18 +69,30 @@ public class SingularityNewTaskChecker {
 
   @Inject
   public SingularityNewTaskChecker(@Named(SingularityMainModule.NEW_TASK_THREADPOOL_NAME) ScheduledExecutorService executorService,
-      SingularityConfiguration configuration, LoadBalancerClient lbClient, TaskManager taskManager, SingularityExceptionNotifier exceptionNotifier, SingularityAbort abort) {
+      SingularityManagedScheduledExecutorServiceFactory executorServiceFactory, SingularityConfiguration configuration, LoadBalancerClient lbClient, TaskManager taskManager,
+      SingularityExceptionNotifier exceptionNotifier, SingularityAbort abort, MetricRegistry metricRegistry) {
     this.configuration = configuration;
     this.taskManager = taskManager;
     this.lbClient = lbClient;
     this.abort = abort;
 
-    this.taskIdToCheck = Maps.newConcurrentMap();
+    this.lbRequestPermits = new Semaphore(Math.max(configuration.getLoadBalancerMaxConcurrentRequests(), 1));
     this.killAfterUnhealthyMillis = TimeUnit.SECONDS.toMillis(configuration.getKillAfterTasksDoNotRunDefaultSeconds());
 
     this.executorService = executorService;
 
     this.exceptionNotifier = exceptionNotifier;
+
+    this.newTaskChecks = new SingularityCheckWheel<>("newTaskChecks", configuration.getCheckWheelTickMillis(), metricRegistry, new DueChecksHandler<SingularityTask>() {
+
+      @Override
+      public void handle(List<SingularityTask> dueTasks) {
+        submitTaskChecks(dueTasks);
+      }
+
+    });
+
+    this.newTaskChecks.start(executorServiceFactory.get("new-task-check-wheel"));
   }
 
   private boolean hasHealthcheck(SingularityTask task) {
@@ -96,7 +115,7 @@ public class SingularityNewTaskChecker {
 
   // should only be called on tasks that are new and not part of a pending deploy.
   public void enqueueNewTaskCheck(SingularityTask task) {
-    if (taskIdToCheck.containsKey(task.getTaskId().getId())) {
+    if (newTaskChecks.isScheduled(task.getTaskId().getId())) {
       LOG.trace("Already had a newTaskCheck for task {}", task.getTaskId());
       return;
     }
@@ -113,58 +132,48 @@ public class SingularityNewTaskChecker {
 
     CancelState cancelState = cancelNewTaskCheck(taskId);
 
-    if (cancelState == CancelState.NOT_CANCELED) {
-      LOG.debug("Task {} check was already done, not running again", taskId);
-      return;
-    } else if (cancelState == CancelState.NOT_PRESENT) {
-      LOG.trace("Task {} check was not present, not running immediately as it is assumed to be part of an active deploy", taskId);
+    if (cancelState == CancelState.NOT_PRESENT) {
+      LOG.trace("Task {} check was not present (already done, or assumed to be part of an active deploy), not running immediately", taskId);
       return;
     }
 
-    Future<?> future = executorService.submit(getTaskCheck(task));
-
-    taskIdToCheck.put(taskId, future);
+    submitTaskChecks(Collections.singletonList(task));
   }
 
   public static enum CancelState {
-    NOT_PRESENT, CANCELED, NOT_CANCELED;
+    NOT_PRESENT, CANCELED;
   }
 
   public CancelState cancelNewTaskCheck(String taskId) {
-    Future<?> future = taskIdToCheck.remove(taskId);
-
-    if (future == null) {
-      return CancelState.NOT_PRESENT;
-    }
-
-    boolean canceled = future.cancel(false);
+    boolean canceled = newTaskChecks.cancel(taskId);
 
     LOG.trace("Canceling new task check ({}) for task {}", canceled, taskId);
 
-    if (canceled) {
-      return CancelState.CANCELED;
-    } else {
-      return CancelState.NOT_CANCELED;
-    }
+    return canceled ? CancelState.CANCELED : CancelState.NOT_PRESENT;
   }
 
-  private Runnable getTaskCheck(final SingularityTask task) {
-    return new Runnable() {
+  private void submitTaskChecks(final List<SingularityTask> tasks) {
+    executorService.submit(new Runnable() {
 
       @Override
       public void run() {
-        taskIdToCheck.remove(task.getTaskId().getId());
-
-        try {
-          checkTask(task);
-        } catch (Throwable t) {
-          LOG.error("Uncaught throwable in task check for task {}, re-enqueing", task, t);
-          exceptionNotifier.notify(t, ImmutableMap.of("taskId", task.getTaskId().toString()));
-
-          reEnqueueCheckOrAbort(task);
+        for (SingularityTask task : tasks) {
+          try {
+            checkTask(task);
+          } catch (Throwable t) {
+            onUncaughtThrowable(task, t);
+          }
         }
       }
-    };
+
+    });
+  }
+
+  private void onUncaughtThrowable(SingularityTask task, Throwable t) {
+    LOG.error("Uncaught throwable in task check for task {}, re-enqueing", task, t);
+    exceptionNotifier.notify(t, ImmutableMap.of("taskId", task.getTaskId().toString()));
+
+    reEnqueueCheckOrAbort(task);
   }
 
   private void reEnqueueCheckOrAbort(SingularityTask task) {
@@ -184,22 +193,39 @@ public class SingularityNewTaskChecker {
   private void enqueueCheckWithDelay(final SingularityTask task, long delaySeconds) {
     LOG.trace("Enqueuing a new task check for task {} with delay {}", task.getTaskId(), DurationFormatUtils.formatDurationHMS(TimeUnit.SECONDS.toMillis(delaySeconds)));
 
-    ScheduledFuture<?> future = executorService.schedule(getTaskCheck(task), delaySeconds, TimeUnit.SECONDS);
-
-    taskIdToCheck.put(task.getTaskId().getId(), future);
+    newTaskChecks.schedule(task.getTaskId().getId(), task, TimeUnit.SECONDS.toMillis(delaySeconds));
   }
 
   private enum CheckTaskState {
     UNHEALTHY_KILL_TASK, OBSOLETE, CHECK_IF_OVERDUE, LB_IN_PROGRESS_CHECK_AGAIN, HEALTHY;
   }
 
-  private void checkTask(SingularityTask task) {
+  // the load balancer is checked without holding a thread, the check finishes on the executor once it has responded
+  private void checkTask(final SingularityTask task) {
     final long start = System.currentTimeMillis();
 
-    final CheckTaskState state = getTaskState(task);
+    Futures.addCallback(getTaskState(task), new FutureCallback<CheckTaskState>() {
+
+      @Override
+      public void onSuccess(CheckTaskState state) {
+        try {
+          LOG.debug("Got task state {} for task {} in {}", state, task.getTaskId(), JavaUtils.duration(start));
+
+          handleTaskState(task, state);
+        } catch (Throwable t) {
+          onUncaughtThrowable(task, t);
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        onUncaughtThrowable(task, t);
+      }
 
-    LOG.debug("Got task state {} for task {} in {}", state, task.getTaskId(), JavaUtils.duration(start));
+    }, executorService);
+  }
 
+  private void handleTaskState(SingularityTask task, CheckTaskState state) {
     switch (state) {
       case CHECK_IF_OVERDUE:
         if (isOverdue(task)) {
@@ -222,19 +248,33 @@ public class SingularityNewTaskChecker {
     }
   }
 
-  private CheckTaskState getTaskState(SingularityTask task) {
+  private ListenableFuture<CheckTaskState> getTaskState(SingularityTask task) {
+    final Optional<CheckTaskState> stateBeforeLoadBalancer = getTaskStateBeforeLoadBalancer(task);
+
+    if (stateBeforeLoadBalancer.isPresent()) {
+      return Futures.immediateFuture(stateBeforeLoadBalancer.get());
+    }
+
+    if (!task.getTaskRequest().getRequest().isLoadBalanced()) {
+      return Futures.immediateFuture(CheckTaskState.HEALTHY);
+    }
+
+    return getLoadBalancerTaskState(task);
+  }
+
+  private Optional<CheckTaskState> getTaskStateBeforeLoadBalancer(SingularityTask task) {
     if (!taskManager.isActiveTask(task.getTaskId().getId())) {
-      return CheckTaskState.OBSOLETE;
+      return Optional.of(CheckTaskState.OBSOLETE);
     }
 
     SimplifiedTaskState taskState = SingularityTaskHistoryUpdate.getCurrentState(taskManager.getTaskHistoryUpdates(task.getTaskId()));
 
     switch (taskState) {
       case DONE:
-        return CheckTaskState.OBSOLETE;
+        return Optional.of(CheckTaskState.OBSOLETE);
       case WAITING:
       case UNKNOWN:
-        return CheckTaskState.CHECK_IF_OVERDUE;
+        return Optional.of(CheckTaskState.CHECK_IF_OVERDUE);
       case RUNNING:
         break;
     }
@@ -243,48 +283,72 @@ public class SingularityNewTaskChecker {
       Optional<SingularityTaskHealthcheckResult> healthCheck = taskManager.getLastHealthcheck(task.getTaskId());
 
       if (!healthCheck.isPresent()) {
-        return CheckTaskState.CHECK_IF_OVERDUE;
+        return Optional.of(CheckTaskState.CHECK_IF_OVERDUE);
       }
 
       if (healthCheck.get().isFailed()) {
-        return CheckTaskState.UNHEALTHY_KILL_TASK;
+        return Optional.of(CheckTaskState.UNHEALTHY_KILL_TASK);
       }
     }
 
     // task is running + has succeeded healthcheck if available.
-    if (!task.getTaskRequest().getRequest().isLoadBalanced()) {
-      return CheckTaskState.HEALTHY;
-    }
+    return Optional.absent();
+  }
 
+  private ListenableFuture<CheckTaskState> getLoadBalancerTaskState(final SingularityTask task) {
     Optional<SingularityLoadBalancerUpdate> lbUpdate = taskManager.getLoadBalancerState(task.getTaskId(), LoadBalancerRequestType.ADD);
-    SingularityLoadBalancerUpdate newLbUpdate = null;
 
     final LoadBalancerRequestId loadBalancerRequestId = new LoadBalancerRequestId(task.getTaskId().getId(), LoadBalancerRequestType.ADD, Optional.<Integer> absent());
+    final boolean shouldEnqueue = !lbUpdate.isPresent() || lbUpdate.get().getLoadBalancerState() == BaragonRequestState.UNKNOWN;
 
-    if (!lbUpdate.isPresent() || lbUpdate.get().getLoadBalancerState() == BaragonRequestState.UNKNOWN) {
-      taskManager.saveLoadBalancerState(task.getTaskId(), LoadBalancerRequestType.ADD,
-          new SingularityLoadBalancerUpdate(BaragonRequestState.UNKNOWN, loadBalancerRequestId, Optional.<String> absent(), System.currentTimeMillis(), LoadBalancerMethod.PRE_ENQUEUE, Optional.<String> absent()));
-
-      newLbUpdate = lbClient.enqueue(loadBalancerRequestId, task.getTaskRequest().getRequest(), task.getTaskRequest().getDeploy(), Collections.singletonList(task), Collections.<SingularityTask> emptyList());
-    } else {
+    if (!shouldEnqueue) {
       Optional<CheckTaskState> maybeCheckTaskState = checkLbState(lbUpdate.get().getLoadBalancerState());
 
       if (maybeCheckTaskState.isPresent()) {
-        return maybeCheckTaskState.get();
+        return Futures.immediateFuture(maybeCheckTaskState.get());
       }
+    }
 
-      newLbUpdate = lbClient.getState(loadBalancerRequestId);
+    if (!lbRequestPermits.tryAcquire()) {
+      LOG.debug("Already waiting on {} load balancer requests, will check task {} again later", configuration.getLoadBalancerMaxConcurrentRequests(), task.getTaskId());
+      return Futures.immediateFuture(CheckTaskState.LB_IN_PROGRESS_CHECK_AGAIN);
     }
 
-    taskManager.saveLoadBalancerState(task.getTaskId(), LoadBalancerRequestType.ADD, newLbUpdate);
+    final ListenableFuture<SingularityLoadBalancerUpdate> newLbUpdate;
 
-    Optional<CheckTaskState> maybeCheckTaskState = checkLbState(newLbUpdate.getLoadBalancerState());
+    try {
+      if (shouldEnqueue) {
+        taskManager.saveLoadBalancerState(task.getTaskId(), LoadBalancerRequestType.ADD,
+            new SingularityLoadBalancerUpdate(BaragonRequestState.UNKNOWN, loadBalancerRequestId, Optional.<String> absent(), System.currentTimeMillis(), LoadBalancerMethod.PRE_ENQUEUE, Optional.<String> absent()));
 
-    if (maybeCheckTaskState.isPresent()) {
-      return maybeCheckTaskState.get();
+        newLbUpdate = lbClient.enqueue(loadBalancerRequestId, task.getTaskRequest().getRequest(), task.getTaskRequest().getDeploy(), Collections.singletonList(task), Collections.<SingularityTask> emptyList());
+      } else {
+        newLbUpdate = lbClient.getState(loadBalancerRequestId);
+      }
+    } catch (RuntimeException e) {
+      lbRequestPermits.release();
+      throw e;
     }
 
-    return CheckTaskState.LB_IN_PROGRESS_CHECK_AGAIN;
+    newLbUpdate.addListener(new Runnable() {
+
+      @Override
+      public void run() {
+        lbRequestPermits.release();
+      }
+
+    }, MoreExecutors.sameThreadExecutor());
+
+    return Futures.transform(newLbUpdate, new Function<SingularityLoadBalancerUpdate, CheckTaskState>() {
+
+      @Override
+      public CheckTaskState apply(SingularityLoadBalancerUpdate newLbUpdate) {
+        taskManager.saveLoadBalancerState(task.getTaskId(), LoadBalancerRequestType.ADD, newLbUpdate);
+
+        return checkLbState(newLbUpdate.getLoadBalancerState()).or(CheckTaskState.LB_IN_PROGRESS_CHECK_AGAIN);
+      }
+
+    }, executorService);
   }
 
   private Optional<CheckTaskState> checkLbState(BaragonRequestState lbState) {
@@ -468,7 +468,7 @@ public class SingularityScheduler {
 
     if (wasActive) {
       taskManager.deleteActiveTask(taskId.getId());
-      stateCache.getActiveTaskIds().remove(taskId);
+      stateCache.removeActiveTaskId(taskId);
     }
 
     taskManager.createLBCleanupTask(taskId);
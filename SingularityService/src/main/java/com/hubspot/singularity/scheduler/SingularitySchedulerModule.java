@@ -28,6 +28,8 @@ public class SingularitySchedulerModule extends AbstractModule {
     bind(SingularityNewTaskChecker.class).in(Scopes.SINGLETON);
     bind(SingularityTaskReconciliation.class).in(Scopes.SINGLETON);
     bind(SingularitySchedulerPriority.class).in(Scopes.SINGLETON);
+    bind(SingularityTaskMirrorPoller.class).in(Scopes.SINGLETON);
+    bind(SingularityStatePoller.class).in(Scopes.SINGLETON);
 
     bind(SingularitySchedulerStateCache.class);
   }
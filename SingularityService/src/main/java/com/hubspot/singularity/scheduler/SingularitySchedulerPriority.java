@@ -4,69 +4,260 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Longs;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.hubspot.mesos.JavaUtils;
+import com.hubspot.singularity.SingularityRequest;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.SingularityTaskRequest;
-import com.hubspot.singularity.data.RequestManager;
+import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.data.TaskManager;
 
+/**
+ * Orders due tasks by a weighted fair share: each request's taskPriorityLevel divided by one plus the number of tasks it has
+ * launched recently, where every launch counts for less as it ages (halving every schedulerPriorityHalfLifeSeconds). Requests
+ * which come out even go in order of when they last launched a task, so a request which has never launched goes first.
+ *
+ * Launches are indexed per request in memory - seeded from every known task id in one pass when the scheduler starts up and
+ * updated as tasks are launched - so sorting never touches ZooKeeper. A request is dropped from the index when it is deleted, or
+ * once it has gone without launching or being sorted for long enough that its launches no longer count (at least a day), which
+ * covers requests that finish.
+ */
 @Singleton
 public class SingularitySchedulerPriority {
 
-  private final TaskManager taskManager;
-  private final Map<String, Long> mostRecentTaskStartPerRequest;
-  private final Comparator<SingularityTaskRequest> comparator;
+  private static final Logger LOG = LoggerFactory.getLogger(SingularitySchedulerPriority.class);
 
-  private static final Comparator<SingularityTaskId> TASK_ID_STARTED_AT_COMPARATOR = new Comparator<SingularityTaskId>() {
+  // after this many half-lives a launch counts for less than 1/65536 of a new one
+  private static final int PRUNE_AFTER_HALF_LIVES = 16;
 
-    @Override
-    public int compare(SingularityTaskId o1, SingularityTaskId o2) {
-      return Longs.compare(o2.getStartedAt(), o1.getStartedAt());
-    }
+  private final TaskManager taskManager;
+  private final double defaultTaskPriorityLevel;
+  private final long halfLifeMillis;
+  private final long pruneAfterMillis;
+
+  private final ConcurrentMap<String, RequestLaunches> launchesPerRequest;
 
-  };
+  private volatile boolean seeded;
+  private volatile long lastPrunedAt;
 
   @Inject
-  public SingularitySchedulerPriority(TaskManager taskManager, RequestManager requestManager) {
+  public SingularitySchedulerPriority(TaskManager taskManager, SingularityConfiguration configuration) {
     this.taskManager = taskManager;
-    this.mostRecentTaskStartPerRequest = Maps.newHashMap();
-    this.comparator = new Comparator<SingularityTaskRequest>() {
+    this.defaultTaskPriorityLevel = configuration.getDefaultTaskPriorityLevel();
+    this.halfLifeMillis = TimeUnit.SECONDS.toMillis(configuration.getSchedulerPriorityHalfLifeSeconds());
+    this.pruneAfterMillis = Math.max(halfLifeMillis * PRUNE_AFTER_HALF_LIVES, TimeUnit.DAYS.toMillis(1));
+    this.launchesPerRequest = new ConcurrentHashMap<>();
+  }
 
-      @Override
-      public int compare(SingularityTaskRequest o1, SingularityTaskRequest o2) {
-        final Long request1LastStartedAt = mostRecentTaskStartPerRequest.get(o1.getRequest().getId());
-        final Long request2LastStartedAt = mostRecentTaskStartPerRequest.get(o2.getRequest().getId());
+  /**
+   * Indexes the start time of every task id still in ZooKeeper, replacing whatever was indexed before.
+   */
+  public synchronized void seed() {
+    final long start = System.currentTimeMillis();
 
-        return Longs.compare(request1LastStartedAt, request2LastStartedAt);
-      }
-    };
+    final List<SingularityTaskId> taskIds = taskManager.getAllTaskIds();
+
+    launchesPerRequest.clear();
+
+    for (SingularityTaskId taskId : taskIds) {
+      notifyTaskLaunched(taskId);
+    }
+
+    seeded = true;
+
+    LOG.info("Indexed {} task launches for {} requests in {}", taskIds.size(), launchesPerRequest.size(), JavaUtils.duration(start));
   }
 
   public void sortTaskRequestsInPriorityOrder(final List<SingularityTaskRequest> taskRequests) {
+    sortTaskRequestsInPriorityOrder(taskRequests, System.currentTimeMillis());
+  }
+
+  void sortTaskRequestsInPriorityOrder(final List<SingularityTaskRequest> taskRequests, long now) {
+    if (!seeded) {
+      // only when this instance hasn't gone through scheduler startup
+      seed();
+    }
+
+    final Map<String, PriorityKey> priorityKeys = Maps.newHashMapWithExpectedSize(taskRequests.size());
+
     for (SingularityTaskRequest taskRequest : taskRequests) {
-      if (!mostRecentTaskStartPerRequest.containsKey(taskRequest.getRequest().getId())) {
-        List<SingularityTaskId> taskIds = Lists.newArrayList(taskManager.getTaskIdsForRequest(taskRequest.getRequest().getId()));
-
-        if (!taskIds.isEmpty()) {
-          Collections.sort(taskIds, TASK_ID_STARTED_AT_COMPARATOR);
-          mostRecentTaskStartPerRequest.put(taskRequest.getRequest().getId(), JavaUtils.getFirst(taskIds).get().getStartedAt());
-        } else {
-          mostRecentTaskStartPerRequest.put(taskRequest.getRequest().getId(), 0L);
-        }
+      final SingularityRequest request = taskRequest.getRequest();
+
+      if (!priorityKeys.containsKey(request.getId())) {
+        priorityKeys.put(request.getId(), getPriorityKey(request, now));
       }
     }
 
-    Collections.sort(taskRequests, comparator);
+    Collections.sort(taskRequests, new Comparator<SingularityTaskRequest>() {
+
+      @Override
+      public int compare(SingularityTaskRequest o1, SingularityTaskRequest o2) {
+        return priorityKeys.get(o1.getRequest().getId()).compareTo(priorityKeys.get(o2.getRequest().getId()));
+      }
+
+    });
+
+    // after the keys, so that every request just sorted counts as used and none of them are pruned
+    if (now - lastPrunedAt > pruneAfterMillis / PRUNE_AFTER_HALF_LIVES) {
+      prune(now);
+    }
   }
 
   public void notifyTaskLaunched(SingularityTaskId taskId) {
-    mostRecentTaskStartPerRequest.put(taskId.getRequestId(), taskId.getStartedAt());
+    while (true) {
+      RequestLaunches launches = launchesPerRequest.get(taskId.getRequestId());
+
+      if (launches == null) {
+        final RequestLaunches newLaunches = new RequestLaunches();
+
+        launches = launchesPerRequest.putIfAbsent(taskId.getRequestId(), newLaunches);
+
+        if (launches == null) {
+          launches = newLaunches;
+        }
+      }
+
+      // retry if these launches were pruned in the meantime, so the launch isn't recorded against an entry no longer in the index
+      if (launches.launched(taskId.getStartedAt(), System.currentTimeMillis())) {
+        return;
+      }
+    }
+  }
+
+  public void notifyRequestDeleted(String requestId) {
+    final RequestLaunches launches = launchesPerRequest.remove(requestId);
+
+    if (launches != null) {
+      launches.remove();
+    }
+  }
+
+  private void prune(long now) {
+    int pruned = 0;
+
+    for (Map.Entry<String, RequestLaunches> entry : launchesPerRequest.entrySet()) {
+      if (entry.getValue().removeIfUnusedSince(now - pruneAfterMillis)) {
+        launchesPerRequest.remove(entry.getKey(), entry.getValue());
+        pruned++;
+      }
+    }
+
+    lastPrunedAt = now;
+
+    if (pruned > 0) {
+      LOG.debug("Pruned {} requests which haven't launched a task or been sorted in {}", pruned, JavaUtils.durationFromMillis(pruneAfterMillis));
+    }
+  }
+
+  int getIndexedRequestCount() {
+    return launchesPerRequest.size();
+  }
+
+  private PriorityKey getPriorityKey(SingularityRequest request, long now) {
+    final double taskPriorityLevel = request.getTaskPriorityLevel().or(defaultTaskPriorityLevel);
+    final RequestLaunches launches = launchesPerRequest.get(request.getId());
+
+    if (launches == null) {
+      return new PriorityKey(taskPriorityLevel, 0);
+    }
+
+    synchronized (launches) {
+      launches.used(now);
+
+      return new PriorityKey(taskPriorityLevel / (1 + launches.getRecentLaunches(now)), launches.lastLaunchedAt);
+    }
+  }
+
+  private double decay(long elapsedMillis) {
+    if (halfLifeMillis <= 0) {
+      return 0;
+    }
+
+    return Math.pow(0.5, (double) Math.max(elapsedMillis, 0) / halfLifeMillis);
+  }
+
+  private class RequestLaunches {
+
+    private long lastLaunchedAt;
+    // the decayed number of launches as of recentLaunchesAt
+    private double recentLaunches;
+    private long recentLaunchesAt;
+    // when the scheduler last launched a task for or sorted this request, which is what pruning goes by
+    private long lastUsedAt;
+    private boolean removed;
+
+    synchronized boolean launched(long startedAt, long now) {
+      if (removed) {
+        return false;
+      }
+
+      used(now);
+
+      lastLaunchedAt = Math.max(lastLaunchedAt, startedAt);
+
+      if (startedAt > recentLaunchesAt) {
+        recentLaunches = recentLaunches * decay(startedAt - recentLaunchesAt) + decay(0);
+        recentLaunchesAt = startedAt;
+      } else {
+        recentLaunches += decay(recentLaunchesAt - startedAt);
+      }
+
+      return true;
+    }
+
+    synchronized void remove() {
+      removed = true;
+    }
+
+    synchronized void used(long now) {
+      lastUsedAt = Math.max(lastUsedAt, now);
+    }
+
+    synchronized boolean removeIfUnusedSince(long cutoff) {
+      if (lastUsedAt < cutoff) {
+        removed = true;
+      }
+
+      return removed;
+    }
+
+    double getRecentLaunches(long now) {
+      return recentLaunches * decay(now - recentLaunchesAt);
+    }
+
+  }
+
+  private static class PriorityKey implements Comparable<PriorityKey> {
+
+    private final double weightedPriority;
+    private final long lastLaunchedAt;
+
+    PriorityKey(double weightedPriority, long lastLaunchedAt) {
+      this.weightedPriority = weightedPriority;
+      this.lastLaunchedAt = lastLaunchedAt;
+    }
+
+    @Override
+    public int compareTo(PriorityKey other) {
+      final int byPriority = Double.compare(other.weightedPriority, weightedPriority);
+
+      if (byPriority != 0) {
+        return byPriority;
+      }
+
+      return Longs.compare(lastLaunchedAt, other.lastLaunchedAt);
+    }
+
   }
 
 }
@@ -5,10 +5,13 @@ import java.util.List;
 import java.util.Map;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.hubspot.singularity.MachineState;
+import com.hubspot.singularity.SingularityDeployKey;
 import com.hubspot.singularity.SingularityPendingTask;
 import com.hubspot.singularity.SingularityRack;
 import com.hubspot.singularity.SingularitySlave;
@@ -33,6 +36,10 @@ public class SingularitySchedulerStateCache {
   private Optional<Integer> numActiveRacks;
   private Optional<Integer> numActiveSlaves;
 
+  // active tasks which aren't cleaning, counted by host and by rack for each deploy, so placement checks don't scan every active task
+  private Optional<Map<SingularityDeployKey, Multiset<String>>> activeTasksByHost;
+  private Optional<Map<SingularityDeployKey, Multiset<String>>> activeTasksByRack;
+
   @Inject
   public SingularitySchedulerStateCache(TaskManager taskManager, SlaveManager slaveManager, RackManager rackManager) {
     this.taskManager = taskManager;
@@ -44,6 +51,8 @@ public class SingularitySchedulerStateCache {
     cleaningTasks = Optional.absent();
     numActiveRacks = Optional.absent();
     numActiveSlaves = Optional.absent();
+    activeTasksByHost = Optional.absent();
+    activeTasksByRack = Optional.absent();
 
     slaveCache = Maps.newHashMap();
     rackCache = Maps.newHashMap();
@@ -57,6 +66,86 @@ public class SingularitySchedulerStateCache {
     return activeTaskIds.get();
   }
 
+  public void addActiveTaskId(SingularityTaskId taskId) {
+    if (getActiveTaskIds().add(taskId)) {
+      countActiveTask(taskId, 1);
+    }
+  }
+
+  public void removeActiveTaskId(SingularityTaskId taskId) {
+    if (getActiveTaskIds().remove(taskId)) {
+      countActiveTask(taskId, -1);
+    }
+  }
+
+  public int getNumActiveTasksOnHost(String requestId, String deployId, String host) {
+    return getCount(getActiveTasksByHost(), requestId, deployId, host);
+  }
+
+  public int getNumActiveTasksOnRack(String requestId, String deployId, String rackId) {
+    return getCount(getActiveTasksByRack(), requestId, deployId, rackId);
+  }
+
+  private Map<SingularityDeployKey, Multiset<String>> getActiveTasksByHost() {
+    if (!activeTasksByHost.isPresent()) {
+      indexActiveTasks();
+    }
+
+    return activeTasksByHost.get();
+  }
+
+  private Map<SingularityDeployKey, Multiset<String>> getActiveTasksByRack() {
+    if (!activeTasksByRack.isPresent()) {
+      indexActiveTasks();
+    }
+
+    return activeTasksByRack.get();
+  }
+
+  private void indexActiveTasks() {
+    final Map<SingularityDeployKey, Multiset<String>> byHost = Maps.newHashMap();
+    final Map<SingularityDeployKey, Multiset<String>> byRack = Maps.newHashMap();
+
+    activeTasksByHost = Optional.of(byHost);
+    activeTasksByRack = Optional.of(byRack);
+
+    for (SingularityTaskId taskId : getActiveTaskIds()) {
+      countActiveTask(taskId, 1);
+    }
+  }
+
+  private void countActiveTask(SingularityTaskId taskId, int delta) {
+    if (!activeTasksByHost.isPresent() || getCleaningTasks().contains(taskId)) {
+      return;
+    }
+
+    final SingularityDeployKey deployKey = new SingularityDeployKey(taskId.getRequestId(), taskId.getDeployId());
+
+    count(activeTasksByHost.get(), deployKey, taskId.getHost(), delta);
+    count(activeTasksByRack.get(), deployKey, taskId.getRackId(), delta);
+  }
+
+  private void count(Map<SingularityDeployKey, Multiset<String>> index, SingularityDeployKey deployKey, String element, int delta) {
+    Multiset<String> counts = index.get(deployKey);
+
+    if (counts == null) {
+      counts = HashMultiset.create();
+      index.put(deployKey, counts);
+    }
+
+    if (delta > 0) {
+      counts.add(element, delta);
+    } else {
+      counts.remove(element, -delta);
+    }
+  }
+
+  private int getCount(Map<SingularityDeployKey, Multiset<String>> index, String requestId, String deployId, String element) {
+    final Multiset<String> counts = index.get(new SingularityDeployKey(requestId, deployId));
+
+    return counts == null ? 0 : counts.count(element);
+  }
+
   public Collection<SingularityPendingTask> getScheduledTasks() {
     if (!scheduledTasks.isPresent()) {
       scheduledTasks = getMutableCollection(taskManager.getPendingTasks());
@@ -0,0 +1,55 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import com.google.inject.Inject;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.StateManager;
+
+/**
+ * Saves the leader's tracked state often enough that other instances always find one fresh enough to serve, and compares it with
+ * a full recompute every checkTrackedStateEverySeconds.
+ */
+@Singleton
+public class SingularityStatePoller extends SingularityLeaderOnlyPoller {
+
+  private final StateManager stateManager;
+  private final long checkTrackedStateEveryMillis;
+
+  private long lastCheckedAt;
+
+  @Inject
+  SingularityStatePoller(SingularityConfiguration configuration, StateManager stateManager) {
+    super(getSaveEveryMillis(configuration), TimeUnit.MILLISECONDS);
+
+    this.stateManager = stateManager;
+    this.checkTrackedStateEveryMillis = TimeUnit.SECONDS.toMillis(configuration.getCheckTrackedStateEverySeconds());
+    this.lastCheckedAt = System.currentTimeMillis();
+  }
+
+  private static long getSaveEveryMillis(SingularityConfiguration configuration) {
+    final long checkEveryMillis = TimeUnit.SECONDS.toMillis(configuration.getCheckTrackedStateEverySeconds());
+
+    // half the time other instances serve a saved state for, so the saved one is never old enough for them to generate their own
+    return Math.max(TimeUnit.SECONDS.toMillis(1), Math.min(checkEveryMillis, configuration.getCacheStateForMillis() / 2));
+  }
+
+  @Override
+  protected boolean abortsOnError() {
+    return false;
+  }
+
+  @Override
+  public void runActionOnPoll() {
+    final long now = System.currentTimeMillis();
+
+    if (now - lastCheckedAt >= checkTrackedStateEveryMillis) {
+      stateManager.checkTrackedState();
+      lastCheckedAt = now;
+    } else {
+      stateManager.saveTrackedState();
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import com.google.inject.Inject;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.SingularityTaskMirror;
+
+@Singleton
+public class SingularityTaskMirrorPoller extends SingularityLeaderOnlyPoller {
+
+  private final SingularityTaskMirror taskMirror;
+
+  @Inject
+  SingularityTaskMirrorPoller(SingularityConfiguration configuration, SingularityTaskMirror taskMirror) {
+    super(configuration.getCheckTaskMirrorEverySeconds(), TimeUnit.SECONDS);
+
+    this.taskMirror = taskMirror;
+  }
+
+  @Override
+  protected boolean abortsOnError() {
+    return false;
+  }
+
+  @Override
+  public void runActionOnPoll() {
+    taskMirror.verify();
+  }
+}
@@ -1,10 +1,13 @@
 package com.hubspot.singularity.data;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import org.junit.Assert;
@@ -19,6 +22,8 @@ import com.hubspot.singularity.SingularityRequest;
 import com.hubspot.singularity.SingularityRequestBuilder;
 import com.hubspot.singularity.SingularityRequestHistory;
 import com.hubspot.singularity.SingularityRequestHistory.RequestHistoryType;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.history.HistoryCursor;
 import com.hubspot.singularity.data.history.HistoryManager;
 import com.hubspot.singularity.data.history.HistoryManager.OrderDirection;
 import com.hubspot.singularity.data.history.RequestHistoryHelper;
@@ -28,6 +33,12 @@ public class BlendedHistoryTest extends SingularityCuratorTestBase {
   @Inject
   private RequestManager requestManager;
 
+  @Inject
+  private SingularityConfiguration configuration;
+
+  @Inject
+  private RequestHistoryHelper requestHistoryHelper;
+
   private void mockRequestHistory(HistoryManager hm, List<SingularityRequestHistory> returnValue) {
     when(hm.getRequestHistory(Matchers.anyString(), Matchers.<Optional<OrderDirection>>any(), Matchers.anyInt(), Matchers.anyInt())).thenReturn(returnValue);
   }
@@ -42,13 +53,20 @@ public class BlendedHistoryTest extends SingularityCuratorTestBase {
     return new SingularityRequestHistory(createdAt, Optional.<String> absent(), type, request);
   }
 
+  // the history manager mocks are changed between reads, which the page cache wouldn't see
+  private RequestHistoryHelper uncachedHelper(HistoryManager hm) {
+    configuration.setBlendedHistoryCacheMaxRequests(0);
+
+    return new RequestHistoryHelper(requestManager, hm, configuration);
+  }
+
   // DESCENDING
   @Test
   public void testBlendedRequestHistory() {
     HistoryManager hm = mock(HistoryManager.class);
     String rid = "rid";
     request = new SingularityRequestBuilder(rid, RequestType.WORKER).build();
-    RequestHistoryHelper rhh = new RequestHistoryHelper(requestManager, hm);
+    RequestHistoryHelper rhh = uncachedHelper(hm);
 
     mockRequestHistory(hm, Collections.<SingularityRequestHistory> emptyList());
 
@@ -100,4 +118,141 @@ public class BlendedHistoryTest extends SingularityCuratorTestBase {
     Assert.assertTrue(rhh.getFirstHistory(rid).get().getCreatedAt() == 1);
     Assert.assertTrue(rhh.getLastHistory(rid).get().getCreatedAt() == 120);
   }
+
+  private HistoryCursor after(long lastCreatedAt) {
+    return new HistoryCursor(Optional.of(lastCreatedAt), Optional.<String> absent(), Optional.<Long> absent(), Optional.<Long> absent());
+  }
+
+  private HistoryCursor after(long lastCreatedAt, String lastId) {
+    return new HistoryCursor(Optional.of(lastCreatedAt), Optional.of(lastId), Optional.<Long> absent(), Optional.<Long> absent());
+  }
+
+  private void assertCreatedAts(List<SingularityRequestHistory> history, Long... createdAts) {
+    Assert.assertEquals(createdAts.length, history.size());
+
+    for (int i = 0; i < createdAts.length; i++) {
+      Assert.assertEquals(createdAts[i].longValue(), history.get(i).getCreatedAt());
+    }
+  }
+
+  @Test
+  public void testBlendedRequestHistoryAfterCursor() {
+    HistoryManager hm = mock(HistoryManager.class);
+    String rid = "rid";
+    request = new SingularityRequestBuilder(rid, RequestType.WORKER).build();
+    RequestHistoryHelper rhh = uncachedHelper(hm);
+
+    saveHistory(100, RequestHistoryType.DELETED);
+    saveHistory(120, RequestHistoryType.CREATED);
+
+    // history in the database is merged in between
+    when(hm.getRequestHistory(rid, after(130), 2)).thenReturn(Arrays.asList(makeHistory(110, RequestHistoryType.UPDATED), makeHistory(52, RequestHistoryType.EXITED_COOLDOWN)));
+
+    assertCreatedAts(rhh.getBlendedHistory(rid, after(130), 2), 120L, 110L);
+
+    when(hm.getRequestHistory(rid, after(110), 3)).thenReturn(Arrays.asList(makeHistory(52, RequestHistoryType.EXITED_COOLDOWN), makeHistory(51, RequestHistoryType.ENTERED_COOLDOWN)));
+
+    assertCreatedAts(rhh.getBlendedHistory(rid, after(110), 3), 100L, 52L, 51L);
+  }
+
+  @Test
+  public void testBlendedHistoryIteratorReadsPagesAsNeeded() {
+    HistoryManager hm = mock(HistoryManager.class);
+    String rid = "rid";
+    request = new SingularityRequestBuilder(rid, RequestType.WORKER).build();
+    RequestHistoryHelper rhh = uncachedHelper(hm);
+
+    HistoryCursor all = new HistoryCursor(Optional.<Long> absent(), Optional.<String> absent(), Optional.<Long> absent(), Optional.<Long> absent());
+
+    saveHistory(100000, RequestHistoryType.UPDATED);
+    saveHistory(120000, RequestHistoryType.UPDATED);
+
+    // 120 was saved to the database but not yet deleted from ZooKeeper
+    when(hm.getRequestHistory(rid, all, 2)).thenReturn(Arrays.asList(makeHistory(120000, RequestHistoryType.UPDATED), makeHistory(90000, RequestHistoryType.UPDATED)));
+    when(hm.getRequestHistory(rid, after(90000, rid), 2)).thenReturn(Arrays.asList(makeHistory(80000, RequestHistoryType.CREATED)));
+
+    Iterator<SingularityRequestHistory> iterator = rhh.getBlendedHistoryIterator(rid, all, 2);
+
+    Assert.assertEquals(120000, iterator.next().getCreatedAt());
+    Assert.assertEquals(100000, iterator.next().getCreatedAt());
+    Assert.assertEquals(90000, iterator.next().getCreatedAt());
+    verify(hm, times(0)).getRequestHistory(rid, after(90000, rid), 2);
+
+    Assert.assertEquals(80000, iterator.next().getCreatedAt());
+    Assert.assertFalse(iterator.hasNext());
+    verify(hm, times(1)).getRequestHistory(rid, after(90000, rid), 2);
+  }
+
+  @Test
+  public void testItemsInBothStoresAreReturnedOnceDespiteTimestampPrecision() {
+    HistoryManager hm = mock(HistoryManager.class);
+    String rid = "rid";
+    request = new SingularityRequestBuilder(rid, RequestType.WORKER).build();
+    RequestHistoryHelper rhh = uncachedHelper(hm);
+
+    HistoryCursor all = new HistoryCursor(Optional.<Long> absent(), Optional.<String> absent(), Optional.<Long> absent(), Optional.<Long> absent());
+
+    saveHistory(120500, RequestHistoryType.UPDATED);
+
+    // the database only keeps whole seconds of the update which is still in ZooKeeper
+    when(hm.getRequestHistory(rid, all, 5)).thenReturn(Arrays.asList(makeHistory(120000, RequestHistoryType.UPDATED), makeHistory(90000, RequestHistoryType.CREATED)));
+
+    assertCreatedAts(rhh.getBlendedHistory(rid, all, 5), 120500L, 90000L);
+
+    // the copy in the database sorts after the cursor of the page which returned the update from ZooKeeper
+    when(hm.getRequestHistory(rid, after(120500), 5)).thenReturn(Arrays.asList(makeHistory(120000, RequestHistoryType.UPDATED), makeHistory(90000, RequestHistoryType.CREATED)));
+
+    assertCreatedAts(rhh.getBlendedHistory(rid, after(120500), 5), 90000L);
+  }
+
+  @Test
+  public void testHistoryPagesAreCachedUntilInvalidated() {
+    HistoryManager hm = mock(HistoryManager.class);
+    String rid = "rid";
+    request = new SingularityRequestBuilder(rid, RequestType.WORKER).build();
+    RequestHistoryHelper rhh = new RequestHistoryHelper(requestManager, hm, configuration);
+
+    when(hm.getRequestHistory(rid, after(130), 2)).thenReturn(Arrays.asList(makeHistory(110, RequestHistoryType.UPDATED)));
+
+    assertCreatedAts(rhh.getBlendedHistory(rid, after(130), 2), 110L);
+    assertCreatedAts(rhh.getBlendedHistory(rid, after(130), 2), 110L);
+    verify(hm, times(1)).getRequestHistory(rid, after(130), 2);
+
+    rhh.invalidate(rid);
+
+    assertCreatedAts(rhh.getBlendedHistory(rid, after(130), 2), 110L);
+    verify(hm, times(2)).getRequestHistory(rid, after(130), 2);
+  }
+
+  @Test
+  public void testHistoryEventsInvalidateCachedPages() {
+    request = new SingularityRequestBuilder("rid", RequestType.WORKER).build();
+
+    saveHistory(100, RequestHistoryType.CREATED);
+
+    assertCreatedAts(requestHistoryHelper.getBlendedHistory("rid", 0, 5), 100L);
+
+    saveHistory(120, RequestHistoryType.UPDATED);
+
+    assertCreatedAts(requestHistoryHelper.getBlendedHistory("rid", 0, 5), 120L, 100L);
+  }
+
+  @Test
+  public void testHistoryCursor() {
+    HistoryCursor cursor = new HistoryCursor(Optional.of(100L), Optional.of("b"), Optional.of(50L), Optional.of(150L));
+
+    Assert.assertTrue(cursor.includes(99, "z"));
+    Assert.assertTrue(cursor.includes(100, "a"));
+    Assert.assertFalse(cursor.includes(100, "b"));
+    Assert.assertFalse(cursor.includes(100, "c"));
+    Assert.assertFalse(cursor.includes(49, "a"));
+    Assert.assertTrue(cursor.includes(50, "a"));
+
+    HistoryCursor range = new HistoryCursor(Optional.<Long> absent(), Optional.<String> absent(), Optional.of(50L), Optional.of(150L));
+
+    Assert.assertTrue(range.includes(149, "a"));
+    Assert.assertFalse(range.includes(150, "a"));
+    Assert.assertFalse(after(100).includes(100, "a"));
+  }
+
 }
@@ -0,0 +1,184 @@
+package com.hubspot.singularity.data;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.ZKPaths;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularityCuratorTestBase;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.transcoders.SingularityTranscoderException;
+import com.hubspot.singularity.data.transcoders.StringTranscoder;
+import com.hubspot.singularity.data.transcoders.Transcoder;
+
+public class CuratorAsyncManagerTest extends SingularityCuratorTestBase {
+
+  private static final String ROOT_PATH = "/async-test";
+
+  @Inject
+  private SingularityConfiguration configuration;
+  @Inject
+  private MetricRegistry metricRegistry;
+
+  private static class TestingAsyncManager extends CuratorAsyncManager {
+
+    TestingAsyncManager(CuratorFramework curator, SingularityConfiguration configuration, MetricRegistry metricRegistry) {
+      super(curator, configuration, metricRegistry);
+    }
+
+  }
+
+  private List<String> createNodes(int count) throws Exception {
+    final List<String> paths = Lists.newArrayListWithCapacity(count);
+
+    for (int i = 0; i < count; i++) {
+      final String path = ZKPaths.makePath(ROOT_PATH, "node" + i);
+
+      cf.create().creatingParentsIfNeeded().forPath(path, ("value" + i).getBytes(UTF_8));
+      paths.add(path);
+    }
+
+    return paths;
+  }
+
+  @Test
+  public void testInFlightRequestsAreLimited() throws Exception {
+    configuration.setZookeeperAsyncMaxInFlight(2);
+
+    final CuratorFramework curator = Mockito.spy(cf);
+    final TestingAsyncManager manager = new TestingAsyncManager(curator, configuration, metricRegistry);
+    final List<String> paths = createNodes(10);
+
+    final CountDownLatch release = new CountDownLatch(1);
+
+    // holding up the first response holds up every response after it, so no permit is returned until release
+    final Transcoder<String> blockingTranscoder = new Transcoder<String>() {
+
+      @Override
+      public String fromBytes(byte[] data) {
+        Uninterruptibles.awaitUninterruptibly(release);
+        return StringTranscoder.INSTANCE.fromBytes(data);
+      }
+
+      @Override
+      public byte[] toBytes(String object) {
+        return StringTranscoder.INSTANCE.toBytes(object);
+      }
+
+    };
+
+    final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    try {
+      final Future<List<String>> results = executorService.submit(new Callable<List<String>>() {
+
+        @Override
+        public List<String> call() {
+          return manager.getAsync(ROOT_PATH, paths, blockingTranscoder);
+        }
+
+      });
+
+      Thread.sleep(500);
+
+      Mockito.verify(curator, Mockito.times(2)).getData();
+
+      release.countDown();
+
+      final List<String> expected = Lists.newArrayList();
+
+      for (int i = 0; i < paths.size(); i++) {
+        expected.add("value" + i);
+      }
+
+      Assert.assertEquals(expected, results.get(5, TimeUnit.SECONDS));
+      Mockito.verify(curator, Mockito.times(paths.size())).getData();
+    } finally {
+      release.countDown();
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testMissingNodesAreLeftOut() throws Exception {
+    final MetricRegistry managerMetricRegistry = new MetricRegistry();
+    final TestingAsyncManager manager = new TestingAsyncManager(cf, configuration, managerMetricRegistry);
+    final List<String> paths = createNodes(3);
+
+    cf.create().forPath(ZKPaths.makePath(ROOT_PATH, "empty"), new byte[0]);
+
+    final List<String> withMissing = ImmutableList.of(ZKPaths.makePath(ROOT_PATH, "missing0"), paths.get(2), ZKPaths.makePath(ROOT_PATH, "empty"), paths.get(0),
+        ZKPaths.makePath(ROOT_PATH, "missing1"));
+
+    Assert.assertEquals(ImmutableList.of("value2", "value0"), manager.getAsync(ROOT_PATH, withMissing, StringTranscoder.INSTANCE));
+    Assert.assertEquals(ImmutableMap.of(paths.get(2), "value2", paths.get(0), "value0"), manager.getAsyncByPath(ROOT_PATH, withMissing, StringTranscoder.INSTANCE));
+
+    final Map<String, List<String>> childrenByParent = manager.getChildrenByParent(ROOT_PATH, ImmutableList.of(ROOT_PATH, paths.get(0), "/missing-parent"));
+
+    Assert.assertEquals(1, childrenByParent.size());
+    Assert.assertEquals(4, childrenByParent.get(ROOT_PATH).size());
+
+    Assert.assertEquals(6, managerMetricRegistry.meter(MetricRegistry.name(CuratorAsyncManager.class, "get_data", "missing")).getCount());
+    Assert.assertEquals(2, managerMetricRegistry.meter(MetricRegistry.name(CuratorAsyncManager.class, "get_children", "missing")).getCount());
+  }
+
+  @Test
+  public void testFailedNodeFailsTheBatch() throws Exception {
+    configuration.setZookeeperAsyncMaxInFlight(2);
+
+    final TestingAsyncManager manager = new TestingAsyncManager(cf, configuration, metricRegistry);
+    final List<String> paths = createNodes(10);
+
+    final Transcoder<String> failingTranscoder = new Transcoder<String>() {
+
+      @Override
+      public String fromBytes(byte[] data) {
+        final String value = StringTranscoder.INSTANCE.fromBytes(data);
+
+        if (value.equals("value3")) {
+          throw new SingularityTranscoderException("Couldn't read %s", value);
+        }
+
+        return value;
+      }
+
+      @Override
+      public byte[] toBytes(String object) {
+        return StringTranscoder.INSTANCE.toBytes(object);
+      }
+
+    };
+
+    try {
+      manager.getAsync(ROOT_PATH, paths, failingTranscoder);
+      Assert.fail("Expected the batch to fail");
+    } catch (SingularityTranscoderException ste) {
+      Assert.assertEquals("Couldn't read value3", ste.getMessage());
+    }
+
+    // every permit was returned, so a later batch isn't held up by the failed one
+    final Collection<String> values = manager.getAsyncByPath(ROOT_PATH, paths, StringTranscoder.INSTANCE).values();
+
+    Assert.assertEquals(paths.size(), values.size());
+  }
+
+}
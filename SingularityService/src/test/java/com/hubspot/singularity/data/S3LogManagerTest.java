@@ -0,0 +1,161 @@
+package com.hubspot.singularity.data;
+
+import java.util.Date;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jets3t.service.S3Service;
+import org.jets3t.service.StorageObjectsChunk;
+import org.jets3t.service.model.StorageObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.hubspot.singularity.SingularityS3Log;
+import com.hubspot.singularity.config.S3Configuration;
+
+public class S3LogManagerTest {
+
+  private static final String BUCKET = "bucket";
+
+  private final NavigableSet<String> keys = Sets.newTreeSet();
+  private final AtomicInteger listedKeys = new AtomicInteger();
+
+  private ScheduledExecutorService executorService;
+  private S3LogManager s3LogManager;
+
+  @Before
+  public void setup() throws Exception {
+    keys.addAll(ImmutableList.of("logs/a/1", "logs/a/2", "logs/a/sub/3", "logs/b/1", "logs/b/2", "other/1"));
+
+    final S3Service s3 = Mockito.mock(S3Service.class);
+
+    Mockito.when(s3.listObjectsChunked(Matchers.eq(BUCKET), Matchers.<String> any(), Matchers.<String> any(), Matchers.anyLong(), Matchers.<String> any(), Matchers.anyBoolean()))
+        .thenAnswer(new Answer<StorageObjectsChunk>() {
+
+          @Override
+          public StorageObjectsChunk answer(InvocationOnMock invocation) {
+            final Object[] args = invocation.getArguments();
+
+            return list((String) args[1], (String) args[2], (Long) args[3], (String) args[4]);
+          }
+
+        });
+
+    Mockito.when(s3.createSignedGetUrl(Matchers.eq(BUCKET), Matchers.anyString(), Matchers.any(Date.class))).thenAnswer(new Answer<String>() {
+
+      @Override
+      public String answer(InvocationOnMock invocation) {
+        return "signed:" + invocation.getArguments()[1];
+      }
+
+    });
+
+    final S3Configuration configuration = new S3Configuration();
+    configuration.setS3Bucket(BUCKET);
+
+    executorService = Executors.newSingleThreadScheduledExecutor();
+    s3LogManager = new S3LogManager(Optional.of(s3), Optional.of(configuration), executorService);
+  }
+
+  @After
+  public void teardown() {
+    executorService.shutdownNow();
+  }
+
+  // lists keys the way S3 does - in key order, after the marker, grouping keys under the delimiter into common prefixes
+  private StorageObjectsChunk list(String prefix, String delimiter, long maxListingLength, String marker) {
+    final List<StorageObject> objects = Lists.newArrayList();
+    final NavigableSet<String> commonPrefixes = Sets.newTreeSet();
+
+    String lastKey = null;
+    boolean truncated = false;
+
+    for (String key : keys) {
+      if (!key.startsWith(prefix) || marker != null && key.compareTo(marker) <= 0) {
+        continue;
+      }
+
+      if (objects.size() + commonPrefixes.size() == maxListingLength) {
+        truncated = true;
+        break;
+      }
+
+      final int delimiterIndex = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+
+      if (delimiterIndex >= 0) {
+        commonPrefixes.add(key.substring(0, delimiterIndex + 1));
+        continue;
+      }
+
+      final StorageObject object = new StorageObject(key);
+      object.setLastModifiedDate(new Date(key.charAt(key.length() - 1) * 1000L + key.charAt(5)));
+      object.setContentLength(key.length());
+
+      objects.add(object);
+      lastKey = key;
+      listedKeys.incrementAndGet();
+    }
+
+    return new StorageObjectsChunk(prefix, delimiter, objects.toArray(new StorageObject[objects.size()]), commonPrefixes.toArray(new String[commonPrefixes.size()]),
+        truncated ? lastKey : null);
+  }
+
+  private List<String> getKeys(List<SingularityS3Log> logs) {
+    final List<String> logKeys = Lists.newArrayList();
+
+    for (SingularityS3Log log : logs) {
+      Assert.assertEquals("signed:" + log.getKey(), log.getGetUrl());
+      logKeys.add(log.getKey());
+    }
+
+    return logKeys;
+  }
+
+  private List<String> getPage(int count, Optional<String> lastKey) throws Exception {
+    return getKeys(s3LogManager.getLogsPage(ImmutableList.of("logs/b/", "logs/a/"), count, lastKey).get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testPagesContinueFromTheLastKey() throws Exception {
+    Assert.assertEquals(ImmutableList.of("logs/a/1", "logs/a/2"), getPage(2, Optional.<String> absent()));
+    Assert.assertEquals(2, listedKeys.get());
+
+    Assert.assertEquals(ImmutableList.of("logs/a/sub/3", "logs/b/1"), getPage(2, Optional.of("logs/a/2")));
+    Assert.assertEquals(4, listedKeys.get());
+
+    Assert.assertEquals(ImmutableList.of("logs/b/2"), getPage(2, Optional.of("logs/b/1")));
+    Assert.assertEquals(5, listedKeys.get());
+
+    Assert.assertEquals(ImmutableList.<String> of(), getPage(2, Optional.of("logs/b/2")));
+    Assert.assertEquals(5, listedKeys.get());
+  }
+
+  @Test
+  public void testNestedPrefixesAreListedOnce() throws Exception {
+    final List<SingularityS3Log> logs = s3LogManager.getLogsPage(ImmutableList.of("logs/a/", "logs/", "logs/a/sub/"), 10, Optional.<String> absent()).get(5, TimeUnit.SECONDS);
+
+    Assert.assertEquals(ImmutableList.of("logs/a/1", "logs/a/2", "logs/a/sub/3", "logs/b/1", "logs/b/2"), getKeys(logs));
+  }
+
+  @Test
+  public void testFullListingIsMostRecentlyModifiedFirst() throws Exception {
+    final List<SingularityS3Log> logs = s3LogManager.getLogs(ImmutableList.of("logs/a/", "logs/b/")).get(5, TimeUnit.SECONDS);
+
+    Assert.assertEquals(ImmutableList.of("logs/a/sub/3", "logs/b/2", "logs/a/2", "logs/b/1", "logs/a/1"), getKeys(logs));
+  }
+
+}
@@ -0,0 +1,170 @@
+package com.hubspot.singularity.data;
+
+import static org.mockito.Mockito.doAnswer;
+import io.dropwizard.db.DataSourceFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.utils.ZKPaths;
+import org.apache.mesos.Protos.TaskState;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularitySchedulerTestBase;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHealthcheckResult;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.data.history.HistoryManager;
+import com.hubspot.singularity.data.transcoders.Transcoder;
+import com.hubspot.singularity.resources.HistoryResource;
+
+public class SingularityHealthcheckResultsTest extends SingularitySchedulerTestBase {
+
+  @Inject
+  private Transcoder<SingularityTaskHealthcheckResult> healthcheckResultTranscoder;
+  @Inject
+  private HistoryManager historyManager;
+  @Inject
+  private HistoryResource historyResource;
+
+  private SingularityTaskHealthcheckResult result(SingularityTaskId taskId, long timestamp, int statusCode) {
+    return new SingularityTaskHealthcheckResult(Optional.of(statusCode), Optional.of(10L), timestamp, Optional.<String> absent(), Optional.<String> absent(), taskId);
+  }
+
+  private void assertTimestamps(List<SingularityTaskHealthcheckResult> results, Long... timestamps) {
+    Assert.assertEquals(timestamps.length, results.size());
+
+    for (int i = 0; i < timestamps.length; i++) {
+      Assert.assertEquals(timestamps[i].longValue(), results.get(i).getTimestamp());
+    }
+  }
+
+  @Test
+  public void testOnlyMostRecentResultsAreKept() {
+    initRequest();
+    initFirstDeploy();
+
+    configuration.setMaxHealthcheckResultsPerTask(3);
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+    SingularityTask otherTask = launchTask(request, firstDeploy, 2, TaskState.TASK_RUNNING);
+
+    taskManager.saveHealthcheckResult(result(task.getTaskId(), 1, 500));
+    taskManager.saveHealthcheckResults(Arrays.asList(result(task.getTaskId(), 3, 500), result(otherTask.getTaskId(), 2, 200), result(task.getTaskId(), 2, 500)));
+
+    assertTimestamps(taskManager.getHealthcheckResults(task.getTaskId()), 1L, 2L, 3L);
+    assertTimestamps(taskManager.getHealthcheckResults(otherTask.getTaskId()), 2L);
+
+    taskManager.saveHealthcheckResults(Arrays.asList(result(task.getTaskId(), 5, 200), result(task.getTaskId(), 4, 500)));
+
+    assertTimestamps(taskManager.getHealthcheckResults(task.getTaskId()), 3L, 4L, 5L);
+    assertTimestamps(taskManager.getTaskHistory(task.getTaskId()).get().getHealthcheckResults(), 3L, 4L, 5L);
+
+    Assert.assertEquals(5, taskManager.getLastHealthcheck(task.getTaskId()).get().getTimestamp());
+    Assert.assertFalse(taskManager.getLastHealthcheck(task.getTaskId()).get().isFailed());
+  }
+
+  @Test
+  public void testResultsAreReadBackFromZooKeeper() {
+    initRequest();
+    initFirstDeploy();
+
+    configuration.setMaxHealthcheckResultsPerTask(2);
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    taskManager.saveHealthcheckResults(Arrays.asList(result(task.getTaskId(), 1, 500), result(task.getTaskId(), 2, 500)));
+
+    // forgets the results it was holding for the task
+    taskManager.deleteActiveTask(task.getTaskId().getId());
+
+    taskManager.saveHealthcheckResult(result(task.getTaskId(), 3, 200));
+
+    assertTimestamps(taskManager.getHealthcheckResults(task.getTaskId()), 2L, 3L);
+  }
+
+  @Test
+  public void testResultsSavedOnePerNodeAreStillRead() throws Exception {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    String legacyParentPath = ZKPaths.makePath(ZKPaths.makePath("/tasks/history", task.getTaskId().getRequestId()), task.getTaskId().getId() + "/healthchecks");
+
+    cf.create().creatingParentsIfNeeded().forPath(ZKPaths.makePath(legacyParentPath, "1"), healthcheckResultTranscoder.toBytes(result(task.getTaskId(), 1, 500)));
+
+    taskManager.saveHealthcheckResult(result(task.getTaskId(), 2, 200));
+
+    assertTimestamps(taskManager.getHealthcheckResults(task.getTaskId()), 1L, 2L);
+  }
+
+  @Test
+  public void testActiveTaskHistoryIncludesPersistedResults() throws Exception {
+    initRequest();
+    initFirstDeploy();
+
+    configuration.setDatabaseConfiguration(new DataSourceFactory());
+
+    final List<SingularityTaskHealthcheckResult> persisted = Collections.synchronizedList(Lists.<SingularityTaskHealthcheckResult> newArrayList());
+
+    doAnswer(new Answer<Void>() {
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public Void answer(InvocationOnMock invocation) {
+        persisted.addAll((List<SingularityTaskHealthcheckResult>) invocation.getArguments()[0]);
+        return null;
+      }
+
+    }).when(historyManager).saveHealthcheckResults(Matchers.<List<SingularityTaskHealthcheckResult>> any());
+
+    doAnswer(new Answer<List<SingularityTaskHealthcheckResult>>() {
+
+      @Override
+      public List<SingularityTaskHealthcheckResult> answer(InvocationOnMock invocation) {
+        synchronized (persisted) {
+          return Lists.newArrayList(persisted);
+        }
+      }
+
+    }).when(historyManager).getHealthcheckResults(Matchers.anyString());
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    for (int i = 1; i <= 40; i++) {
+      taskManager.saveHealthcheckResult(result(task.getTaskId(), i, 200));
+    }
+
+    // results 1 - 15 are beyond the 25 kept, and are trimmed from ZooKeeper by the first save after they are persisted
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+
+    while (persisted.size() < 15 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    Assert.assertEquals(15, persisted.size());
+
+    taskManager.saveHealthcheckResult(result(task.getTaskId(), 41, 200));
+
+    Assert.assertTrue(taskManager.getHealthcheckResults(task.getTaskId()).size() < 41);
+
+    final List<SingularityTaskHealthcheckResult> results = historyResource.getHistoryForTask(task.getTaskId().getId()).getHealthcheckResults();
+
+    Assert.assertEquals(41, results.size());
+
+    for (int i = 0; i < results.size(); i++) {
+      Assert.assertEquals(i + 1, results.get(i).getTimestamp());
+    }
+  }
+
+}
@@ -0,0 +1,136 @@
+package com.hubspot.singularity.data;
+
+import java.util.Collections;
+
+import org.apache.mesos.Protos.TaskState;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularityHostState;
+import com.hubspot.singularity.SingularitySchedulerTestBase;
+import com.hubspot.singularity.SingularityState;
+import com.hubspot.singularity.api.SingularityPauseRequest;
+
+public class SingularityStateTrackerTest extends SingularitySchedulerTestBase {
+
+  @Inject
+  private SingularityTaskMirror taskMirror;
+  @Inject
+  private SingularityStateTracker stateTracker;
+  @Inject
+  private StateManager stateManager;
+
+  @Before
+  public void startTracking() throws Exception {
+    taskMirror.startMirroring();
+    stateTracker.startTracking();
+  }
+
+  @After
+  public void stopTracking() {
+    stateTracker.stopTracking();
+    taskMirror.stopMirroring();
+  }
+
+  private SingularityState waitForTrackedState(SingularityState expected) {
+    SingularityState tracked = stateManager.getState(false, true);
+
+    // tracked counts follow ZooKeeper watches, so give them a moment to catch up
+    for (int i = 0; i < 50 && !matches(expected, tracked); i++) {
+      sleep(100);
+      tracked = stateManager.getState(false, true);
+    }
+
+    return tracked;
+  }
+
+  private boolean matches(SingularityState expected, SingularityState tracked) {
+    return expected.getActiveTasks() == tracked.getActiveTasks() && expected.getActiveRequests() == tracked.getActiveRequests()
+        && expected.getPausedRequests() == tracked.getPausedRequests() && expected.getActiveSlaves() == tracked.getActiveSlaves()
+        && expected.getActiveRacks() == tracked.getActiveRacks() && expected.getScheduledTasks() == tracked.getScheduledTasks()
+        && expected.getUnderProvisionedRequests() == tracked.getUnderProvisionedRequests();
+  }
+
+  @Test
+  public void testTrackedStateMatchesFullState() {
+    initRequest();
+    initFirstDeploy();
+
+    requestResource.submit(request.toBuilder().setInstances(Optional.of(3)).build(), Optional.<String> absent());
+
+    launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+    sms.resourceOffers(driver, Collections.singletonList(createOffer(1, 128, "slave1", "host1")));
+
+    SingularityState expected = stateManager.generateState(true);
+
+    Assert.assertTrue(expected.getActiveTasks() > 0);
+    Assert.assertEquals(1, expected.getActiveSlaves());
+
+    SingularityState tracked = waitForTrackedState(expected);
+
+    Assert.assertTrue(matches(expected, tracked));
+    Assert.assertEquals(expected.getUnderProvisionedRequestIds(), tracked.getUnderProvisionedRequestIds());
+
+    requestResource.pause(requestId, Optional.<String> absent(), Optional.<SingularityPauseRequest> absent());
+
+    expected = stateManager.generateState(true);
+
+    Assert.assertEquals(1, expected.getPausedRequests());
+    Assert.assertTrue(matches(expected, waitForTrackedState(expected)));
+
+    Assert.assertEquals(0, stateManager.checkTrackedState());
+  }
+
+  @Test
+  public void testActiveDeploysAreRememberedUntilDriftIsFound() {
+    initRequest();
+    initFirstDeploy();
+
+    requestResource.submit(request.toBuilder().setInstances(Optional.of(3)).build(), Optional.<String> absent());
+
+    launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    SingularityState expected = stateManager.generateState(true);
+
+    Assert.assertEquals(Collections.singletonList(requestId), expected.getUnderProvisionedRequestIds());
+    Assert.assertEquals(expected.getUnderProvisionedRequestIds(), waitForTrackedState(expected).getUnderProvisionedRequestIds());
+
+    // removed behind the tracker's back, so only a fresh read would notice
+    deployManager.deleteRequestDeployState(requestId);
+
+    sleep(1100);
+
+    Assert.assertEquals(Collections.singletonList(requestId), stateManager.getState(false, true).getUnderProvisionedRequestIds());
+    Assert.assertEquals(0, stateManager.generateState(true).getUnderProvisionedRequests());
+
+    Assert.assertEquals(1, stateManager.checkTrackedState());
+    Assert.assertEquals(0, stateManager.getState(false, true).getUnderProvisionedRequests());
+  }
+
+  @Test
+  public void testHostStatesAreTracked() throws Exception {
+    stateManager.save(new SingularityHostState(false, 1000, "DRIVER_RUNNING", Optional.<Long> absent(), "127.0.0.2", "trackedHost", "master1"));
+
+    for (int i = 0; i < 50 && !hasHostState(stateManager.getState(false, true), "trackedHost"); i++) {
+      sleep(100);
+    }
+
+    Assert.assertTrue(hasHostState(stateManager.getState(false, true), "trackedHost"));
+    Assert.assertEquals(stateManager.getHostStates().size(), stateManager.getState(false, true).getHostStates().size());
+  }
+
+  private boolean hasHostState(SingularityState state, String hostname) {
+    for (SingularityHostState hostState : state.getHostStates()) {
+      if (hostState.getHostname().equals(hostname)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+}
@@ -0,0 +1,78 @@
+package com.hubspot.singularity.data;
+
+import java.util.Collections;
+
+import org.apache.curator.utils.ZKPaths;
+import org.apache.mesos.Protos.TaskState;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularityPendingTask;
+import com.hubspot.singularity.SingularitySchedulerTestBase;
+import com.hubspot.singularity.SingularityTask;
+
+public class SingularityTaskMirrorTest extends SingularitySchedulerTestBase {
+
+  @Inject
+  private SingularityTaskMirror taskMirror;
+
+  @Before
+  public void startMirror() throws Exception {
+    taskMirror.startMirroring();
+  }
+
+  @After
+  public void stopMirror() {
+    taskMirror.stopMirroring();
+  }
+
+  @Test
+  public void testLocalWritesAreVisibleImmediately() {
+    initRequest();
+    initFirstDeploy();
+
+    Assert.assertTrue(taskMirror.isRunning());
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    Assert.assertEquals(Collections.singletonList(task.getTaskId()), taskManager.getActiveTaskIds());
+    Assert.assertTrue(taskManager.isActiveTask(task.getTaskId().getId()));
+    Assert.assertTrue(taskManager.getPendingTaskIds().isEmpty());
+
+    SingularityPendingTask pendingTask = createAndSchedulePendingTask(firstDeployId);
+
+    Assert.assertEquals(Collections.singletonList(pendingTask.getPendingTaskId()), taskManager.getPendingTaskIds());
+
+    taskManager.deletePendingTask(pendingTask.getPendingTaskId());
+    taskManager.deleteActiveTask(task.getTaskId().getId());
+
+    Assert.assertTrue(taskManager.getActiveTaskIds().isEmpty());
+    Assert.assertTrue(taskManager.getPendingTasks().isEmpty());
+    Assert.assertEquals(0, taskMirror.verify());
+  }
+
+  @Test
+  public void testVerifyRepairsDrift() throws Exception {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    taskMirror.stopMirroring();
+    taskMirror.startMirroring();
+
+    Assert.assertEquals(Collections.singletonList(task.getTaskId()), taskManager.getActiveTaskIds());
+
+    // written behind the mirror's back, without waiting for the watch
+    cf.delete().forPath(ZKPaths.makePath(TaskManager.ACTIVE_PATH_ROOT, task.getTaskId().getId()));
+
+    taskMirror.verify();
+
+    Assert.assertTrue(taskManager.getActiveTaskIds().isEmpty());
+    Assert.assertEquals(0, taskMirror.verify());
+  }
+
+}
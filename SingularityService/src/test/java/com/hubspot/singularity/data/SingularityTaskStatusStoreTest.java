@@ -0,0 +1,105 @@
+package com.hubspot.singularity.data;
+
+import org.apache.curator.utils.ZKPaths;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularitySchedulerTestBase;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskStatusHolder;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.transcoders.Transcoder;
+
+public class SingularityTaskStatusStoreTest extends SingularitySchedulerTestBase {
+
+  @Inject
+  private SingularityTaskStatusStore taskStatusStore;
+  @Inject
+  private Transcoder<SingularityTaskStatusHolder> taskStatusTranscoder;
+
+  @After
+  public void stopStore() {
+    taskStatusStore.stopStoring();
+  }
+
+  private Optional<SingularityTaskStatusHolder> getFromZk(SingularityTask task) throws Exception {
+    final String path = ZKPaths.makePath(TaskManager.LAST_ACTIVE_TASK_STATUSES_PATH_ROOT, task.getTaskId().getId());
+
+    if (cf.checkExists().forPath(path) == null) {
+      return Optional.absent();
+    }
+
+    return Optional.of(taskStatusTranscoder.fromBytes(cf.getData().forPath(path)));
+  }
+
+  private SingularityTaskStatusHolder buildStatusHolder(SingularityTask task, long timestamp) {
+    return new SingularityTaskStatusHolder(task.getTaskId(), Optional.<TaskStatus> absent(), timestamp, serverId, Optional.<String> absent());
+  }
+
+  @Test
+  public void testSynchronousWritesAreServedFromMemory() throws Exception {
+    initRequest();
+    initFirstDeploy();
+
+    taskStatusStore.startStoring();
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    Assert.assertEquals(getFromZk(task).get().getServerTimestamp(), taskManager.getLastActiveTaskStatus(task.getTaskId()).get().getServerTimestamp());
+
+    statusUpdate(task, TaskState.TASK_FINISHED);
+
+    Assert.assertFalse(taskManager.getLastActiveTaskStatus(task.getTaskId()).isPresent());
+    Assert.assertFalse(getFromZk(task).isPresent());
+  }
+
+  @Test
+  public void testDeferredWritesAreCoalesced() throws Exception {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+    SingularityTaskStatusHolder launched = getFromZk(task).get();
+
+    SingularityConfiguration deferredConfiguration = new SingularityConfiguration();
+    deferredConfiguration.setDeferLastActiveTaskStatusWrites(true);
+    deferredConfiguration.setFlushLastActiveTaskStatusesEveryMillis(60000);
+
+    SingularityTaskStatusStore deferredStore = new SingularityTaskStatusStore(cf, deferredConfiguration, new MetricRegistry(), taskStatusTranscoder);
+
+    try {
+      deferredStore.startStoring();
+
+      Assert.assertEquals(launched.getServerTimestamp(), deferredStore.get(task.getTaskId()).get().getServerTimestamp());
+
+      deferredStore.save(buildStatusHolder(task, launched.getServerTimestamp() + 1));
+      deferredStore.save(buildStatusHolder(task, launched.getServerTimestamp() + 2));
+
+      Assert.assertEquals(launched.getServerTimestamp() + 2, deferredStore.get(task.getTaskId()).get().getServerTimestamp());
+      Assert.assertEquals(launched.getServerTimestamp(), getFromZk(task).get().getServerTimestamp());
+
+      Assert.assertEquals(1, deferredStore.flush());
+      Assert.assertEquals(launched.getServerTimestamp() + 2, getFromZk(task).get().getServerTimestamp());
+
+      deferredStore.delete(task.getTaskId());
+
+      Assert.assertTrue(getFromZk(task).isPresent());
+      Assert.assertEquals(1, deferredStore.flush());
+      Assert.assertFalse(getFromZk(task).isPresent());
+
+      // a status for a task whose node is already gone falls back to creating it
+      deferredStore.save(buildStatusHolder(task, launched.getServerTimestamp() + 3));
+    } finally {
+      deferredStore.stopStoring();
+    }
+
+    Assert.assertEquals(launched.getServerTimestamp() + 3, getFromZk(task).get().getServerTimestamp());
+  }
+
+}
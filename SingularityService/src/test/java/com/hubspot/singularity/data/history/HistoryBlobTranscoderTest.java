@@ -0,0 +1,79 @@
+package com.hubspot.singularity.data.history;
+
+import org.apache.mesos.Protos.TaskState;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularitySchedulerTestBase;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHistory;
+import com.hubspot.singularity.data.transcoders.HistoryBlobCodec;
+import com.hubspot.singularity.data.transcoders.Transcoder;
+
+public class HistoryBlobTranscoderTest extends SingularitySchedulerTestBase {
+
+  @Inject
+  private ObjectMapper objectMapper;
+
+  @Inject
+  private Transcoder<SingularityTaskHistory> taskHistoryTranscoder;
+
+  private HistoryBlobTranscoder<SingularityTaskHistory> getTranscoder(Optional<HistoryBlobCodec> codec, MetricRegistry metricRegistry) {
+    return new HistoryBlobTranscoder<>(codec, objectMapper, SingularityTaskHistory.class, taskHistoryTranscoder, metricRegistry);
+  }
+
+  private void assertSameJson(Object expected, Object actual) throws Exception {
+    Assert.assertEquals(objectMapper.writeValueAsString(expected), objectMapper.writeValueAsString(actual));
+  }
+
+  @Test
+  public void testBlobsAreReadWhicheverCodecWroteThem() throws Exception {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_FINISHED);
+    SingularityTaskHistory taskHistory = taskManager.getTaskHistory(task.getTaskId()).get();
+
+    MetricRegistry metricRegistry = new MetricRegistry();
+
+    HistoryBlobTranscoder<SingularityTaskHistory> uncoded = getTranscoder(Optional.<HistoryBlobCodec> absent(), metricRegistry);
+    HistoryBlobTranscoder<SingularityTaskHistory> snappy = getTranscoder(Optional.of(HistoryBlobCodec.SNAPPY), metricRegistry);
+    HistoryBlobTranscoder<SingularityTaskHistory> deflate = getTranscoder(Optional.of(HistoryBlobCodec.DEFLATE), metricRegistry);
+
+    byte[] uncodedBytes = uncoded.toBytes(taskHistory);
+    byte[] snappyBytes = snappy.toBytes(taskHistory);
+    byte[] deflateBytes = deflate.toBytes(taskHistory);
+
+    Assert.assertArrayEquals(taskHistoryTranscoder.toBytes(taskHistory), uncodedBytes);
+    Assert.assertEquals(Optional.of(HistoryBlobCodec.SNAPPY), HistoryBlobCodec.forBlob(snappyBytes));
+    Assert.assertEquals(Optional.of(HistoryBlobCodec.DEFLATE), HistoryBlobCodec.forBlob(deflateBytes));
+    Assert.assertEquals(Optional.<HistoryBlobCodec> absent(), HistoryBlobCodec.forBlob(uncodedBytes));
+
+    for (HistoryBlobTranscoder<SingularityTaskHistory> transcoder : new HistoryBlobTranscoder[] { uncoded, snappy, deflate }) {
+      assertSameJson(taskHistory, transcoder.fromBytes(uncodedBytes));
+      assertSameJson(taskHistory, transcoder.fromBytes(snappyBytes));
+      assertSameJson(taskHistory, transcoder.fromBytes(deflateBytes));
+    }
+
+    byte[] jsonBytes = objectMapper.writeValueAsBytes(taskHistory);
+
+    Assert.assertFalse(uncoded.isRecodable(uncodedBytes));
+    Assert.assertTrue(snappy.isRecodable(jsonBytes));
+    Assert.assertTrue(snappy.isRecodable(deflateBytes));
+    Assert.assertFalse(snappy.isRecodable(snappyBytes));
+    Assert.assertTrue(deflate.isRecodable(jsonBytes));
+    Assert.assertTrue(deflate.isRecodable(snappyBytes));
+
+    // compressLargeDataObjects is on, so rows written without a codec are already Snappy compressed
+    Assert.assertFalse(snappy.isRecodable(uncodedBytes));
+    Assert.assertTrue(deflate.isRecodable(uncodedBytes));
+
+    Assert.assertEquals(1, metricRegistry.histogram(MetricRegistry.name(HistoryBlobCodec.class, "DEFLATE", "compressedPercent")).getCount());
+    Assert.assertEquals(3, metricRegistry.timer(MetricRegistry.name(HistoryBlobCodec.class, "SNAPPY", "decode")).getCount());
+  }
+
+}
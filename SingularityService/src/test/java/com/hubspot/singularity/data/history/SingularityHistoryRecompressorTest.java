@@ -0,0 +1,60 @@
+package com.hubspot.singularity.data.history;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularityCuratorTestBase;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.MetadataManager;
+import com.hubspot.singularity.data.transcoders.HistoryBlobCodec;
+
+public class SingularityHistoryRecompressorTest extends SingularityCuratorTestBase {
+
+  @Inject
+  private MetadataManager metadataManager;
+
+  private SingularityHistoryRecompressor getRecompressor(HistoryManager historyManager) {
+    SingularityConfiguration configuration = new SingularityConfiguration();
+
+    configuration.setHistoryBlobCodec(HistoryBlobCodec.SNAPPY);
+    configuration.setHistoryRecompressionBatchSize(2);
+
+    return new SingularityHistoryRecompressor(configuration, historyManager, metadataManager, new MetricRegistry());
+  }
+
+  @Test
+  public void testNewLeaderCarriesOnFromTheLastRecompressedTask() {
+    HistoryManager historyManager = mock(HistoryManager.class);
+
+    when(historyManager.getTaskIdsToRecompress(Optional.<String> absent(), 2)).thenReturn(Arrays.asList("a", "b"));
+    when(historyManager.getTaskIdsToRecompress(Optional.of("b"), 2)).thenReturn(Collections.<String> emptyList());
+
+    getRecompressor(historyManager).runActionOnPoll();
+
+    Assert.assertEquals(Optional.of("b"), metadataManager.getLastRecompressedTaskId(HistoryBlobCodec.SNAPPY.name()));
+
+    HistoryManager nextHistoryManager = mock(HistoryManager.class);
+
+    when(nextHistoryManager.getTaskIdsToRecompress(Optional.of("b"), 2)).thenReturn(Collections.<String> emptyList());
+
+    SingularityHistoryRecompressor nextRecompressor = getRecompressor(nextHistoryManager);
+
+    nextRecompressor.runActionOnPoll();
+    nextRecompressor.runActionOnPoll();
+
+    verify(nextHistoryManager).getTaskIdsToRecompress(Optional.of("b"), 2);
+    verify(nextHistoryManager, never()).getTaskIdsToRecompress(Optional.<String> absent(), 2);
+  }
+
+}
@@ -0,0 +1,82 @@
+package com.hubspot.singularity.data.transcoders;
+
+import org.apache.mesos.Protos.TaskState;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+import com.hubspot.singularity.ExtendedTaskState;
+import com.hubspot.singularity.SingularitySchedulerTestBase;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHistoryUpdate;
+import com.hubspot.singularity.config.SingularityConfiguration;
+
+public class SmileTranscoderTest extends SingularitySchedulerTestBase {
+
+  @Inject
+  private ObjectMapper objectMapper;
+
+  private SingularityConfiguration getConfiguration(boolean writeBinary, boolean compress) {
+    SingularityConfiguration configuration = new SingularityConfiguration();
+    configuration.setWriteBinaryDataObjects(writeBinary);
+    configuration.setCompressLargeDataObjects(compress);
+    return configuration;
+  }
+
+  private void assertSameJson(Object expected, Object actual) throws Exception {
+    Assert.assertEquals(objectMapper.writeValueAsString(expected), objectMapper.writeValueAsString(actual));
+  }
+
+  @Test
+  public void testReadsLegacyAndBinaryTasks() throws Exception {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    SmileTranscoder<SingularityTask> binary = new SmileTranscoder<>(getConfiguration(true, true), objectMapper, SingularityTask.class, true);
+    SmileTranscoder<SingularityTask> legacyWriter = new SmileTranscoder<>(getConfiguration(false, true), objectMapper, SingularityTask.class, true);
+    CompressingJsonTranscoder<SingularityTask> legacy = new CompressingJsonTranscoder<>(getConfiguration(false, true), objectMapper, SingularityTask.class);
+
+    byte[] legacyBytes = legacy.toBytes(task);
+    byte[] binaryBytes = binary.toBytes(task);
+
+    Assert.assertArrayEquals(legacyBytes, legacyWriter.toBytes(task));
+
+    Assert.assertEquals(SmileTranscoder.MARKER, binaryBytes[0]);
+    Assert.assertEquals(SmileTranscoder.FORMAT_SMILE_SNAPPY, binaryBytes[1]);
+    Assert.assertTrue(binaryBytes.length < legacyBytes.length);
+
+    assertSameJson(task, binary.fromBytes(legacyBytes));
+    assertSameJson(task, binary.fromBytes(binaryBytes));
+    assertSameJson(task, legacyWriter.fromBytes(binaryBytes));
+  }
+
+  @Test
+  public void testUncompressedObjects() throws Exception {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTaskHistoryUpdate update = new SingularityTaskHistoryUpdate(prepTask().getTaskId(), 1L, ExtendedTaskState.TASK_RUNNING, Optional.of("message"));
+
+    SmileTranscoder<SingularityTaskHistoryUpdate> binary = new SmileTranscoder<>(getConfiguration(true, true), objectMapper, SingularityTaskHistoryUpdate.class, false);
+    JsonTranscoder<SingularityTaskHistoryUpdate> legacy = new JsonTranscoder<>(objectMapper, SingularityTaskHistoryUpdate.class);
+
+    byte[] binaryBytes = binary.toBytes(update);
+
+    Assert.assertEquals(SmileTranscoder.FORMAT_SMILE, binaryBytes[1]);
+
+    assertSameJson(update, binary.fromBytes(binaryBytes));
+    assertSameJson(update, binary.fromBytes(legacy.toBytes(update)));
+
+    Assert.assertNull(binary.fromBytes(binary.toBytes(null)));
+  }
+
+  @Test(expected = SingularityTranscoderException.class)
+  public void testUnknownFormat() {
+    new SmileTranscoder<>(getConfiguration(true, true), objectMapper, SingularityTaskHistoryUpdate.class, false).fromBytes(new byte[] { SmileTranscoder.MARKER, 9, 1 });
+  }
+
+}
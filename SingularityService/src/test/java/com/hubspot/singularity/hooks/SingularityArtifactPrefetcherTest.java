@@ -0,0 +1,179 @@
+package com.hubspot.singularity.hooks;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.mesos.Protos.FrameworkID;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.SlaveID;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import com.hubspot.deploy.ExecutorDataBuilder;
+import com.hubspot.deploy.S3Artifact;
+import com.hubspot.singularity.SingularityDeploy;
+import com.hubspot.singularity.SingularityDeployBuilder;
+import com.hubspot.singularity.SingularityDeployMarker;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskId;
+import com.hubspot.singularity.config.SingularityConfiguration;
+import com.hubspot.singularity.data.TaskManager;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
+
+public class SingularityArtifactPrefetcherTest {
+
+  private final SingularityDeployMarker deployMarker = new SingularityDeployMarker("request", "2", 0, Optional.<String> absent());
+
+  private SingularityConfiguration configuration;
+  private AsyncHttpClient http;
+  private TaskManager taskManager;
+  private SingularityArtifactPrefetcher prefetcher;
+
+  private SingularityTaskId taskOnA1;
+  private SingularityTaskId taskOnA2;
+  private SingularityTaskId taskOnB;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setup() throws Exception {
+    configuration = new SingularityConfiguration();
+    configuration.setArtifactPrefetchPort(7071);
+    configuration.setArtifactPrefetchToken("token");
+
+    http = mock(AsyncHttpClient.class);
+    when(http.preparePost(anyString())).thenReturn(mock(BoundRequestBuilder.class));
+
+    taskOnA1 = new SingularityTaskId("request", "1", 1, 1, "a", "rack");
+    taskOnA2 = new SingularityTaskId("request", "1", 1, 2, "a", "rack");
+    taskOnB = new SingularityTaskId("request", "1", 1, 3, "b", "rack");
+
+    final Map<SingularityTaskId, SingularityTask> tasks = Maps.newHashMap();
+    tasks.put(taskOnA1, buildTask(taskOnA1, "a.example.com"));
+    tasks.put(taskOnA2, buildTask(taskOnA2, "a.example.com"));
+    tasks.put(taskOnB, buildTask(taskOnB, "b.example.com"));
+
+    taskManager = mock(TaskManager.class);
+    when(taskManager.getTasks(any(Iterable.class))).then(new Answer<Map<SingularityTaskId, SingularityTask>>() {
+
+      @Override
+      public Map<SingularityTaskId, SingularityTask> answer(InvocationOnMock invocation) {
+        final Map<SingularityTaskId, SingularityTask> found = Maps.newLinkedHashMap();
+
+        for (SingularityTaskId taskId : (Iterable<SingularityTaskId>) invocation.getArguments()[0]) {
+          found.put(taskId, tasks.get(taskId));
+        }
+
+        return found;
+      }
+
+    });
+
+    prefetcher = new SingularityArtifactPrefetcher(configuration, http, new ObjectMapper().registerModule(new GuavaModule()), taskManager);
+  }
+
+  private SingularityTask buildTask(SingularityTaskId taskId, String hostname) {
+    final Offer offer = Offer.newBuilder()
+        .setSlaveId(SlaveID.newBuilder().setValue(taskId.getHost()))
+        .setId(OfferID.newBuilder().setValue(taskId.getId()))
+        .setFrameworkId(FrameworkID.newBuilder().setValue("1"))
+        .setHostname(hostname)
+        .build();
+
+    return new SingularityTask(null, taskId, offer, null);
+  }
+
+  private SingularityDeploy buildDeploy(List<S3Artifact> s3Artifacts) {
+    return new SingularityDeployBuilder("request", "2")
+        .setExecutorData(Optional.of(new ExecutorDataBuilder().setCmd("run").setS3Artifacts(s3Artifacts).build()))
+        .build();
+  }
+
+  private List<S3Artifact> artifacts() {
+    return Arrays.asList(new S3Artifact("app", "app.tar.gz", Optional.of("md5"), Optional.of(1L), "bucket", "app.tar.gz"));
+  }
+
+  @Test
+  public void testEachSlaveIsAskedOncePerDeploy() {
+    final List<SingularityTaskId> activeTasks = Arrays.asList(taskOnA1, taskOnA2, taskOnB);
+
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(artifacts()), activeTasks);
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(artifacts()), activeTasks);
+
+    verify(http, times(1)).preparePost("http://a.example.com:7071/prefetch");
+    verify(http, times(1)).preparePost("http://b.example.com:7071/prefetch");
+    verify(http, times(2)).preparePost(anyString());
+  }
+
+  @Test
+  public void testDeployIsAskedAgainOnceNoLongerPending() {
+    final List<SingularityTaskId> activeTasks = Arrays.asList(taskOnB);
+
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(artifacts()), activeTasks);
+    prefetcher.retainPendingDeploys(Collections.<SingularityDeployMarker> emptyList());
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(artifacts()), activeTasks);
+
+    verify(http, times(2)).preparePost("http://b.example.com:7071/prefetch");
+  }
+
+  @Test
+  public void testDeployWithoutRunningTasksIsAskedOnceTheyStart() {
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(artifacts()), Collections.<SingularityTaskId> emptyList());
+
+    verify(http, never()).preparePost(anyString());
+
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(artifacts()), Arrays.asList(taskOnB));
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(artifacts()), Arrays.asList(taskOnB));
+
+    verify(http, times(1)).preparePost("http://b.example.com:7071/prefetch");
+  }
+
+  @Test
+  public void testMaxSlaves() {
+    configuration.setArtifactPrefetchMaxSlaves(1);
+
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(artifacts()), Arrays.asList(taskOnA1, taskOnA2, taskOnB));
+
+    verify(http, times(1)).preparePost("http://a.example.com:7071/prefetch");
+    verify(http, never()).preparePost("http://b.example.com:7071/prefetch");
+  }
+
+  @Test
+  public void testNothingIsSentWhenDisabledOrWithoutS3Artifacts() {
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(Collections.<S3Artifact> emptyList()), Arrays.asList(taskOnA1));
+
+    final S3Artifact withoutMd5 = new S3Artifact("app", "app.tar.gz", Optional.<String> absent(), Optional.of(1L), "bucket", "app.tar.gz");
+
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(Arrays.asList(withoutMd5)), Arrays.asList(taskOnA1));
+
+    configuration.setArtifactPrefetchToken(null);
+
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(artifacts()), Arrays.asList(taskOnA1));
+
+    configuration.setArtifactPrefetchToken("token");
+
+    configuration.setArtifactPrefetchPort(0);
+
+    prefetcher.prefetchOnce(deployMarker, buildDeploy(artifacts()), Arrays.asList(taskOnA1));
+
+    verify(http, never()).preparePost(anyString());
+  }
+
+}
@@ -128,7 +128,7 @@ public class SingularityMesosTaskBuilderTest {
     .setArguments(Optional.of(Collections.singletonList("wat")))
     .build();
     final SingularityTaskRequest taskRequest = new SingularityTaskRequest(request, deploy, pendingTask);
-    final SingularityTask task = builder.buildTask(offer, Collections.singletonList(portsResource), taskRequest, taskResources, executorResources);
+    final SingularityTask task = builder.buildTask(offer, new SingularityOfferResources(Collections.singletonList(portsResource)), taskRequest, taskResources, executorResources);
 
     assertEquals("/bin/echo", task.getMesosTask().getCommand().getValue());
     assertEquals(1, task.getMesosTask().getCommand().getArgumentsCount());
@@ -0,0 +1,92 @@
+package com.hubspot.singularity.mesos;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.mesos.Protos.Offer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.hubspot.singularity.SingularitySchedulerTestBase;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskRequest;
+import com.hubspot.singularity.config.CustomExecutorConfiguration;
+import com.hubspot.singularity.config.MesosConfiguration;
+import com.hubspot.singularity.config.MesosConfiguration.OfferMatchStrategy;
+import com.hubspot.singularity.scheduler.SingularitySchedulerStateCache;
+
+public class SingularityOfferMatcherTest extends SingularitySchedulerTestBase {
+
+  @Inject
+  private SingularityMesosTaskBuilder mesosTaskBuilder;
+  @Inject
+  private SingularitySlaveAndRackManager slaveAndRackManager;
+  @Inject
+  private CustomExecutorConfiguration customExecutorConfiguration;
+
+  private List<SingularityOfferHolder> match(OfferMatchStrategy strategy, Offer... offers) {
+    MesosConfiguration mesosConfiguration = new MesosConfiguration();
+    mesosConfiguration.setOfferMatchStrategy(strategy);
+
+    SingularityOfferMatcher offerMatcher = new SingularityOfferMatcher(mesosConfiguration, customExecutorConfiguration, mesosTaskBuilder, slaveAndRackManager, schedulerPriority, new MetricRegistry());
+
+    List<SingularityOfferHolder> offerHolders = Lists.newArrayList();
+
+    for (Offer offer : offers) {
+      slaveAndRackManager.checkOffer(offer);
+      offerHolders.add(new SingularityOfferHolder(offer, 1));
+    }
+
+    SingularitySchedulerStateCache stateCache = stateCacheProvider.get();
+    List<SingularityTaskRequest> taskRequests = scheduler.getDueTasks();
+
+    List<SingularityTask> accepted = offerMatcher.matchOffers(offerHolders, taskRequests, stateCache);
+
+    Assert.assertEquals(taskRequests.size(), accepted.size());
+
+    return offerHolders;
+  }
+
+  private void scheduleInstances(int instances) {
+    initRequest();
+    initFirstDeploy();
+
+    requestResource.submit(request.toBuilder().setInstances(Optional.of(instances)).build(), Optional.<String> absent());
+    scheduler.drainPendingQueue(stateCacheProvider.get());
+  }
+
+  @Test
+  public void testBestFitPacksTheSmallestOffer() {
+    scheduleInstances(2);
+
+    List<SingularityOfferHolder> offerHolders = match(OfferMatchStrategy.BEST_FIT, createOffer(5, 1024, "slave1", "host1"), createOffer(2, 1024, "slave2", "host2"));
+
+    Assert.assertEquals(0, offerHolders.get(0).getAcceptedTasks().size());
+    Assert.assertEquals(2, offerHolders.get(1).getAcceptedTasks().size());
+    Assert.assertEquals(0, offerHolders.get(1).getCurrentResources().getCpus(), 0);
+  }
+
+  @Test
+  public void testSpreadUsesEveryOffer() {
+    scheduleInstances(2);
+
+    List<SingularityOfferHolder> offerHolders = match(OfferMatchStrategy.SPREAD, createOffer(5, 1024, "slave1", "host1"), createOffer(2, 1024, "slave2", "host2"));
+
+    Assert.assertEquals(1, offerHolders.get(0).getAcceptedTasks().size());
+    Assert.assertEquals(1, offerHolders.get(1).getAcceptedTasks().size());
+  }
+
+  @Test
+  public void testFirstFitFillsOffersInOrder() {
+    scheduleInstances(3);
+
+    List<SingularityOfferHolder> offerHolders = match(OfferMatchStrategy.FIRST_FIT, createOffer(2, 1024, "slave1", "host1"), createOffer(5, 1024, "slave2", "host2"));
+
+    Assert.assertEquals(Arrays.asList(2, 1), Arrays.asList(offerHolders.get(0).getAcceptedTasks().size(), offerHolders.get(1).getAcceptedTasks().size()));
+  }
+
+}
@@ -0,0 +1,86 @@
+package com.hubspot.singularity.mesos;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.Value.Range;
+import org.apache.mesos.Protos.Value.Ranges;
+import org.apache.mesos.Protos.Value.Scalar;
+import org.apache.mesos.Protos.Value.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.hubspot.mesos.MesosUtils;
+import com.hubspot.mesos.Resources;
+
+public class SingularityOfferResourcesTest {
+
+  private Resource scalar(String name, double value) {
+    return Resource.newBuilder().setType(Type.SCALAR).setName(name).setScalar(Scalar.newBuilder().setValue(value)).build();
+  }
+
+  private Resource ports(long... beginsAndEnds) {
+    Ranges.Builder ranges = Ranges.newBuilder();
+
+    for (int i = 0; i < beginsAndEnds.length; i += 2) {
+      ranges.addRange(Range.newBuilder().setBegin(beginsAndEnds[i]).setEnd(beginsAndEnds[i + 1]));
+    }
+
+    return Resource.newBuilder().setType(Type.RANGES).setName(MesosUtils.PORTS).setRanges(ranges).build();
+  }
+
+  @Test
+  public void testMatchesMesosUtils() {
+    List<Resource> offered = Arrays.asList(scalar(MesosUtils.CPUS, 5), scalar(MesosUtils.MEMORY, 100), ports(23, 23, 100, 1000));
+
+    SingularityOfferResources resources = new SingularityOfferResources(offered);
+
+    Assert.assertEquals(MesosUtils.getNumCpus(offered), resources.getCpus(), 0);
+    Assert.assertEquals(MesosUtils.getMemory(offered), resources.getMemory(), 0);
+    Assert.assertEquals(MesosUtils.getNumPorts(offered), resources.getNumPorts());
+
+    resources.subtract(Arrays.asList(scalar(MesosUtils.CPUS, 2), scalar(MesosUtils.MEMORY, 40), ports(176, 770)));
+
+    List<Resource> subtracted = MesosUtils.subtractResources(offered, Arrays.asList(scalar(MesosUtils.CPUS, 2), scalar(MesosUtils.MEMORY, 40), ports(176, 770)));
+
+    Assert.assertEquals(MesosUtils.getNumCpus(subtracted), resources.getCpus(), 0);
+    Assert.assertEquals(MesosUtils.getMemory(subtracted), resources.getMemory(), 0);
+    Assert.assertEquals(MesosUtils.getNumPorts(subtracted), resources.getNumPorts());
+
+    Assert.assertTrue(resources.hasResources(new Resources(3, 60, 307)));
+    Assert.assertFalse(resources.hasResources(new Resources(3, 60, 308)));
+  }
+
+  @Test
+  public void testChosenPortsAreAvailable() {
+    SingularityOfferResources resources = new SingularityOfferResources(Collections.singletonList(ports(31000, 31002, 31010, 31011)));
+
+    for (int i = 0; i < 20; i++) {
+      long[] chosen = resources.choosePorts(5);
+
+      Assert.assertArrayEquals(new long[] { 31000, 31001, 31002, 31010, 31011 }, chosen);
+    }
+
+    long[] chosen = resources.choosePorts(2);
+
+    Resource portsResource = SingularityOfferResources.getPortsResource(chosen);
+
+    Assert.assertEquals(2, MesosUtils.getNumPorts(Collections.singletonList(portsResource)));
+
+    resources.subtract(Collections.singletonList(portsResource));
+
+    Assert.assertEquals(3, resources.getNumPorts());
+
+    for (long port : resources.choosePorts(3)) {
+      Assert.assertFalse(port == chosen[0] || port == chosen[1]);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCantChooseMorePortsThanOffered() {
+    new SingularityOfferResources(Collections.singletonList(ports(31000, 31001))).choosePorts(3);
+  }
+
+}
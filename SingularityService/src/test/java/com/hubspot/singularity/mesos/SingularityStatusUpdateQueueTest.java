@@ -0,0 +1,147 @@
+package com.hubspot.singularity.mesos;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.SchedulerDriver;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Inject;
+import com.hubspot.singularity.ExtendedTaskState;
+import com.hubspot.singularity.SingularityAbort;
+import com.hubspot.singularity.SingularitySchedulerTestBase;
+import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHistoryUpdate;
+import com.hubspot.singularity.sentry.SingularityExceptionNotifier;
+
+public class SingularityStatusUpdateQueueTest extends SingularitySchedulerTestBase {
+
+  @Inject
+  private SingularityStatusUpdateQueue statusUpdateQueue;
+  @Inject
+  private SingularityExceptionNotifier exceptionNotifier;
+  @Inject
+  private SingularityAbort abort;
+
+  private TaskStatus buildTaskStatus(SingularityTask task, TaskState state) {
+    return TaskStatus.newBuilder().setTaskId(task.getMesosTask().getTaskId()).setSlaveId(task.getOffer().getSlaveId()).setState(state).build();
+  }
+
+  private void waitForActiveTaskCount(int count) {
+    final long start = System.currentTimeMillis();
+
+    while (taskManager.getActiveTaskIds().size() != count || statusUpdateQueue.getQueueDepth() > 0) {
+      Assert.assertTrue("Timed out waiting for status updates to be processed", System.currentTimeMillis() - start < 10000);
+      sleep(25);
+    }
+  }
+
+  @Test
+  public void testUpdatesForATaskAreProcessedInOrder() {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask first = launchTask(request, firstDeploy, 1, TaskState.TASK_STARTING);
+    SingularityTask second = launchTask(request, firstDeploy, 2, TaskState.TASK_STARTING);
+
+    for (SingularityTask task : new SingularityTask[] { first, second }) {
+      statusUpdateQueue.enqueue(driver, buildTaskStatus(task, TaskState.TASK_RUNNING));
+      statusUpdateQueue.enqueue(driver, buildTaskStatus(task, TaskState.TASK_RUNNING));
+    }
+
+    statusUpdateQueue.enqueue(driver, buildTaskStatus(first, TaskState.TASK_FINISHED));
+
+    waitForActiveTaskCount(1);
+
+    Assert.assertEquals(second.getTaskId(), taskManager.getActiveTaskIds().get(0));
+
+    int running = 0;
+    boolean finishedLast = false;
+
+    for (SingularityTaskHistoryUpdate update : taskManager.getTaskHistoryUpdates(first.getTaskId())) {
+      finishedLast = update.getTaskState() == ExtendedTaskState.TASK_FINISHED;
+      if (update.getTaskState() == ExtendedTaskState.TASK_RUNNING) {
+        running++;
+      }
+    }
+
+    Assert.assertEquals(1, running);
+    Assert.assertTrue(finishedLast);
+  }
+
+  @Test
+  public void testStopDrainsQueuedUpdates() {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask first = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+    SingularityTask second = launchTask(request, firstDeploy, 2, TaskState.TASK_RUNNING);
+
+    statusUpdateQueue.enqueue(driver, buildTaskStatus(first, TaskState.TASK_FINISHED));
+    statusUpdateQueue.enqueue(driver, buildTaskStatus(second, TaskState.TASK_FINISHED));
+
+    statusUpdateQueue.stop();
+
+    Assert.assertEquals(0, statusUpdateQueue.getQueueDepth());
+    Assert.assertTrue(taskManager.getActiveTaskIds().isEmpty());
+  }
+
+  @Test
+  public void testTerminalUpdatesAreProcessedBeforeEnqueueReturns() {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    // the driver acknowledges the update once enqueue returns, so it must already have been saved
+    statusUpdateQueue.enqueue(driver, buildTaskStatus(task, TaskState.TASK_FINISHED));
+
+    Assert.assertTrue(taskManager.getActiveTaskIds().isEmpty());
+  }
+
+  @Test
+  public void testStopFromALaneDoesNotWaitForThatLane() throws Exception {
+    configuration.setStatusUpdateLanes(1);
+    configuration.setStatusUpdateQueueDrainTimeoutMillis(TimeUnit.SECONDS.toMillis(10));
+
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    final SingularityMesosScheduler scheduler = Mockito.mock(SingularityMesosScheduler.class);
+    final SingularityStatusUpdateQueue queue = new SingularityStatusUpdateQueue(configuration, scheduler, exceptionNotifier, abort, new ReentrantLock(), new MetricRegistry());
+
+    final AtomicReference<SingularityStatusUpdateQueue> queueHolder = new AtomicReference<>(queue);
+    final AtomicLong stopMillis = new AtomicLong(-1);
+
+    // like an abort while processing an update, which stops every managed object from the lane's thread
+    Mockito.doAnswer(new Answer<Void>() {
+
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        final long start = System.currentTimeMillis();
+        queueHolder.get().stop();
+        stopMillis.set(System.currentTimeMillis() - start);
+        return null;
+      }
+
+    }).when(scheduler).statusUpdate(Matchers.any(SchedulerDriver.class), Matchers.any(TaskStatus.class));
+
+    queue.enqueue(driver, buildTaskStatus(task, TaskState.TASK_FINISHED));
+
+    Assert.assertTrue(stopMillis.get() >= 0);
+    Assert.assertTrue(stopMillis.get() < TimeUnit.SECONDS.toMillis(5));
+  }
+
+}
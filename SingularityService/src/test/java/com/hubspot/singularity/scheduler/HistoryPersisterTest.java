@@ -2,6 +2,8 @@ package com.hubspot.singularity.scheduler;
 
 import io.dropwizard.db.DataSourceFactory;
 
+import java.util.Arrays;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.mesos.Protos.TaskState;
@@ -13,6 +15,8 @@ import com.google.inject.Inject;
 import com.hubspot.singularity.SingularityRequestHistory.RequestHistoryType;
 import com.hubspot.singularity.SingularitySchedulerTestBase;
 import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskHistory;
+import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.data.history.SingularityRequestHistoryPersister;
 import com.hubspot.singularity.data.history.SingularityTaskHistoryPersister;
 
@@ -88,6 +92,39 @@ public class HistoryPersisterTest extends SingularitySchedulerTestBase {
     Assert.assertTrue(taskManager.getTaskHistory(taskTwo.getTaskId()).isPresent());
   }
 
+  @Test
+  public void testTaskPurgingInBatches() {
+    initRequest();
+    initFirstDeploy();
+
+    configuration.setHistoryPersisterBatchSize(2);
+    configuration.setDeleteTasksFromZkWhenNoDatabaseAfterHours(1);
+
+    SingularityTask taskOne = launchTask(request, firstDeploy, System.currentTimeMillis() - TimeUnit.HOURS.toMillis(3), 1, TaskState.TASK_RUNNING);
+    SingularityTask taskTwo = launchTask(request, firstDeploy, System.currentTimeMillis() - TimeUnit.HOURS.toMillis(3), 2, TaskState.TASK_RUNNING);
+    SingularityTask taskThree = launchTask(request, firstDeploy, System.currentTimeMillis() - TimeUnit.HOURS.toMillis(3), 3, TaskState.TASK_RUNNING);
+    SingularityTask taskFour = launchTask(request, firstDeploy, System.currentTimeMillis() - TimeUnit.HOURS.toMillis(3), 4, TaskState.TASK_RUNNING);
+
+    for (SingularityTask task : Arrays.asList(taskOne, taskTwo, taskThree)) {
+      statusUpdate(task, TaskState.TASK_FINISHED, Optional.of(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+    }
+
+    cleaner.drainCleanupQueue();
+
+    Map<SingularityTaskId, SingularityTaskHistory> taskHistories = taskManager.getTaskHistories(Arrays.asList(taskOne.getTaskId(), taskTwo.getTaskId(), taskThree.getTaskId(), taskFour.getTaskId()));
+
+    Assert.assertEquals(4, taskHistories.size());
+    Assert.assertEquals(taskManager.getTaskHistory(taskOne.getTaskId()).get().getTaskUpdates(), taskHistories.get(taskOne.getTaskId()).getTaskUpdates());
+
+    taskHistoryPersister.runActionOnPoll();
+
+    Assert.assertTrue(!taskManager.getTaskHistory(taskOne.getTaskId()).isPresent());
+    Assert.assertTrue(!taskManager.getTaskHistory(taskTwo.getTaskId()).isPresent());
+    Assert.assertTrue(!taskManager.getTaskHistory(taskThree.getTaskId()).isPresent());
+    Assert.assertTrue(taskManager.getTaskHistory(taskFour.getTaskId()).isPresent());
+    Assert.assertEquals(1, taskManager.getTaskHistories(Arrays.asList(taskOne.getTaskId(), taskFour.getTaskId())).size());
+  }
+
   @Test
   public void testPurgingDoesntApplyIfDatabasePresent() {
     initRequest();
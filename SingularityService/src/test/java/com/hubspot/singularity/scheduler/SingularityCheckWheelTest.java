@@ -0,0 +1,93 @@
+package com.hubspot.singularity.scheduler;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.hubspot.singularity.scheduler.SingularityCheckWheel.DueChecksHandler;
+
+public class SingularityCheckWheelTest {
+
+  private static final long TICK_MILLIS = 100;
+
+  private List<List<String>> batches;
+  private SingularityCheckWheel<String> wheel;
+
+  @Before
+  public void setup() {
+    batches = Lists.newArrayList();
+    wheel = new SingularityCheckWheel<>("test", TICK_MILLIS, new MetricRegistry(), new DueChecksHandler<String>() {
+
+      @Override
+      public void handle(List<String> dueChecks) {
+        batches.add(dueChecks);
+      }
+
+    });
+  }
+
+  private List<String> advanceBy(long millis) {
+    batches.clear();
+
+    wheel.advance(System.currentTimeMillis() + millis);
+
+    Assert.assertTrue(batches.size() <= 1);
+
+    return batches.isEmpty() ? Lists.<String> newArrayList() : batches.get(0);
+  }
+
+  @Test
+  public void testDueChecksRunAsOneBatch() {
+    wheel.schedule("a", "a", 1000);
+    wheel.schedule("b", "b", 1000);
+    wheel.schedule("c", "c", 5000);
+
+    Assert.assertTrue(advanceBy(0).isEmpty());
+
+    List<String> due = advanceBy(1000 + TICK_MILLIS);
+
+    Assert.assertEquals(2, due.size());
+    Assert.assertTrue(due.containsAll(Lists.newArrayList("a", "b")));
+    Assert.assertFalse(wheel.isScheduled("a"));
+    Assert.assertTrue(wheel.isScheduled("c"));
+
+    Assert.assertEquals(Lists.newArrayList("c"), advanceBy(5000 + TICK_MILLIS));
+    Assert.assertTrue(advanceBy(10000).isEmpty());
+  }
+
+  @Test
+  public void testCancel() {
+    wheel.schedule("a", "a", 1000);
+
+    Assert.assertTrue(wheel.cancel("a"));
+    Assert.assertFalse(wheel.cancel("a"));
+    Assert.assertFalse(wheel.isScheduled("a"));
+
+    Assert.assertTrue(advanceBy(1000 + TICK_MILLIS).isEmpty());
+  }
+
+  @Test
+  public void testRescheduleReplacesCheck() {
+    Assert.assertFalse(wheel.schedule("a", "first", 1000));
+    Assert.assertTrue(wheel.schedule("a", "second", 3000));
+
+    Assert.assertTrue(advanceBy(1000 + TICK_MILLIS).isEmpty());
+    Assert.assertEquals(Lists.newArrayList("second"), advanceBy(3000 + TICK_MILLIS));
+  }
+
+  @Test
+  public void testChecksDueAfterMoreThanOneTurnOfTheWheel() {
+    final long delayMillis = TICK_MILLIS * 1000;
+
+    wheel.schedule("a", "a", delayMillis);
+
+    Assert.assertTrue(advanceBy(delayMillis / 2).isEmpty());
+    Assert.assertTrue(wheel.isScheduled("a"));
+    Assert.assertEquals(Lists.newArrayList("a"), advanceBy(delayMillis + TICK_MILLIS));
+  }
+
+}
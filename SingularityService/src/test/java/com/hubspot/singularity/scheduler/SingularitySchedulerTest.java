@@ -19,6 +19,7 @@ import com.google.common.base.Optional;
 import com.google.common.collect.Sets;
 import com.hubspot.baragon.models.BaragonRequestState;
 import com.hubspot.singularity.DeployState;
+import com.hubspot.singularity.ExtendedTaskState;
 import com.hubspot.singularity.LoadBalancerRequestType;
 import com.hubspot.singularity.MachineState;
 import com.hubspot.singularity.RequestState;
@@ -40,6 +41,8 @@ import com.hubspot.singularity.SingularityRequestHistory.RequestHistoryType;
 import com.hubspot.singularity.SingularityRequestInstances;
 import com.hubspot.singularity.SingularitySchedulerTestBase;
 import com.hubspot.singularity.SingularityTask;
+import com.hubspot.singularity.SingularityTaskCleanup;
+import com.hubspot.singularity.SingularityTaskCleanup.TaskCleanupType;
 import com.hubspot.singularity.SingularityTaskId;
 import com.hubspot.singularity.SingularityTaskRequest;
 import com.hubspot.singularity.SlavePlacement;
@@ -282,6 +285,64 @@ public class SingularitySchedulerTest extends SingularitySchedulerTestBase {
     Assert.assertTrue(requestManager.getPendingRequests().isEmpty());
   }
 
+  @Test
+  public void testTasksFromOneOfferCycleAreWrittenTogether() {
+    initRequest();
+    initFirstDeploy();
+
+    requestResource.submit(request.toBuilder().setInstances(Optional.of(4)).build(), Optional.<String> absent());
+    scheduler.drainPendingQueue(stateCacheProvider.get());
+
+    sms.resourceOffers(driver, Arrays.asList(createOffer(1, 128)));
+    sms.resourceOffers(driver, Arrays.asList(createOffer(2, 1024), createOffer(1, 1024)));
+
+    Assert.assertEquals(4, taskManager.getActiveTaskIds().size());
+    Assert.assertTrue(taskManager.getPendingTaskIds().isEmpty());
+
+    for (SingularityTaskId taskId : taskManager.getActiveTaskIds()) {
+      Assert.assertTrue(taskManager.getTask(taskId).isPresent());
+      Assert.assertTrue(taskManager.getLastActiveTaskStatus(taskId).isPresent());
+      Assert.assertEquals(ExtendedTaskState.TASK_LAUNCHED, taskManager.getTaskHistoryUpdates(taskId).get(0).getTaskState());
+    }
+
+    SingularityTask task = taskManager.getActiveTasks().get(0);
+
+    statusUpdate(task, TaskState.TASK_RUNNING);
+
+    Assert.assertEquals(TaskState.TASK_RUNNING, taskManager.getLastActiveTaskStatus(task.getTaskId()).get().getTaskStatus().get().getState());
+    Assert.assertEquals(2, taskManager.getTaskHistoryUpdates(task.getTaskId()).size());
+
+    statusUpdate(task, TaskState.TASK_RUNNING);
+
+    Assert.assertEquals(2, taskManager.getTaskHistoryUpdates(task.getTaskId()).size());
+  }
+
+  @Test
+  public void testOneFailingTaskDoesNotStopTheOthersFromBeingWrittenTogether() {
+    initRequest();
+    initFirstDeploy();
+
+    final long now = System.currentTimeMillis();
+
+    SingularityTask first = prepTask(request, firstDeploy, now, 1);
+    SingularityTask second = prepTask(request, firstDeploy, now, 2);
+    SingularityTask third = prepTask(request, firstDeploy, now, 3);
+
+    // the second task's pending task is already gone, which fails its delete inside the transaction
+    taskManager.deletePendingTask(second.getTaskRequest().getPendingTask().getPendingTaskId());
+
+    taskManager.createTasksAndDeletePendingTasks(Arrays.asList(first, second, third));
+
+    Assert.assertEquals(3, taskManager.getActiveTaskIds().size());
+    Assert.assertTrue(taskManager.getPendingTaskIds().isEmpty());
+
+    for (SingularityTask task : Arrays.asList(first, second, third)) {
+      Assert.assertTrue(taskManager.getTask(task.getTaskId()).isPresent());
+      Assert.assertTrue(taskManager.getLastActiveTaskStatus(task.getTaskId()).isPresent());
+      Assert.assertEquals(ExtendedTaskState.TASK_LAUNCHED, taskManager.getTaskHistoryUpdates(task.getTaskId()).get(0).getTaskState());
+    }
+  }
+
   @Test
   public void testSchedulerExhaustsOffers() {
     initRequest();
@@ -639,6 +700,33 @@ public class SingularitySchedulerTest extends SingularitySchedulerTestBase {
     Assert.assertTrue(taskManager.getActiveTaskIds().size() == 2);
   }
 
+  @Test
+  public void testStateCacheCountsActiveTasksPerDeployAndHost() {
+    initRequest();
+    initFirstDeploy();
+
+    SingularityTask first = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+    SingularityTask second = launchTask(request, firstDeploy, 2, TaskState.TASK_RUNNING);
+
+    taskManager.createTaskCleanup(new SingularityTaskCleanup(user, TaskCleanupType.BOUNCING, System.currentTimeMillis(), second.getTaskId(), Optional.<String> absent()));
+
+    SingularitySchedulerStateCache stateCache = stateCacheProvider.get();
+
+    // cleaning tasks don't count towards placement
+    Assert.assertEquals(1, stateCache.getNumActiveTasksOnHost(requestId, firstDeployId, first.getTaskId().getHost()));
+    Assert.assertEquals(1, stateCache.getNumActiveTasksOnRack(requestId, firstDeployId, first.getTaskId().getRackId()));
+    Assert.assertEquals(0, stateCache.getNumActiveTasksOnHost(requestId, "otherDeployId", first.getTaskId().getHost()));
+
+    stateCache.removeActiveTaskId(first.getTaskId());
+
+    Assert.assertEquals(0, stateCache.getNumActiveTasksOnHost(requestId, firstDeployId, first.getTaskId().getHost()));
+
+    stateCache.addActiveTaskId(first.getTaskId());
+    stateCache.addActiveTaskId(first.getTaskId());
+
+    Assert.assertEquals(1, stateCache.getNumActiveTasksOnHost(requestId, firstDeployId, first.getTaskId().getHost()));
+  }
+
   @Test
   public void testSlavePlacementOptimistic() {
     initRequest();
@@ -733,6 +821,82 @@ public class SingularitySchedulerTest extends SingularitySchedulerTestBase {
 
   }
 
+  @Test
+  public void testLBCleanupDoesNotResendSlowEnqueue() {
+    configuration.setLoadBalancerRequestTimeoutMillis(50);
+
+    initLoadBalancedRequest();
+    initFirstDeploy();
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    saveLoadBalancerState(BaragonRequestState.SUCCESS, task.getTaskId(), LoadBalancerRequestType.ADD);
+
+    statusUpdate(task, TaskState.TASK_FAILED);
+
+    testingLbClient.setResponseMode(TestingLoadBalancerClient.ResponseMode.NEVER);
+
+    final int enqueueCount = testingLbClient.getEnqueueCount();
+
+    cleaner.drainCleanupQueue();
+    Assert.assertTrue(!taskManager.getLBCleanupTasks().isEmpty());
+    Assert.assertEquals(enqueueCount + 1, testingLbClient.getEnqueueCount());
+
+    Optional<SingularityLoadBalancerUpdate> lbUpdate = taskManager.getLoadBalancerState(task.getTaskId(), LoadBalancerRequestType.REMOVE);
+
+    Assert.assertTrue(lbUpdate.isPresent());
+    Assert.assertEquals(BaragonRequestState.WAITING, lbUpdate.get().getLoadBalancerState());
+
+    cleaner.drainCleanupQueue();
+    Assert.assertTrue(!taskManager.getLBCleanupTasks().isEmpty());
+    Assert.assertEquals(enqueueCount + 1, testingLbClient.getEnqueueCount());
+
+    testingLbClient.setResponseMode(TestingLoadBalancerClient.ResponseMode.IMMEDIATE);
+    testingLbClient.setNextBaragonRequestState(BaragonRequestState.SUCCESS);
+
+    cleaner.drainCleanupQueue();
+    Assert.assertTrue(taskManager.getLBCleanupTasks().isEmpty());
+    Assert.assertEquals(enqueueCount + 1, testingLbClient.getEnqueueCount());
+
+    lbUpdate = taskManager.getLoadBalancerState(task.getTaskId(), LoadBalancerRequestType.REMOVE);
+
+    Assert.assertTrue(lbUpdate.isPresent());
+    Assert.assertEquals(BaragonRequestState.SUCCESS, lbUpdate.get().getLoadBalancerState());
+  }
+
+  @Test
+  public void testLBCleanupResendsFailedEnqueue() {
+    initLoadBalancedRequest();
+    initFirstDeploy();
+
+    SingularityTask task = launchTask(request, firstDeploy, 1, TaskState.TASK_RUNNING);
+
+    saveLoadBalancerState(BaragonRequestState.SUCCESS, task.getTaskId(), LoadBalancerRequestType.ADD);
+
+    statusUpdate(task, TaskState.TASK_FAILED);
+
+    testingLbClient.setResponseMode(TestingLoadBalancerClient.ResponseMode.FAIL);
+
+    final int enqueueCount = testingLbClient.getEnqueueCount();
+
+    cleaner.drainCleanupQueue();
+    Assert.assertTrue(!taskManager.getLBCleanupTasks().isEmpty());
+    Assert.assertEquals(enqueueCount + 1, testingLbClient.getEnqueueCount());
+    Assert.assertTrue(!taskManager.getLoadBalancerState(task.getTaskId(), LoadBalancerRequestType.REMOVE).isPresent());
+
+    testingLbClient.setResponseMode(TestingLoadBalancerClient.ResponseMode.IMMEDIATE);
+    testingLbClient.setNextBaragonRequestState(BaragonRequestState.SUCCESS);
+
+    cleaner.drainCleanupQueue();
+    Assert.assertTrue(taskManager.getLBCleanupTasks().isEmpty());
+    Assert.assertEquals(enqueueCount + 2, testingLbClient.getEnqueueCount());
+
+    Optional<SingularityLoadBalancerUpdate> lbUpdate = taskManager.getLoadBalancerState(task.getTaskId(), LoadBalancerRequestType.REMOVE);
+
+    Assert.assertTrue(lbUpdate.isPresent());
+    Assert.assertEquals(BaragonRequestState.SUCCESS, lbUpdate.get().getLoadBalancerState());
+  }
+
   @Test
   public void testUnpauseOnDeploy() {
     initRequest();
@@ -853,6 +1017,65 @@ public class SingularitySchedulerTest extends SingularitySchedulerTestBase {
     Assert.assertTrue(requests.get(2).getRequest().getId().equals(request3.getId()));
   }
 
+  @Test
+  public void testSchedulerPriorityWeightsRecentLaunches() {
+    SingularityRequest request1 = buildRequest("request1");
+    SingularityRequest request2 = buildRequest("request2");
+    SingularityRequest request3 = new SingularityRequestBuilder("request3", RequestType.WORKER).setTaskPriorityLevel(Optional.of(0.25)).build();
+
+    saveRequest(request3);
+
+    SingularityDeploy deploy1 = initDeploy(request1, "r1d1");
+    SingularityDeploy deploy2 = initDeploy(request2, "r2d2");
+    SingularityDeploy deploy3 = initDeploy(request3, "r3d3");
+
+    schedulerPriority.seed();
+
+    final long now = System.currentTimeMillis();
+
+    // r1 launched two tasks just now (1 / 3), r2 launched one task even more recently (1 / 2)
+    // r3 never launched but only has a quarter of the priority (1 / 4)
+    schedulerPriority.notifyTaskLaunched(new SingularityTaskId(request1.getId(), deploy1.getId(), now - 2000, 1, "host", "rack"));
+    schedulerPriority.notifyTaskLaunched(new SingularityTaskId(request1.getId(), deploy1.getId(), now - 2000, 2, "host", "rack"));
+    schedulerPriority.notifyTaskLaunched(new SingularityTaskId(request2.getId(), deploy2.getId(), now - 1000, 1, "host", "rack"));
+
+    List<SingularityTaskRequest> requests = Arrays.asList(buildTaskRequest(request1, deploy1, 100), buildTaskRequest(request3, deploy3, 95), buildTaskRequest(request2, deploy2, 101));
+    schedulerPriority.sortTaskRequestsInPriorityOrder(requests);
+
+    Assert.assertEquals(request2.getId(), requests.get(0).getRequest().getId());
+    Assert.assertEquals(request1.getId(), requests.get(1).getRequest().getId());
+    Assert.assertEquals(request3.getId(), requests.get(2).getRequest().getId());
+  }
+
+  @Test
+  public void testSchedulerPriorityForgetsDeletedAndIdleRequests() {
+    SingularityRequest request1 = buildRequest("request1");
+    SingularityRequest request2 = buildRequest("request2");
+
+    SingularityDeploy deploy1 = initDeploy(request1, "r1d1");
+    SingularityDeploy deploy2 = initDeploy(request2, "r2d2");
+
+    schedulerPriority.seed();
+
+    // launched long ago, but launching or sorting a request is what keeps it indexed
+    schedulerPriority.notifyTaskLaunched(new SingularityTaskId(request1.getId(), deploy1.getId(), 1, 1, "host", "rack"));
+    schedulerPriority.notifyTaskLaunched(new SingularityTaskId(request2.getId(), deploy2.getId(), 2, 1, "host", "rack"));
+
+    schedulerPriority.sortTaskRequestsInPriorityOrder(Arrays.asList(buildTaskRequest(request1, deploy1, 100)));
+
+    Assert.assertEquals(2, schedulerPriority.getIndexedRequestCount());
+
+    // two days on request1 is still being sorted, but request2 has gone unused
+    schedulerPriority.sortTaskRequestsInPriorityOrder(Arrays.asList(buildTaskRequest(request1, deploy1, 100)), System.currentTimeMillis() + TimeUnit.DAYS.toMillis(2));
+
+    Assert.assertEquals(1, schedulerPriority.getIndexedRequestCount());
+
+    requestResource.deleteRequest(request1.getId(), Optional.<String> absent());
+    cleaner.drainCleanupQueue();
+
+    Assert.assertEquals(0, schedulerPriority.getIndexedRequestCount());
+  }
+
   @Test
   public void badPauseExpires() {
     initRequest();
@@ -916,6 +1139,39 @@ public class SingularitySchedulerTest extends SingularitySchedulerTestBase {
     Assert.assertTrue(taskManager.getKilledTaskIdRecords().size() == 3);
   }
 
+  @Test
+  public void testCleanerOnlyCountsReplacementsFromTheSameDeploy() {
+    initRequest();
+
+    requestResource.updateInstances(requestId, Optional.<String> absent(), new SingularityRequestInstances(requestId, Optional.of(2)));
+
+    initFirstDeploy();
+
+    SingularityTask taskOne = startTask(firstDeploy, 1);
+    SingularityTask taskTwo = startTask(firstDeploy, 2);
+
+    initSecondDeploy();
+
+    statusUpdate(startTask(secondDeploy, 1), TaskState.TASK_RUNNING, Optional.of(1L));
+    statusUpdate(startTask(secondDeploy, 2), TaskState.TASK_RUNNING, Optional.of(1L));
+
+    for (SingularityTask task : Arrays.asList(taskOne, taskTwo)) {
+      taskManager.createTaskCleanup(new SingularityTaskCleanup(user, TaskCleanupType.BOUNCING, System.currentTimeMillis(), task.getTaskId(), Optional.<String> absent()));
+    }
+
+    cleaner.drainCleanupQueue();
+
+    Assert.assertEquals(2, taskManager.getCleanupTaskIds().size());
+
+    statusUpdate(startTask(firstDeploy, 3), TaskState.TASK_RUNNING, Optional.of(1L));
+    statusUpdate(startTask(firstDeploy, 4), TaskState.TASK_RUNNING, Optional.of(1L));
+
+    cleaner.drainCleanupQueue();
+
+    Assert.assertTrue(taskManager.getCleanupTaskIds().isEmpty());
+    Assert.assertEquals(2, taskManager.getKilledTaskIdRecords().size());
+  }
+
   @Test
   public void testScheduledNotification() {
     schedule = "0 0 * * * ?"; // run every hour
@@ -3,6 +3,7 @@ package com.hubspot.singularity.scheduler;
 import static com.google.inject.name.Names.named;
 import static com.hubspot.singularity.SingularityMainModule.HTTP_HOST_AND_PORT;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 import io.dropwizard.jackson.Jackson;
 import io.dropwizard.lifecycle.Managed;
@@ -22,6 +23,7 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -47,6 +49,8 @@ import com.hubspot.singularity.config.SentryConfiguration;
 import com.hubspot.singularity.config.SingularityConfiguration;
 import com.hubspot.singularity.config.ZooKeeperConfiguration;
 import com.hubspot.singularity.data.SingularityDataModule;
+import com.hubspot.singularity.data.history.HistoryManager;
+import com.hubspot.singularity.data.history.NoopHistoryManager;
 import com.hubspot.singularity.data.history.SingularityHistoryModule;
 import com.hubspot.singularity.data.transcoders.SingularityTranscoderModule;
 import com.hubspot.singularity.data.zkmigrations.SingularityZkMigrationsModule;
@@ -58,6 +62,7 @@ import com.hubspot.singularity.mesos.SingularityDriver;
 import com.hubspot.singularity.mesos.SingularityLogSupport;
 import com.hubspot.singularity.mesos.SingularityMesosModule;
 import com.hubspot.singularity.resources.DeployResource;
+import com.hubspot.singularity.resources.HistoryResource;
 import com.hubspot.singularity.resources.RackResource;
 import com.hubspot.singularity.resources.RequestResource;
 import com.hubspot.singularity.resources.SlaveResource;
@@ -106,6 +111,7 @@ public class SingularityTestModule implements Module {
     mainBinder.install(new GuiceBundle.GuiceEnforcerModule());
 
     mainBinder.bind(TestingServer.class).toInstance(ts);
+    mainBinder.bind(MetricRegistry.class).toInstance(new MetricRegistry());
     final SingularityConfiguration configuration = getSingularityConfigurationForTestingServer(ts);
     mainBinder.bind(SingularityConfiguration.class).toInstance(configuration);
 
@@ -167,12 +173,21 @@ public class SingularityTestModule implements Module {
     mainBinder.install(new SingularityDataModule());
     mainBinder.install(new SingularitySchedulerModule());
     mainBinder.install(new SingularityTranscoderModule());
-    mainBinder.install(new SingularityHistoryModule());
+    mainBinder.install(Modules.override(new SingularityHistoryModule())
+        .with(new Module() {
+
+          @Override
+          public void configure(Binder binder) {
+            // behaves as without a database, but tests can stub what is saved to and read from it
+            binder.bind(HistoryManager.class).toInstance(spy(new NoopHistoryManager()));
+          }
+        }));
     mainBinder.install(new SingularityZkMigrationsModule());
     mainBinder.install(new SingularityMesosClientModule());
     mainBinder.install(new SingularityEventModule(configuration));
 
     mainBinder.bind(DeployResource.class);
+    mainBinder.bind(HistoryResource.class);
     mainBinder.bind(RequestResource.class);
     mainBinder.bind(SlaveResource.class);
     mainBinder.bind(RackResource.class);
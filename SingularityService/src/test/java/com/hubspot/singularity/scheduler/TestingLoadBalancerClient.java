@@ -1,8 +1,14 @@
 package com.hubspot.singularity.scheduler;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.hubspot.baragon.models.BaragonRequestState;
 import com.hubspot.singularity.LoadBalancerRequestType.LoadBalancerRequestId;
 import com.hubspot.singularity.SingularityDeploy;
@@ -14,33 +20,72 @@ import com.hubspot.singularity.hooks.LoadBalancerClient;
 
 public class TestingLoadBalancerClient implements LoadBalancerClient {
 
+  public enum ResponseMode {
+    IMMEDIATE, NEVER, FAIL;
+  }
+
   private BaragonRequestState requestState;
+  private ResponseMode responseMode;
+  private int enqueueCount;
 
   public TestingLoadBalancerClient() {
     requestState = BaragonRequestState.WAITING;
+    responseMode = ResponseMode.IMMEDIATE;
   }
 
   public void setNextBaragonRequestState(BaragonRequestState nextState) {
     this.requestState = nextState;
   }
 
+  public void setResponseMode(ResponseMode responseMode) {
+    this.responseMode = responseMode;
+  }
+
+  public int getEnqueueCount() {
+    return enqueueCount;
+  }
+
+  private <T> ListenableFuture<T> respond(T value) {
+    switch (responseMode) {
+      case NEVER:
+        return SettableFuture.create();
+      case FAIL:
+        return Futures.immediateFailedFuture(new IllegalStateException("Load balancer is unavailable"));
+      case IMMEDIATE:
+      default:
+        return Futures.immediateFuture(value);
+    }
+  }
+
   private SingularityLoadBalancerUpdate getReturnValue(LoadBalancerRequestId loadBalancerRequestId, LoadBalancerMethod method) {
     return new SingularityLoadBalancerUpdate(requestState, loadBalancerRequestId, Optional.<String> absent(), System.currentTimeMillis(), method, Optional.<String> absent());
   }
 
   @Override
-  public SingularityLoadBalancerUpdate enqueue(LoadBalancerRequestId loadBalancerRequestId, SingularityRequest request, SingularityDeploy deploy, List<SingularityTask> add, List<SingularityTask> remove) {
-    return getReturnValue(loadBalancerRequestId, LoadBalancerMethod.ENQUEUE);
+  public ListenableFuture<SingularityLoadBalancerUpdate> enqueue(LoadBalancerRequestId loadBalancerRequestId, SingularityRequest request, SingularityDeploy deploy, List<SingularityTask> add, List<SingularityTask> remove) {
+    enqueueCount++;
+    return respond(getReturnValue(loadBalancerRequestId, LoadBalancerMethod.ENQUEUE));
+  }
+
+  @Override
+  public ListenableFuture<SingularityLoadBalancerUpdate> getState(LoadBalancerRequestId loadBalancerRequestId) {
+    return respond(getReturnValue(loadBalancerRequestId, LoadBalancerMethod.CHECK_STATE));
   }
 
   @Override
-  public SingularityLoadBalancerUpdate getState(LoadBalancerRequestId loadBalancerRequestId) {
-    return getReturnValue(loadBalancerRequestId, LoadBalancerMethod.CHECK_STATE);
+  public ListenableFuture<Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate>> getStates(Collection<LoadBalancerRequestId> loadBalancerRequestIds) {
+    final Map<LoadBalancerRequestId, SingularityLoadBalancerUpdate> updates = Maps.newHashMap();
+
+    for (LoadBalancerRequestId loadBalancerRequestId : loadBalancerRequestIds) {
+      updates.put(loadBalancerRequestId, getReturnValue(loadBalancerRequestId, LoadBalancerMethod.CHECK_STATE));
+    }
+
+    return respond(updates);
   }
 
   @Override
-  public SingularityLoadBalancerUpdate cancel(LoadBalancerRequestId loadBalancerRequestId) {
-    return getReturnValue(loadBalancerRequestId, LoadBalancerMethod.CANCEL);
+  public ListenableFuture<SingularityLoadBalancerUpdate> cancel(LoadBalancerRequestId loadBalancerRequestId) {
+    return respond(getReturnValue(loadBalancerRequestId, LoadBalancerMethod.CANCEL));
   }
 
 }
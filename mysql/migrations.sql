@@ -61,4 +61,22 @@ ALTER TABLE `taskHistory`
   DROP KEY `requestId`,
   DROP KEY `requestId_3`;
 
-DROP TABLE `taskUpdates`;
\ No newline at end of file
+DROP TABLE `taskUpdates`;
+
+--changeset singularity:4 dbms:mysql
+CREATE TABLE `taskHealthchecks` (
+  `taskId` varchar(200) NOT NULL,
+  `timestamp` bigint(20) NOT NULL,
+  `bytes` blob NOT NULL,
+  PRIMARY KEY (`taskId`,`timestamp`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+--changeset singularity:5 dbms:mysql
+-- covering indexes for paging through the task and deploy history of a request by (timestamp, id), newest first
+ALTER TABLE `taskHistory`
+  DROP KEY `requestId_2`,
+  ADD KEY `requestUpdatedAt` (`requestId`,`updatedAt`,`taskId`,`lastTaskStatus`);
+
+ALTER TABLE `deployHistory`
+  DROP KEY `requestId`,
+  ADD KEY `requestCreatedAt` (`requestId`,`createdAt`,`deployId`,`user`,`deployStateAt`,`deployState`);